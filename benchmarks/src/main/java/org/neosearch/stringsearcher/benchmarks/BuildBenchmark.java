@@ -0,0 +1,61 @@
+package org.neosearch.stringsearcher.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.neosearch.stringsearcher.Algorithm;
+import org.neosearch.stringsearcher.StringSearcher;
+import org.neosearch.stringsearcher.corpus.CorpusGenerator;
+import org.neosearch.stringsearcher.corpus.CorpusGenerator.Dictionary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long <code>build()</code> takes and how much it allocates.
+ *
+ * @author Daniel Beck
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BuildBenchmark {
+
+    @Param({ "AHO_COHARICK", "AHO_COHARICK_IMPROVED", "AHO_COHARICK_DFA", "AHO_COHARICK_UTF8", "COMPRESSED_TRIE",
+            "PACKED_FINGERPRINT", "WU_MANBER" })
+    public Algorithm algorithm;
+
+    @Param({ "WORDS" })
+    public Dictionary dictionary;
+
+    @Param({ "1000", "100000", "5000000" })
+    public int dictionarySize;
+
+    @Param({ "8", "32" })
+    public int keywordLength;
+
+    private List<String> searchStrings;
+
+    @Setup
+    public void generate() {
+        this.searchStrings = new CorpusGenerator(42).dictionary(this.dictionary, this.dictionarySize,
+                this.keywordLength);
+    }
+
+    @Benchmark
+    public StringSearcher<String> build() {
+        return StringSearcher.<String>builderWithPayload().algorithm(this.algorithm)
+                .addSearchStrings(this.searchStrings).build();
+    }
+}
@@ -0,0 +1,115 @@
+package org.neosearch.stringsearcher.benchmarks;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.neosearch.stringsearcher.Algorithm;
+import org.neosearch.stringsearcher.Emit;
+import org.neosearch.stringsearcher.MatchKind;
+import org.neosearch.stringsearcher.StringSearcher;
+import org.neosearch.stringsearcher.StringSearcherBuilder;
+import org.neosearch.stringsearcher.corpus.CorpusGenerator;
+import org.neosearch.stringsearcher.corpus.CorpusGenerator.Dictionary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures <code>parseText</code> with each flag of the configuration, on the
+ * same dictionary and text.
+ *
+ * @author Daniel Beck
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigBenchmark {
+
+    /**
+     * The configuration flags.
+     */
+    public enum Flag {
+        NONE, IGNORE_CASE, IGNORE_OVERLAPS, ONLY_WHOLE_WORDS, ONLY_WHOLE_WORDS_WHITESPACE_SEPARATED, STOP_ON_HIT,
+        LEFTMOST_LONGEST, LEFTMOST_FIRST
+    }
+
+    @Param({ "AHO_COHARICK", "AHO_COHARICK_IMPROVED", "AHO_COHARICK_DFA", "AHO_COHARICK_UTF8", "COMPRESSED_TRIE",
+            "PACKED_FINGERPRINT", "WU_MANBER" })
+    public Algorithm algorithm;
+
+    @Param
+    public Flag flag;
+
+    @Param({ "WORDS" })
+    public Dictionary dictionary;
+
+    @Param({ "1000" })
+    public int dictionarySize;
+
+    @Param({ "8" })
+    public int keywordLength;
+
+    @Param({ "0.01" })
+    public double matchDensity;
+
+    @Param({ "1048576" })
+    public int textSize;
+
+    private StringSearcher<String> searcher;
+
+    private String text;
+
+    @Setup
+    public void build() {
+        final CorpusGenerator generator = new CorpusGenerator(42);
+        final List<String> searchStrings = generator.dictionary(this.dictionary, this.dictionarySize,
+                this.keywordLength);
+        this.text = generator.text(searchStrings, this.textSize, this.matchDensity);
+
+        final StringSearcherBuilder<String> builder = StringSearcher.<String>builderWithPayload()
+                .algorithm(this.algorithm).addSearchStrings(searchStrings);
+        switch (this.flag) {
+        case IGNORE_CASE:
+            builder.ignoreCase();
+            break;
+        case IGNORE_OVERLAPS:
+            builder.ignoreOverlaps();
+            break;
+        case ONLY_WHOLE_WORDS:
+            builder.onlyWholeWords();
+            break;
+        case ONLY_WHOLE_WORDS_WHITESPACE_SEPARATED:
+            builder.onlyWholeWordsWhiteSpaceSeparated();
+            break;
+        case STOP_ON_HIT:
+            builder.stopOnHit();
+            break;
+        case LEFTMOST_LONGEST:
+            builder.matchKind(MatchKind.LEFTMOST_LONGEST);
+            break;
+        case LEFTMOST_FIRST:
+            builder.matchKind(MatchKind.LEFTMOST_FIRST);
+            break;
+        default:
+            break;
+        }
+        this.searcher = builder.build();
+    }
+
+    @Benchmark
+    public Collection<Emit<String>> parseText() {
+        return this.searcher.parseText(this.text);
+    }
+}
@@ -0,0 +1,79 @@
+package org.neosearch.stringsearcher.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.neosearch.stringsearcher.trie.interval.Interval;
+import org.neosearch.stringsearcher.trie.interval.IntervalTree;
+import org.neosearch.stringsearcher.trie.interval.Intervalable;
+import org.neosearch.stringsearcher.trie.interval.OverlapRemoval;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares <code>OverlapRemoval</code> with the <code>IntervalTree</code> it
+ * replaced on dense random intervals, ordered by their end like the emits of
+ * a scan. Both remove the overlaps in place, so every call copies the
+ * intervals first.
+ *
+ * @author Daniel Beck
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OverlapRemovalBenchmark {
+
+    @Param({ "1000", "10000", "50000" })
+    public int intervalCount;
+
+    @Param({ "8" })
+    public int maxLength;
+
+    private List<Intervalable> intervals;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(23);
+        this.intervals = new ArrayList<>(this.intervalCount);
+        for (int i = 0; i < this.intervalCount; i++) {
+            // About two intervals start at every position.
+            final int start = random.nextInt(this.intervalCount / 2);
+            this.intervals.add(new Interval(start, start + random.nextInt(this.maxLength)));
+        }
+        Collections.sort(this.intervals, new Comparator<Intervalable>() {
+
+            @Override
+            public int compare(final Intervalable first, final Intervalable second) {
+                return first.getEnd() != second.getEnd() ? Integer.compare(first.getEnd(), second.getEnd())
+                        : Integer.compare(first.getStart(), second.getStart());
+            }
+        });
+    }
+
+    @Benchmark
+    public List<Intervalable> overlapRemoval() {
+        return OverlapRemoval.removeOverlaps(new ArrayList<>(this.intervals));
+    }
+
+    @Benchmark
+    public List<Intervalable> intervalTree() {
+        final List<Intervalable> copy = new ArrayList<>(this.intervals);
+        return new IntervalTree(copy).removeOverlaps(copy);
+    }
+}
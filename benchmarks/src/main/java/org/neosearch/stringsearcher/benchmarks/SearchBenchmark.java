@@ -0,0 +1,94 @@
+package org.neosearch.stringsearcher.benchmarks;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.neosearch.stringsearcher.Algorithm;
+import org.neosearch.stringsearcher.Emit;
+import org.neosearch.stringsearcher.StringSearcher;
+import org.neosearch.stringsearcher.Token;
+import org.neosearch.stringsearcher.corpus.CorpusGenerator;
+import org.neosearch.stringsearcher.corpus.CorpusGenerator.Dictionary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the search methods of the algorithms by dictionary size, search
+ * string length, match density and text size.
+ *
+ * @author Daniel Beck
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({ "AHO_COHARICK", "AHO_COHARICK_IMPROVED", "AHO_COHARICK_DFA", "AHO_COHARICK_UTF8", "COMPRESSED_TRIE",
+            "PACKED_FINGERPRINT", "WU_MANBER" })
+    public Algorithm algorithm;
+
+    @Param({ "WORDS" })
+    public Dictionary dictionary;
+
+    @Param({ "1000", "100000", "5000000" })
+    public int dictionarySize;
+
+    @Param({ "8", "32" })
+    public int keywordLength;
+
+    /**
+     * The fraction of the text covered by matches.
+     */
+    @Param({ "0.001", "0.1" })
+    public double matchDensity;
+
+    @Param({ "1024", "1048576" })
+    public int textSize;
+
+    private StringSearcher<String> searcher;
+
+    private String text;
+
+    @Setup
+    public void build() {
+        final CorpusGenerator generator = new CorpusGenerator(42);
+        final List<String> searchStrings = generator.dictionary(this.dictionary, this.dictionarySize,
+                this.keywordLength);
+        this.text = generator.text(searchStrings, this.textSize, this.matchDensity);
+        this.searcher = StringSearcher.<String>builderWithPayload().algorithm(this.algorithm)
+                .addSearchStrings(searchStrings).build();
+    }
+
+    @Benchmark
+    public Collection<Emit<String>> parseText() {
+        return this.searcher.parseText(this.text);
+    }
+
+    @Benchmark
+    public Emit<String> firstMatch() {
+        return this.searcher.firstMatch(this.text);
+    }
+
+    @Benchmark
+    public boolean containsMatch() {
+        return this.searcher.containsMatch(this.text);
+    }
+
+    @Benchmark
+    public Collection<Token<String>> tokenize() {
+        return this.searcher.tokenize(this.text);
+    }
+}
@@ -0,0 +1,1094 @@
+package org.neosearch.stringsearcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.neosearch.stringsearcher.trie.handler.DefaultEmitHandler;
+import org.neosearch.stringsearcher.trie.handler.StatefulEmitHandler;
+import org.neosearch.stringsearcher.trie.interval.OverlapRemoval;
+
+/**
+ * Base class for StringSearcher implementations. It implements tokenizing, the
+ * post-processing of the collected emits (whole words, overlaps) and the
+ * search for the first match on top of a single scanning method, which every
+ * algorithm has to provide.
+ *
+ * @author Daniel Beck
+ * @param <T> The type of the supplied of the payload
+ */
+public abstract class AbstractStringSearcher<T> implements StringSearcher<T> {
+
+    private final StringSearcherConfig config;
+
+    /**
+     * The word boundary matches are checked against while scanning, null if
+     * matches do not have to be whole words.
+     */
+    private final WordBoundary wordBoundary;
+
+    /**
+     * Set once the automaton is built. Everything written by the build happens
+     * before this volatile write, and every scan starts by reading it, so the
+     * built automaton is visible to all threads however the searcher was
+     * shared.
+     */
+    private volatile boolean frozen;
+
+    /**
+     * The characters matches can start with, null if the text is not skipped
+     * while the automaton is in its root state.
+     */
+    private StartCharacters startCharacters;
+
+    private final LongAdder prefilteredCharacters = new LongAdder();
+
+    private final LongAdder skippedCharacters = new LongAdder();
+
+    /**
+     * Creates a searcher with a copy of the configuration, so changing the
+     * configuration later does not affect the searcher.
+     *
+     * @param config The configuration.
+     */
+    protected AbstractStringSearcher(final StringSearcherConfig config) {
+        this.config = new StringSearcherConfig(config);
+        this.wordBoundary = wordBoundary(this.config);
+    }
+
+    private static WordBoundary wordBoundary(final StringSearcherConfig config) {
+        WordBoundary wordBoundary = null;
+        if (config.isOnlyWholeWords()) {
+            wordBoundary = config.getWordBoundary();
+        }
+        if (config.isOnlyWholeWordsWhiteSpaceSeparated()) {
+            wordBoundary = wordBoundary == null ? WordBoundary.WHITESPACE : wordBoundary.and(WordBoundary.WHITESPACE);
+        }
+        return wordBoundary;
+    }
+
+    /**
+     * Marks the automaton as built. It must not be modified afterwards, as it is
+     * read by concurrent scans without further synchronization.
+     */
+    protected final void freeze() {
+        this.frozen = true;
+    }
+
+    /**
+     * Marks the automaton as built and enables the start character prefilter:
+     * while the automaton is in its root state, the text is skipped up to the
+     * next character a search string starts with. Implementations calling this
+     * method must be able to resume a scan from any state they return, and the
+     * root state must be {@link #ROOT_STATE}.
+     *
+     * @param searchStringCount The number of search strings, which are read with
+     *                          {@link #getSearchString(int)}.
+     */
+    protected final void freeze(final int searchStringCount) {
+        StartCharacters startCharacters = StartCharacters.of(this, searchStringCount);
+        if (startCharacters != null && isCaseInsensitive()) {
+            startCharacters = startCharacters.withCaseVariants();
+        }
+        this.startCharacters = startCharacters;
+        freeze();
+    }
+
+    /**
+     * Marks the automaton as built and enables the start character prefilter
+     * like {@link #freeze(int)}, but with start characters the automaton knows
+     * without reading its search strings, like the goto transitions of its root
+     * state.
+     *
+     * @param startCharacters The first characters of the search strings, case
+     *                        folded if the case is ignored.
+     */
+    protected final void freeze(final char[] startCharacters) {
+        StartCharacters characters = StartCharacters.of(startCharacters);
+        if (characters != null && isCaseInsensitive()) {
+            characters = characters.withCaseVariants();
+        }
+        this.startCharacters = characters;
+        freeze();
+    }
+
+    /**
+     * Ensures that the automaton is built and its state is visible to the
+     * calling thread.
+     *
+     * @throws IllegalStateException if the automaton has not been built.
+     */
+    protected final void checkFrozen() {
+        if (!this.frozen) {
+            throw new IllegalStateException("The searcher has to be built before it can be used");
+        }
+    }
+
+    /**
+     * The state every scan of a text starts from.
+     */
+    protected static final int ROOT_STATE = 0;
+
+    /**
+     * The number of characters read at once by <code>parseStream()</code>.
+     */
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The minimal number of characters scanned by one task of a parallel search.
+     */
+    private static final int MIN_SEGMENT_SIZE = 256 * 1024;
+
+    /**
+     * The number of documents a worker of a batch takes at once.
+     */
+    private static final int BATCH_CHUNK_SIZE = 64;
+
+    /**
+     * The minimal number of characters scanned at once when a leftmost search
+     * stops on the first hit.
+     */
+    private static final int LEFTMOST_CHUNK_SIZE = 1024;
+
+    /**
+     * The minimal number of characters fed into the automaton from a start
+     * character on, before the prefilter checks for the root state again.
+     */
+    private static final int PREFILTER_MIN_WINDOW = 16;
+
+    /**
+     * The number of start characters after which the prefilter gives up on a
+     * text, if it skipped less than half of it so far.
+     */
+    private static final int PREFILTER_PROBE_CANDIDATES = 64;
+
+    /**
+     * Returns the length of the longest search string.
+     *
+     * @return The maximal number of characters of a match, 0 if there are no
+     *         search strings.
+     */
+    protected abstract int getMaxSearchStringLength();
+
+    /**
+     * Scans a part of the text and passes every matching search string to the
+     * match handler. The scan starts from a given state and returns the state it
+     * ends in, so a text can be scanned in several parts. Implementations must
+     * not allocate objects per character or per match. Buffers for matches are
+     * best allocated with the first match, since the prefilter scans many short
+     * windows without one.
+     *
+     * @param text         The character sequence to scan.
+     * @param from         The index of the first character to scan.
+     * @param to           The index after the last character to scan.
+     * @param state        The state to start from, {@link #ROOT_STATE} at the
+     *                     beginning of a text or a state returned by a previous
+     *                     scan.
+     * @param matchHandler The match handler to call for each match.
+     * @param stopOnHit    If true, the scan stops as soon as the match handler
+     *                     accepted a match.
+     * @return The state after the last scanned character.
+     */
+    protected abstract int scan(final CharSequence text, final int from, final int to, final int state,
+            final MatchHandler matchHandler, final boolean stopOnHit);
+
+    /**
+     * Returns true if {@link #scan(CharSequence, int, int, int, MatchHandler,
+     * boolean)} can resume a scan from the states it returns. Otherwise, texts
+     * are always scanned from their beginning to their end at once.
+     *
+     * @return true by default.
+     */
+    protected boolean isResumable() {
+        return true;
+    }
+
+    /**
+     * Scans the whole text. Only matches which are whole words are passed to the
+     * match handler, if only whole words are requested, and only the leftmost
+     * matches with a leftmost match kind.
+     *
+     * @param text         The character sequence to scan.
+     * @param matchHandler The match handler to call for each match.
+     * @param stopOnHit    If true, the scan stops as soon as the match handler
+     *                     accepted a match.
+     */
+    protected void scan(final CharSequence text, final MatchHandler matchHandler, final boolean stopOnHit) {
+        checkFrozen();
+        if (config.getMatchKind() != MatchKind.STANDARD) {
+            scanLeftmost(text, matchHandler, stopOnHit);
+            return;
+        }
+        prefilteredScan(text, 0, text.length(), ROOT_STATE, onlyWholeWords(text, matchHandler), stopOnHit);
+    }
+
+    /**
+     * Scans a part of the text like
+     * {@link #scan(CharSequence, int, int, int, MatchHandler, boolean)}, but
+     * skips the characters which cannot start a match while the automaton is in
+     * its root state. From each start character on, the automaton scans windows
+     * of at least the length of the longest search string, until it is back in
+     * the root state. If the start characters turn out to be too frequent in the
+     * text, the rest of it is scanned without skipping.
+     *
+     * @param text         The character sequence to scan.
+     * @param from         The index of the first character to scan.
+     * @param to           The index after the last character to scan.
+     * @param state        The state to start from.
+     * @param matchHandler The match handler to call for each match.
+     * @param stopOnHit    If true, the scan stops as soon as the match handler
+     *                     accepted a match.
+     * @return The state after the last scanned character.
+     */
+    protected final int prefilteredScan(final CharSequence text, final int from, final int to, final int state,
+            final MatchHandler matchHandler, final boolean stopOnHit) {
+        final StartCharacters startCharacters = this.startCharacters;
+        if (startCharacters == null) {
+            return scan(text, from, to, state, matchHandler, stopOnHit);
+        }
+
+        final AcceptingMatchHandler acceptingMatchHandler = stopOnHit ? new AcceptingMatchHandler(matchHandler)
+                : null;
+        final MatchHandler windowHandler = stopOnHit ? acceptingMatchHandler : matchHandler;
+        final int window = Math.max(getMaxSearchStringLength(), PREFILTER_MIN_WINDOW);
+        int current = state;
+        int position = from;
+        int skipped = 0;
+        int candidates = 0;
+
+        while (position < to) {
+            if (current == ROOT_STATE) {
+                final int candidate = startCharacters.next(text, position, to);
+                skipped += candidate - position;
+                position = candidate;
+                if (position == to) {
+                    break;
+                }
+
+                if (++candidates == PREFILTER_PROBE_CANDIDATES && skipped < (position - from) / 2) {
+                    current = scan(text, position, to, current, matchHandler, stopOnHit);
+                    position = to;
+                    break;
+                }
+            }
+
+            int end = (int) Math.min(to, (long) position + window);
+            // Surrogate pairs are not split.
+            if (end < to && Character.isHighSurrogate(text.charAt(end - 1))) {
+                end++;
+            }
+
+            current = scan(text, position, end, current, windowHandler, stopOnHit);
+            position = end;
+            if (stopOnHit && acceptingMatchHandler.accepted) {
+                break;
+            }
+        }
+
+        this.prefilteredCharacters.add(position - from);
+        this.skippedCharacters.add(skipped);
+        return current;
+    }
+
+    /**
+     * Estimates the heap memory held by this searcher: its automaton and its
+     * search strings, but not the payload objects.
+     *
+     * @return The estimated size in bytes, -1 if this searcher does not estimate
+     *         it.
+     */
+    public long estimateHeapSize() {
+        return -1;
+    }
+
+    /**
+     * Returns how much of the text scanned so far was skipped by the start
+     * character prefilter. A searcher whose automaton cannot resume a scan does
+     * not skip, and reports no characters.
+     *
+     * @return The statistics, accumulated over all scans of this searcher.
+     */
+    public PrefilterStatistics getPrefilterStatistics() {
+        return new PrefilterStatistics(this.prefilteredCharacters.sum(), this.skippedCharacters.sum());
+    }
+
+    /**
+     * Wraps a match handler, so it is only called for whole words if only whole
+     * words are requested.
+     */
+    private MatchHandler onlyWholeWords(final CharSequence text, final MatchHandler matchHandler) {
+        return wordBoundary != null ? new WholeWordMatchHandler(text, matchHandler) : matchHandler;
+    }
+
+    /**
+     * Scans the whole text and passes only the leftmost, non-overlapping matches
+     * of the match kind to the match handler. No match can be longer than the
+     * longest search string, so a match is resolved as soon as the scan is that
+     * many characters past its start. If the scan stops on a hit, the text is
+     * scanned in chunks, so it reads at most one chunk beyond the resolved
+     * match, unless the scan cannot be resumed.
+     *
+     * @param text         The character sequence to scan.
+     * @param matchHandler The match handler to call for each resolved match.
+     * @param stopOnHit    If true, the scan stops as soon as the match handler
+     *                     accepted a match.
+     */
+    private void scanLeftmost(final CharSequence text, final MatchHandler matchHandler, final boolean stopOnHit) {
+        final int maxLength = getMaxSearchStringLength();
+        final LeftmostMatchHandler leftmostMatchHandler = new LeftmostMatchHandler(matchHandler, maxLength, stopOnHit);
+        // Partial matches are rejected before they can win.
+        final MatchHandler candidateHandler = onlyWholeWords(text, leftmostMatchHandler);
+        final int chunkSize = stopOnHit && isResumable() ? Math.max(maxLength, LEFTMOST_CHUNK_SIZE)
+                : text.length();
+        int state = ROOT_STATE;
+        int position = 0;
+
+        while (position < text.length() && !leftmostMatchHandler.stopped) {
+            int to = (int) Math.min(text.length(), (long) position + chunkSize);
+            // Surrogate pairs are not split.
+            if (to < text.length() && Character.isHighSurrogate(text.charAt(to - 1))) {
+                to++;
+            }
+
+            state = prefilteredScan(text, position, to, state, candidateHandler, true);
+            leftmostMatchHandler.resolveBefore(to - maxLength + 1);
+            position = to;
+        }
+        leftmostMatchHandler.resolveBefore(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates the emit for a match.
+     *
+     * @param start     Start of the match.
+     * @param end       End of the match.
+     * @param keywordId The id of the matching search string.
+     * @return The emit.
+     */
+    protected Emit<T> createEmit(final int start, final int end, final int keywordId) {
+        return new Emit<T>(start, end, getSearchString(keywordId), getPayload(keywordId));
+    }
+
+    /**
+     * Tokenizes the specified text and returns the emitted outputs.
+     *
+     * @param text The text to tokenize.
+     */
+    @Override
+    public Collection<Token<T>> tokenize(final String text) {
+        final Collection<Token<T>> tokens = new ArrayList<>();
+        final Collection<Emit<T>> collectedEmits = parseText(text);
+        int lastCollectedPosition = -1;
+
+        for (final Emit<T> emit : collectedEmits) {
+            if (emit.getStart() - lastCollectedPosition > 1) {
+                tokens.add(createFragment(emit, text, lastCollectedPosition));
+            }
+
+            tokens.add(createMatch(emit, text));
+            lastCollectedPosition = emit.getEnd();
+        }
+
+        if (text.length() - lastCollectedPosition > 1) {
+            tokens.add(createFragment(null, text, lastCollectedPosition));
+        }
+
+        return tokens;
+    }
+
+    private Token<T> createFragment(final Emit<T> emit, final String text, final int lastCollectedPosition) {
+        return new FragmentToken<T>(text.substring(lastCollectedPosition + 1, emit == null ? text.length() : emit.getStart()));
+    }
+
+    private Token<T> createMatch(Emit<T> emit, String text) {
+        return new MatchToken<T>(text.substring(emit.getStart(), emit.getEnd() + 1), emit);
+    }
+
+    /**
+     * Tokenizes a specified text and returns the emitted outputs.
+     *
+     * @param text The character sequence to tokenize.
+     * @return A collection of emits.
+     */
+    @Override
+    public Collection<Emit<T>> parseText(final CharSequence text) {
+        return parseText(text, new DefaultEmitHandler<T>());
+    }
+
+    /**
+     * Tokenizes the specified text by using a custom EmitHandler and returns the
+     * emitted outputs.
+     *
+     * @param text        The character sequence to tokenize.
+     * @param emitHandler The emit handler that will be used to parse the text.
+     * @return A collection of emits.
+     */
+    @SuppressWarnings("unchecked")
+    public Collection<Emit<T>> parseText(final CharSequence text, final StatefulEmitHandler<T> emitHandler) {
+        parseText(text, (EmitHandler<T>) emitHandler);
+
+        return removeUnwantedEmits(emitHandler.getEmits());
+    }
+
+    /**
+     * Applies the overlap settings to the collected emits. Partial matches are
+     * already rejected while scanning.
+     */
+    private List<Emit<T>> removeUnwantedEmits(final List<Emit<T>> collectedEmits) {
+        if (config.getMatchKind() != MatchKind.STANDARD) {
+            // The leftmost scan only reports the remaining matches.
+            return collectedEmits;
+        }
+
+        if (!config.isAllowOverlaps()) {
+            OverlapRemoval.removeOverlaps(collectedEmits);
+        }
+
+        return collectedEmits;
+    }
+
+    /**
+     * Parses the specified text in parallel. The text is split into segments,
+     * which are scanned by the tasks of the pool. Every segment is scanned from
+     * <code>maxSearchStringLength - 1</code> characters before its start on, and
+     * only the matches which end in the segment are kept, so no match is missed
+     * or reported twice. The emits are merged in the order of the sequential scan
+     * before the whole word and overlap settings are applied.
+     *
+     * @param text The character sequence to tokenize.
+     * @param pool The pool to scan the segments with.
+     * @return The emitted outputs, equal to the outputs of
+     *         <code>parseText(text)</code>.
+     */
+    @Override
+    public Collection<Emit<T>> parseText(final CharSequence text, final ForkJoinPool pool) {
+        checkFrozen();
+        final int segments = Math.min(pool.getParallelism() * 4, text.length() / MIN_SEGMENT_SIZE);
+        if (segments < 2 || config.isStopOnHit() || config.getMatchKind() != MatchKind.STANDARD) {
+            return parseText(text);
+        }
+
+        final int[] boundaries = new int[segments + 1];
+        for (int segment = 1; segment < segments; segment++) {
+            int boundary = (int) ((long) text.length() * segment / segments);
+            // Surrogate pairs are not split.
+            if (Character.isLowSurrogate(text.charAt(boundary))) {
+                boundary++;
+            }
+            boundaries[segment] = boundary;
+        }
+        boundaries[segments] = text.length();
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        final List<Emit<T>>[] results = new List[segments];
+        pool.invoke(new SegmentTask(text, boundaries, results, 0, segments));
+
+        int size = 0;
+        for (final List<Emit<T>> result : results) {
+            size += result.size();
+        }
+        final List<Emit<T>> collectedEmits = new ArrayList<>(size);
+        for (final List<Emit<T>> result : results) {
+            collectedEmits.addAll(result);
+        }
+
+        return removeUnwantedEmits(collectedEmits);
+    }
+
+    /**
+     * Scans the segments of a text, splitting the range of segments until a
+     * single segment is left.
+     */
+    private class SegmentTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final CharSequence text;
+
+        private final int[] boundaries;
+
+        private final List<Emit<T>>[] results;
+
+        private final int from;
+
+        private final int to;
+
+        SegmentTask(final CharSequence text, final int[] boundaries, final List<Emit<T>>[] results, final int from,
+                final int to) {
+            this.text = text;
+            this.boundaries = boundaries;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new SegmentTask(text, boundaries, results, from, middle),
+                        new SegmentTask(text, boundaries, results, middle, to));
+                return;
+            }
+
+            final int segmentStart = boundaries[from];
+            int scanStart = Math.max(0, segmentStart - Math.max(0, getMaxSearchStringLength() - 1));
+            if (scanStart > 0 && Character.isLowSurrogate(text.charAt(scanStart))) {
+                scanStart--;
+            }
+
+            final List<Emit<T>> emits = new ArrayList<>();
+            prefilteredScan(text, scanStart, boundaries[to], ROOT_STATE, new MatchHandler() {
+
+                @Override
+                public boolean onMatch(final int start, final int end, final int keywordId) {
+                    // Matches ending before the segment belong to the previous one.
+                    if (end >= segmentStart && (wordBoundary == null || wordBoundary.isWholeWord(text, start, end))) {
+                        emits.add(createEmit(start, end, keywordId));
+                    }
+                    return true;
+                }
+            }, false);
+            results[from] = emits;
+        }
+    }
+
+    /**
+     * Parses a batch of documents. One worker per available processor is
+     * submitted to the executor. The workers take chunks of documents from the
+     * shared iterator and collect the emits of each document into a list, which
+     * they reuse for the next document.
+     *
+     * @param texts           The documents.
+     * @param executor        The executor to run the workers on.
+     * @param documentHandler The thread-safe handler for the emits of each
+     *                        document.
+     * @return The throughput of the batch.
+     * @throws InterruptedException if the calling thread is interrupted while
+     *                              waiting for the workers.
+     */
+    @Override
+    public BatchStatistics parseTexts(final Iterable<? extends CharSequence> texts, final Executor executor,
+            final DocumentHandler<T> documentHandler) throws InterruptedException {
+        checkFrozen();
+        final long startTime = System.nanoTime();
+        final Batch batch = new Batch(texts.iterator(), documentHandler);
+        final int workers = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < workers; i++) {
+            batch.submit(executor);
+        }
+
+        try {
+            batch.await(workers);
+        } catch (final InterruptedException e) {
+            batch.failed = true;
+            throw e;
+        }
+
+        if (batch.failure instanceof RuntimeException) {
+            throw (RuntimeException) batch.failure;
+        }
+        if (batch.failure instanceof Error) {
+            throw (Error) batch.failure;
+        }
+
+        return new BatchStatistics(batch.documents, batch.characters, batch.emits, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Parses a batch of documents and returns the emits of every document.
+     *
+     * @param texts    The documents.
+     * @param executor The executor to run the workers on.
+     * @return The emits of each document.
+     * @throws InterruptedException if the calling thread is interrupted while
+     *                              waiting for the workers.
+     */
+    @Override
+    public List<List<Emit<T>>> parseTexts(final List<? extends CharSequence> texts, final Executor executor)
+            throws InterruptedException {
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        final List<Emit<T>>[] results = new List[texts.size()];
+
+        parseTexts(texts, executor, new DocumentHandler<T>() {
+
+            @Override
+            public void onDocument(final int index, final CharSequence text, final List<Emit<T>> emits) {
+                results[index] = new ArrayList<>(emits);
+            }
+        });
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * The shared state of the workers of a batch.
+     */
+    private class Batch {
+
+        private final Iterator<? extends CharSequence> texts;
+
+        private final DocumentHandler<T> documentHandler;
+
+        private int nextIndex;
+
+        private int finishedWorkers;
+
+        private int documents;
+
+        private long characters;
+
+        private long emits;
+
+        private volatile boolean failed;
+
+        private Throwable failure;
+
+        Batch(final Iterator<? extends CharSequence> texts, final DocumentHandler<T> documentHandler) {
+            this.texts = texts;
+            this.documentHandler = documentHandler;
+        }
+
+        void submit(final Executor executor) {
+            try {
+                executor.execute(new BatchWorker(this));
+            } catch (final RuntimeException e) {
+                finish(0, 0, 0, e);
+            }
+        }
+
+        /**
+         * Passes the next chunk of documents from the iterator to a worker.
+         */
+        synchronized void next(final BatchWorker worker) {
+            int count = 0;
+            while (count < worker.documents.length && texts.hasNext()) {
+                worker.documents[count++] = texts.next();
+            }
+            worker.firstIndex = this.nextIndex;
+            worker.count = count;
+            this.nextIndex += count;
+        }
+
+        synchronized void finish(final int documents, final long characters, final long emits,
+                final Throwable failure) {
+            this.documents += documents;
+            this.characters += characters;
+            this.emits += emits;
+            if (failure != null && this.failure == null) {
+                this.failure = failure;
+                this.failed = true;
+            }
+            this.finishedWorkers++;
+            notifyAll();
+        }
+
+        synchronized void await(final int workers) throws InterruptedException {
+            while (this.finishedWorkers < workers) {
+                wait();
+            }
+        }
+    }
+
+    /**
+     * Parses chunks of documents of a batch until the documents are exhausted,
+     * reusing its chunk and its emit list.
+     */
+    private class BatchWorker implements Runnable {
+
+        private final Batch batch;
+
+        private final CharSequence[] documents = new CharSequence[BATCH_CHUNK_SIZE];
+
+        private final BatchMatchHandler matchHandler = new BatchMatchHandler();
+
+        private int firstIndex;
+
+        private int count;
+
+        BatchWorker(final Batch batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void run() {
+            final boolean stopOnHit = config.isStopOnHit();
+            int parsedDocuments = 0;
+            long parsedCharacters = 0;
+            long passedEmits = 0;
+            Throwable failure = null;
+
+            try {
+                while (!batch.failed) {
+                    batch.next(this);
+                    if (count == 0) {
+                        break;
+                    }
+
+                    for (int i = 0; i < count; i++) {
+                        final CharSequence text = documents[i];
+                        documents[i] = null;
+                        matchHandler.emits.clear();
+                        scan(text, matchHandler, stopOnHit);
+                        final List<Emit<T>> emits = removeUnwantedEmits(matchHandler.emits);
+
+                        batch.documentHandler.onDocument(firstIndex + i, text, emits);
+                        parsedDocuments++;
+                        parsedCharacters += text.length();
+                        passedEmits += emits.size();
+                    }
+                }
+            } catch (final RuntimeException | Error e) {
+                failure = e;
+            }
+
+            batch.finish(parsedDocuments, parsedCharacters, passedEmits, failure);
+        }
+    }
+
+    /**
+     * Collects the emits of a document into a reusable list.
+     */
+    private class BatchMatchHandler implements MatchHandler {
+
+        private final List<Emit<T>> emits = new ArrayList<>();
+
+        @Override
+        public boolean onMatch(final int start, final int end, final int keywordId) {
+            emits.add(createEmit(start, end, keywordId));
+            return true;
+        }
+    }
+
+    /**
+     * Tokenizes the specified text by using a custom EmitHandler and returns the
+     * emitted outputs.
+     *
+     * @param text        The character sequence to tokenize.
+     * @param emitHandler The emit handler that will be used to parse the text.
+     */
+    @Override
+    public void parseText(final CharSequence text, final EmitHandler<T> emitHandler) {
+        scan(text, new EmitMatchHandler(emitHandler), config.isStopOnHit());
+    }
+
+    /**
+     * Parses the specified text and reports every match to the match handler
+     * without creating emits.
+     *
+     * @param text         The character sequence to tokenize.
+     * @param matchHandler The match handler to call for each match.
+     */
+    @Override
+    public void parseText(final CharSequence text, final MatchHandler matchHandler) {
+        scan(text, matchHandler, config.isStopOnHit());
+    }
+
+    /**
+     * Parses the characters of a reader and reports every match to the stream
+     * match handler. The matches are reported as with
+     * {@link MatchKind#STANDARD}, whatever the configured match kind is, and
+     * without checking the word boundaries.
+     *
+     * @param reader       The reader to read the text from.
+     * @param matchHandler The match handler to call for each match.
+     * @return The number of characters read.
+     * @throws IOException if reading fails.
+     */
+    @Override
+    public long parseStream(final Reader reader, final StreamMatchHandler matchHandler) throws IOException {
+        checkFrozen();
+        final char[] buffer = new char[STREAM_BUFFER_SIZE];
+        final CharBuffer text = CharBuffer.wrap(buffer);
+        final StreamMatchAdapter streamMatchAdapter = new StreamMatchAdapter(matchHandler);
+        final boolean stopOnHit = config.isStopOnHit();
+        int state = ROOT_STATE;
+        long offset = 0;
+        int read;
+
+        while ((read = reader.read(buffer)) != -1) {
+            streamMatchAdapter.offset = offset;
+            state = prefilteredScan(text, 0, read, state, streamMatchAdapter, stopOnHit);
+            offset += read;
+
+            if (stopOnHit && streamMatchAdapter.accepted) {
+                break;
+            }
+        }
+
+        return offset;
+    }
+
+    /**
+     * Parses the characters of an input stream and reports every match to the
+     * stream match handler.
+     *
+     * @param in           The input stream to read the text from.
+     * @param charset      The charset of the input stream.
+     * @param matchHandler The match handler to call for each match.
+     * @return The number of characters read.
+     * @throws IOException if reading fails.
+     */
+    @Override
+    public long parseStream(final InputStream in, final Charset charset, final StreamMatchHandler matchHandler)
+            throws IOException {
+        return parseStream(new InputStreamReader(in, charset), matchHandler);
+    }
+
+    /**
+     * Returns true if the text contains contains one of the search terms. Else,
+     * returns false.
+     *
+     * @param text Specified text.
+     * @return true if the text contains one of the search terms. Else, returns
+     *         false.
+     */
+    @Override
+    public boolean containsMatch(final CharSequence text) {
+        return firstMatch(text) != null;
+    }
+
+    /**
+     * The first matching text sequence.
+     *
+     * @param text The text to search for keywords.
+     * @return null if no matches found.
+     */
+    @Override
+    public Emit<T> firstMatch(final CharSequence text) {
+        if (!config.isAllowOverlaps() && config.getMatchKind() == MatchKind.STANDARD) {
+            // Slow path. Needs to find all the matches to detect overlaps.
+            final Collection<Emit<T>> parseText = parseText(text);
+
+            if (parseText != null && !parseText.isEmpty()) {
+                return parseText.iterator().next();
+            }
+
+            return null;
+        }
+
+        // Fast path. Returns first match found.
+        final FirstMatchHandler firstMatchHandler = new FirstMatchHandler();
+        scan(text, firstMatchHandler, true);
+        return firstMatchHandler.firstMatch;
+    }
+
+    /**
+     * Creates an emit for every match and passes it to an emit handler.
+     */
+    private class EmitMatchHandler implements MatchHandler {
+
+        private final EmitHandler<T> emitHandler;
+
+        EmitMatchHandler(final EmitHandler<T> emitHandler) {
+            this.emitHandler = emitHandler;
+        }
+
+        @Override
+        public boolean onMatch(final int start, final int end, final int keywordId) {
+            return emitHandler.emit(createEmit(start, end, keywordId));
+        }
+    }
+
+    /**
+     * Translates the positions of a buffer into offsets of a stream.
+     */
+    private static class StreamMatchAdapter implements MatchHandler {
+
+        private final StreamMatchHandler matchHandler;
+
+        private long offset;
+
+        private boolean accepted;
+
+        StreamMatchAdapter(final StreamMatchHandler matchHandler) {
+            this.matchHandler = matchHandler;
+        }
+
+        @Override
+        public boolean onMatch(final int start, final int end, final int keywordId) {
+            final boolean accepted = matchHandler.onMatch(offset + start, offset + end, keywordId);
+            this.accepted |= accepted;
+            return accepted;
+        }
+    }
+
+    /**
+     * Records whether a match handler accepted a match, so a scan split into
+     * windows knows when to stop.
+     */
+    private static class AcceptingMatchHandler implements MatchHandler {
+
+        private final MatchHandler matchHandler;
+
+        private boolean accepted;
+
+        AcceptingMatchHandler(final MatchHandler matchHandler) {
+            this.matchHandler = matchHandler;
+        }
+
+        @Override
+        public boolean onMatch(final int start, final int end, final int keywordId) {
+            final boolean accepted = matchHandler.onMatch(start, end, keywordId);
+            this.accepted |= accepted;
+            return accepted;
+        }
+    }
+
+    /**
+     * Resolves the matches of a scan, which are found in the order of their
+     * end, into the leftmost, non-overlapping matches. Matches which may still
+     * lose against a match found later are kept pending. The pending match with
+     * the smallest start is resolved once no later match can start at or before
+     * it, and the pending matches overlapping it are dropped, which is the same
+     * as restarting the scan after its end.
+     */
+    private class LeftmostMatchHandler implements MatchHandler {
+
+        private final MatchHandler matchHandler;
+
+        private final int maxLength;
+
+        private final boolean stopOnHit;
+
+        private final boolean longest;
+
+        /**
+         * The start, end and keyword id of every pending match.
+         */
+        private int[] pending = new int[3 * 16];
+
+        private int pendingSize;
+
+        private int minStart = Integer.MAX_VALUE;
+
+        private int lastEnd = -1;
+
+        private boolean stopped;
+
+        LeftmostMatchHandler(final MatchHandler matchHandler, final int maxLength, final boolean stopOnHit) {
+            this.matchHandler = matchHandler;
+            this.maxLength = maxLength;
+            this.stopOnHit = stopOnHit;
+            this.longest = config.getMatchKind() == MatchKind.LEFTMOST_LONGEST;
+        }
+
+        @Override
+        public boolean onMatch(final int start, final int end, final int keywordId) {
+            if (start <= lastEnd) {
+                return false;
+            }
+
+            // Later matches end at or after this one, so they cannot start
+            // before end - maxLength + 1.
+            resolveBefore(end - maxLength + 1);
+            if (stopped) {
+                return true;
+            }
+            if (start <= lastEnd) {
+                return false;
+            }
+
+            if (pendingSize == pending.length) {
+                pending = Arrays.copyOf(pending, 2 * pending.length);
+            }
+            pending[pendingSize++] = start;
+            pending[pendingSize++] = end;
+            pending[pendingSize++] = keywordId;
+            minStart = Math.min(minStart, start);
+            return false;
+        }
+
+        /**
+         * Passes the pending matches which start before a position and win
+         * against the other matches to the match handler.
+         */
+        void resolveBefore(final int position) {
+            while (minStart < position && !stopped) {
+                int best = -1;
+                for (int i = 0; i < pendingSize; i += 3) {
+                    if (pending[i] == minStart && (best < 0 || isBetter(i, best))) {
+                        best = i;
+                    }
+                }
+
+                lastEnd = pending[best + 1];
+                stopped = matchHandler.onMatch(minStart, lastEnd, pending[best + 2]) && stopOnHit;
+
+                int size = 0;
+                minStart = Integer.MAX_VALUE;
+                for (int i = 0; i < pendingSize; i += 3) {
+                    if (pending[i] > lastEnd) {
+                        pending[size++] = pending[i];
+                        pending[size++] = pending[i + 1];
+                        pending[size++] = pending[i + 2];
+                        minStart = Math.min(minStart, pending[i]);
+                    }
+                }
+                pendingSize = size;
+            }
+        }
+
+        /**
+         * Compares two pending matches with the same start.
+         */
+        private boolean isBetter(final int match, final int other) {
+            return longest ? pending[match + 1] > pending[other + 1] : pending[match + 2] < pending[other + 2];
+        }
+    }
+
+    /**
+     * Accepts the first match.
+     */
+    private class FirstMatchHandler implements MatchHandler {
+
+        private Emit<T> firstMatch;
+
+        @Override
+        public boolean onMatch(final int start, final int end, final int keywordId) {
+            this.firstMatch = createEmit(start, end, keywordId);
+            return true;
+        }
+    }
+
+    /**
+     * Passes only the matches which are whole words to a match handler.
+     */
+    private class WholeWordMatchHandler implements MatchHandler {
+
+        private final CharSequence text;
+
+        private final MatchHandler matchHandler;
+
+        WholeWordMatchHandler(final CharSequence text, final MatchHandler matchHandler) {
+            this.text = text;
+            this.matchHandler = matchHandler;
+        }
+
+        @Override
+        public boolean onMatch(final int start, final int end, final int keywordId) {
+            return wordBoundary.isWholeWord(text, start, end) && matchHandler.onMatch(start, end, keywordId);
+        }
+    }
+
+    protected StringSearcherConfig getConfig() {
+        return this.config;
+    }
+
+    protected boolean isCaseInsensitive() {
+        return config.isCaseInsensitive();
+    }
+}
@@ -1,5 +1,6 @@
 package org.neosearch.stringsearcher;
 
 public enum Algorithm {
-    AHO_COHARICK, AHO_COHARICK_IMPROVED, COMPRESSED_TRIE
-}
\ No newline at end of file
+    AHO_COHARICK, AHO_COHARICK_IMPROVED, AHO_COHARICK_DFA, AHO_COHARICK_UTF8, COMPRESSED_TRIE, PACKED_FINGERPRINT,
+    WU_MANBER, AUTO
+}
@@ -0,0 +1,355 @@
+package org.neosearch.stringsearcher;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.neosearch.stringsearcher.trie.PackedFingerprintSearcher;
+import org.neosearch.stringsearcher.trie.WuManberSearcher;
+import org.neosearch.stringsearcher.trie.util.CaseFolding;
+
+/**
+ * The algorithm chosen for {@link Algorithm#AUTO}, the statistics of the
+ * search strings it was chosen by, and the reason.
+ * <p>
+ * The rules follow the measured throughput of the algorithms:
+ * <ol>
+ * <li>If the shortest search string is long, Wu-Manber skips most of the
+ * text, unless there are so many search strings that its shift table is full
+ * and the expected shift is below {@value #MIN_EXPECTED_SHIFT}.</li>
+ * <li>Up to {@link PackedFingerprintSearcher#MAX_SEARCH_STRINGS} search strings
+ * of at least {@value #MIN_PACKED_LENGTH} characters are searched by their
+ * packed fingerprints.</li>
+ * <li>Otherwise, the determinized automaton is used if its transition table
+ * fits into the configured maximal table size.</li>
+ * <li>If it does not fit, long search strings which share few prefixes are
+ * stored in a compressed trie, all others in a double-array trie.</li>
+ * </ol>
+ * The statistics are computed on the case folded search strings if the case
+ * is ignored.
+ * <p>
+ * Only whole words, the match kind and stopping on hit do not affect the
+ * choice: every algorithm reports all matches to the same match handlers,
+ * which reject partial words, resolve the leftmost matches and stop the
+ * scan. The reason names these options if they are configured.
+ *
+ * @author Daniel Beck
+ */
+public final class AlgorithmSelection {
+
+    /**
+     * The minimal length of the shortest search string for Wu-Manber, if there
+     * are at most {@value #FEW_SEARCH_STRINGS} search strings.
+     */
+    static final int MIN_SKIP_LENGTH_FEW = 8;
+
+    /**
+     * The minimal length of the shortest search string for Wu-Manber, if there
+     * are more search strings.
+     */
+    static final int MIN_SKIP_LENGTH = 12;
+
+    static final int FEW_SEARCH_STRINGS = 256;
+
+    /**
+     * The minimal expected shift of the Wu-Manber window over random text.
+     */
+    static final double MIN_EXPECTED_SHIFT = 4;
+
+    static final int MIN_PACKED_LENGTH = 4;
+
+    /**
+     * The minimal average length and maximal fraction of shared prefix
+     * characters for the compressed trie.
+     */
+    static final int MIN_COMPRESSED_AVERAGE_LENGTH = 32;
+
+    static final double MAX_COMPRESSED_SHARED_PREFIXES = 0.25;
+
+    private final Algorithm algorithm;
+
+    private final String reason;
+
+    private final int searchStrings;
+
+    private final int minLength;
+
+    private final int maxLength;
+
+    private final double averageLength;
+
+    private final int alphabetSize;
+
+    private final long states;
+
+    private final double sharedPrefixes;
+
+    private final long tableSize;
+
+    private AlgorithmSelection(final Algorithm algorithm, final String reason, final Statistics statistics,
+            final StringSearcherConfig config) {
+        this.algorithm = algorithm;
+        this.reason = reason + ignoredOptions(config);
+        this.searchStrings = statistics.searchStrings;
+        this.minLength = statistics.minLength;
+        this.maxLength = statistics.maxLength;
+        this.averageLength = statistics.averageLength;
+        this.alphabetSize = statistics.alphabetSize;
+        this.states = statistics.states;
+        this.sharedPrefixes = statistics.sharedPrefixes;
+        this.tableSize = statistics.tableSize;
+    }
+
+    /**
+     * Chooses the algorithm for search strings.
+     *
+     * @param searchStrings The search strings, duplicates are ignored.
+     * @param config        The configuration the searcher is built with.
+     * @return The selection.
+     */
+    public static AlgorithmSelection select(final Collection<String> searchStrings,
+            final StringSearcherConfig config) {
+        return select(searchStrings, config, false);
+    }
+
+    /**
+     * Chooses the algorithm for search strings.
+     *
+     * @param searchStrings  The search strings, duplicates are ignored.
+     * @param config         The configuration the searcher is built with.
+     * @param resumableScans If true, only algorithms whose scans can be resumed
+     *                       with another text are chosen, which rules out the
+     *                       packed fingerprint and Wu-Manber searchers.
+     * @return The selection.
+     */
+    static AlgorithmSelection select(final Collection<String> searchStrings, final StringSearcherConfig config,
+            final boolean resumableScans) {
+        final Statistics statistics = new Statistics(searchStrings, config.isCaseInsensitive());
+
+        if (statistics.searchStrings == 0) {
+            return new AlgorithmSelection(Algorithm.AHO_COHARICK_DFA, "there are no search strings", statistics,
+                    config);
+        }
+
+        if (!resumableScans) {
+            final int minSkipLength = statistics.searchStrings <= FEW_SEARCH_STRINGS ? MIN_SKIP_LENGTH_FEW
+                    : MIN_SKIP_LENGTH;
+            if (statistics.minLength >= minSkipLength) {
+                final double expectedShift = WuManberSearcher.expectedShift(statistics.searchStrings,
+                        statistics.minLength, statistics.alphabetSize);
+                if (expectedShift >= MIN_EXPECTED_SHIFT) {
+                    return new AlgorithmSelection(Algorithm.WU_MANBER, "the shortest search string has "
+                            + statistics.minLength + " characters, at least " + minSkipLength
+                            + ", and the expected shift is " + String.format("%.1f", expectedShift)
+                            + ", so Wu-Manber can skip most of the text", statistics, config);
+                }
+            }
+
+            if (statistics.searchStrings <= PackedFingerprintSearcher.MAX_SEARCH_STRINGS
+                    && statistics.minLength >= MIN_PACKED_LENGTH) {
+                return new AlgorithmSelection(Algorithm.PACKED_FINGERPRINT, "there are only "
+                        + statistics.searchStrings + " search strings, at most "
+                        + PackedFingerprintSearcher.MAX_SEARCH_STRINGS + ", of at least " + MIN_PACKED_LENGTH
+                        + " characters, so their fingerprints fit into one long", statistics, config);
+            }
+        }
+
+        if (statistics.tableSize <= config.getMaxTableSize()) {
+            return new AlgorithmSelection(Algorithm.AHO_COHARICK_DFA, "the transition table of " + statistics.states
+                    + " states needs " + statistics.tableSize + " bytes, at most the maximal table size of "
+                    + config.getMaxTableSize(), statistics, config);
+        }
+
+        final String tableTooLarge = "the transition table of " + statistics.states + " states would need "
+                + statistics.tableSize + " bytes, more than the maximal table size of " + config.getMaxTableSize();
+        if (statistics.averageLength >= MIN_COMPRESSED_AVERAGE_LENGTH
+                && statistics.sharedPrefixes <= MAX_COMPRESSED_SHARED_PREFIXES) {
+            return new AlgorithmSelection(Algorithm.COMPRESSED_TRIE, tableTooLarge
+                    + ", and the search strings are long and share few prefixes", statistics, config);
+        }
+        return new AlgorithmSelection(Algorithm.AHO_COHARICK_IMPROVED, tableTooLarge, statistics, config);
+    }
+
+    /**
+     * Names the configured options which are ignored by the selection.
+     *
+     * @param config The configuration the searcher is built with.
+     * @return The options to append to the reason, empty if there are none.
+     */
+    private static String ignoredOptions(final StringSearcherConfig config) {
+        final List<String> options = new ArrayList<>();
+        if (config.isOnlyWholeWords() || config.isOnlyWholeWordsWhiteSpaceSeparated()) {
+            options.add("only whole words");
+        }
+        if (config.getMatchKind() != MatchKind.STANDARD) {
+            options.add("the match kind " + config.getMatchKind());
+        }
+        if (config.isStopOnHit()) {
+            options.add("stopping on hit");
+        }
+        if (options.isEmpty()) {
+            return "";
+        }
+
+        final StringBuilder ignored = new StringBuilder("; ");
+        for (int i = 0; i < options.size(); i++) {
+            if (i > 0) {
+                ignored.append(i == options.size() - 1 ? " and " : ", ");
+            }
+            ignored.append(options.get(i));
+        }
+        return ignored.append(options.size() == 1 ? " is" : " are")
+                .append(" applied to the matches of any algorithm and ignored").toString();
+    }
+
+    /**
+     * @return The chosen algorithm.
+     */
+    public Algorithm getAlgorithm() {
+        return this.algorithm;
+    }
+
+    /**
+     * @return Why the algorithm was chosen.
+     */
+    public String getReason() {
+        return this.reason;
+    }
+
+    /**
+     * @return The number of distinct search strings.
+     */
+    public int getSearchStrings() {
+        return this.searchStrings;
+    }
+
+    /**
+     * @return The length of the shortest search string, 0 if there are none.
+     */
+    public int getMinLength() {
+        return this.minLength;
+    }
+
+    /**
+     * @return The length of the longest search string, 0 if there are none.
+     */
+    public int getMaxLength() {
+        return this.maxLength;
+    }
+
+    /**
+     * @return The average length of the search strings.
+     */
+    public double getAverageLength() {
+        return this.averageLength;
+    }
+
+    /**
+     * @return The number of distinct characters of the search strings.
+     */
+    public int getAlphabetSize() {
+        return this.alphabetSize;
+    }
+
+    /**
+     * @return The number of states of a trie of the search strings, including
+     *         the root state.
+     */
+    public long getStates() {
+        return this.states;
+    }
+
+    /**
+     * @return The fraction of the characters of the search strings which repeat
+     *         a prefix of another search string.
+     */
+    public double getSharedPrefixes() {
+        return this.sharedPrefixes;
+    }
+
+    /**
+     * @return The size of the transition table of the determinized automaton
+     *         in bytes.
+     */
+    public long getTableSize() {
+        return this.tableSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %s (%d search strings of %d to %d characters, average %.1f, alphabet %d, "
+                + "%d states, %.0f%% shared prefixes)", this.algorithm, this.reason, this.searchStrings,
+                this.minLength, this.maxLength, this.averageLength, this.alphabetSize, this.states,
+                this.sharedPrefixes * 100);
+    }
+
+    /**
+     * The statistics of the distinct search strings.
+     */
+    private static final class Statistics {
+
+        private int searchStrings;
+
+        private int minLength;
+
+        private int maxLength;
+
+        private double averageLength;
+
+        private int alphabetSize;
+
+        private long states;
+
+        private double sharedPrefixes;
+
+        private long tableSize;
+
+        Statistics(final Collection<String> searchStrings, final boolean caseInsensitive) {
+            final Set<String> distinct = new LinkedHashSet<>();
+            for (final String searchString : searchStrings) {
+                if (!searchString.isEmpty()) {
+                    distinct.add(caseInsensitive ? CaseFolding.fold(searchString) : searchString);
+                }
+            }
+
+            final List<String> sorted = new ArrayList<>(distinct);
+            Collections.sort(sorted);
+            final BitSet characters = new BitSet();
+            long totalLength = 0;
+            long sharedLength = 0;
+            String previous = "";
+            this.minLength = sorted.isEmpty() ? 0 : Integer.MAX_VALUE;
+            this.states = 1;
+
+            for (final String searchString : sorted) {
+                for (int i = 0; i < searchString.length(); i++) {
+                    characters.set(searchString.charAt(i));
+                }
+
+                // Sorted search strings share their prefixes with their predecessor.
+                int shared = 0;
+                final int limit = Math.min(previous.length(), searchString.length());
+                while (shared < limit && previous.charAt(shared) == searchString.charAt(shared)) {
+                    shared++;
+                }
+
+                this.states += searchString.length() - shared;
+                sharedLength += shared;
+                totalLength += searchString.length();
+                this.minLength = Math.min(this.minLength, searchString.length());
+                this.maxLength = Math.max(this.maxLength, searchString.length());
+                previous = searchString;
+            }
+
+            this.searchStrings = sorted.size();
+            this.averageLength = sorted.isEmpty() ? 0 : (double) totalLength / sorted.size();
+            this.alphabetSize = characters.cardinality();
+            this.sharedPrefixes = totalLength == 0 ? 0 : (double) sharedLength / totalLength;
+            this.tableSize = this.states * (this.alphabetSize + 1) * 4;
+        }
+    }
+}
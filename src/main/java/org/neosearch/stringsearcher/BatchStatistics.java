@@ -0,0 +1,81 @@
+package org.neosearch.stringsearcher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput of a batch of documents parsed by
+ * {@link StringSearcher#parseTexts(Iterable, java.util.concurrent.Executor, DocumentHandler)}.
+ *
+ * @author Daniel Beck
+ */
+public class BatchStatistics {
+
+    private final int documents;
+
+    private final long characters;
+
+    private final long emits;
+
+    private final long elapsedNanos;
+
+    BatchStatistics(final int documents, final long characters, final long emits, final long elapsedNanos) {
+        this.documents = documents;
+        this.characters = characters;
+        this.emits = emits;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return The number of parsed documents.
+     */
+    public int getDocuments() {
+        return this.documents;
+    }
+
+    /**
+     * @return The total number of characters of the parsed documents.
+     */
+    public long getCharacters() {
+        return this.characters;
+    }
+
+    /**
+     * @return The total number of emits passed to the document handler.
+     */
+    public long getEmits() {
+        return this.emits;
+    }
+
+    /**
+     * @param unit The unit of the result.
+     * @return The wall-clock time of the batch.
+     */
+    public long getElapsedTime(final TimeUnit unit) {
+        return unit.convert(this.elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return The number of documents parsed per second.
+     */
+    public double getDocumentsPerSecond() {
+        return perSecond(this.documents);
+    }
+
+    /**
+     * @return The number of characters parsed per second.
+     */
+    public double getCharactersPerSecond() {
+        return perSecond(this.characters);
+    }
+
+    private double perSecond(final long count) {
+        return this.elapsedNanos == 0 ? 0 : count * 1e9 / this.elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d documents, %d characters, %d emits in %d ms (%.0f documents/s, %.0f characters/s)",
+                this.documents, this.characters, this.emits, getElapsedTime(TimeUnit.MILLISECONDS),
+                getDocumentsPerSecond(), getCharactersPerSecond());
+    }
+}
@@ -0,0 +1,27 @@
+package org.neosearch.stringsearcher;
+
+import java.util.List;
+
+/**
+ * Receives the emits of the documents of a batch, see
+ * {@link StringSearcher#parseTexts(Iterable, java.util.concurrent.Executor, DocumentHandler)}.
+ * <p>
+ * The handler is called concurrently by the worker threads of the batch, so it
+ * has to be thread-safe. The list of emits is reused for the next document of
+ * the same worker; it has to be copied if it is kept after the call.
+ *
+ * @author Daniel Beck
+ * @param <T> The type of the supplied of the payload
+ */
+public interface DocumentHandler<T> {
+
+    /**
+     * Called for every parsed document.
+     *
+     * @param index The index of the document in the batch.
+     * @param text  The document.
+     * @param emits The emits of the document, the same as returned by
+     *              <code>parseText(text)</code>.
+     */
+    void onDocument(int index, CharSequence text, List<Emit<T>> emits);
+}
@@ -0,0 +1,915 @@
+package org.neosearch.stringsearcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.neosearch.stringsearcher.trie.util.CaseFolding;
+
+/**
+ * A StringSearcher whose search strings can be added and removed while it is
+ * used, at a cost proportional to the change instead of a full rebuild.
+ * <p>
+ * The search strings are kept in two automata of the configured algorithm: a
+ * large base automaton and a small delta automaton of the recently added
+ * search strings. Adding a search string rebuilds only the delta, removing one
+ * hides it in the base. When the delta grows beyond <code>maxDeltaSize</code>
+ * search strings, or more than a quarter of the base is hidden, both are merged
+ * into a new base. This compaction runs on the given executor in the
+ * background, or in the changing thread if there is none.
+ * <p>
+ * Every change publishes a new immutable version of the searcher. Each call
+ * uses exactly one version, so readers never see a half-updated automaton and
+ * never wait for writers. Changes are serialized. Adding a search string which
+ * is already present replaces its payload.
+ * <p>
+ * Keyword ids belong to the version which reported them. A compaction
+ * renumbers the search strings, so the search strings and payloads of removed
+ * or replaced ids are released once no version refers to them. An id passed to
+ * a handler is resolved by the searcher itself only until the next compaction;
+ * to resolve it later, scan with a version taken by {@link #snapshot()} and
+ * resolve the id with that version.
+ *
+ * @author Daniel Beck
+ * @param <T> The type of the supplied of the payload
+ */
+public class DynamicStringSearcher<T> implements StringSearcher<T> {
+
+    /**
+     * The default maximal number of search strings in the delta automaton.
+     */
+    public static final int DEFAULT_MAX_DELTA_SIZE = 1024;
+
+    private final StringSearcherConfig config;
+
+    private final Algorithm algorithm;
+
+    private final Executor compactionExecutor;
+
+    private final int maxDeltaSize;
+
+    /**
+     * The current version. It is only replaced while holding the lock of this
+     * searcher.
+     */
+    private volatile Version<T> version;
+
+    /**
+     * The search strings and payloads of the keyword ids assigned since the last
+     * compaction. Entries are only appended, a full array is replaced by a larger
+     * copy, so the arrays of published versions never change. A compaction
+     * replaces them with arrays of the live search strings only.
+     */
+    private String[] keywords = new String[16];
+
+    private Object[] payloads = new Object[16];
+
+    private int keywordCount;
+
+    /**
+     * The search strings of the delta automaton and their keyword ids.
+     */
+    private final Map<String, Integer> delta = new LinkedHashMap<>();
+
+    /**
+     * The search strings changed since the running compaction started, null if
+     * no compaction is running.
+     */
+    private Set<String> changedDuringCompaction;
+
+    /**
+     * Creates an empty searcher, which is compacted in the threads changing it.
+     *
+     * @param config    The configuration.
+     * @param algorithm The algorithm of the base and the delta automaton.
+     */
+    public DynamicStringSearcher(final StringSearcherConfig config, final Algorithm algorithm) {
+        this(config, algorithm, null);
+    }
+
+    /**
+     * Creates an empty searcher.
+     *
+     * @param config             The configuration.
+     * @param algorithm          The algorithm of the base and the delta
+     *                           automaton.
+     * @param compactionExecutor The executor to compact the searcher on in the
+     *                           background, null to compact it in the threads
+     *                           changing it.
+     */
+    public DynamicStringSearcher(final StringSearcherConfig config, final Algorithm algorithm,
+            final Executor compactionExecutor) {
+        this(config, algorithm, compactionExecutor, DEFAULT_MAX_DELTA_SIZE);
+    }
+
+    /**
+     * Creates an empty searcher.
+     *
+     * @param config             The configuration.
+     * @param algorithm          The algorithm of the base and the delta
+     *                           automaton.
+     * @param compactionExecutor The executor to compact the searcher on in the
+     *                           background, null to compact it in the threads
+     *                           changing it.
+     * @param maxDeltaSize       The number of search strings of the delta
+     *                           automaton which triggers a compaction.
+     */
+    public DynamicStringSearcher(final StringSearcherConfig config, final Algorithm algorithm,
+            final Executor compactionExecutor, final int maxDeltaSize) {
+        if (maxDeltaSize < 1) {
+            throw new IllegalArgumentException("maxDeltaSize must be positive: " + maxDeltaSize);
+        }
+
+        this.config = new StringSearcherConfig(config);
+        // The scans of the packed fingerprint and Wu-Manber searchers resume
+        // from the previous characters of the text, which the merged stream
+        // scan does not keep.
+        this.algorithm = algorithm == Algorithm.PACKED_FINGERPRINT || algorithm == Algorithm.WU_MANBER
+                ? Algorithm.AHO_COHARICK
+                : algorithm;
+        this.compactionExecutor = compactionExecutor;
+        this.maxDeltaSize = maxDeltaSize;
+        this.version = new Version<T>(this.config, null, new int[0], new BitSet(), null, new int[0], this.keywords,
+                this.payloads);
+    }
+
+    /**
+     * Creates a searcher whose base automaton holds the given search strings,
+     * built in a single pass. If several search strings are equal after
+     * normalization, the first one is kept.
+     *
+     * @param config             The configuration.
+     * @param algorithm          The algorithm of the base and the delta
+     *                           automaton.
+     * @param compactionExecutor The executor to compact the searcher on in the
+     *                           background, null to compact it in the threads
+     *                           changing it.
+     * @param keywords           The search strings and their payloads.
+     */
+    DynamicStringSearcher(final StringSearcherConfig config, final Algorithm algorithm,
+            final Executor compactionExecutor, final Map<String, ? extends T> keywords) {
+        this(config, algorithm, compactionExecutor, DEFAULT_MAX_DELTA_SIZE);
+
+        final Set<String> distinct = new HashSet<>();
+        for (final Entry<String, ? extends T> entry : keywords.entrySet()) {
+            final String keyword = normalize(entry.getKey());
+            if (!keyword.isEmpty() && distinct.add(keyword)) {
+                addKeyword(keyword, entry.getValue());
+            }
+        }
+
+        final int[] baseIds = new int[this.keywordCount];
+        for (int keywordId = 0; keywordId < baseIds.length; keywordId++) {
+            baseIds[keywordId] = keywordId;
+        }
+        this.version = new Version<T>(this.config, build(baseIds, this.keywords, this.payloads), baseIds,
+                new BitSet(), null, new int[0], this.keywords, this.payloads);
+    }
+
+    /**
+     * Adds a search string without a payload.
+     *
+     * @param keyword The search string.
+     * @return true if the search strings changed.
+     */
+    public boolean addSearchString(final String keyword) {
+        return addSearchString(keyword, null);
+    }
+
+    /**
+     * Adds a search string, or replaces the payload of an existing one.
+     *
+     * @param keyword The search string.
+     * @param payload The payload, may be null.
+     * @return true if the search strings changed.
+     */
+    public boolean addSearchString(final String keyword, final T payload) {
+        return update(Collections.singletonMap(keyword, payload), Collections.<String>emptyList());
+    }
+
+    /**
+     * Adds several search strings without payloads with a single rebuild of the
+     * delta automaton.
+     *
+     * @param keywords The search strings.
+     * @return true if the search strings changed.
+     */
+    public boolean addSearchStrings(final Collection<String> keywords) {
+        final Map<String, T> additions = new LinkedHashMap<>();
+        for (final String keyword : keywords) {
+            additions.put(keyword, null);
+        }
+        return update(additions, Collections.<String>emptyList());
+    }
+
+    /**
+     * Adds several search strings with payloads with a single rebuild of the
+     * delta automaton.
+     *
+     * @param keywords The search strings and their payloads.
+     * @return true if the search strings changed.
+     */
+    public boolean addSearchStrings(final Map<String, ? extends T> keywords) {
+        return update(keywords, Collections.<String>emptyList());
+    }
+
+    /**
+     * Removes a search string.
+     *
+     * @param keyword The search string.
+     * @return true if the search string was present.
+     */
+    public boolean removeSearchString(final String keyword) {
+        return removeSearchStrings(Collections.singletonList(keyword));
+    }
+
+    /**
+     * Removes several search strings with a single rebuild of the delta
+     * automaton.
+     *
+     * @param keywords The search strings.
+     * @return true if one of the search strings was present.
+     */
+    public boolean removeSearchStrings(final Collection<String> keywords) {
+        return update(Collections.<String, T>emptyMap(), keywords);
+    }
+
+    /**
+     * Returns the number of search strings.
+     *
+     * @return The number of search strings of the current version.
+     */
+    public int size() {
+        return this.version.size;
+    }
+
+    /**
+     * Returns the current version of the searcher. It does not change, so
+     * several calls to it see the same search strings.
+     *
+     * @return The current version.
+     */
+    public StringSearcher<T> snapshot() {
+        return this.version;
+    }
+
+    /**
+     * Merges the delta automaton into the base automaton in the calling thread.
+     * Waits for a running background compaction first. Returns at once if there
+     * is neither a delta nor a hidden or released search string.
+     */
+    public void compact() {
+        final Compaction compaction;
+        synchronized (this) {
+            while (this.changedDuringCompaction != null) {
+                try {
+                    wait();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            final Version<T> current = this.version;
+            if (this.delta.isEmpty() && current.hidden.isEmpty() && this.keywordCount == current.baseIds.length) {
+                return;
+            }
+            compaction = startCompaction();
+        }
+        compaction.run();
+    }
+
+    private boolean update(final Map<String, ? extends T> additions, final Collection<String> removals) {
+        final Compaction compaction;
+        synchronized (this) {
+            final Version<T> current = this.version;
+            final BitSet hidden = (BitSet) current.hidden.clone();
+            boolean changed = false;
+
+            for (final String searchString : removals) {
+                final String keyword = normalize(searchString);
+                if (this.delta.remove(keyword) != null) {
+                    changed = true;
+                } else {
+                    final int baseId = current.findInBase(keyword);
+                    if (baseId == -1 || hidden.get(baseId)) {
+                        continue;
+                    }
+                    hidden.set(baseId);
+                    changed = true;
+                }
+                changed(keyword);
+            }
+
+            for (final Entry<String, ? extends T> entry : additions.entrySet()) {
+                final String keyword = normalize(entry.getKey());
+                final T payload = entry.getValue();
+                if (keyword.isEmpty()) {
+                    continue;
+                }
+
+                final Integer deltaId = this.delta.get(keyword);
+                if (deltaId != null) {
+                    if (Objects.equals(this.payloads[deltaId], payload)) {
+                        continue;
+                    }
+                } else {
+                    final int baseId = current.findInBase(keyword);
+                    if (baseId != -1 && !hidden.get(baseId)) {
+                        if (Objects.equals(this.payloads[current.baseIds[baseId]], payload)) {
+                            continue;
+                        }
+                        hidden.set(baseId);
+                    }
+                }
+
+                this.delta.put(keyword, addKeyword(keyword, payload));
+                changed(keyword);
+                changed = true;
+            }
+
+            if (!changed) {
+                return false;
+            }
+
+            this.version = createVersion(current.base, current.baseIds, hidden);
+
+            if (this.changedDuringCompaction != null || (this.delta.size() <= this.maxDeltaSize
+                    && hidden.cardinality() <= Math.max(this.maxDeltaSize, current.baseIds.length / 4))) {
+                return true;
+            }
+            compaction = startCompaction();
+        }
+
+        if (this.compactionExecutor == null) {
+            compaction.run();
+        } else {
+            try {
+                this.compactionExecutor.execute(compaction);
+            } catch (final RejectedExecutionException e) {
+                compaction.abort();
+            }
+        }
+        return true;
+    }
+
+    private String normalize(final String keyword) {
+        return this.config.isCaseInsensitive() ? CaseFolding.fold(keyword) : keyword;
+    }
+
+    private void changed(final String keyword) {
+        if (this.changedDuringCompaction != null) {
+            this.changedDuringCompaction.add(keyword);
+        }
+    }
+
+    private int addKeyword(final String keyword, final T payload) {
+        if (this.keywordCount == this.keywords.length) {
+            this.keywords = Arrays.copyOf(this.keywords, this.keywordCount * 2);
+            this.payloads = Arrays.copyOf(this.payloads, this.keywordCount * 2);
+        }
+
+        this.keywords[this.keywordCount] = keyword;
+        this.payloads[this.keywordCount] = payload;
+        return this.keywordCount++;
+    }
+
+    /**
+     * Creates a version with a new delta automaton.
+     */
+    private Version<T> createVersion(final AbstractStringSearcher<T> base, final int[] baseIds,
+            final BitSet hidden) {
+        final int[] deltaIds = new int[this.delta.size()];
+        int i = 0;
+        for (final int keywordId : this.delta.values()) {
+            deltaIds[i++] = keywordId;
+        }
+
+        return new Version<T>(this.config, base, baseIds, hidden, build(deltaIds, this.keywords, this.payloads),
+                deltaIds, this.keywords, this.payloads);
+    }
+
+    /**
+     * Builds an automaton of the keywords, whose ids are the indexes of the
+     * array.
+     */
+    @SuppressWarnings("unchecked")
+    private AbstractStringSearcher<T> build(final int[] keywordIds, final String[] keywords,
+            final Object[] payloads) {
+        if (keywordIds.length == 0) {
+            return null;
+        }
+
+        Algorithm algorithm = this.algorithm;
+        if (algorithm == Algorithm.AUTO) {
+            final List<String> searchStrings = new ArrayList<>(keywordIds.length);
+            for (final int keywordId : keywordIds) {
+                searchStrings.add(keywords[keywordId]);
+            }
+            algorithm = AlgorithmSelection.select(searchStrings, this.config, true).getAlgorithm();
+        }
+
+        final StringSearcherPrepare<T> searcher = StringSearcherBuilder.createStringMatcher(algorithm, this.config);
+        for (final int keywordId : keywordIds) {
+            searcher.addSearchString(keywords[keywordId], (T) payloads[keywordId]);
+        }
+        return (AbstractStringSearcher<T>) searcher.build();
+    }
+
+    private Compaction startCompaction() {
+        final Version<T> current = this.version;
+        final int[] keywordIds = new int[current.size];
+        int size = 0;
+        for (int baseId = 0; baseId < current.baseIds.length; baseId++) {
+            if (!current.hidden.get(baseId)) {
+                keywordIds[size++] = current.baseIds[baseId];
+            }
+        }
+        for (final int keywordId : current.deltaIds) {
+            keywordIds[size++] = keywordId;
+        }
+
+        this.changedDuringCompaction = new HashSet<>();
+        return new Compaction(keywordIds, this.keywords, this.payloads);
+    }
+
+    /**
+     * Builds a new base automaton of all search strings of a version and
+     * replaces the base of the current version with it. The search strings are
+     * renumbered, the base first, so the ids of the removed ones are released.
+     */
+    private class Compaction implements Runnable {
+
+        private final int[] keywordIds;
+
+        private final String[] keywords;
+
+        private final Object[] payloads;
+
+        Compaction(final int[] keywordIds, final String[] keywords, final Object[] payloads) {
+            this.keywordIds = keywordIds;
+            this.keywords = keywords;
+            this.payloads = payloads;
+        }
+
+        @Override
+        public void run() {
+            final AbstractStringSearcher<T> base;
+            try {
+                base = build(this.keywordIds, this.keywords, this.payloads);
+            } catch (final RuntimeException | Error e) {
+                abort();
+                throw e;
+            }
+
+            synchronized (DynamicStringSearcher.this) {
+                install(base);
+            }
+        }
+
+        /**
+         * Keeps the search strings which changed during the compaction in the
+         * delta and hides their old versions in the new base.
+         */
+        private void install(final AbstractStringSearcher<T> base) {
+            final Set<String> changed = changedDuringCompaction;
+            for (final Iterator<String> keywords = delta.keySet().iterator(); keywords.hasNext();) {
+                if (!changed.contains(keywords.next())) {
+                    keywords.remove();
+                }
+            }
+            renumber();
+
+            final int[] baseIds = new int[this.keywordIds.length];
+            for (int baseId = 0; baseId < baseIds.length; baseId++) {
+                baseIds[baseId] = baseId;
+            }
+            final Version<T> compacted = new Version<T>(config, base, baseIds, new BitSet(), null, new int[0],
+                    DynamicStringSearcher.this.keywords, DynamicStringSearcher.this.payloads);
+            final BitSet hidden = new BitSet();
+            for (final String keyword : changed) {
+                final int baseId = compacted.findInBase(keyword);
+                if (baseId != -1) {
+                    hidden.set(baseId);
+                }
+            }
+
+            version = createVersion(base, baseIds, hidden);
+            finish();
+        }
+
+        /**
+         * Copies the search strings of the new base, then those of the delta,
+         * into new arrays. The old arrays stay with the published versions.
+         */
+        private void renumber() {
+            final int count = this.keywordIds.length + delta.size();
+            final String[] keywords = new String[Math.max(16, count + count / 2)];
+            final Object[] payloads = new Object[keywords.length];
+            int keywordCount = 0;
+            for (final int keywordId : this.keywordIds) {
+                keywords[keywordCount] = this.keywords[keywordId];
+                payloads[keywordCount++] = this.payloads[keywordId];
+            }
+            for (final Entry<String, Integer> entry : delta.entrySet()) {
+                final int keywordId = entry.getValue();
+                keywords[keywordCount] = DynamicStringSearcher.this.keywords[keywordId];
+                payloads[keywordCount] = DynamicStringSearcher.this.payloads[keywordId];
+                entry.setValue(keywordCount++);
+            }
+
+            DynamicStringSearcher.this.keywords = keywords;
+            DynamicStringSearcher.this.payloads = payloads;
+            DynamicStringSearcher.this.keywordCount = keywordCount;
+        }
+
+        void abort() {
+            synchronized (DynamicStringSearcher.this) {
+                finish();
+            }
+        }
+
+        private void finish() {
+            changedDuringCompaction = null;
+            DynamicStringSearcher.this.notifyAll();
+        }
+    }
+
+    @Override
+    public Collection<Token<T>> tokenize(final String text) {
+        return this.version.tokenize(text);
+    }
+
+    @Override
+    public Collection<Emit<T>> parseText(final CharSequence text) {
+        return this.version.parseText(text);
+    }
+
+    @Override
+    public Collection<Emit<T>> parseText(final CharSequence text, final ForkJoinPool pool) {
+        return this.version.parseText(text, pool);
+    }
+
+    @Override
+    public BatchStatistics parseTexts(final Iterable<? extends CharSequence> texts, final Executor executor,
+            final DocumentHandler<T> documentHandler) throws InterruptedException {
+        return this.version.parseTexts(texts, executor, documentHandler);
+    }
+
+    @Override
+    public List<List<Emit<T>>> parseTexts(final List<? extends CharSequence> texts, final Executor executor)
+            throws InterruptedException {
+        return this.version.parseTexts(texts, executor);
+    }
+
+    @Override
+    public boolean containsMatch(final CharSequence text) {
+        return this.version.containsMatch(text);
+    }
+
+    @Override
+    public void parseText(final CharSequence text, final EmitHandler<T> emitHandler) {
+        this.version.parseText(text, emitHandler);
+    }
+
+    @Override
+    public void parseText(final CharSequence text, final MatchHandler matchHandler) {
+        this.version.parseText(text, matchHandler);
+    }
+
+    @Override
+    public long parseStream(final Reader reader, final StreamMatchHandler matchHandler) throws IOException {
+        return this.version.parseStream(reader, matchHandler);
+    }
+
+    @Override
+    public long parseStream(final InputStream in, final Charset charset, final StreamMatchHandler matchHandler)
+            throws IOException {
+        return this.version.parseStream(in, charset, matchHandler);
+    }
+
+    /**
+     * Returns the search string of an id of the current version. Ids are
+     * renumbered by each compaction.
+     *
+     * @param keywordId The id, as passed to a match handler.
+     * @return The search string.
+     */
+    @Override
+    public String getSearchString(final int keywordId) {
+        return this.version.getSearchString(keywordId);
+    }
+
+    /**
+     * Returns the payload of an id of the current version. Ids are renumbered by
+     * each compaction.
+     *
+     * @param keywordId The id, as passed to a match handler.
+     * @return The payload, may be null.
+     */
+    @Override
+    public T getPayload(final int keywordId) {
+        return this.version.getPayload(keywordId);
+    }
+
+    @Override
+    public Emit<T> firstMatch(final CharSequence text) {
+        return this.version.firstMatch(text);
+    }
+
+    /**
+     * An immutable version of the searcher. It scans the text with the base and
+     * the delta automaton in lockstep and reports their matches in the order of
+     * a single automaton: by their end, the shorter match first.
+     */
+    private static final class Version<T> extends AbstractStringSearcher<T> {
+
+        private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+        private final AbstractStringSearcher<T> base;
+
+        /**
+         * The keyword ids of the ids of the base automaton.
+         */
+        private final int[] baseIds;
+
+        /**
+         * The ids of the base automaton which were removed or replaced.
+         */
+        private final BitSet hidden;
+
+        private final AbstractStringSearcher<T> delta;
+
+        private final int[] deltaIds;
+
+        private final String[] keywords;
+
+        private final Object[] payloads;
+
+        private final int size;
+
+        private final int maxLength;
+
+        Version(final StringSearcherConfig config, final AbstractStringSearcher<T> base, final int[] baseIds,
+                final BitSet hidden, final AbstractStringSearcher<T> delta, final int[] deltaIds,
+                final String[] keywords, final Object[] payloads) {
+            super(config);
+            this.base = base;
+            this.baseIds = baseIds;
+            this.hidden = hidden;
+            this.delta = delta;
+            this.deltaIds = deltaIds;
+            this.keywords = keywords;
+            this.payloads = payloads;
+            this.size = baseIds.length - hidden.cardinality() + deltaIds.length;
+            this.maxLength = Math.max(base == null ? 0 : base.getMaxSearchStringLength(),
+                    delta == null ? 0 : delta.getMaxSearchStringLength());
+            freeze();
+        }
+
+        /**
+         * Returns the id of a normalized search string in the base automaton.
+         *
+         * @return The id, -1 if the base does not contain it.
+         */
+        int findInBase(final String keyword) {
+            if (this.base == null) {
+                return -1;
+            }
+
+            final int[] found = { -1 };
+            this.base.scan(keyword, 0, keyword.length(), ROOT_STATE, new MatchHandler() {
+
+                @Override
+                public boolean onMatch(final int start, final int end, final int keywordId) {
+                    if (start == 0 && end == keyword.length() - 1) {
+                        found[0] = keywordId;
+                    }
+                    return false;
+                }
+            }, false);
+            return found[0];
+        }
+
+        /**
+         * The two states of the automata do not fit into one state.
+         */
+        @Override
+        protected boolean isResumable() {
+            return false;
+        }
+
+        /**
+         * Scans the text from the root states. The two states of the automata do
+         * not fit into one state, streams are resumed by
+         * {@link #parseStream(Reader, StreamMatchHandler)} instead.
+         */
+        @Override
+        protected int scan(final CharSequence text, final int from, final int to, final int state,
+                final MatchHandler matchHandler, final boolean stopOnHit) {
+            if (state != ROOT_STATE) {
+                throw new IllegalArgumentException("A dynamic searcher cannot resume a scan from a state");
+            }
+
+            new MergingScan(text, from, ROOT_STATE, matchHandler, stopOnHit).scan(ROOT_STATE, to);
+            return ROOT_STATE;
+        }
+
+        @Override
+        public long parseStream(final Reader reader, final StreamMatchHandler matchHandler) throws IOException {
+            checkFrozen();
+            final char[] buffer = new char[STREAM_BUFFER_SIZE];
+            final CharBuffer text = CharBuffer.wrap(buffer);
+            final boolean stopOnHit = getConfig().isStopOnHit();
+            final boolean[] accepted = new boolean[1];
+            final long[] offset = new long[1];
+            final MatchHandler streamMatchHandler = new MatchHandler() {
+
+                @Override
+                public boolean onMatch(final int start, final int end, final int keywordId) {
+                    final boolean acceptedMatch = matchHandler.onMatch(offset[0] + start, offset[0] + end,
+                            keywordId);
+                    accepted[0] |= acceptedMatch;
+                    return acceptedMatch;
+                }
+            };
+            int baseState = ROOT_STATE;
+            int deltaState = ROOT_STATE;
+            int read;
+
+            while ((read = reader.read(buffer)) != -1) {
+                final MergingScan scan = new MergingScan(text, 0, deltaState, streamMatchHandler, stopOnHit);
+                baseState = scan.scan(baseState, read);
+                deltaState = scan.deltaState;
+                offset[0] += read;
+
+                if (stopOnHit && accepted[0]) {
+                    break;
+                }
+            }
+
+            return offset[0];
+        }
+
+        @Override
+        public long parseStream(final InputStream in, final Charset charset, final StreamMatchHandler matchHandler)
+                throws IOException {
+            return parseStream(new InputStreamReader(in, charset), matchHandler);
+        }
+
+        @Override
+        protected int getMaxSearchStringLength() {
+            return this.maxLength;
+        }
+
+        @Override
+        public String getSearchString(final int keywordId) {
+            return this.keywords[keywordId];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T getPayload(final int keywordId) {
+            return (T) this.payloads[keywordId];
+        }
+
+        /**
+         * Receives the matches of the base automaton and advances the delta
+         * automaton up to each of them. The matches of the delta are buffered
+         * until the base reaches their end.
+         */
+        private final class MergingScan implements MatchHandler {
+
+            private final CharSequence text;
+
+            private final MatchHandler matchHandler;
+
+            private final boolean stopOnHit;
+
+            private int deltaPosition;
+
+            private int deltaState;
+
+            /**
+             * Start, end and keyword id of the buffered matches of the delta.
+             */
+            private int[] pending = new int[3 * 16];
+
+            private int head;
+
+            private int tail;
+
+            private boolean stopped;
+
+            private final MatchHandler deltaMatchHandler = new MatchHandler() {
+
+                @Override
+                public boolean onMatch(final int start, final int end, final int keywordId) {
+                    if (tail == pending.length) {
+                        if (head > 0) {
+                            System.arraycopy(pending, head, pending, 0, tail - head);
+                            tail -= head;
+                            head = 0;
+                        } else {
+                            pending = Arrays.copyOf(pending, pending.length * 2);
+                        }
+                    }
+                    pending[tail++] = start;
+                    pending[tail++] = end;
+                    pending[tail++] = deltaIds[keywordId];
+                    return false;
+                }
+            };
+
+            MergingScan(final CharSequence text, final int from, final int deltaState,
+                    final MatchHandler matchHandler, final boolean stopOnHit) {
+                this.text = text;
+                this.deltaPosition = from;
+                this.deltaState = deltaState;
+                this.matchHandler = matchHandler;
+                this.stopOnHit = stopOnHit;
+            }
+
+            /**
+             * Scans the text up to an index.
+             *
+             * @return The state of the base automaton.
+             */
+            int scan(final int baseState, final int to) {
+                final int state = base == null ? baseState
+                        : base.scan(this.text, this.deltaPosition, to, baseState, this, this.stopOnHit);
+                if (!this.stopped) {
+                    flush(to - 1, Integer.MAX_VALUE);
+                }
+                return state;
+            }
+
+            @Override
+            public boolean onMatch(final int start, final int end, final int keywordId) {
+                if (hidden.get(keywordId)) {
+                    return false;
+                }
+
+                flush(end, end - start + 1);
+                if (this.stopped) {
+                    return true;
+                }
+
+                final boolean accepted = this.matchHandler.onMatch(start, end, baseIds[keywordId]);
+                this.stopped = accepted && this.stopOnHit;
+                return accepted;
+            }
+
+            /**
+             * Reports the matches of the delta which end before the given end, or
+             * at it, if they are shorter than the given length.
+             */
+            private void flush(final int end, final int length) {
+                if (delta != null && this.deltaPosition <= end) {
+                    this.deltaState = delta.scan(this.text, this.deltaPosition, end + 1, this.deltaState,
+                            this.deltaMatchHandler, false);
+                    this.deltaPosition = end + 1;
+                }
+
+                while (this.head < this.tail) {
+                    final int pendingStart = this.pending[this.head];
+                    final int pendingEnd = this.pending[this.head + 1];
+                    if (pendingEnd > end || (pendingEnd == end && pendingEnd - pendingStart + 1 >= length)) {
+                        break;
+                    }
+
+                    this.head += 3;
+                    if (this.matchHandler.onMatch(pendingStart, pendingEnd, this.pending[this.head - 1])
+                            && this.stopOnHit) {
+                        this.stopped = true;
+                        return;
+                    }
+                }
+
+                if (this.head == this.tail) {
+                    this.head = 0;
+                    this.tail = 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.neosearch.stringsearcher;
+
+/**
+ * Receives matches as primitive values. In contrast to {@link EmitHandler}, no
+ * {@link Emit} is created for a match, so a scan with a MatchHandler does not
+ * allocate any objects per match or per character.
+ * <p>
+ * The search string and the payload of a match can be looked up with
+ * {@link StringSearcher#getSearchString(int)} and
+ * {@link StringSearcher#getPayload(int)}.
+ *
+ * @author Daniel Beck
+ */
+public interface MatchHandler {
+
+    /**
+     * Called for every matching search string.
+     *
+     * @param start     Start of the match in the text, inclusive.
+     * @param end       End of the match in the text, inclusive.
+     * @param keywordId The id of the matching search string.
+     * @return true if the match was accepted.
+     */
+    boolean onMatch(int start, int end, int keywordId);
+}
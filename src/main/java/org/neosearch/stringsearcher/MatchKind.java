@@ -0,0 +1,30 @@
+package org.neosearch.stringsearcher;
+
+/**
+ * Defines which matches a StringSearcher reports.
+ *
+ * @author Daniel Beck
+ */
+public enum MatchKind {
+
+    /**
+     * Reports every match, including overlapping ones. With
+     * <code>ignoreOverlaps()</code> the overlapping matches are removed after
+     * the scan, preferring the longest matches.
+     */
+    STANDARD,
+
+    /**
+     * Reports non-overlapping matches from left to right. Of the matches
+     * starting at the leftmost position, the longest one is reported, and the
+     * search restarts after its end.
+     */
+    LEFTMOST_LONGEST,
+
+    /**
+     * Reports non-overlapping matches from left to right. Of the matches
+     * starting at the leftmost position, the one of the search string added
+     * first is reported, and the search restarts after its end.
+     */
+    LEFTMOST_FIRST
+}
@@ -0,0 +1,49 @@
+package org.neosearch.stringsearcher;
+
+/**
+ * How much of the scanned text a searcher skipped with its start character
+ * prefilter, instead of feeding it into the automaton. See
+ * {@link AbstractStringSearcher#getPrefilterStatistics()}.
+ *
+ * @author Daniel Beck
+ */
+public class PrefilterStatistics {
+
+    private final long characters;
+
+    private final long skippedCharacters;
+
+    PrefilterStatistics(final long characters, final long skippedCharacters) {
+        this.characters = characters;
+        this.skippedCharacters = skippedCharacters;
+    }
+
+    /**
+     * @return The total number of characters scanned with the prefilter.
+     */
+    public long getCharacters() {
+        return this.characters;
+    }
+
+    /**
+     * @return The number of characters skipped without a transition of the
+     *         automaton.
+     */
+    public long getSkippedCharacters() {
+        return this.skippedCharacters;
+    }
+
+    /**
+     * @return The fraction of the characters which were skipped, between 0 and
+     *         1.
+     */
+    public double getSkippedRatio() {
+        return this.characters == 0 ? 0 : (double) this.skippedCharacters / this.characters;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d of %d characters skipped (%.1f%%)", this.skippedCharacters, this.characters,
+                getSkippedRatio() * 100);
+    }
+}
@@ -8,7 +8,12 @@ import java.util.Collection;
  * <ul>
  * <li>AHO_COHARICK
  * <li>AHO_COHARICK_IMPROVED
+ * <li>AHO_COHARICK_DFA
+ * <li>AHO_COHARICK_UTF8
  * <li>COMPRESSED_TRIE
+ * <li>PACKED_FINGERPRINT
+ * <li>WU_MANBER
+ * <li>AUTO
  * </ul>
  * 
  * The <code>build()</code>-method creates a concret instance of the chosen
@@ -23,10 +28,21 @@ public class SimpleStringSearcherBuilder {
         this.stringSearcherBuilder = new StringSearcherBuilder<String>();
     }
 
+    /**
+     * Sets the string searching implementation to be used.
+     * 
+     * @param algorithm Algorithm to use.
+     * @return This builder.
+     */
+    public SimpleStringSearcherBuilder algorithm(Algorithm algorithm) {
+        this.stringSearcherBuilder.algorithm(algorithm);
+        return this;
+    }
+
     /**
      * Configure the Trie to ignore case when searching for keywords in the text.
      * This must be called before calling addSearchString because the algorithm
-     * converts keywords to lowercase as they are added, depending on this case
+     * case folds keywords as they are added, depending on this case
      * sensitivity setting.
      *
      * @return This builder.
@@ -46,6 +62,17 @@ public class SimpleStringSearcherBuilder {
         return this;
     }
 
+    /**
+     * Configures the kind of matches the StringSearcher reports.
+     *
+     * @param matchKind The kind of matches.
+     * @return This builder.
+     */
+    public SimpleStringSearcherBuilder matchKind(final MatchKind matchKind) {
+        this.stringSearcherBuilder.matchKind(matchKind);
+        return this;
+    }
+
     /**
      * Adds a keyword to the Trie's list of text search keywords. No Payload is
      * supplied.
@@ -93,6 +120,18 @@ public class SimpleStringSearcherBuilder {
         return this;
     }
 
+    /**
+     * Configure the StringSearcher to match whole keywords in the text, where
+     * words are defined by a word boundary.
+     *
+     * @param wordBoundary The definition of words.
+     * @return This builder.
+     */
+    public SimpleStringSearcherBuilder onlyWholeWords(final WordBoundary wordBoundary) {
+        this.stringSearcherBuilder.onlyWholeWords(wordBoundary);
+        return this;
+    }
+
     /**
      * Configure the Trie to match whole keywords that are separated by whitespace
      * in the text. For example, "this keyword thatkeyword" would only match the
@@ -105,6 +144,18 @@ public class SimpleStringSearcherBuilder {
         return this;
     }
 
+    /**
+     * Configures the maximal size of the transition table built for
+     * AHO_COHARICK_DFA.
+     *
+     * @param maxTableSize Maximal size in bytes.
+     * @return This builder.
+     */
+    public SimpleStringSearcherBuilder maxTableSize(final long maxTableSize) {
+        this.stringSearcherBuilder.maxTableSize(maxTableSize);
+        return this;
+    }
+
     /**
      * Configure the Trie to stop after the first keyword is found in the text.
      *
@@ -123,4 +174,14 @@ public class SimpleStringSearcherBuilder {
     public StringSearcher<String> build() {
         return this.stringSearcherBuilder.build();
     }
+
+    /**
+     * Returns the algorithm chosen by the last <code>build()</code> for
+     * {@link Algorithm#AUTO}, and why it was chosen.
+     *
+     * @return The selection, null if no searcher was built with AUTO.
+     */
+    public AlgorithmSelection getAlgorithmSelection() {
+        return this.stringSearcherBuilder.getAlgorithmSelection();
+    }
 }
\ No newline at end of file
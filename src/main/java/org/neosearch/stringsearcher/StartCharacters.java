@@ -0,0 +1,109 @@
+package org.neosearch.stringsearcher;
+
+import org.neosearch.stringsearcher.trie.util.CaseFolding;
+
+/**
+ * The characters search strings can start with, stored with one bit per
+ * character. While an automaton is in its root state, no match can start
+ * before the next of these characters, so the text up to it can be skipped
+ * with a table lookup per character instead of a transition.
+ *
+ * @author Daniel Beck
+ */
+final class StartCharacters {
+
+    private final long[] characters = new long[(Character.MAX_VALUE + 1) / Long.SIZE];
+
+    private StartCharacters() {
+    }
+
+    /**
+     * Collects the first characters of the search strings of a searcher. If the
+     * searcher ignores the case, the search strings are case folded, and every
+     * character folding to one of their first characters is added.
+     *
+     * @param searcher          The searcher.
+     * @param searchStringCount The number of search strings.
+     * @return The start characters, null if a search string starts with a low
+     *         surrogate, which the skipping would separate from its high
+     *         surrogate.
+     */
+    static StartCharacters of(final StringSearcher<?> searcher, final int searchStringCount) {
+        final StartCharacters startCharacters = new StartCharacters();
+        for (int keywordId = 0; keywordId < searchStringCount; keywordId++) {
+            final char first = searcher.getSearchString(keywordId).charAt(0);
+            if (Character.isLowSurrogate(first)) {
+                return null;
+            }
+            startCharacters.add(first);
+        }
+        return startCharacters;
+    }
+
+    /**
+     * Collects the given start characters.
+     *
+     * @param characters The first characters of the search strings.
+     * @return The start characters, null if one of them is a low surrogate.
+     */
+    static StartCharacters of(final char[] characters) {
+        final StartCharacters startCharacters = new StartCharacters();
+        for (final char character : characters) {
+            if (Character.isLowSurrogate(character)) {
+                return null;
+            }
+            startCharacters.add(character);
+        }
+        return startCharacters;
+    }
+
+    /**
+     * Adds every character which folds to one of the start characters.
+     *
+     * @return These start characters.
+     */
+    StartCharacters withCaseVariants() {
+        final StartCharacters folded = new StartCharacters();
+        System.arraycopy(this.characters, 0, folded.characters, 0, this.characters.length);
+        for (int character = 0; character <= Character.MAX_VALUE; character++) {
+            if (contains(CaseFolding.fold((char) character))) {
+                folded.add((char) character);
+            }
+        }
+        return folded;
+    }
+
+    private void add(final char character) {
+        this.characters[character >>> 6] |= 1L << character;
+    }
+
+    /**
+     * Returns true if a search string can start with the character.
+     *
+     * @param character The character.
+     * @return true for start characters.
+     */
+    boolean contains(final char character) {
+        return (this.characters[character >>> 6] & (1L << character)) != 0;
+    }
+
+    /**
+     * Returns the position of the next start character.
+     *
+     * @param text The text.
+     * @param from The index to search from.
+     * @param to   The index to search to, exclusive.
+     * @return The index of the next start character, <code>to</code> if there
+     *         is none.
+     */
+    int next(final CharSequence text, final int from, final int to) {
+        final long[] characters = this.characters;
+        for (int position = from; position < to; position++) {
+            final char character = text.charAt(position);
+            if ((characters[character >>> 6] & (1L << character)) != 0) {
+                return position;
+            }
+        }
+        return to;
+    }
+}
@@ -0,0 +1,25 @@
+package org.neosearch.stringsearcher;
+
+/**
+ * Receives the matches of a streamed text. The positions are absolute offsets
+ * in characters from the beginning of the stream, so they do not overflow for
+ * inputs larger than 2 GB.
+ * <p>
+ * The search string and the payload of a match can be looked up with
+ * {@link StringSearcher#getSearchString(int)} and
+ * {@link StringSearcher#getPayload(int)}.
+ *
+ * @author Daniel Beck
+ */
+public interface StreamMatchHandler {
+
+    /**
+     * Called for every matching search string.
+     *
+     * @param start     Start of the match in the stream, inclusive.
+     * @param end       End of the match in the stream, inclusive.
+     * @param keywordId The id of the matching search string.
+     * @return true if the match was accepted.
+     */
+    boolean onMatch(long start, long end, int keywordId);
+}
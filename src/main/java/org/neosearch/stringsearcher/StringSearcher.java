@@ -1,6 +1,13 @@
 package org.neosearch.stringsearcher;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * A StringSearcher contain method to read in text and return the matched search
@@ -20,6 +27,13 @@ import java.util.Collection;
  * The payload trie adds the possibility to specify emitted payloads for each
  * added keyword.
  * 
+ * <p>
+ * A built StringSearcher is immutable: search strings cannot be added after
+ * <code>build()</code>, its configuration is a private copy, and the automaton
+ * is published safely to every thread. One instance can therefore be shared by
+ * any number of concurrent threads without synchronization, as long as the
+ * handlers passed to it are not shared.
+ * 
  * @author Daniel Beck
  * @param <T> The type of the supplied of the payload
  */
@@ -43,6 +57,52 @@ public interface StringSearcher<T> {
      */
     public Collection<Emit<T>> parseText(final CharSequence text);
 
+    /**
+     * Parses the specified text in parallel with the tasks of the pool and
+     * returns the emitted output for the matching strings. The result is the same
+     * as the one of <code>parseText(text)</code>, including the filtering for
+     * whole words and overlaps. Short texts are parsed sequentially.
+     * 
+     * @param text The text to tokenize.
+     * @param pool The pool to use, for example
+     *             <code>ForkJoinPool.commonPool()</code>.
+     * @return The emitted outputs.
+     */
+    public Collection<Emit<T>> parseText(final CharSequence text, final ForkJoinPool pool);
+
+    /**
+     * Parses a batch of documents on the threads of the executor and passes the
+     * emits of every document to the document handler. The emits of a document
+     * are the same as the ones returned by <code>parseText(text)</code>. The
+     * workers reuse their emit lists from document to document, so short
+     * documents can be parsed without allocating per document. Returns when all
+     * documents are parsed.
+     * 
+     * @param texts           The documents. The iterator is only used by one
+     *                        thread at a time.
+     * @param executor        The executor to run the workers on.
+     * @param documentHandler The thread-safe handler for the emits of each
+     *                        document.
+     * @return The throughput of the batch.
+     * @throws InterruptedException if the calling thread is interrupted while
+     *                              waiting for the workers.
+     */
+    public BatchStatistics parseTexts(final Iterable<? extends CharSequence> texts, final Executor executor,
+            final DocumentHandler<T> documentHandler) throws InterruptedException;
+
+    /**
+     * Parses a batch of documents on the threads of the executor and returns the
+     * emits of every document, in the order of the documents.
+     * 
+     * @param texts    The documents.
+     * @param executor The executor to run the workers on.
+     * @return The emits of each document.
+     * @throws InterruptedException if the calling thread is interrupted while
+     *                              waiting for the workers.
+     */
+    public List<List<Emit<T>>> parseTexts(final List<? extends CharSequence> texts, final Executor executor)
+            throws InterruptedException;
+
     /**
      * Returns true if the text contains contains one of the search terms. Else,
      * returns false.
@@ -55,14 +115,75 @@ public interface StringSearcher<T> {
 
     /**
      * Parses the specified text with this stringsearcher with the specified
-     * EmitHandler.
+     * EmitHandler. Partial words are rejected if only whole words are
+     * requested, and the leftmost matches are resolved if the match kind is not
+     * {@link MatchKind#STANDARD}. Overlaps are not removed.
      * 
      * @param text        The text to tokenize.
      * @param emitHandler EmitHandler to call for each matching string.
      */
-    // TODO: parseText.isOnlyWords, ... lacking.
     public void parseText(final CharSequence text, final EmitHandler<T> emitHandler);
 
+    /**
+     * Parses the specified text with this stringsearcher and reports every
+     * matching string to the MatchHandler. The matches are filtered like
+     * <code>parseText(CharSequence, EmitHandler)</code>: for whole words and by
+     * the match kind, but not for overlaps. No Emits are created, the search
+     * string and the payload of a match can be looked up by its keyword id.
+     * 
+     * @param text         The text to tokenize.
+     * @param matchHandler MatchHandler to call for each matching string.
+     */
+    public void parseText(final CharSequence text, final MatchHandler matchHandler);
+
+    /**
+     * Parses the characters of a reader and reports every matching string to the
+     * StreamMatchHandler. The reader is read through a buffer of constant size
+     * and the state of the automaton is carried from one buffer to the next, so
+     * matches across buffer boundaries are found and arbitrarily large inputs can
+     * be searched. Unlike <code>parseText(CharSequence, MatchHandler)</code>,
+     * every match is reported as with {@link MatchKind#STANDARD}, whatever the
+     * configured match kind is, and neither partial words nor overlaps are
+     * removed. The reader is not closed.
+     * 
+     * @param reader       The reader to read the text from.
+     * @param matchHandler StreamMatchHandler to call for each matching string.
+     * @return The number of characters read.
+     * @throws IOException if reading fails.
+     */
+    public long parseStream(final Reader reader, final StreamMatchHandler matchHandler) throws IOException;
+
+    /**
+     * Parses the characters of an input stream and reports every matching string
+     * to the StreamMatchHandler, see
+     * <code>parseStream(Reader, StreamMatchHandler)</code>. The offsets are
+     * counted in characters. The input stream is not closed.
+     * 
+     * @param in           The input stream to read the text from.
+     * @param charset      The charset of the input stream.
+     * @param matchHandler StreamMatchHandler to call for each matching string.
+     * @return The number of characters read.
+     * @throws IOException if reading fails.
+     */
+    public long parseStream(final InputStream in, final Charset charset, final StreamMatchHandler matchHandler)
+            throws IOException;
+
+    /**
+     * Returns the search string with the specified keyword id.
+     * 
+     * @param keywordId The keyword id passed to a MatchHandler.
+     * @return The search string.
+     */
+    public String getSearchString(final int keywordId);
+
+    /**
+     * Returns the payload of the search string with the specified keyword id.
+     * 
+     * @param keywordId The keyword id passed to a MatchHandler.
+     * @return The payload, null if none was supplied.
+     */
+    public T getPayload(final int keywordId);
+
     /**
      * The first matching text sequence.
      *
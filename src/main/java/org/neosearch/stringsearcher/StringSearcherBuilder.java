@@ -1,19 +1,39 @@
 package org.neosearch.stringsearcher;
 
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
+import java.util.concurrent.Executor;
 
+import org.neosearch.stringsearcher.trie.CompressedTrie;
+import org.neosearch.stringsearcher.trie.DfaTrie;
+import org.neosearch.stringsearcher.trie.DoubleArrayTrie;
+import org.neosearch.stringsearcher.trie.PackedFingerprintSearcher;
 import org.neosearch.stringsearcher.trie.Trie;
+import org.neosearch.stringsearcher.trie.Utf8DoubleArrayTrie;
+import org.neosearch.stringsearcher.trie.WuManberSearcher;
+import org.neosearch.stringsearcher.trie.util.CaseFolding;
 
 /**
  * Builder class to create a StringMatcher instance. The builder is can provide
- * a stringsearcher implementation for serval algorithm. For the moment, only
- * "naive aho coharick" is available.
+ * a stringsearcher implementation for serval algorithm:
  * <ul>
- * <li>AHO_COHARICK
+ * <li>AHO_COHARICK, the "naive aho coharick" based on linked states
+ * <li>AHO_COHARICK_IMPROVED, aho coharick compiled into a double-array trie
+ * <li>AHO_COHARICK_DFA, aho coharick determinized into a full transition table
+ * <li>AHO_COHARICK_UTF8, aho coharick over the UTF-8 encoded search strings,
+ * which also searches UTF-8 encoded bytes
+ * <li>COMPRESSED_TRIE, aho coharick on a path-compressed (patricia) trie
+ * <li>PACKED_FINGERPRINT, a packed fingerprint search for small sets of search
+ * strings
+ * <li>WU_MANBER, a shift-based search for long search strings
+ * <li>AUTO, one of the above, chosen by the statistics of the search strings
  * </ul>
  * 
  * The <code>build()</code>-method creates a concret instance of the chosen
@@ -32,6 +52,8 @@ public class StringSearcherBuilder<T> {
 
     private Algorithm algorithm;
 
+    private AlgorithmSelection algorithmSelection;
+
     /**
      * Creates a string searcher builder. It defaults to the AHO_COHARICK string
      * matching algorithm. The defaut algorithm can be overriden with
@@ -55,7 +77,7 @@ public class StringSearcherBuilder<T> {
     /**
      * Configure the StringSearcher to ignore case when searching for keywords in
      * the text. This must be called before calling addSearchString because the
-     * algorithm converts keywords to lowercase as they are added, depending on this
+     * algorithm case folds keywords as they are added, depending on this
      * case sensitivity setting.
      *
      * @return This builder.
@@ -75,6 +97,19 @@ public class StringSearcherBuilder<T> {
         return this;
     }
 
+    /**
+     * Configures the kind of matches the StringSearcher reports. The leftmost
+     * kinds resolve overlaps while scanning and only report non-overlapping
+     * matches, so <code>ignoreOverlaps()</code> has no effect with them.
+     *
+     * @param matchKind The kind of matches.
+     * @return This builder.
+     */
+    public StringSearcherBuilder<T> matchKind(final MatchKind matchKind) {
+        this.config.setMatchKind(matchKind);
+        return this;
+    }
+
     /**
      * Adds a search string to the StringSearchers list of text search keywords. No
      * payload is supplied.
@@ -155,6 +190,20 @@ public class StringSearcherBuilder<T> {
         return this;
     }
 
+    /**
+     * Configure the StringSearcher to match whole keywords in the text, where
+     * words are defined by a word boundary, for example
+     * {@link WordBoundary#ALPHANUMERIC}.
+     *
+     * @param wordBoundary The definition of words.
+     * @return This builder.
+     */
+    public StringSearcherBuilder<T> onlyWholeWords(final WordBoundary wordBoundary) {
+        this.config.setWordBoundary(wordBoundary);
+        this.config.setOnlyWholeWords(true);
+        return this;
+    }
+
     /**
      * Configure the Trie to match whole keywords that are separated by whitespace
      * in the text. For example, "this keyword thatkeyword" would only match the
@@ -167,6 +216,19 @@ public class StringSearcherBuilder<T> {
         return this;
     }
 
+    /**
+     * Configures the maximal size of the transition table built for
+     * AHO_COHARICK_DFA. If the table would be larger, the StringSearcher falls
+     * back to the double-array trie of AHO_COHARICK_IMPROVED.
+     *
+     * @param maxTableSize Maximal size in bytes.
+     * @return This builder.
+     */
+    public StringSearcherBuilder<T> maxTableSize(final long maxTableSize) {
+        this.config.setMaxTableSize(maxTableSize);
+        return this;
+    }
+
     /**
      * Configure the Trie to stop after the first keyword is found in the text.
      *
@@ -183,14 +245,93 @@ public class StringSearcherBuilder<T> {
      * @return The configured StringSearcher.
      */
     public StringSearcher<T> build() {
-        if (this.algorithm == Algorithm.AHO_COHARICK) {
-            this.stringMatcher = new Trie<T>(this.config);
-            Entry<String, T> simpleEntry = null;
-            while ((simpleEntry = stringsearchPayloads.poll()) != null)
-                stringMatcher.addSearchString(simpleEntry.getKey(), simpleEntry.getValue());
+        Algorithm algorithm = this.algorithm;
+        if (algorithm == Algorithm.AUTO) {
+            final List<String> searchStrings = new ArrayList<>(this.stringsearchPayloads.size());
+            for (final Entry<String, T> entry : this.stringsearchPayloads) {
+                searchStrings.add(entry.getKey());
+            }
+            this.algorithmSelection = AlgorithmSelection.select(searchStrings, this.config);
+            algorithm = this.algorithmSelection.getAlgorithm();
+        }
 
-            return this.stringMatcher.build();
+        this.stringMatcher = createStringMatcher(algorithm, this.config);
+        if (this.stringMatcher == null) {
+            return null;
+        }
+
+        Entry<String, T> simpleEntry = null;
+        while ((simpleEntry = stringsearchPayloads.poll()) != null)
+            stringMatcher.addSearchString(simpleEntry.getKey(), simpleEntry.getValue());
+
+        return this.stringMatcher.build();
+    }
+
+    /**
+     * Returns the algorithm chosen by the last <code>build()</code> for
+     * {@link Algorithm#AUTO}, and why it was chosen.
+     *
+     * @return The selection, null if no searcher was built with AUTO.
+     */
+    public AlgorithmSelection getAlgorithmSelection() {
+        return this.algorithmSelection;
+    }
+
+    /**
+     * Constructs a DynamicStringSearcher based on the builder settings, whose
+     * search strings can be changed later. It is compacted in the threads which
+     * change it.
+     *
+     * @return The configured DynamicStringSearcher.
+     */
+    public DynamicStringSearcher<T> buildDynamic() {
+        return buildDynamic(null);
+    }
+
+    /**
+     * Constructs a DynamicStringSearcher based on the builder settings, whose
+     * search strings can be changed later.
+     *
+     * @param compactionExecutor The executor to compact the searcher on in the
+     *                           background, null to compact it in the threads
+     *                           which change it.
+     * @return The configured DynamicStringSearcher.
+     */
+    public DynamicStringSearcher<T> buildDynamic(final Executor compactionExecutor) {
+        final Map<String, T> searchStrings = new LinkedHashMap<>();
+        Entry<String, T> simpleEntry = null;
+        while ((simpleEntry = stringsearchPayloads.poll()) != null) {
+            final String key = this.config.isCaseInsensitive() ? CaseFolding.fold(simpleEntry.getKey())
+                    : simpleEntry.getKey();
+            if (!searchStrings.containsKey(key)) {
+                searchStrings.put(key, simpleEntry.getValue());
+            }
+        }
+        return new DynamicStringSearcher<>(this.config, this.algorithm, compactionExecutor, searchStrings);
+    }
+
+    /**
+     * Creates an empty StringSearcher for an algorithm.
+     */
+    static <T> StringSearcherPrepare<T> createStringMatcher(final Algorithm algorithm,
+            final StringSearcherConfig config) {
+        switch (algorithm) {
+        case AHO_COHARICK:
+            return new Trie<T>(config);
+        case AHO_COHARICK_IMPROVED:
+            return new DoubleArrayTrie<T>(config);
+        case AHO_COHARICK_DFA:
+            return new DfaTrie<T>(config);
+        case AHO_COHARICK_UTF8:
+            return new Utf8DoubleArrayTrie<T>(config);
+        case COMPRESSED_TRIE:
+            return new CompressedTrie<T>(config);
+        case PACKED_FINGERPRINT:
+            return new PackedFingerprintSearcher<T>(config);
+        case WU_MANBER:
+            return new WuManberSearcher<T>(config);
+        default:
+            return null;
         }
-        return null;
     }
 }
\ No newline at end of file
@@ -17,6 +17,34 @@ public class StringSearcherConfig {
 
     private boolean stopOnHit = false;
 
+    private long maxTableSize = 64L * 1024 * 1024;
+
+    private MatchKind matchKind = MatchKind.STANDARD;
+
+    private WordBoundary wordBoundary = WordBoundary.ALPHABETIC;
+
+    /**
+     * Creates a configuration with the default options.
+     */
+    public StringSearcherConfig() {
+    }
+
+    /**
+     * Creates a copy of a configuration.
+     * 
+     * @param config The configuration to copy.
+     */
+    public StringSearcherConfig(final StringSearcherConfig config) {
+        this.caseInsensitive = config.caseInsensitive;
+        this.allowOverlaps = config.allowOverlaps;
+        this.onlyWholeWords = config.onlyWholeWords;
+        this.onlyWholeWordsWhiteSpaceSeparated = config.onlyWholeWordsWhiteSpaceSeparated;
+        this.stopOnHit = config.stopOnHit;
+        this.maxTableSize = config.maxTableSize;
+        this.matchKind = config.matchKind;
+        this.wordBoundary = config.wordBoundary;
+    }
+
     /**
      * Returns true if the matching should be case insensitive.
      */
@@ -72,4 +100,60 @@ public class StringSearcherConfig {
         this.onlyWholeWordsWhiteSpaceSeparated = onlyWholeWordsWhiteSpaceSeparated;
     }
 
+    /**
+     * @return the maximal size in bytes of the transition table of a
+     *         deterministic automaton.
+     */
+    public long getMaxTableSize() {
+        return maxTableSize;
+    }
+
+    /**
+     * Configures the maximal size of the transition table of a deterministic
+     * automaton.
+     * 
+     * @param maxTableSize Maximal size in bytes.
+     */
+    public void setMaxTableSize(long maxTableSize) {
+        this.maxTableSize = maxTableSize;
+    }
+
+    /**
+     * @return the definition of words used if only whole words are matched.
+     */
+    public WordBoundary getWordBoundary() {
+        return wordBoundary;
+    }
+
+    /**
+     * Configures the definition of words used if only whole words are matched.
+     * 
+     * @param wordBoundary The word boundary.
+     */
+    public void setWordBoundary(WordBoundary wordBoundary) {
+        if (wordBoundary == null) {
+            throw new NullPointerException("wordBoundary");
+        }
+        this.wordBoundary = wordBoundary;
+    }
+
+    /**
+     * @return the kind of matches to report.
+     */
+    public MatchKind getMatchKind() {
+        return matchKind;
+    }
+
+    /**
+     * Configures the kind of matches to report.
+     * 
+     * @param matchKind The kind of matches.
+     */
+    public void setMatchKind(MatchKind matchKind) {
+        if (matchKind == null) {
+            throw new NullPointerException("matchKind");
+        }
+        this.matchKind = matchKind;
+    }
+
 }
@@ -23,6 +23,13 @@ public interface StringSearcherPrepare<T> {
 
     public void addSearchStrings(String... keywords);
 
+    /**
+     * Builds the automaton of the added search strings. Afterwards the searcher
+     * is immutable and can be used by concurrent threads; adding search strings
+     * throws an IllegalStateException.
+     * 
+     * @return The built searcher.
+     */
     public StringSearcher<T> build();
 
 }
@@ -0,0 +1,420 @@
+package org.neosearch.stringsearcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A StringSearcher which serves from the current immutable searcher while a
+ * replacement is built in the background, and then switches to the replacement
+ * with a single atomic reference swap.
+ * <p>
+ * Reading calls only read the reference, they neither lock nor pause. Every
+ * call uses one searcher from start to end. A failed build leaves the current
+ * searcher in place. The state, progress and failure of a build can be queried
+ * with its {@link BuildStatus}.
+ * <p>
+ * While a replacement is built, both the current searcher and the new one are
+ * in memory. {@link BuildStatus#getHeapSize()} estimates the size of the new
+ * one once it is built. The old searcher is not referenced after the swap, so
+ * it is collected as soon as the calls using it have returned.
+ * <p>
+ * Keyword ids passed to a {@link MatchHandler} or {@link StreamMatchHandler}
+ * belong to the searcher the call used, and a swap can happen at any time. To
+ * resolve them, take a searcher with {@link #current()} before the call, scan
+ * with it, and resolve the ids with it as well.
+ *
+ * @author Daniel Beck
+ * @param <T> The type of the supplied of the payload
+ */
+public class SwappableStringSearcher<T> implements StringSearcher<T> {
+
+    private final AtomicReference<StringSearcher<T>> current;
+
+    private final Executor executor;
+
+    /**
+     * The generation of the current searcher, guarded by this.
+     */
+    private long currentGeneration;
+
+    /**
+     * The generation of the last started build, guarded by this.
+     */
+    private long lastGeneration;
+
+    private volatile BuildStatus lastBuild;
+
+    /**
+     * Creates a searcher serving from an initial searcher.
+     *
+     * @param initial  The searcher to serve from until the first build
+     *                 succeeds.
+     * @param executor The executor to build replacements on.
+     */
+    public SwappableStringSearcher(final StringSearcher<T> initial, final Executor executor) {
+        if (initial == null) {
+            throw new NullPointerException("initial");
+        }
+
+        this.current = new AtomicReference<>(initial);
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the searcher currently served from.
+     *
+     * @return The current searcher.
+     */
+    public StringSearcher<T> current() {
+        return this.current.get();
+    }
+
+    /**
+     * Returns the status of the most recently started build.
+     *
+     * @return The status, null if no build was started.
+     */
+    public BuildStatus getLastBuild() {
+        return this.lastBuild;
+    }
+
+    /**
+     * Builds a replacement in the background and swaps it in when it is built.
+     * If several builds overlap, a build is only swapped in if no build started
+     * after it has been swapped in before.
+     *
+     * @param builder       The configured builder of the replacement, without
+     *                      search strings. It must not be used by the caller
+     *                      anymore.
+     * @param searchStrings The search strings and payloads of the replacement.
+     *                      They are read by the building thread.
+     * @return The status of the build.
+     */
+    public BuildStatus rebuild(final StringSearcherBuilder<T> builder,
+            final Iterable<? extends Entry<String, ? extends T>> searchStrings) {
+        final BuildStatus status;
+        synchronized (this) {
+            status = new BuildStatus(++this.lastGeneration);
+            this.lastBuild = status;
+        }
+
+        try {
+            this.executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    build(status, builder, searchStrings);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            status.finish(BuildState.FAILED, e);
+        }
+        return status;
+    }
+
+    private void build(final BuildStatus status, final StringSearcherBuilder<T> builder,
+            final Iterable<? extends Entry<String, ? extends T>> searchStrings) {
+        final StringSearcher<T> replacement;
+        try {
+            for (final Entry<String, ? extends T> entry : searchStrings) {
+                builder.addSearchString(entry.getKey(), entry.getValue());
+                status.added(entry.getKey().length());
+            }
+
+            status.state = BuildState.BUILDING;
+            replacement = builder.build();
+            if (replacement == null) {
+                throw new IllegalStateException("The builder did not create a searcher");
+            }
+            if (replacement instanceof AbstractStringSearcher) {
+                status.heapSize = ((AbstractStringSearcher<T>) replacement).estimateHeapSize();
+            }
+        } catch (final RuntimeException | Error e) {
+            status.finish(BuildState.FAILED, e);
+            return;
+        }
+
+        synchronized (this) {
+            if (status.generation < this.currentGeneration) {
+                status.finish(BuildState.SUPERSEDED, null);
+                return;
+            }
+            this.currentGeneration = status.generation;
+            this.current.set(replacement);
+        }
+        status.finish(BuildState.SUCCEEDED, null);
+    }
+
+    @Override
+    public Collection<Token<T>> tokenize(final String text) {
+        return this.current.get().tokenize(text);
+    }
+
+    @Override
+    public Collection<Emit<T>> parseText(final CharSequence text) {
+        return this.current.get().parseText(text);
+    }
+
+    @Override
+    public Collection<Emit<T>> parseText(final CharSequence text, final ForkJoinPool pool) {
+        return this.current.get().parseText(text, pool);
+    }
+
+    @Override
+    public BatchStatistics parseTexts(final Iterable<? extends CharSequence> texts, final Executor executor,
+            final DocumentHandler<T> documentHandler) throws InterruptedException {
+        return this.current.get().parseTexts(texts, executor, documentHandler);
+    }
+
+    @Override
+    public List<List<Emit<T>>> parseTexts(final List<? extends CharSequence> texts, final Executor executor)
+            throws InterruptedException {
+        return this.current.get().parseTexts(texts, executor);
+    }
+
+    @Override
+    public boolean containsMatch(final CharSequence text) {
+        return this.current.get().containsMatch(text);
+    }
+
+    @Override
+    public void parseText(final CharSequence text, final EmitHandler<T> emitHandler) {
+        this.current.get().parseText(text, emitHandler);
+    }
+
+    /**
+     * Parses the text with the current searcher. The keyword ids passed to the
+     * handler belong to that searcher, so they can only be resolved reliably by
+     * calling this method on a searcher taken with {@link #current()}, and
+     * resolving them with the same searcher.
+     *
+     * @param text         The text to parse.
+     * @param matchHandler MatchHandler to call for each matching string.
+     */
+    @Override
+    public void parseText(final CharSequence text, final MatchHandler matchHandler) {
+        this.current.get().parseText(text, matchHandler);
+    }
+
+    /**
+     * Parses the reader with the current searcher. The keyword ids passed to the
+     * handler belong to that searcher, so they can only be resolved reliably by
+     * calling this method on a searcher taken with {@link #current()}, and
+     * resolving them with the same searcher.
+     *
+     * @param reader       The reader to read the text from.
+     * @param matchHandler StreamMatchHandler to call for each matching string.
+     * @return The number of characters read.
+     * @throws IOException if reading fails.
+     */
+    @Override
+    public long parseStream(final Reader reader, final StreamMatchHandler matchHandler) throws IOException {
+        return this.current.get().parseStream(reader, matchHandler);
+    }
+
+    /**
+     * Parses the input stream with the current searcher, see
+     * {@link #parseStream(Reader, StreamMatchHandler)} for resolving the keyword
+     * ids.
+     *
+     * @param in           The input stream to read the text from.
+     * @param charset      The charset of the input stream.
+     * @param matchHandler StreamMatchHandler to call for each matching string.
+     * @return The number of characters read.
+     * @throws IOException if reading fails.
+     */
+    @Override
+    public long parseStream(final InputStream in, final Charset charset, final StreamMatchHandler matchHandler)
+            throws IOException {
+        return this.current.get().parseStream(in, charset, matchHandler);
+    }
+
+    /**
+     * Returns the search string of a keyword id of the current searcher. Ids
+     * passed to a handler belong to the searcher the call used, which need not
+     * be the current one anymore; see
+     * {@link #parseText(CharSequence, MatchHandler)}.
+     *
+     * @param keywordId The id of the search string.
+     * @return The search string.
+     */
+    @Override
+    public String getSearchString(final int keywordId) {
+        return this.current.get().getSearchString(keywordId);
+    }
+
+    /**
+     * Returns the payload of a keyword id of the current searcher. Ids passed to
+     * a handler belong to the searcher the call used, which need not be the
+     * current one anymore; see {@link #parseText(CharSequence, MatchHandler)}.
+     *
+     * @param keywordId The id of the search string.
+     * @return The payload.
+     */
+    @Override
+    public T getPayload(final int keywordId) {
+        return this.current.get().getPayload(keywordId);
+    }
+
+    @Override
+    public Emit<T> firstMatch(final CharSequence text) {
+        return this.current.get().firstMatch(text);
+    }
+
+    /**
+     * The states of a build.
+     */
+    public enum BuildState {
+        /**
+         * The search strings are read from the source.
+         */
+        ADDING,
+
+        /**
+         * The automaton is built.
+         */
+        BUILDING,
+
+        /**
+         * The replacement was swapped in.
+         */
+        SUCCEEDED,
+
+        /**
+         * The build failed, the previous searcher is still served.
+         */
+        FAILED,
+
+        /**
+         * The build succeeded, but a build started later was swapped in first.
+         */
+        SUPERSEDED
+    }
+
+    /**
+     * The state and progress of a build.
+     */
+    public static class BuildStatus {
+
+        private final long generation;
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile BuildState state = BuildState.ADDING;
+
+        private volatile int searchStrings;
+
+        private volatile long characters;
+
+        private volatile long heapSize = -1;
+
+        private volatile Throwable failure;
+
+        BuildStatus(final long generation) {
+            this.generation = generation;
+        }
+
+        /**
+         * Only called by the building thread.
+         */
+        void added(final int length) {
+            this.searchStrings++;
+            this.characters += length;
+        }
+
+        void finish(final BuildState state, final Throwable failure) {
+            this.failure = failure;
+            this.state = state;
+            this.done.countDown();
+        }
+
+        /**
+         * @return The current state of the build.
+         */
+        public BuildState getState() {
+            return this.state;
+        }
+
+        /**
+         * @return The number of search strings read from the source so far.
+         */
+        public int getSearchStrings() {
+            return this.searchStrings;
+        }
+
+        /**
+         * @return The total length of the search strings read from the source so
+         *         far.
+         */
+        public long getCharacters() {
+            return this.characters;
+        }
+
+        /**
+         * @return The estimated heap size of the new searcher in bytes, without
+         *         the payload objects. It is held in addition to the current
+         *         searcher until the swap. -1 until the searcher is built, or if
+         *         it does not estimate its size.
+         */
+        public long getHeapSize() {
+            return this.heapSize;
+        }
+
+        /**
+         * @return The cause of a failed build, null if the build did not fail.
+         */
+        public Throwable getFailure() {
+            return this.failure;
+        }
+
+        /**
+         * @return true if the build succeeded, failed or was superseded.
+         */
+        public boolean isDone() {
+            return this.done.getCount() == 0;
+        }
+
+        /**
+         * Waits until the build is done.
+         *
+         * @return The final state of the build.
+         * @throws InterruptedException if the thread is interrupted while
+         *                              waiting.
+         */
+        public BuildState await() throws InterruptedException {
+            this.done.await();
+            return this.state;
+        }
+
+        /**
+         * Waits until the build is done or the timeout elapsed.
+         *
+         * @param timeout The maximal time to wait.
+         * @param unit    The unit of the timeout.
+         * @return true if the build is done.
+         * @throws InterruptedException if the thread is interrupted while
+         *                              waiting.
+         */
+        public boolean await(final long timeout, final TimeUnit unit) throws InterruptedException {
+            return this.done.await(timeout, unit);
+        }
+
+        @Override
+        public String toString() {
+            return this.state + ", " + this.searchStrings + " search strings, " + this.characters + " characters"
+                    + (this.heapSize >= 0 ? ", " + this.heapSize + " bytes" : "")
+                    + (this.failure != null ? ", " + this.failure : "");
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.neosearch.stringsearcher;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Defines which characters belong to words, and therefore where a whole word
+ * starts and ends. A match is a whole word if neither the character before it
+ * nor the character after it is a word character.
+ * <p>
+ * The definition is compiled into a table with one bit per character, so
+ * checking a match costs two lookups while scanning.
+ *
+ * @author Daniel Beck
+ */
+public final class WordBoundary {
+
+    /**
+     * Words consist of alphabetic characters, the default of
+     * <code>onlyWholeWords()</code>.
+     */
+    public static final WordBoundary ALPHABETIC = of(new IntPredicate() {
+
+        @Override
+        public boolean test(final int character) {
+            return Character.isAlphabetic(character);
+        }
+    });
+
+    /**
+     * Words consist of letters and digits.
+     */
+    public static final WordBoundary ALPHANUMERIC = of(new IntPredicate() {
+
+        @Override
+        public boolean test(final int character) {
+            return Character.isLetterOrDigit(character);
+        }
+    });
+
+    /**
+     * Words are separated by whitespace, as with
+     * <code>onlyWholeWordsWhiteSpaceSeparated()</code>.
+     */
+    public static final WordBoundary WHITESPACE = of(new IntPredicate() {
+
+        @Override
+        public boolean test(final int character) {
+            return !Character.isWhitespace(character);
+        }
+    });
+
+    private final long[] wordCharacters;
+
+    private WordBoundary(final long[] wordCharacters) {
+        this.wordCharacters = wordCharacters;
+    }
+
+    /**
+     * Creates a word boundary from a predicate, which is evaluated once for
+     * every <code>char</code> value.
+     *
+     * @param isWordCharacter Returns true for the characters of words.
+     * @return The word boundary.
+     */
+    public static WordBoundary of(final IntPredicate isWordCharacter) {
+        final long[] wordCharacters = new long[(Character.MAX_VALUE + 1) / Long.SIZE];
+        for (int character = 0; character <= Character.MAX_VALUE; character++) {
+            if (isWordCharacter.test(character)) {
+                wordCharacters[character >>> 6] |= 1L << character;
+            }
+        }
+        return new WordBoundary(wordCharacters);
+    }
+
+    /**
+     * Creates a word boundary where words are separated by the given characters
+     * only.
+     *
+     * @param separators The characters between words.
+     * @return The word boundary.
+     */
+    public static WordBoundary separatedBy(final CharSequence separators) {
+        final long[] wordCharacters = new long[(Character.MAX_VALUE + 1) / Long.SIZE];
+        Arrays.fill(wordCharacters, -1L);
+        for (int i = 0; i < separators.length(); i++) {
+            final char separator = separators.charAt(i);
+            wordCharacters[separator >>> 6] &= ~(1L << separator);
+        }
+        return new WordBoundary(wordCharacters);
+    }
+
+    /**
+     * Returns true if the character belongs to words.
+     *
+     * @param character The character.
+     * @return true for word characters.
+     */
+    public boolean isWordCharacter(final char character) {
+        return (this.wordCharacters[character >>> 6] & (1L << character)) != 0;
+    }
+
+    /**
+     * Returns true if a match is neither preceded nor followed by a word
+     * character.
+     *
+     * @param text  The text.
+     * @param start The index of the first character of the match.
+     * @param end   The index of the last character of the match.
+     * @return true if the match is a whole word.
+     */
+    public boolean isWholeWord(final CharSequence text, final int start, final int end) {
+        return (start == 0 || !isWordCharacter(text.charAt(start - 1)))
+                && (end + 1 >= text.length() || !isWordCharacter(text.charAt(end + 1)));
+    }
+
+    /**
+     * Combines two word boundaries, so a match is only a whole word if it is one
+     * for both of them.
+     */
+    WordBoundary and(final WordBoundary other) {
+        final long[] wordCharacters = this.wordCharacters.clone();
+        for (int i = 0; i < wordCharacters.length; i++) {
+            wordCharacters[i] |= other.wordCharacters[i];
+        }
+        return new WordBoundary(wordCharacters);
+    }
+}
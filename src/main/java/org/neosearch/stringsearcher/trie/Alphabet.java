@@ -0,0 +1,161 @@
+package org.neosearch.stringsearcher.trie;
+
+import java.util.Arrays;
+
+import org.neosearch.stringsearcher.trie.util.CaseFolding;
+
+/**
+ * Maps the characters used by the search strings to dense codes from 1 to
+ * <code>size()</code>. Characters which do not occur in any search string are
+ * mapped to 0. Frequent characters get small codes, which keeps the transition
+ * tables of the automatons dense.
+ * <p>
+ * The mapping is stored in pages of 256 characters, so only the pages which
+ * are actually used allocate memory.
+ * <p>
+ * An alphabet for case insensitive search strings also maps every character
+ * to the code of its {@link CaseFolding case folded} character, so the text
+ * does not have to be folded while scanning.
+ *
+ * @author Daniel Beck
+ */
+public class Alphabet {
+
+    private static final int[] EMPTY_PAGE = new int[256];
+
+    private final int[][] pages = new int[256][];
+
+    private final char[] characters;
+
+    /**
+     * Creates an alphabet for the search strings of the keyword table.
+     *
+     * @param keywordTable The search strings.
+     */
+    public Alphabet(final KeywordTable<?> keywordTable) {
+        this(keywordTable, false);
+    }
+
+    /**
+     * Creates an alphabet for the search strings of the keyword table.
+     *
+     * @param keywordTable    The search strings.
+     * @param caseInsensitive If true, the case variants of the characters of the
+     *                        case folded search strings are mapped to the same
+     *                        codes.
+     */
+    public Alphabet(final KeywordTable<?> keywordTable, final boolean caseInsensitive) {
+        this(charactersByFrequency(keywordTable), caseInsensitive);
+    }
+
+    /**
+     * Creates an alphabet with a given mapping.
+     *
+     * @param characters      The characters, ordered by their codes. The
+     *                        character at index 0 gets the code 1.
+     * @param caseInsensitive If true, the case variants of the characters are
+     *                        mapped to the same codes.
+     */
+    Alphabet(final char[] characters, final boolean caseInsensitive) {
+        this.characters = characters;
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = EMPTY_PAGE;
+        }
+        for (int code = 1; code <= characters.length; code++) {
+            put(characters[code - 1], code);
+        }
+
+        if (caseInsensitive) {
+            for (int character = 0; character <= Character.MAX_VALUE; character++) {
+                final char folded = CaseFolding.fold((char) character);
+                if (folded != character && code(folded) != 0) {
+                    put((char) character, code(folded));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The estimated heap size of the mapping in bytes.
+     */
+    long estimateHeapSize() {
+        long size = HeapSize.of(this.pages) + HeapSize.of(this.characters);
+        for (final int[] page : this.pages) {
+            if (page != EMPTY_PAGE) {
+                size += HeapSize.of(page);
+            }
+        }
+        return size;
+    }
+
+    private void put(final char character, final int code) {
+        final int page = character >>> 8;
+        if (pages[page] == EMPTY_PAGE) {
+            pages[page] = new int[256];
+        }
+        pages[page][character & 0xFF] = code;
+    }
+
+    private static char[] charactersByFrequency(final KeywordTable<?> keywordTable) {
+        final int[] frequencies = new int[Character.MAX_VALUE + 1];
+        for (int keywordId = 0; keywordId < keywordTable.size(); keywordId++) {
+            final String keyword = keywordTable.getKeyword(keywordId);
+            for (int i = 0; i < keyword.length(); i++) {
+                frequencies[keyword.charAt(i)]++;
+            }
+        }
+
+        int size = 0;
+        for (final int frequency : frequencies) {
+            if (frequency > 0) {
+                size++;
+            }
+        }
+
+        // Sort the used characters by descending frequency.
+        final long[] characters = new long[size];
+        int index = 0;
+        for (int character = 0; character < frequencies.length; character++) {
+            if (frequencies[character] > 0) {
+                characters[index++] = ((long) (Integer.MAX_VALUE - frequencies[character]) << 16) | character;
+            }
+        }
+        Arrays.sort(characters);
+
+        final char[] charactersByCode = new char[size];
+        for (int code = 1; code <= size; code++) {
+            charactersByCode[code - 1] = (char) (characters[code - 1] & 0xFFFF);
+        }
+        return charactersByCode;
+    }
+
+    /**
+     * Returns the characters of the alphabet ordered by their codes, the inverse
+     * of {@link #code(char)}.
+     *
+     * @return The character with the code 1 at index 0 and so on.
+     */
+    char[] characters() {
+        return this.characters.clone();
+    }
+
+    /**
+     * Returns the code of the specified character.
+     *
+     * @param character The character.
+     * @return The code of the character, 0 if it does not occur in any search
+     *         string.
+     */
+    public int code(final char character) {
+        return pages[character >>> 8][character & 0xFF];
+    }
+
+    /**
+     * Returns the number of codes.
+     *
+     * @return The number of distinct characters of all search strings.
+     */
+    public int size() {
+        return this.characters.length;
+    }
+}
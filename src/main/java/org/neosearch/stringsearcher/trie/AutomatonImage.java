@@ -0,0 +1,596 @@
+package org.neosearch.stringsearcher.trie;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.neosearch.stringsearcher.MatchKind;
+import org.neosearch.stringsearcher.StringSearcherConfig;
+import org.neosearch.stringsearcher.WordBoundary;
+
+/**
+ * The binary file format of a built double-array automaton.
+ * <p>
+ * An image starts with a header of {@value #HEADER_SIZE} bytes, followed by
+ * sections whose offsets are computed from the header:
+ * <ol>
+ * <li>the characters of the {@link Alphabet}, ordered by code, one
+ * <code>int</code> each,</li>
+ * <li><code>keywordCount + 1</code> offsets of the search strings into the
+ * character section,</li>
+ * <li>the arrays <code>base</code>, <code>check</code>, <code>fail</code>,
+ * <code>output</code> and <code>outputLink</code> of the double array, each
+ * with <code>arrayLength</code> entries,</li>
+ * <li>the characters of all search strings, padded to a multiple of four
+ * bytes,</li>
+ * <li>optionally the payloads, written by a {@link PayloadCodec} in the order
+ * of the keyword ids.</li>
+ * </ol>
+ * All values are big-endian and all sections but the payloads are aligned to
+ * four bytes, so the image can also be used directly from a memory-mapped file.
+ *
+ * @author Daniel Beck
+ */
+final class AutomatonImage {
+
+    static final int MAGIC = 0x4E534143;
+
+    static final int VERSION = 3;
+
+    /**
+     * Version 2 images did not store the length of the longest search string.
+     */
+    private static final int NO_MAX_LENGTH_VERSION = 2;
+
+    /**
+     * Version 1 images folded the case with the default locale and had no match
+     * kind. They are still read if they are case sensitive.
+     */
+    private static final int CASE_SENSITIVE_VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+
+    static final int BASE = 0;
+
+    static final int CHECK = 1;
+
+    static final int FAIL = 2;
+
+    static final int OUTPUT = 3;
+
+    static final int OUTPUT_LINK = 4;
+
+    private static final int ARRAYS = 5;
+
+    private static final int CASE_INSENSITIVE = 1;
+
+    private static final int ALLOW_OVERLAPS = 1 << 1;
+
+    private static final int ONLY_WHOLE_WORDS = 1 << 2;
+
+    private static final int ONLY_WHOLE_WORDS_WHITE_SPACE_SEPARATED = 1 << 3;
+
+    private static final int STOP_ON_HIT = 1 << 4;
+
+    private static final int LEFTMOST_LONGEST = 1 << 5;
+
+    private static final int LEFTMOST_FIRST = 1 << 6;
+
+    private static final int ALPHANUMERIC_WORDS = 1 << 7;
+
+    private static final int PAYLOADS = 1 << 8;
+
+    private static final int WHITESPACE_SEPARATED_WORDS = 1 << 9;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int flags;
+
+    private final int keywordCount;
+
+    private final int alphabetSize;
+
+    private final int arrayLength;
+
+    private final int maxOutputs;
+
+    private final int keywordCharCount;
+
+    private final int maxLength;
+
+    private AutomatonImage(final int flags, final int keywordCount, final int alphabetSize, final int arrayLength,
+            final int maxOutputs, final int keywordCharCount, final int maxLength) {
+        this.flags = flags;
+        this.keywordCount = keywordCount;
+        this.alphabetSize = alphabetSize;
+        this.arrayLength = arrayLength;
+        this.maxOutputs = maxOutputs;
+        this.keywordCharCount = keywordCharCount;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Parses and validates the header of an image.
+     *
+     * @param header The first {@value #HEADER_SIZE} bytes of the image.
+     * @return The image description.
+     * @throws IOException if the header does not belong to a supported image.
+     */
+    static AutomatonImage readHeader(final ByteBuffer header) throws IOException {
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+            throw new IOException("Not an automaton image");
+        }
+
+        final int version = header.getInt();
+        final int flags = header.getInt();
+        final int keywordCount = header.getInt();
+        final int alphabetSize = header.getInt();
+        final int arrayLength = header.getInt();
+        final int maxOutputs = header.getInt();
+        final int keywordCharCount = header.getInt();
+        final int maxLength = version == VERSION ? header.getInt() : -1;
+        final AutomatonImage image = new AutomatonImage(flags, keywordCount, alphabetSize, arrayLength, maxOutputs,
+                keywordCharCount, maxLength);
+        if (version != VERSION && version != NO_MAX_LENGTH_VERSION
+                && (version != CASE_SENSITIVE_VERSION || (image.flags & CASE_INSENSITIVE) != 0)) {
+            throw new IOException("Unsupported automaton image version " + version);
+        }
+        if (image.keywordCount < 0 || image.alphabetSize < 0 || image.arrayLength < 0 || image.maxOutputs < 0
+                || image.keywordCharCount < 0 || (version == VERSION && image.maxLength < 0)) {
+            throw new IOException("Corrupt automaton image header");
+        }
+        return image;
+    }
+
+    private void writeHeader(final ByteBuffer header) {
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(this.flags);
+        header.putInt(this.keywordCount);
+        header.putInt(this.alphabetSize);
+        header.putInt(this.arrayLength);
+        header.putInt(this.maxOutputs);
+        header.putInt(this.keywordCharCount);
+        header.putInt(this.maxLength);
+        while (header.position() < HEADER_SIZE) {
+            header.putInt(0);
+        }
+    }
+
+    long alphabetOffset() {
+        return HEADER_SIZE;
+    }
+
+    long keywordOffsetsOffset() {
+        return alphabetOffset() + 4L * this.alphabetSize;
+    }
+
+    long arrayOffset(final int array) {
+        return keywordOffsetsOffset() + 4L * (this.keywordCount + 1) + 4L * this.arrayLength * array;
+    }
+
+    long keywordCharsOffset() {
+        return arrayOffset(ARRAYS);
+    }
+
+    long payloadsOffset() {
+        return keywordCharsOffset() + ((2L * this.keywordCharCount + 3) & ~3L);
+    }
+
+    int getKeywordCount() {
+        return this.keywordCount;
+    }
+
+    int getAlphabetSize() {
+        return this.alphabetSize;
+    }
+
+    int getArrayLength() {
+        return this.arrayLength;
+    }
+
+    int getMaxOutputs() {
+        return this.maxOutputs;
+    }
+
+    /**
+     * @return The length of the longest search string, -1 if the image does not
+     *         store it.
+     */
+    int getMaxLength() {
+        return this.maxLength;
+    }
+
+    boolean hasPayloads() {
+        return (this.flags & PAYLOADS) != 0;
+    }
+
+    /**
+     * Returns the configuration the image was written with.
+     *
+     * @return A new configuration.
+     */
+    StringSearcherConfig getConfig() {
+        final StringSearcherConfig config = new StringSearcherConfig();
+        config.setCaseInsensitive((this.flags & CASE_INSENSITIVE) != 0);
+        config.setAllowOverlaps((this.flags & ALLOW_OVERLAPS) != 0);
+        config.setOnlyWholeWords((this.flags & ONLY_WHOLE_WORDS) != 0);
+        config.setOnlyWholeWordsWhiteSpaceSeparated((this.flags & ONLY_WHOLE_WORDS_WHITE_SPACE_SEPARATED) != 0);
+        config.setStopOnHit((this.flags & STOP_ON_HIT) != 0);
+        if ((this.flags & ALPHANUMERIC_WORDS) != 0) {
+            config.setWordBoundary(WordBoundary.ALPHANUMERIC);
+        } else if ((this.flags & WHITESPACE_SEPARATED_WORDS) != 0) {
+            config.setWordBoundary(WordBoundary.WHITESPACE);
+        }
+        if ((this.flags & LEFTMOST_LONGEST) != 0) {
+            config.setMatchKind(MatchKind.LEFTMOST_LONGEST);
+        } else if ((this.flags & LEFTMOST_FIRST) != 0) {
+            config.setMatchKind(MatchKind.LEFTMOST_FIRST);
+        }
+        return config;
+    }
+
+    private static int flags(final StringSearcherConfig config, final boolean payloads) {
+        return (config.isCaseInsensitive() ? CASE_INSENSITIVE : 0) | (config.isAllowOverlaps() ? ALLOW_OVERLAPS : 0)
+                | (config.isOnlyWholeWords() ? ONLY_WHOLE_WORDS : 0)
+                | (config.isOnlyWholeWordsWhiteSpaceSeparated() ? ONLY_WHOLE_WORDS_WHITE_SPACE_SEPARATED : 0)
+                | (config.isStopOnHit() ? STOP_ON_HIT : 0)
+                | (config.getMatchKind() == MatchKind.LEFTMOST_LONGEST ? LEFTMOST_LONGEST : 0)
+                | (config.getMatchKind() == MatchKind.LEFTMOST_FIRST ? LEFTMOST_FIRST : 0)
+                | (config.getWordBoundary() == WordBoundary.ALPHANUMERIC ? ALPHANUMERIC_WORDS : 0)
+                | (config.getWordBoundary() == WordBoundary.WHITESPACE ? WHITESPACE_SEPARATED_WORDS : 0)
+                | (payloads ? PAYLOADS : 0);
+    }
+
+    /**
+     * Writes an image of a double-array automaton.
+     *
+     * @param file         The file to write, an existing file is replaced.
+     * @param config       The configuration of the searcher.
+     * @param keywordTable The search strings and payloads.
+     * @param alphabet     The codes of the characters.
+     * @param arrays       The arrays base, check, fail, output and outputLink.
+     * @param maxOutputs   The maximal number of outputs of a state.
+     * @param payloadCodec The codec for the payloads, null to omit the payloads.
+     * @throws IOException if writing fails or the word boundary cannot be stored.
+     */
+    static <T> void write(final Path file, final StringSearcherConfig config, final KeywordTable<T> keywordTable,
+            final Alphabet alphabet, final int[][] arrays, final int maxOutputs,
+            final PayloadCodec<? super T> payloadCodec) throws IOException {
+        if (config.isOnlyWholeWords() && config.getWordBoundary() != WordBoundary.ALPHABETIC
+                && config.getWordBoundary() != WordBoundary.ALPHANUMERIC
+                && config.getWordBoundary() != WordBoundary.WHITESPACE) {
+            throw new IOException("Custom word boundaries cannot be written to an automaton image");
+        }
+
+        long keywordCharCount = 0;
+        int maxLength = 0;
+        final int[] keywordOffsets = new int[keywordTable.size() + 1];
+        for (int keywordId = 0; keywordId < keywordTable.size(); keywordId++) {
+            keywordCharCount += keywordTable.getLength(keywordId);
+            maxLength = Math.max(maxLength, keywordTable.getLength(keywordId));
+            if (keywordCharCount > Integer.MAX_VALUE) {
+                throw new IOException("The search strings are too long for an automaton image");
+            }
+            keywordOffsets[keywordId + 1] = (int) keywordCharCount;
+        }
+
+        final AutomatonImage image = new AutomatonImage(flags(config, payloadCodec != null), keywordTable.size(),
+                alphabet.size(), arrays[BASE].length, maxOutputs, (int) keywordCharCount, maxLength);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            image.writeHeader(buffer);
+
+            final char[] characters = alphabet.characters();
+            for (final char character : characters) {
+                putInt(channel, buffer, character);
+            }
+            putInts(channel, buffer, keywordOffsets);
+            for (int array = 0; array < ARRAYS; array++) {
+                putInts(channel, buffer, arrays[array]);
+            }
+            for (int keywordId = 0; keywordId < keywordTable.size(); keywordId++) {
+                final String keyword = keywordTable.getKeyword(keywordId);
+                for (int i = 0; i < keyword.length(); i++) {
+                    if (buffer.remaining() < 2) {
+                        flush(channel, buffer);
+                    }
+                    buffer.putChar(keyword.charAt(i));
+                }
+            }
+            while (buffer.position() % 4 != 0) {
+                buffer.put((byte) 0);
+            }
+            flush(channel, buffer);
+
+            if (payloadCodec != null) {
+                final DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+                for (int keywordId = 0; keywordId < keywordTable.size(); keywordId++) {
+                    payloadCodec.write(out, keywordTable.getPayload(keywordId));
+                }
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Reads an image into a double-array automaton on the heap.
+     *
+     * @param file         The image file.
+     * @param payloadCodec The codec for the payloads, null to ignore the
+     *                     payloads.
+     * @return The automaton.
+     * @throws IOException if reading fails or the file is not a valid image.
+     */
+    static <T> DoubleArrayTrie<T> read(final Path file, final PayloadCodec<T> payloadCodec) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            fill(channel, buffer, HEADER_SIZE);
+            final AutomatonImage image = readHeader(buffer);
+            if (channel.size() < image.payloadsOffset()) {
+                throw new EOFException("Truncated automaton image");
+            }
+
+            final int[] codes = getInts(channel, buffer, image.alphabetSize);
+            final char[] characters = new char[codes.length];
+            for (int i = 0; i < codes.length; i++) {
+                characters[i] = (char) codes[i];
+            }
+            final int[] keywordOffsets = getInts(channel, buffer, image.keywordCount + 1);
+            final int[][] arrays = new int[ARRAYS][];
+            for (int array = 0; array < ARRAYS; array++) {
+                arrays[array] = getInts(channel, buffer, image.arrayLength);
+            }
+            final char[] keywordChars = getChars(channel, buffer, image.keywordCharCount);
+            image.validate(codes, keywordOffsets, arrays);
+
+            final String[] keywords = new String[image.keywordCount];
+            for (int keywordId = 0; keywordId < keywords.length; keywordId++) {
+                keywords[keywordId] = new String(keywordChars, keywordOffsets[keywordId],
+                        keywordOffsets[keywordId + 1] - keywordOffsets[keywordId]);
+            }
+
+            final Object[] payloads = image.readPayloads(channel, payloadCodec);
+
+            return new DoubleArrayTrie<T>(image.getConfig(),
+                    new KeywordTable<T>(keywords, payloads != null ? payloads : new Object[keywords.length]),
+                    new Alphabet(characters, image.getConfig().isCaseInsensitive()), arrays[BASE], arrays[CHECK], arrays[FAIL], arrays[OUTPUT],
+                    arrays[OUTPUT_LINK], image.maxOutputs);
+        }
+    }
+
+    /**
+     * Checks that the sections of an image which is read to the heap are
+     * consistent, so a corrupt image fails with an exception while it is read
+     * instead of an index out of bounds or an endless loop while scanning.
+     *
+     * @throws IOException if a value is out of range.
+     */
+    private void validate(final int[] codes, final int[] keywordOffsets, final int[][] arrays) throws IOException {
+        validateSections(codes, keywordOffsets[0], keywordOffsets[this.keywordCount]);
+        for (int keywordId = 0; keywordId < this.keywordCount; keywordId++) {
+            if (keywordOffsets[keywordId + 1] <= keywordOffsets[keywordId]) {
+                throw corrupt("offset of search string " + keywordId);
+            }
+        }
+
+        final int length = this.arrayLength;
+        final int[] base = arrays[BASE];
+        final int[] check = arrays[CHECK];
+        final int[] fail = arrays[FAIL];
+        final int[] output = arrays[OUTPUT];
+        final int[] outputLink = arrays[OUTPUT_LINK];
+        for (int state = 0; state < length; state++) {
+            // Every transition of a state has to stay within the arrays.
+            if (base[state] < 0 || base[state] >= length - this.alphabetSize) {
+                throw corrupt("base of state " + state);
+            }
+            if (check[state] < DoubleArrayBuilder.NONE || check[state] >= length || fail[state] < 0
+                    || fail[state] >= length || output[state] < DoubleArrayBuilder.NONE
+                    || output[state] >= this.keywordCount || outputLink[state] < DoubleArrayBuilder.NONE
+                    || outputLink[state] >= length) {
+                throw corrupt("state " + state);
+            }
+        }
+        validateRoot(base[DoubleArrayBuilder.ROOT], check[DoubleArrayBuilder.ROOT], fail[DoubleArrayBuilder.ROOT]);
+
+        // The failure links have to lead to the root, or the scan would not end.
+        final byte[] visited = new byte[length];
+        final int[] path = new int[length];
+        visited[DoubleArrayBuilder.ROOT] = 2;
+        for (int state = 0; state < length; state++) {
+            int count = 0;
+            int current = state;
+            while (visited[current] == 0) {
+                visited[current] = 1;
+                path[count++] = current;
+                current = fail[current];
+            }
+            if (visited[current] == 1) {
+                throw corrupt("failure link of state " + current);
+            }
+            while (count > 0) {
+                visited[path[--count]] = 2;
+            }
+        }
+
+        // The output links have to lead to outputs, at most maxOutputs of them.
+        Arrays.fill(visited, (byte) 0);
+        final int[] chainLengths = new int[length];
+        for (int state = 0; state < length; state++) {
+            int count = 0;
+            int current = state;
+            while (current != DoubleArrayBuilder.NONE && visited[current] == 0) {
+                visited[current] = 1;
+                path[count++] = current;
+                current = outputLink[current];
+            }
+            if (current != DoubleArrayBuilder.NONE && visited[current] == 1) {
+                throw corrupt("output link of state " + current);
+            }
+            int chainLength = current == DoubleArrayBuilder.NONE ? 0 : chainLengths[current];
+            while (count > 0) {
+                final int next = path[--count];
+                visited[next] = 2;
+                chainLengths[next] = ++chainLength;
+            }
+        }
+        for (int state = 0; state < length; state++) {
+            final int link = outputLink[state];
+            if (link != DoubleArrayBuilder.NONE && output[link] == DoubleArrayBuilder.NONE
+                    || (output[state] != DoubleArrayBuilder.NONE ? 1 : 0)
+                            + (link != DoubleArrayBuilder.NONE ? chainLengths[link] : 0) > this.maxOutputs) {
+                throw corrupt("outputs of state " + state);
+            }
+        }
+    }
+
+    /**
+     * Checks the alphabet, the bounds of the search strings and the length of
+     * the double array, which a mapped image checks without reading the arrays.
+     *
+     * @param codes       The characters of the alphabet.
+     * @param firstOffset The offset of the first search string.
+     * @param endOffset   The offset after the last search string.
+     * @throws IOException if a value is out of range.
+     */
+    void validateSections(final int[] codes, final int firstOffset, final int endOffset) throws IOException {
+        for (final int code : codes) {
+            if (code < Character.MIN_VALUE || code > Character.MAX_VALUE) {
+                throw corrupt("character " + code + " of the alphabet");
+            }
+        }
+        if (firstOffset != 0 || endOffset != this.keywordCharCount) {
+            throw corrupt("offsets of the search strings");
+        }
+        if (this.arrayLength <= this.alphabetSize) {
+            throw corrupt("length of the double array " + this.arrayLength);
+        }
+    }
+
+    /**
+     * Checks that the transitions of the root state stay within the arrays and
+     * that the root is its own failure link.
+     *
+     * @param base  The base of the root state.
+     * @param check The check of the root state.
+     * @param fail  The failure link of the root state.
+     * @throws IOException if a value is out of range.
+     */
+    void validateRoot(final int base, final int check, final int fail) throws IOException {
+        if (base < 0 || base >= this.arrayLength - this.alphabetSize || check != DoubleArrayBuilder.ROOT
+                || fail != DoubleArrayBuilder.ROOT) {
+            throw corrupt("root state");
+        }
+    }
+
+    private static IOException corrupt(final String section) {
+        return new IOException("Corrupt automaton image: invalid " + section);
+    }
+
+    /**
+     * Reads the payloads of an image.
+     *
+     * @param channel      The channel of the image file.
+     * @param payloadCodec The codec for the payloads, null to ignore them.
+     * @return The payloads indexed by keyword id, null if the image has no
+     *         payloads or no codec is given.
+     * @throws IOException if reading fails.
+     */
+    Object[] readPayloads(final FileChannel channel, final PayloadCodec<?> payloadCodec) throws IOException {
+        if (payloadCodec == null || !hasPayloads()) {
+            return null;
+        }
+
+        final Object[] payloads = new Object[this.keywordCount];
+        channel.position(payloadsOffset());
+        final DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+        for (int keywordId = 0; keywordId < payloads.length; keywordId++) {
+            payloads[keywordId] = payloadCodec.read(in);
+        }
+        return payloads;
+    }
+
+    private static void putInt(final FileChannel channel, final ByteBuffer buffer, final int value) throws IOException {
+        if (buffer.remaining() < 4) {
+            flush(channel, buffer);
+        }
+        buffer.putInt(value);
+    }
+
+    private static void putInts(final FileChannel channel, final ByteBuffer buffer, final int[] values)
+            throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            if (buffer.remaining() < 4) {
+                flush(channel, buffer);
+            }
+            final int count = Math.min(values.length - offset, buffer.remaining() / 4);
+            buffer.asIntBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + count * 4);
+            offset += count;
+        }
+    }
+
+    private static void flush(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Reads exactly the specified number of bytes into the cleared buffer and
+     * flips it.
+     */
+    private static void fill(final FileChannel channel, final ByteBuffer buffer, final int bytes) throws IOException {
+        buffer.clear();
+        buffer.limit(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated automaton image");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static int[] getInts(final FileChannel channel, final ByteBuffer buffer, final int length)
+            throws IOException {
+        final int[] values = new int[length];
+        int offset = 0;
+        while (offset < length) {
+            final int count = Math.min(length - offset, buffer.capacity() / 4);
+            fill(channel, buffer, count * 4);
+            buffer.asIntBuffer().get(values, offset, count);
+            offset += count;
+        }
+        return values;
+    }
+
+    private static char[] getChars(final FileChannel channel, final ByteBuffer buffer, final int length)
+            throws IOException {
+        final char[] values = new char[length];
+        int offset = 0;
+        while (offset < length) {
+            final int count = Math.min(length - offset, buffer.capacity() / 2);
+            fill(channel, buffer, count * 2);
+            buffer.asCharBuffer().get(values, offset, count);
+            offset += count;
+        }
+        return values;
+    }
+}
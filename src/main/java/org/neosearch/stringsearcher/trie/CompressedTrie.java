@@ -0,0 +1,464 @@
+package org.neosearch.stringsearcher.trie;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Queue;
+
+import org.neosearch.stringsearcher.AbstractStringSearcher;
+import org.neosearch.stringsearcher.MatchHandler;
+import org.neosearch.stringsearcher.StringSearcherConfig;
+import org.neosearch.stringsearcher.StringSearcherPrepare;
+import org.neosearch.stringsearcher.trie.util.CaseFolding;
+
+/**
+ * An Aho-Corasick automaton on a path-compressed trie (patricia trie).
+ * <p>
+ * Chains of states with a single child are collapsed into one edge. Only
+ * branching states and states in which a search string ends are nodes with a
+ * list of outgoing edges. The labels of all edges are stored consecutively in
+ * one shared char buffer, every edge just holds the position of its label.
+ * <p>
+ * A position in the label buffer identifies the state which is reached after
+ * reading the character at this position, position 0 is the root. Failure links
+ * and dictionary-suffix links are kept per position in flat <code>int</code>
+ * arrays, so states inside an edge need no objects at all. Dictionaries with
+ * long search strings sharing long prefixes, like URLs or file paths, need an
+ * order of magnitude less nodes and memory than with {@link Trie}.
+ * <p>
+ * Search strings have to be added before <code>build()</code> is called. Emits
+ * which end at the same position are reported with the shortest search string
+ * first.
+ *
+ * @author Daniel Beck
+ * @param <T> The type of the supplied of the payload
+ */
+public class CompressedTrie<T> extends AbstractStringSearcher<T> implements StringSearcherPrepare<T> {
+
+    private static final int ROOT = 0;
+
+    private static final int NONE = -1;
+
+    private KeywordTable.Builder<T> keywordTableBuilder = new KeywordTable.Builder<>();
+
+    private KeywordTable<T> keywordTable;
+
+    /**
+     * The labels of all edges. Position 0 is not used and stands for the root.
+     */
+    private char[] labels;
+
+    /**
+     * The node which ends at a position, NONE for positions inside an edge.
+     */
+    private int[] node;
+
+    private int[] fail;
+
+    private int[] outputLink;
+
+    /**
+     * The keyword id which ends in a node, NONE if the node has no output.
+     */
+    private int[] output;
+
+    /**
+     * The edges of node <code>n</code> are stored in the range
+     * <code>firstEdge[n]</code> to <code>firstEdge[n + 1]</code>, ordered by their
+     * first character.
+     */
+    private int[] firstEdge;
+
+    private char[] edgeCharacter;
+
+    /**
+     * The position of the first character of the label of an edge.
+     */
+    private int[] edgeLabel;
+
+    private int maxOutputs;
+
+    public CompressedTrie(final StringSearcherConfig config) {
+        super(config);
+    }
+
+    /**
+     * Used by the builder to add a text search keyword with a emit payload.
+     *
+     * @param keyword The search term to add to the list of search terms.
+     * @param emit    the payload to emit for this search term.
+     * @throws NullPointerException  if the keyword is null.
+     * @throws IllegalStateException if the trie has already been built.
+     */
+    @Override
+    public void addSearchString(String keyword, final T emit) {
+        if (this.keywordTableBuilder == null) {
+            throw new IllegalStateException("Search strings cannot be added after build()");
+        }
+
+        if (isCaseInsensitive()) {
+            keyword = CaseFolding.fold(keyword);
+        }
+
+        this.keywordTableBuilder.add(keyword, emit);
+    }
+
+    /**
+     * Used by the builder to add a text search keyword.
+     *
+     * @param keyword The search term to add to the list of search terms.
+     * @throws NullPointerException  if the keyword is null.
+     * @throws IllegalStateException if the trie has already been built.
+     */
+    @Override
+    public void addSearchString(final String keyword) {
+        addSearchString(keyword, null);
+    }
+
+    @Override
+    public void addSearchStrings(final String... keywords) {
+        for (String keyword : keywords)
+            addSearchString(keyword);
+    }
+
+    @Override
+    public void addSearchStrings(final Collection<String> keywords) {
+        for (String keyword : keywords)
+            addSearchString(keyword);
+    }
+
+    /**
+     * Builds the compressed trie and its failure links.
+     *
+     * @return This trie.
+     */
+    @Override
+    public CompressedTrie<T> build() {
+        if (this.keywordTableBuilder == null) {
+            return this;
+        }
+
+        this.keywordTable = this.keywordTableBuilder.build();
+        final int[] parents = insert(this.keywordTableBuilder.getSortedIds());
+        computeFailures(parents);
+        this.keywordTableBuilder = null;
+        freeze(this.keywordTable.size());
+        return this;
+    }
+
+    /**
+     * Creates the nodes and edges in breadth first order, so the edges of every
+     * node are stored contiguously.
+     *
+     * @return The parent state of every position.
+     */
+    private int[] insert(final int[] sortedIds) {
+        int totalLength = 0;
+        for (int keywordId = 0; keywordId < keywordTable.size(); keywordId++) {
+            totalLength += keywordTable.getLength(keywordId);
+        }
+
+        // The number of positions, nodes and edges is bounded by the total length.
+        char[] labels = new char[Math.min(totalLength, 1024) + 1];
+        int[] node = new int[labels.length];
+        int[] parents = new int[labels.length];
+        int[] output = new int[16];
+        int[] firstEdge = new int[17];
+        char[] edgeCharacter = new char[16];
+        int[] edgeLabel = new int[16];
+        int positions = 1;
+        int nodes = 1;
+        int edges = 0;
+
+        node[ROOT] = 0;
+        final Queue<int[]> queue = new ArrayDeque<>();
+        queue.add(new int[] { 0, sortedIds.length, 0, ROOT });
+
+        for (int currentNode = 0; !queue.isEmpty(); currentNode++) {
+            final int[] range = queue.remove();
+            int from = range[0];
+            final int to = range[1];
+            final int depth = range[2];
+            final int state = range[3];
+
+            if (currentNode == output.length) {
+                output = Arrays.copyOf(output, currentNode * 2);
+                firstEdge = Arrays.copyOf(firstEdge, currentNode * 2 + 1);
+            }
+
+            output[currentNode] = NONE;
+            firstEdge[currentNode] = edges;
+
+            if (from < to && keywordTable.getLength(sortedIds[from]) == depth) {
+                output[currentNode] = sortedIds[from];
+                from++;
+            }
+
+            while (from < to) {
+                final String first = keywordTable.getKeyword(sortedIds[from]);
+                final char character = first.charAt(depth);
+
+                int groupEnd = from + 1;
+                while (groupEnd < to && keywordTable.getKeyword(sortedIds[groupEnd]).charAt(depth) == character) {
+                    groupEnd++;
+                }
+
+                // The common prefix of a sorted group is the one of its first and last keyword.
+                final String last = keywordTable.getKeyword(sortedIds[groupEnd - 1]);
+                int end = depth + 1;
+                while (end < first.length() && first.charAt(end) == last.charAt(end)) {
+                    end++;
+                }
+
+                if (positions + end - depth > labels.length) {
+                    final int length = Math.max(positions + end - depth, labels.length * 2);
+                    labels = Arrays.copyOf(labels, length);
+                    node = Arrays.copyOf(node, length);
+                    parents = Arrays.copyOf(parents, length);
+                }
+                if (edges == edgeLabel.length) {
+                    edgeCharacter = Arrays.copyOf(edgeCharacter, edges * 2);
+                    edgeLabel = Arrays.copyOf(edgeLabel, edges * 2);
+                }
+
+                edgeCharacter[edges] = character;
+                edgeLabel[edges] = positions;
+                edges++;
+
+                int parent = state;
+                for (int i = depth; i < end; i++) {
+                    labels[positions] = first.charAt(i);
+                    node[positions] = NONE;
+                    parents[positions] = parent;
+                    parent = positions++;
+                }
+                node[parent] = nodes++;
+                queue.add(new int[] { from, groupEnd, end, parent });
+
+                from = groupEnd;
+            }
+        }
+
+        firstEdge = Arrays.copyOf(firstEdge, nodes + 1);
+        firstEdge[nodes] = edges;
+
+        this.labels = Arrays.copyOf(labels, positions);
+        this.node = Arrays.copyOf(node, positions);
+        this.output = Arrays.copyOf(output, nodes);
+        this.firstEdge = firstEdge;
+        this.edgeCharacter = Arrays.copyOf(edgeCharacter, edges);
+        this.edgeLabel = Arrays.copyOf(edgeLabel, edges);
+        return parents;
+    }
+
+    private void computeFailures(final int[] parents) {
+        final int positions = this.node.length;
+        this.fail = new int[positions];
+        this.outputLink = new int[positions];
+        Arrays.fill(this.outputLink, NONE);
+
+        // Positions are created breadth first per node only, so sort them by depth.
+        final int[] depth = new int[positions];
+        int maxDepth = 0;
+        for (int position = 1; position < positions; position++) {
+            depth[position] = depth[parents[position]] + 1;
+            maxDepth = Math.max(maxDepth, depth[position]);
+        }
+        final int[] offsets = new int[maxDepth + 2];
+        for (int position = 1; position < positions; position++) {
+            offsets[depth[position] + 1]++;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        final int[] sorted = new int[positions - 1];
+        for (int position = 1; position < positions; position++) {
+            sorted[offsets[depth[position]]++] = position;
+        }
+
+        final int[] outputs = new int[positions];
+        for (final int state : sorted) {
+            final int parent = parents[state];
+            final char character = this.labels[state];
+
+            int failure = ROOT;
+            if (parent != ROOT) {
+                int trace = this.fail[parent];
+                while (true) {
+                    final int next = nextState(trace, character);
+                    if (next != NONE) {
+                        failure = next;
+                        break;
+                    }
+                    if (trace == ROOT) {
+                        break;
+                    }
+                    trace = this.fail[trace];
+                }
+            }
+
+            this.fail[state] = failure;
+            this.outputLink[state] = output(failure) != NONE ? failure : this.outputLink[failure];
+            outputs[state] = (output(state) != NONE ? 1 : 0) + outputs[failure];
+            this.maxOutputs = Math.max(this.maxOutputs, outputs[state]);
+        }
+    }
+
+    /**
+     * Scans the text by following the edges of the compressed trie.
+     *
+     * @param text         The character sequence to scan.
+     * @param from         The index of the first character to scan.
+     * @param to           The index after the last character to scan.
+     * @param state        The state to start from.
+     * @param matchHandler The match handler that will be used to parse the text.
+     * @param stopOnHit    If true, stops after the first accepted match.
+     * @return The state after the last scanned character.
+     */
+    @Override
+    protected int scan(final CharSequence text, final int from, final int to, final int state,
+            final MatchHandler matchHandler, final boolean stopOnHit) {
+        final boolean caseInsensitive = isCaseInsensitive();
+        final int[] outputLink = this.outputLink;
+        int[] outputs = null;
+        int current = state;
+
+        for (int position = from; position < to; position++) {
+            char character = text.charAt(position);
+
+            if (caseInsensitive) {
+                character = CaseFolding.fold(character);
+            }
+
+            current = getState(current, character);
+            if (outputLink[current] != NONE || output(current) != NONE) {
+                if (outputs == null) {
+                    outputs = new int[this.maxOutputs];
+                }
+                if (storeEmits(position, current, outputs, matchHandler, stopOnHit) && stopOnHit) {
+                    return current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private int getState(int state, final char character) {
+        while (true) {
+            final int next = nextState(state, character);
+            if (next != NONE) {
+                return next;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = this.fail[state];
+        }
+    }
+
+    /**
+     * Returns the state reached from the specified state with the character, NONE
+     * if there is no such transition.
+     */
+    private int nextState(final int state, final char character) {
+        final int currentNode = this.node[state];
+
+        if (currentNode == NONE) {
+            // Inside an edge, the label continues at the next position.
+            return this.labels[state + 1] == character ? state + 1 : NONE;
+        }
+
+        int low = this.firstEdge[currentNode];
+        int high = this.firstEdge[currentNode + 1] - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final char edge = this.edgeCharacter[middle];
+            if (edge < character) {
+                low = middle + 1;
+            } else if (edge > character) {
+                high = middle - 1;
+            } else {
+                return this.edgeLabel[middle];
+            }
+        }
+        return NONE;
+    }
+
+    private int output(final int state) {
+        final int currentNode = this.node[state];
+        return currentNode == NONE ? NONE : this.output[currentNode];
+    }
+
+    private boolean storeEmits(final int position, final int state, final int[] outputs, final MatchHandler matchHandler,
+            final boolean stopOnHit) {
+        // The dictionary-suffix links lead from the longest to the shortest keyword.
+        int count = 0;
+        for (int current = output(state) != NONE ? state : outputLink[state]; current != NONE; current = outputLink[current]) {
+            outputs[count++] = output(current);
+        }
+
+        boolean emitted = false;
+        while (count > 0) {
+            final int keywordId = outputs[--count];
+            emitted = matchHandler.onMatch(position - keywordTable.getLength(keywordId) + 1, position, keywordId)
+                    || emitted;
+
+            if (emitted && stopOnHit) {
+                break;
+            }
+        }
+
+        return emitted;
+    }
+
+    /**
+     * Returns the number of nodes, which are the root and all states with an
+     * output or more than one child.
+     *
+     * @return The number of nodes.
+     */
+    public int getNodeCount() {
+        return this.output.length;
+    }
+
+    /**
+     * Returns the number of states of the automaton, including the states inside
+     * of edges.
+     *
+     * @return The number of states.
+     */
+    public int getStateCount() {
+        return this.node.length;
+    }
+
+    /**
+     * Estimates the heap memory of the arrays of the automaton and the search
+     * strings.
+     *
+     * @return The estimated size in bytes, -1 if the searcher is not built.
+     */
+    @Override
+    public long estimateHeapSize() {
+        if (this.keywordTable == null) {
+            return -1;
+        }
+        return this.keywordTable.estimateHeapSize() + HeapSize.of(this.labels) + HeapSize.of(this.node)
+                + HeapSize.of(this.fail) + HeapSize.of(this.outputLink) + HeapSize.of(this.output)
+                + HeapSize.of(this.firstEdge) + HeapSize.of(this.edgeCharacter) + HeapSize.of(this.edgeLabel);
+    }
+
+    @Override
+    protected int getMaxSearchStringLength() {
+        return this.keywordTable.getMaxLength();
+    }
+
+    @Override
+    public String getSearchString(final int keywordId) {
+        return this.keywordTable.getKeyword(keywordId);
+    }
+
+    @Override
+    public T getPayload(final int keywordId) {
+        return this.keywordTable.getPayload(keywordId);
+    }
+}
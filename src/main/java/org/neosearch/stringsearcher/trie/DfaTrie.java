@@ -0,0 +1,325 @@
+package org.neosearch.stringsearcher.trie;
+
+import java.util.Collection;
+
+import org.neosearch.stringsearcher.AbstractStringSearcher;
+import org.neosearch.stringsearcher.MatchHandler;
+import org.neosearch.stringsearcher.StringSearcherConfig;
+import org.neosearch.stringsearcher.StringSearcherPrepare;
+import org.neosearch.stringsearcher.trie.util.CaseFolding;
+
+/**
+ * A fully determinized Aho-Corasick automaton.
+ * <p>
+ * The failure links are resolved at build time: every state has a precomputed
+ * transition for every code of the {@link Alphabet}, plus one for characters
+ * that do not occur in any search string. Scanning a text therefore costs
+ * exactly one table lookup per character, independent of the input.
+ * <p>
+ * The transition table needs <code>states * (alphabet size + 1) * 4</code>
+ * bytes, which suits small dictionaries best. If the table would exceed
+ * {@link StringSearcherConfig#getMaxTableSize()}, no table is created and the
+ * searcher falls back to the {@link DoubleArrayTrie} it was computed from.
+ * <code>getTableSize()</code> and <code>isDeterminized()</code> report the
+ * outcome.
+ * <p>
+ * Search strings have to be added before <code>build()</code> is called. Emits
+ * which end at the same position are reported with the shortest search string
+ * first.
+ *
+ * @author Daniel Beck
+ * @param <T> The type of the supplied of the payload
+ */
+public class DfaTrie<T> extends AbstractStringSearcher<T> implements StringSearcherPrepare<T> {
+
+    private static final int NONE = DoubleArrayBuilder.NONE;
+
+    private KeywordTable.Builder<T> keywordTableBuilder = new KeywordTable.Builder<>();
+
+    private KeywordTable<T> keywordTable;
+
+    private Alphabet alphabet;
+
+    /**
+     * The transitions of all states. The row of a state starts at
+     * <code>state * stride</code>, a transition holds the row of the target state,
+     * or its complement if the target state has outputs.
+     */
+    private int[] transitions;
+
+    private int stride;
+
+    private int[] output;
+
+    private int[] outputLink;
+
+    private int maxOutputs;
+
+    private int stateCount;
+
+    private long tableSize;
+
+    private DoubleArrayTrie<T> fallback;
+
+    public DfaTrie(final StringSearcherConfig config) {
+        super(config);
+    }
+
+    /**
+     * Used by the builder to add a text search keyword with a emit payload.
+     *
+     * @param keyword The search term to add to the list of search terms.
+     * @param emit    the payload to emit for this search term.
+     * @throws NullPointerException  if the keyword is null.
+     * @throws IllegalStateException if the automaton has already been built.
+     */
+    @Override
+    public void addSearchString(String keyword, final T emit) {
+        if (this.keywordTableBuilder == null) {
+            throw new IllegalStateException("Search strings cannot be added after build()");
+        }
+
+        if (isCaseInsensitive()) {
+            keyword = CaseFolding.fold(keyword);
+        }
+
+        this.keywordTableBuilder.add(keyword, emit);
+    }
+
+    /**
+     * Used by the builder to add a text search keyword.
+     *
+     * @param keyword The search term to add to the list of search terms.
+     * @throws NullPointerException  if the keyword is null.
+     * @throws IllegalStateException if the automaton has already been built.
+     */
+    @Override
+    public void addSearchString(final String keyword) {
+        addSearchString(keyword, null);
+    }
+
+    @Override
+    public void addSearchStrings(final String... keywords) {
+        for (String keyword : keywords)
+            addSearchString(keyword);
+    }
+
+    @Override
+    public void addSearchStrings(final Collection<String> keywords) {
+        for (String keyword : keywords)
+            addSearchString(keyword);
+    }
+
+    /**
+     * Builds the automaton and determinizes it, if the transition table fits into
+     * the configured maximal table size.
+     *
+     * @return This automaton.
+     */
+    @Override
+    public DfaTrie<T> build() {
+        if (this.keywordTableBuilder == null) {
+            return this;
+        }
+
+        this.keywordTable = this.keywordTableBuilder.build();
+        this.alphabet = new Alphabet(this.keywordTable, isCaseInsensitive());
+        final DoubleArrayBuilder builder = DoubleArrayBuilder.build(this.keywordTable, this.alphabet,
+                this.keywordTableBuilder.getSortedIds());
+        this.keywordTableBuilder = null;
+
+        this.stride = this.alphabet.size() + 1;
+        this.stateCount = builder.getStateCount();
+        final long entries = (long) this.stateCount * this.stride;
+        this.tableSize = entries * 4;
+
+        if (this.tableSize > getConfig().getMaxTableSize() || entries > Integer.MAX_VALUE - 8) {
+            this.fallback = new DoubleArrayTrie<>(getConfig(), this.keywordTable, this.alphabet, builder);
+        } else {
+            determinize(builder);
+        }
+        freeze(DoubleArrayBuilder.rootCharacters(this.alphabet, builder.getBase(), builder.getCheck()));
+        return this;
+    }
+
+    /**
+     * Numbers the states of the double array breadth first and fills their rows.
+     * The transitions of a state without a goto transition for a code are the
+     * ones of its failure state, which has a smaller depth and therefore a
+     * completed row.
+     */
+    private void determinize(final DoubleArrayBuilder builder) {
+        final int[] base = builder.getBase();
+        final int[] check = builder.getCheck();
+        final int[] fail = builder.getFail();
+        final int[] doubleArrayOutput = builder.getOutput();
+        final int[] doubleArrayOutputLink = builder.getOutputLink();
+        final int states = builder.getStateCount();
+
+        final int[] rows = new int[check.length];
+        final int[] order = new int[states];
+        order[0] = DoubleArrayBuilder.ROOT;
+        int discovered = 1;
+
+        this.transitions = new int[states * this.stride];
+        this.output = new int[states];
+        this.outputLink = new int[states];
+        this.maxOutputs = builder.getMaxOutputs();
+
+        for (int index = 0; index < states; index++) {
+            final int state = order[index];
+            final int row = index * this.stride;
+
+            for (int code = 1; code < this.stride; code++) {
+                final int next = base[state] + code;
+                if (check[next] == state && next != DoubleArrayBuilder.ROOT) {
+                    rows[next] = discovered * this.stride;
+                    order[discovered++] = next;
+                    final boolean emitting = doubleArrayOutput[next] != NONE || doubleArrayOutputLink[next] != NONE;
+                    this.transitions[row + code] = emitting ? ~rows[next] : rows[next];
+                } else if (state != DoubleArrayBuilder.ROOT) {
+                    this.transitions[row + code] = this.transitions[rows[fail[state]] + code];
+                }
+            }
+        }
+
+        for (int index = 0; index < states; index++) {
+            final int state = order[index];
+            this.output[index] = doubleArrayOutput[state];
+            final int link = doubleArrayOutputLink[state];
+            this.outputLink[index] = link == NONE ? NONE : rows[link] / this.stride;
+        }
+    }
+
+    /**
+     * Scans the text with one table lookup per character.
+     *
+     * @param text         The character sequence to scan.
+     * @param from         The index of the first character to scan.
+     * @param to           The index after the last character to scan.
+     * @param state        The state to start from.
+     * @param matchHandler The match handler that will be used to parse the text.
+     * @param stopOnHit    If true, stops after the first accepted match.
+     * @return The state after the last scanned character.
+     */
+    @Override
+    protected int scan(final CharSequence text, final int from, final int to, final int state,
+            final MatchHandler matchHandler, final boolean stopOnHit) {
+        if (this.fallback != null) {
+            return this.fallback.scan(text, from, to, state, matchHandler, stopOnHit);
+        }
+
+        final int[] transitions = this.transitions;
+        int[] outputs = null;
+        // The states are identified by the offsets of their rows.
+        int row = state;
+
+        for (int position = from; position < to; position++) {
+            final char character = text.charAt(position);
+            row = transitions[row + this.alphabet.code(character)];
+            if (row < 0) {
+                row = ~row;
+                if (outputs == null) {
+                    outputs = new int[this.maxOutputs];
+                }
+                if (storeEmits(position, row / this.stride, outputs, matchHandler, stopOnHit) && stopOnHit) {
+                    return row;
+                }
+            }
+        }
+        return row;
+    }
+
+    private boolean storeEmits(final int position, final int state, final int[] outputs, final MatchHandler matchHandler,
+            final boolean stopOnHit) {
+        // The dictionary-suffix links lead from the longest to the shortest keyword.
+        int count = 0;
+        for (int current = output[state] != NONE ? state : outputLink[state]; current != NONE; current = outputLink[current]) {
+            outputs[count++] = output[current];
+        }
+
+        boolean emitted = false;
+        while (count > 0) {
+            final int keywordId = outputs[--count];
+            emitted = matchHandler.onMatch(position - keywordTable.getLength(keywordId) + 1, position, keywordId)
+                    || emitted;
+
+            if (emitted && stopOnHit) {
+                break;
+            }
+        }
+
+        return emitted;
+    }
+
+    /**
+     * Returns true, if the transition table has been created. Returns false, if it
+     * would have exceeded the maximal table size and the searcher falls back to a
+     * double-array trie.
+     *
+     * @return true if the automaton is deterministic.
+     */
+    public boolean isDeterminized() {
+        return this.transitions != null;
+    }
+
+    /**
+     * Returns the size of the transition table in bytes. If the automaton could
+     * not be determinized, this is the size the table would have needed.
+     *
+     * @return The size of the transition table in bytes.
+     */
+    public long getTableSize() {
+        return this.tableSize;
+    }
+
+    /**
+     * Returns the number of codes of the alphabet, including the code for
+     * characters which do not occur in the search strings.
+     *
+     * @return The number of columns of the transition table.
+     */
+    public int getAlphabetSize() {
+        return this.stride;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[states=" + this.stateCount + ", alphabet="
+                + this.stride + ", tableSize=" + this.tableSize + (isDeterminized() ? "" : ", fallback") + "]";
+    }
+
+    /**
+     * Estimates the heap memory of the arrays of the automaton and the search
+     * strings.
+     *
+     * @return The estimated size in bytes, -1 if the searcher is not built.
+     */
+    @Override
+    public long estimateHeapSize() {
+        if (this.keywordTable == null) {
+            return -1;
+        }
+        if (this.fallback != null) {
+            // The fallback shares the search strings and the alphabet.
+            return this.fallback.estimateHeapSize();
+        }
+        return this.keywordTable.estimateHeapSize() + this.alphabet.estimateHeapSize()
+                + HeapSize.of(this.transitions) + HeapSize.of(this.output) + HeapSize.of(this.outputLink);
+    }
+
+    @Override
+    protected int getMaxSearchStringLength() {
+        return this.keywordTable.getMaxLength();
+    }
+
+    @Override
+    public String getSearchString(final int keywordId) {
+        return this.keywordTable.getKeyword(keywordId);
+    }
+
+    @Override
+    public T getPayload(final int keywordId) {
+        return this.keywordTable.getPayload(keywordId);
+    }
+}
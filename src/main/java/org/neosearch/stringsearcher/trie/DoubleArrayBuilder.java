@@ -0,0 +1,355 @@
+package org.neosearch.stringsearcher.trie;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Compiles a set of search strings into the arrays of a double-array
+ * Aho-Corasick automaton.
+ * <p>
+ * A transition from state <code>s</code> with the code <code>c</code> leads to
+ * <code>t = base[s] + c</code> if <code>check[t] == s</code>. The construction
+ * places the children of every state with a first-fit search for a free base,
+ * which is the approach of Darts (Double-ARray Trie System). Failure links and
+ * dictionary-suffix links are computed afterwards in order of increasing depth.
+ *
+ * @author Daniel Beck
+ */
+class DoubleArrayBuilder {
+
+    static final int ROOT = 0;
+
+    static final int NONE = -1;
+
+    private static final int FREE = -1;
+
+    /**
+     * The symbols of the search strings, given as codes from 1 to the size of the
+     * alphabet.
+     */
+    interface Keys {
+
+        int length(int keywordId);
+
+        int code(int keywordId, int depth);
+    }
+
+    private final Keys keys;
+
+    private final int alphabetSize;
+
+    private int[] base;
+
+    private int[] check;
+
+    private int[] output;
+
+    private int[] depth;
+
+    private int[] fail;
+
+    private int[] outputLink;
+
+    private int size;
+
+    private int maxBase;
+
+    private int nextCheckPos;
+
+    private int maxOutputs;
+
+    private int stateCount;
+
+    DoubleArrayBuilder(final Keys keys, final int alphabetSize) {
+        this.keys = keys;
+        this.alphabetSize = alphabetSize;
+    }
+
+    /**
+     * Builds the automaton for the characters of the search strings.
+     *
+     * @param keywordTable The search strings.
+     * @param alphabet     The codes of the characters.
+     * @param sortedIds    The keyword ids, sorted by their search strings.
+     * @return The builder holding the arrays.
+     */
+    static DoubleArrayBuilder build(final KeywordTable<?> keywordTable, final Alphabet alphabet, final int[] sortedIds) {
+        final DoubleArrayBuilder builder = new DoubleArrayBuilder(new Keys() {
+
+            @Override
+            public int length(final int keywordId) {
+                return keywordTable.getLength(keywordId);
+            }
+
+            @Override
+            public int code(final int keywordId, final int depth) {
+                return alphabet.code(keywordTable.getKeyword(keywordId).charAt(depth));
+            }
+        }, alphabet.size());
+        builder.build(sortedIds);
+        return builder;
+    }
+
+    /**
+     * Builds the automaton for the keywords.
+     *
+     * @param sortedIds The keyword ids, sorted such that keywords with a common
+     *                  prefix of codes are adjacent and a keyword precedes all
+     *                  keywords it is a prefix of. No keyword may occur twice.
+     */
+    void build(final int[] sortedIds) {
+        final int capacity = Math.max(1024, alphabetSize + 1);
+        this.base = new int[capacity];
+        this.check = new int[capacity];
+        this.output = new int[capacity];
+        this.depth = new int[capacity];
+        Arrays.fill(this.check, FREE);
+        Arrays.fill(this.output, NONE);
+
+        this.check[ROOT] = ROOT;
+        this.size = 1;
+        this.nextCheckPos = 1;
+
+        insert(sortedIds);
+
+        final int length = Math.max(this.size, this.maxBase + this.alphabetSize + 1);
+        resize(length);
+
+        computeFailures(length);
+        this.depth = null;
+    }
+
+    private void insert(final int[] sortedIds) {
+        final Deque<int[]> ranges = new ArrayDeque<>();
+        ranges.push(new int[] { 0, sortedIds.length, ROOT });
+
+        int[] codes = new int[16];
+        int[] starts = new int[16];
+
+        while (!ranges.isEmpty()) {
+            final int[] range = ranges.pop();
+            final int state = range[2];
+            final int stateDepth = this.depth[state];
+            int from = range[0];
+            final int to = range[1];
+
+            if (from < to && keys.length(sortedIds[from]) == stateDepth) {
+                this.output[state] = sortedIds[from];
+                from++;
+            }
+
+            if (from == to) {
+                continue;
+            }
+
+            // Collect the children of the state, keywords with equal codes are adjacent.
+            int children = 0;
+            for (int i = from; i < to; i++) {
+                final int code = keys.code(sortedIds[i], stateDepth);
+                if (children == 0 || codes[children - 1] != code) {
+                    if (children == codes.length) {
+                        codes = Arrays.copyOf(codes, children * 2);
+                        starts = Arrays.copyOf(starts, children * 2);
+                    }
+                    codes[children] = code;
+                    starts[children] = i;
+                    children++;
+                }
+            }
+
+            final int stateBase = findBase(codes, children);
+            this.base[state] = stateBase;
+
+            for (int child = 0; child < children; child++) {
+                final int target = stateBase + codes[child];
+                this.check[target] = state;
+                this.depth[target] = stateDepth + 1;
+                this.size = Math.max(this.size, target + 1);
+                ranges.push(new int[] { starts[child], child + 1 < children ? starts[child + 1] : to, target });
+            }
+        }
+    }
+
+    private int findBase(final int[] codes, final int children) {
+        int minCode = Integer.MAX_VALUE;
+        int maxCode = 0;
+        for (int child = 0; child < children; child++) {
+            minCode = Math.min(minCode, codes[child]);
+            maxCode = Math.max(maxCode, codes[child]);
+        }
+
+        int position = Math.max(minCode + 1, this.nextCheckPos) - 1;
+        int occupied = 0;
+        boolean first = true;
+
+        search: while (true) {
+            position++;
+            ensureCapacity(position - minCode + maxCode + 1);
+
+            if (this.check[position] != FREE) {
+                occupied++;
+                continue;
+            } else if (first) {
+                this.nextCheckPos = position;
+                first = false;
+            }
+
+            final int candidate = position - minCode;
+            for (int child = 0; child < children; child++) {
+                if (this.check[candidate + codes[child]] != FREE) {
+                    continue search;
+                }
+            }
+
+            // Skip densely occupied regions in subsequent searches.
+            if (occupied >= 0.95 * (position - this.nextCheckPos + 1)) {
+                this.nextCheckPos = position;
+            }
+
+            this.maxBase = Math.max(this.maxBase, candidate);
+            return candidate;
+        }
+    }
+
+    private void computeFailures(final int length) {
+        this.fail = new int[length];
+        this.outputLink = new int[length];
+        Arrays.fill(this.outputLink, NONE);
+
+        final int[] outputs = new int[length];
+        final int[] states = statesByDepth(length);
+        this.stateCount = states.length + 1;
+        for (final int state : states) {
+            final int parent = this.check[state];
+            final int code = state - this.base[parent];
+
+            int failure = ROOT;
+            if (parent != ROOT) {
+                int trace = this.fail[parent];
+                while (true) {
+                    final int next = this.base[trace] + code;
+                    if (this.check[next] == trace) {
+                        failure = next;
+                        break;
+                    }
+                    if (trace == ROOT) {
+                        break;
+                    }
+                    trace = this.fail[trace];
+                }
+            }
+
+            this.fail[state] = failure;
+            this.outputLink[state] = this.output[failure] != NONE ? failure : this.outputLink[failure];
+            outputs[state] = (this.output[state] != NONE ? 1 : 0) + outputs[failure];
+            this.maxOutputs = Math.max(this.maxOutputs, outputs[state]);
+        }
+    }
+
+    /**
+     * Returns all states except the root, sorted by depth with a counting sort.
+     */
+    private int[] statesByDepth(final int length) {
+        int maxDepth = 0;
+        int states = 0;
+        for (int state = 1; state < length; state++) {
+            if (this.check[state] != FREE) {
+                maxDepth = Math.max(maxDepth, this.depth[state]);
+                states++;
+            }
+        }
+
+        final int[] offsets = new int[maxDepth + 2];
+        for (int state = 1; state < length; state++) {
+            if (this.check[state] != FREE) {
+                offsets[this.depth[state] + 1]++;
+            }
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+
+        final int[] sorted = new int[states];
+        for (int state = 1; state < length; state++) {
+            if (this.check[state] != FREE) {
+                sorted[offsets[this.depth[state]]++] = state;
+            }
+        }
+        return sorted;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > this.check.length) {
+            resize(Math.max(capacity, this.check.length + (this.check.length >> 1)));
+        }
+    }
+
+    private void resize(final int length) {
+        final int oldLength = this.check.length;
+        this.base = Arrays.copyOf(this.base, length);
+        this.check = Arrays.copyOf(this.check, length);
+        this.output = Arrays.copyOf(this.output, length);
+        this.depth = Arrays.copyOf(this.depth, length);
+        if (length > oldLength) {
+            Arrays.fill(this.check, oldLength, length, FREE);
+            Arrays.fill(this.output, oldLength, length, NONE);
+        }
+    }
+
+    /**
+     * Returns the characters of the goto transitions of the root state, which
+     * are the first characters of the search strings.
+     *
+     * @param alphabet The alphabet of the double array.
+     * @param base     The base array.
+     * @param check    The check array.
+     * @return The characters.
+     */
+    static char[] rootCharacters(final Alphabet alphabet, final int[] base, final int[] check) {
+        final char[] characters = alphabet.characters();
+        int count = 0;
+        for (int code = 1; code <= characters.length; code++) {
+            final int next = base[ROOT] + code;
+            if (next != ROOT && next < check.length && check[next] == ROOT) {
+                characters[count++] = characters[code - 1];
+            }
+        }
+        return Arrays.copyOf(characters, count);
+    }
+
+    int[] getBase() {
+        return this.base;
+    }
+
+    int[] getCheck() {
+        return this.check;
+    }
+
+    int[] getFail() {
+        return this.fail;
+    }
+
+    int[] getOutput() {
+        return this.output;
+    }
+
+    int[] getOutputLink() {
+        return this.outputLink;
+    }
+
+    /**
+     * Returns the number of states, including the root.
+     */
+    int getStateCount() {
+        return this.stateCount;
+    }
+
+    /**
+     * Returns the maximal number of keywords that end in a single state,
+     * including the keywords reachable through the dictionary-suffix links.
+     */
+    int getMaxOutputs() {
+        return this.maxOutputs;
+    }
+}
@@ -0,0 +1,330 @@
+package org.neosearch.stringsearcher.trie;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+
+import org.neosearch.stringsearcher.AbstractStringSearcher;
+import org.neosearch.stringsearcher.MatchHandler;
+import org.neosearch.stringsearcher.StringSearcherConfig;
+import org.neosearch.stringsearcher.StringSearcherPrepare;
+import org.neosearch.stringsearcher.trie.util.CaseFolding;
+
+/**
+ * An Aho-Corasick automaton stored in a double-array trie.
+ * <p>
+ * In contrast to {@link Trie}, the automaton does not consist of linked state
+ * objects. All transitions, failure links and outputs are compiled into a few
+ * flat <code>int</code> arrays, so scanning a text touches contiguous memory
+ * only and large dictionaries need a fraction of the heap. The characters of
+ * the search strings are mapped to dense codes by an {@link Alphabet}.
+ * <p>
+ * Search strings have to be added before <code>build()</code> is called. Emits
+ * which end at the same position are reported with the shortest search string
+ * first.
+ * <p>
+ * A built automaton can be written to a binary image with
+ * <code>writeTo()</code>. <code>readFrom()</code> reads the image back in bulk,
+ * without building the automaton again.
+ *
+ * @author Daniel Beck
+ * @param <T> The type of the supplied of the payload
+ */
+public class DoubleArrayTrie<T> extends AbstractStringSearcher<T> implements StringSearcherPrepare<T> {
+
+    private static final int ROOT = DoubleArrayBuilder.ROOT;
+
+    private static final int NONE = DoubleArrayBuilder.NONE;
+
+    private KeywordTable.Builder<T> keywordTableBuilder = new KeywordTable.Builder<>();
+
+    private KeywordTable<T> keywordTable;
+
+    private Alphabet alphabet;
+
+    private int[] base;
+
+    private int[] check;
+
+    private int[] fail;
+
+    private int[] output;
+
+    private int[] outputLink;
+
+    private int maxOutputs;
+
+    public DoubleArrayTrie(final StringSearcherConfig config) {
+        super(config);
+    }
+
+    /**
+     * Creates an already built automaton from the arrays of the builder.
+     */
+    DoubleArrayTrie(final StringSearcherConfig config, final KeywordTable<T> keywordTable, final Alphabet alphabet,
+            final DoubleArrayBuilder builder) {
+        super(config);
+        init(keywordTable, alphabet, builder);
+    }
+
+    /**
+     * Creates an already built automaton from its arrays.
+     */
+    DoubleArrayTrie(final StringSearcherConfig config, final KeywordTable<T> keywordTable, final Alphabet alphabet,
+            final int[] base, final int[] check, final int[] fail, final int[] output, final int[] outputLink,
+            final int maxOutputs) {
+        super(config);
+        init(keywordTable, alphabet, base, check, fail, output, outputLink, maxOutputs);
+    }
+
+    /**
+     * Reads an automaton from an image written by {@link #writeTo(Path)}. The
+     * automaton is not rebuilt, its arrays are read as they are. The payloads are
+     * not read.
+     *
+     * @param file The image file.
+     * @param <T>  The type of the payload.
+     * @return The automaton, configured as the one the image was written from.
+     * @throws IOException if the file cannot be read or is not a valid image.
+     */
+    public static <T> DoubleArrayTrie<T> readFrom(final Path file) throws IOException {
+        return readFrom(file, null);
+    }
+
+    /**
+     * Reads an automaton and its payloads from an image written by
+     * {@link #writeTo(Path, PayloadCodec)}. The automaton is not rebuilt, its
+     * arrays are read as they are.
+     *
+     * @param file         The image file.
+     * @param payloadCodec The codec for the payloads, null to ignore them.
+     * @param <T>          The type of the payload.
+     * @return The automaton, configured as the one the image was written from.
+     * @throws IOException if the file cannot be read or is not a valid image.
+     */
+    public static <T> DoubleArrayTrie<T> readFrom(final Path file, final PayloadCodec<T> payloadCodec)
+            throws IOException {
+        return AutomatonImage.read(file, payloadCodec);
+    }
+
+    /**
+     * Used by the builder to add a text search keyword with a emit payload.
+     *
+     * @param keyword The search term to add to the list of search terms.
+     * @param emit    the payload to emit for this search term.
+     * @throws NullPointerException  if the keyword is null.
+     * @throws IllegalStateException if the automaton has already been built.
+     */
+    @Override
+    public void addSearchString(String keyword, final T emit) {
+        if (this.keywordTableBuilder == null) {
+            throw new IllegalStateException("Search strings cannot be added after build()");
+        }
+
+        if (isCaseInsensitive()) {
+            keyword = CaseFolding.fold(keyword);
+        }
+
+        this.keywordTableBuilder.add(keyword, emit);
+    }
+
+    /**
+     * Used by the builder to add a text search keyword.
+     *
+     * @param keyword The search term to add to the list of search terms.
+     * @throws NullPointerException  if the keyword is null.
+     * @throws IllegalStateException if the automaton has already been built.
+     */
+    @Override
+    public void addSearchString(final String keyword) {
+        addSearchString(keyword, null);
+    }
+
+    @Override
+    public void addSearchStrings(final String... keywords) {
+        for (String keyword : keywords)
+            addSearchString(keyword);
+    }
+
+    @Override
+    public void addSearchStrings(final Collection<String> keywords) {
+        for (String keyword : keywords)
+            addSearchString(keyword);
+    }
+
+    /**
+     * Compiles the added search strings into the double array.
+     *
+     * @return This automaton.
+     */
+    @Override
+    public DoubleArrayTrie<T> build() {
+        if (this.keywordTableBuilder == null) {
+            return this;
+        }
+
+        final KeywordTable<T> keywordTable = this.keywordTableBuilder.build();
+        final Alphabet alphabet = new Alphabet(keywordTable, isCaseInsensitive());
+
+        final DoubleArrayBuilder builder = DoubleArrayBuilder.build(keywordTable, alphabet,
+                this.keywordTableBuilder.getSortedIds());
+
+        init(keywordTable, alphabet, builder);
+        return this;
+    }
+
+    private void init(final KeywordTable<T> keywordTable, final Alphabet alphabet, final DoubleArrayBuilder builder) {
+        init(keywordTable, alphabet, builder.getBase(), builder.getCheck(), builder.getFail(), builder.getOutput(),
+                builder.getOutputLink(), builder.getMaxOutputs());
+    }
+
+    private void init(final KeywordTable<T> keywordTable, final Alphabet alphabet, final int[] base,
+            final int[] check, final int[] fail, final int[] output, final int[] outputLink, final int maxOutputs) {
+        this.keywordTable = keywordTable;
+        this.alphabet = alphabet;
+        this.base = base;
+        this.check = check;
+        this.fail = fail;
+        this.output = output;
+        this.outputLink = outputLink;
+        this.maxOutputs = maxOutputs;
+        this.keywordTableBuilder = null;
+        freeze(DoubleArrayBuilder.rootCharacters(alphabet, base, check));
+    }
+
+    /**
+     * Writes the built automaton without its payloads to a binary image, which
+     * can be read with {@link #readFrom(Path)} without rebuilding the automaton.
+     *
+     * @param file The file to write, an existing file is replaced.
+     * @throws IOException           if the file cannot be written.
+     * @throws IllegalStateException if the automaton has not been built.
+     */
+    public void writeTo(final Path file) throws IOException {
+        writeTo(file, null);
+    }
+
+    /**
+     * Writes the built automaton and its payloads to a binary image, which can be
+     * read with {@link #readFrom(Path, PayloadCodec)} without rebuilding the
+     * automaton.
+     *
+     * @param file         The file to write, an existing file is replaced.
+     * @param payloadCodec The codec for the payloads, null to omit them.
+     * @throws IOException           if the file cannot be written.
+     * @throws IllegalStateException if the automaton has not been built.
+     */
+    public void writeTo(final Path file, final PayloadCodec<? super T> payloadCodec) throws IOException {
+        if (this.keywordTable == null) {
+            throw new IllegalStateException("The automaton has to be built before it can be written");
+        }
+
+        AutomatonImage.write(file, getConfig(), this.keywordTable, this.alphabet,
+                new int[][] { this.base, this.check, this.fail, this.output, this.outputLink }, this.maxOutputs,
+                payloadCodec);
+    }
+
+    /**
+     * Scans the text by following the transitions of the double array.
+     *
+     * @param text         The character sequence to scan.
+     * @param from         The index of the first character to scan.
+     * @param to           The index after the last character to scan.
+     * @param state        The state to start from.
+     * @param matchHandler The match handler that will be used to parse the text.
+     * @param stopOnHit    If true, stops after the first accepted match.
+     * @return The state after the last scanned character.
+     */
+    @Override
+    protected int scan(final CharSequence text, final int from, final int to, final int state,
+            final MatchHandler matchHandler, final boolean stopOnHit) {
+        final int[] output = this.output;
+        final int[] outputLink = this.outputLink;
+        int[] outputs = null;
+        int current = state;
+
+        for (int position = from; position < to; position++) {
+            final char character = text.charAt(position);
+            current = nextState(current, this.alphabet.code(character));
+            if (output[current] != NONE || outputLink[current] != NONE) {
+                if (outputs == null) {
+                    outputs = new int[this.maxOutputs];
+                }
+                if (storeEmits(position, current, outputs, matchHandler, stopOnHit) && stopOnHit) {
+                    return current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private int nextState(int state, final int code) {
+        if (code == 0) {
+            return ROOT;
+        }
+
+        while (true) {
+            final int next = this.base[state] + code;
+            if (this.check[next] == state) {
+                return next;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = this.fail[state];
+        }
+    }
+
+    private boolean storeEmits(final int position, final int state, final int[] outputs, final MatchHandler matchHandler,
+            final boolean stopOnHit) {
+        // The dictionary-suffix links lead from the longest to the shortest keyword.
+        int count = 0;
+        for (int current = output[state] != NONE ? state : outputLink[state]; current != NONE; current = outputLink[current]) {
+            outputs[count++] = output[current];
+        }
+
+        boolean emitted = false;
+        while (count > 0) {
+            final int keywordId = outputs[--count];
+            emitted = matchHandler.onMatch(position - keywordTable.getLength(keywordId) + 1, position, keywordId)
+                    || emitted;
+
+            if (emitted && stopOnHit) {
+                break;
+            }
+        }
+
+        return emitted;
+    }
+
+    /**
+     * Estimates the heap memory of the arrays of the automaton and the search
+     * strings.
+     *
+     * @return The estimated size in bytes, -1 if the searcher is not built.
+     */
+    @Override
+    public long estimateHeapSize() {
+        if (this.keywordTable == null) {
+            return -1;
+        }
+        return this.keywordTable.estimateHeapSize() + this.alphabet.estimateHeapSize() + HeapSize.of(this.base)
+                + HeapSize.of(this.check) + HeapSize.of(this.fail) + HeapSize.of(this.output)
+                + HeapSize.of(this.outputLink);
+    }
+
+    @Override
+    protected int getMaxSearchStringLength() {
+        return this.keywordTable.getMaxLength();
+    }
+
+    @Override
+    public String getSearchString(final int keywordId) {
+        return this.keywordTable.getKeyword(keywordId);
+    }
+
+    @Override
+    public T getPayload(final int keywordId) {
+        return this.keywordTable.getPayload(keywordId);
+    }
+}
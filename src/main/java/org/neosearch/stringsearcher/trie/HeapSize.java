@@ -0,0 +1,49 @@
+package org.neosearch.stringsearcher.trie;
+
+/**
+ * Estimates the heap memory of the arrays and strings of an automaton, assuming
+ * a 64-bit JVM with compressed references: 16 bytes per array header, 4 bytes
+ * per reference, and sizes aligned to 8 bytes.
+ *
+ * @author Daniel Beck
+ */
+final class HeapSize {
+
+    private static final long ARRAY_HEADER = 16;
+
+    /**
+     * The header of a String and its hash and coder fields.
+     */
+    private static final long STRING = 24;
+
+    static final long OBJECT_HEADER = 12;
+
+    static final long REFERENCE = 4;
+
+    private HeapSize() {
+    }
+
+    static long of(final int[] array) {
+        return array == null ? 0 : align(ARRAY_HEADER + 4L * array.length);
+    }
+
+    static long of(final long[] array) {
+        return array == null ? 0 : align(ARRAY_HEADER + 8L * array.length);
+    }
+
+    static long of(final char[] array) {
+        return array == null ? 0 : align(ARRAY_HEADER + 2L * array.length);
+    }
+
+    static long of(final Object[] array) {
+        return array == null ? 0 : align(ARRAY_HEADER + REFERENCE * array.length);
+    }
+
+    static long of(final String string) {
+        return string == null ? 0 : STRING + align(ARRAY_HEADER + 2L * string.length());
+    }
+
+    static long align(final long size) {
+        return (size + 7) & ~7L;
+    }
+}
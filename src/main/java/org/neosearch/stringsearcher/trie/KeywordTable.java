@@ -0,0 +1,215 @@
+package org.neosearch.stringsearcher.trie;
+
+import java.util.Arrays;
+
+/**
+ * Holds the search strings of a StringSearcher and their payloads in two
+ * parallel arrays. Every distinct search string is identified by a dense
+ * keyword id, which is assigned in the order in which the search strings were
+ * added. If a search string is added more than once, the payload which was
+ * added first is kept.
+ * <p>
+ * The automatons only store keyword ids in their states. The search string and
+ * the payload are looked up here when an emit is created.
+ *
+ * @author Daniel Beck
+ * @param <T> The type of the payload.
+ */
+public class KeywordTable<T> {
+
+    private final String[] keywords;
+
+    private final Object[] payloads;
+
+    private final int maxLength;
+
+    KeywordTable(final String[] keywords, final Object[] payloads) {
+        this.keywords = keywords;
+        this.payloads = payloads;
+
+        int maxLength = 0;
+        for (final String keyword : keywords) {
+            maxLength = Math.max(maxLength, keyword.length());
+        }
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Returns the number of distinct search strings.
+     *
+     * @return The number of keyword ids.
+     */
+    public int size() {
+        return this.keywords.length;
+    }
+
+    /**
+     * Returns the search string with the specified keyword id.
+     *
+     * @param keywordId The keyword id.
+     * @return The search string.
+     */
+    public String getKeyword(final int keywordId) {
+        return this.keywords[keywordId];
+    }
+
+    /**
+     * Returns the length of the search string with the specified keyword id.
+     *
+     * @param keywordId The keyword id.
+     * @return The length of the search string.
+     */
+    public int getLength(final int keywordId) {
+        return this.keywords[keywordId].length();
+    }
+
+    /**
+     * Returns the payload of the search string with the specified keyword id.
+     *
+     * @param keywordId The keyword id.
+     * @return The payload, may be null.
+     */
+    @SuppressWarnings("unchecked")
+    public T getPayload(final int keywordId) {
+        return (T) this.payloads[keywordId];
+    }
+
+    /**
+     * Returns the length of the longest search string.
+     *
+     * @return The maximal length of all search strings, 0 if there are none.
+     */
+    public int getMaxLength() {
+        return this.maxLength;
+    }
+
+    /**
+     * @return The estimated heap size of the search strings and the payload
+     *         references in bytes.
+     */
+    long estimateHeapSize() {
+        long size = HeapSize.of(this.keywords) + HeapSize.of(this.payloads);
+        for (final String keyword : this.keywords) {
+            size += HeapSize.of(keyword);
+        }
+        return size;
+    }
+
+    /**
+     * Collects search strings and payloads and assigns keyword ids.
+     *
+     * @param <T> The type of the payload.
+     */
+    public static class Builder<T> {
+
+        private String[] keywords = new String[16];
+
+        private Object[] payloads = new Object[16];
+
+        private int size;
+
+        private int[] sortedIds;
+
+        /**
+         * Adds a search string with its payload. Empty search strings are ignored.
+         *
+         * @param keyword The search string.
+         * @param payload The payload, may be null.
+         * @throws NullPointerException if the keyword is null.
+         */
+        public void add(final String keyword, final T payload) {
+            if (keyword.isEmpty()) {
+                return;
+            }
+
+            if (this.size == this.keywords.length) {
+                this.keywords = Arrays.copyOf(this.keywords, this.size * 2);
+                this.payloads = Arrays.copyOf(this.payloads, this.size * 2);
+            }
+
+            this.keywords[this.size] = keyword;
+            this.payloads[this.size] = payload;
+            this.size++;
+        }
+
+        /**
+         * Removes duplicate search strings and creates the keyword table.
+         *
+         * @return The keyword table.
+         */
+        public KeywordTable<T> build() {
+            final int[] order = new int[this.size];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            // Stable, so the first of several equal search strings comes first.
+            mergeSort(order, new int[order.length], 0, order.length, this.keywords);
+
+            final boolean[] duplicate = new boolean[this.size];
+            for (int i = 1; i < order.length; i++) {
+                if (this.keywords[order[i]].equals(this.keywords[order[i - 1]])) {
+                    duplicate[order[i]] = true;
+                }
+            }
+
+            final int[] keywordIds = new int[this.size];
+            int distinct = 0;
+            for (int i = 0; i < this.size; i++) {
+                keywordIds[i] = duplicate[i] ? -1 : distinct++;
+            }
+
+            final String[] distinctKeywords = new String[distinct];
+            final Object[] distinctPayloads = new Object[distinct];
+            this.sortedIds = new int[distinct];
+            int sorted = 0;
+            for (final int index : order) {
+                final int keywordId = keywordIds[index];
+                if (keywordId >= 0) {
+                    distinctKeywords[keywordId] = this.keywords[index];
+                    distinctPayloads[keywordId] = this.payloads[index];
+                    this.sortedIds[sorted++] = keywordId;
+                }
+            }
+
+            this.keywords = null;
+            this.payloads = null;
+            return new KeywordTable<>(distinctKeywords, distinctPayloads);
+        }
+
+        /**
+         * Returns the keyword ids of the table created by <code>build()</code>,
+         * ordered lexicographically by their search strings.
+         *
+         * @return The sorted keyword ids.
+         */
+        public int[] getSortedIds() {
+            return this.sortedIds;
+        }
+
+        private static void mergeSort(final int[] ids, final int[] buffer, final int from, final int to,
+                final String[] keywords) {
+            if (to - from < 2) {
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            mergeSort(ids, buffer, from, middle, keywords);
+            mergeSort(ids, buffer, middle, to, keywords);
+
+            if (keywords[ids[middle - 1]].compareTo(keywords[ids[middle]]) <= 0) {
+                return;
+            }
+
+            System.arraycopy(ids, from, buffer, from, to - from);
+            int left = from;
+            int right = middle;
+            for (int i = from; i < to; i++) {
+                if (right >= to || (left < middle && keywords[buffer[left]].compareTo(keywords[buffer[right]]) <= 0)) {
+                    ids[i] = buffer[left++];
+                } else {
+                    ids[i] = buffer[right++];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.neosearch.stringsearcher.trie;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A read-only region of a file, mapped into memory in chunks of 1 GiB, so
+ * regions larger than the 2 GiB limit of a single <code>MappedByteBuffer</code>
+ * can be accessed. The region has to start at a multiple of four bytes, so no
+ * <code>int</code> or <code>char</code> spans two chunks.
+ *
+ * @author Daniel Beck
+ */
+final class MappedArray {
+
+    private static final int CHUNK_SHIFT = 30;
+
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final ByteBuffer[] chunks;
+
+    private MappedArray(final ByteBuffer[] chunks) {
+        this.chunks = chunks;
+    }
+
+    /**
+     * Maps a region of a file.
+     *
+     * @param channel The channel of the file.
+     * @param offset  The start of the region.
+     * @param size    The size of the region in bytes.
+     * @return The mapped region.
+     * @throws IOException if the region cannot be mapped.
+     */
+    static MappedArray map(final FileChannel channel, final long offset, final long size) throws IOException {
+        final ByteBuffer[] chunks = new ByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            final long start = (long) chunk << CHUNK_SHIFT;
+            chunks[chunk] = channel.map(MapMode.READ_ONLY, offset + start, Math.min(size - start, CHUNK_MASK + 1));
+        }
+        return new MappedArray(chunks);
+    }
+
+    int getInt(final int index) {
+        final long position = (long) index << 2;
+        return this.chunks[(int) (position >>> CHUNK_SHIFT)].getInt((int) (position & CHUNK_MASK));
+    }
+
+    char getChar(final int index) {
+        final long position = (long) index << 1;
+        return this.chunks[(int) (position >>> CHUNK_SHIFT)].getChar((int) (position & CHUNK_MASK));
+    }
+}
@@ -0,0 +1,274 @@
+package org.neosearch.stringsearcher.trie;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.neosearch.stringsearcher.AbstractStringSearcher;
+import org.neosearch.stringsearcher.MatchHandler;
+
+/**
+ * A double-array Aho-Corasick automaton which is used directly from a
+ * memory-mapped image file, as written by
+ * {@link DoubleArrayTrie#writeTo(Path)}.
+ * <p>
+ * Transitions, failure links, outputs and search strings stay off-heap in the
+ * page cache, so opening even a multi-GB image takes only a few mappings, and
+ * several JVMs on one host share a single copy of it. Only the alphabet and,
+ * if a {@link PayloadCodec} is given, the payloads are read to the heap.
+ * <p>
+ * The configuration of the searcher is read from the image. The mappings stay
+ * valid until the searcher is garbage collected; the image file must not be
+ * modified while it is mapped.
+ * <p>
+ * Opening an image checks its header, its length, the alphabet, the bounds of
+ * the search strings and the root state. The states themselves are not read,
+ * so a corrupt image can still fail or loop while it is scanned. Images from
+ * an untrusted source are validated completely by
+ * {@link DoubleArrayTrie#readFrom(Path, PayloadCodec)}.
+ *
+ * @author Daniel Beck
+ * @param <T> The type of the supplied of the payload
+ */
+public class MappedDoubleArrayTrie<T> extends AbstractStringSearcher<T> {
+
+    private static final int ROOT = DoubleArrayBuilder.ROOT;
+
+    private static final int NONE = DoubleArrayBuilder.NONE;
+
+    private final Alphabet alphabet;
+
+    private final MappedArray base;
+
+    private final MappedArray check;
+
+    private final MappedArray fail;
+
+    private final MappedArray output;
+
+    private final MappedArray outputLink;
+
+    private final MappedArray keywordOffsets;
+
+    private final MappedArray keywordChars;
+
+    /**
+     * The payloads indexed by keyword id, null if they are not read.
+     */
+    private final Object[] payloads;
+
+    private final int maxOutputs;
+
+    private final int maxLength;
+
+    private MappedDoubleArrayTrie(final AutomatonImage image, final FileChannel channel,
+            final PayloadCodec<T> payloadCodec) throws IOException {
+        super(image.getConfig());
+
+        final MappedArray alphabetCodes = MappedArray.map(channel, image.alphabetOffset(),
+                4L * image.getAlphabetSize());
+        final int[] codes = new int[image.getAlphabetSize()];
+        final char[] characters = new char[codes.length];
+        for (int i = 0; i < characters.length; i++) {
+            codes[i] = alphabetCodes.getInt(i);
+            characters[i] = (char) codes[i];
+        }
+        this.alphabet = new Alphabet(characters, isCaseInsensitive());
+
+        final long arraySize = 4L * image.getArrayLength();
+        this.base = MappedArray.map(channel, image.arrayOffset(AutomatonImage.BASE), arraySize);
+        this.check = MappedArray.map(channel, image.arrayOffset(AutomatonImage.CHECK), arraySize);
+        this.fail = MappedArray.map(channel, image.arrayOffset(AutomatonImage.FAIL), arraySize);
+        this.output = MappedArray.map(channel, image.arrayOffset(AutomatonImage.OUTPUT), arraySize);
+        this.outputLink = MappedArray.map(channel, image.arrayOffset(AutomatonImage.OUTPUT_LINK), arraySize);
+        this.keywordOffsets = MappedArray.map(channel, image.keywordOffsetsOffset(),
+                4L * (image.getKeywordCount() + 1));
+        this.keywordChars = MappedArray.map(channel, image.keywordCharsOffset(),
+                image.payloadsOffset() - image.keywordCharsOffset());
+        image.validateSections(codes, this.keywordOffsets.getInt(0),
+                this.keywordOffsets.getInt(image.getKeywordCount()));
+        image.validateRoot(this.base.getInt(ROOT), this.check.getInt(ROOT), this.fail.getInt(ROOT));
+
+        this.payloads = image.readPayloads(channel, payloadCodec);
+        this.maxOutputs = image.getMaxOutputs();
+
+        this.maxLength = image.getMaxLength() >= 0 ? image.getMaxLength() : maxLength(image.getKeywordCount());
+        freeze(rootCharacters(characters, image.getArrayLength()));
+    }
+
+    /**
+     * Computes the length of the longest search string for images which do not
+     * store it.
+     */
+    private int maxLength(final int keywordCount) {
+        int maxLength = 0;
+        for (int keywordId = 0; keywordId < keywordCount; keywordId++) {
+            maxLength = Math.max(maxLength, keywordOffsets.getInt(keywordId + 1) - keywordOffsets.getInt(keywordId));
+        }
+        return maxLength;
+    }
+
+    /**
+     * Returns the characters of the goto transitions of the root state, so
+     * opening an image reads no search strings.
+     */
+    private char[] rootCharacters(final char[] characters, final int arrayLength) {
+        final char[] rootCharacters = new char[characters.length];
+        int count = 0;
+        for (int code = 1; code <= characters.length; code++) {
+            final int next = this.base.getInt(ROOT) + code;
+            if (next != ROOT && next < arrayLength && this.check.getInt(next) == ROOT) {
+                rootCharacters[count++] = characters[code - 1];
+            }
+        }
+        return Arrays.copyOf(rootCharacters, count);
+    }
+
+    /**
+     * Maps an image file without reading its payloads.
+     *
+     * @param file The image file.
+     * @param <T>  The type of the payload.
+     * @return The searcher.
+     * @throws IOException if the file cannot be mapped or its header, length or
+     *                     root state are invalid.
+     */
+    public static <T> MappedDoubleArrayTrie<T> open(final Path file) throws IOException {
+        return open(file, null);
+    }
+
+    /**
+     * Maps an image file and reads its payloads into a table on the heap.
+     *
+     * @param file         The image file.
+     * @param payloadCodec The codec for the payloads, null to ignore them.
+     * @param <T>          The type of the payload.
+     * @return The searcher.
+     * @throws IOException if the file cannot be mapped or its header, length or
+     *                     root state are invalid.
+     */
+    public static <T> MappedDoubleArrayTrie<T> open(final Path file, final PayloadCodec<T> payloadCodec)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < AutomatonImage.HEADER_SIZE) {
+                throw new IOException("Not an automaton image");
+            }
+
+            final AutomatonImage image = AutomatonImage
+                    .readHeader(channel.map(MapMode.READ_ONLY, 0, AutomatonImage.HEADER_SIZE));
+            if (channel.size() < image.payloadsOffset()) {
+                throw new EOFException("Truncated automaton image");
+            }
+
+            return new MappedDoubleArrayTrie<T>(image, channel, payloadCodec);
+        }
+    }
+
+    /**
+     * Scans the text by following the transitions of the mapped double array.
+     *
+     * @param text         The character sequence to scan.
+     * @param from         The index of the first character to scan.
+     * @param to           The index after the last character to scan.
+     * @param state        The state to start from.
+     * @param matchHandler The match handler that will be used to parse the text.
+     * @param stopOnHit    If true, stops after the first accepted match.
+     * @return The state after the last scanned character.
+     */
+    @Override
+    protected int scan(final CharSequence text, final int from, final int to, final int state,
+            final MatchHandler matchHandler, final boolean stopOnHit) {
+        int[] outputs = null;
+        int current = state;
+
+        for (int position = from; position < to; position++) {
+            final char character = text.charAt(position);
+            current = nextState(current, this.alphabet.code(character));
+            if (output.getInt(current) != NONE || outputLink.getInt(current) != NONE) {
+                if (outputs == null) {
+                    outputs = new int[this.maxOutputs];
+                }
+                if (storeEmits(position, current, outputs, matchHandler, stopOnHit) && stopOnHit) {
+                    return current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private int nextState(int state, final int code) {
+        if (code == 0) {
+            return ROOT;
+        }
+
+        while (true) {
+            final int next = this.base.getInt(state) + code;
+            if (this.check.getInt(next) == state) {
+                return next;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = this.fail.getInt(state);
+        }
+    }
+
+    private boolean storeEmits(final int position, final int state, final int[] outputs, final MatchHandler matchHandler,
+            final boolean stopOnHit) {
+        // The dictionary-suffix links lead from the longest to the shortest keyword.
+        int count = 0;
+        for (int current = output.getInt(state) != NONE ? state : outputLink.getInt(state); current != NONE;
+                current = outputLink.getInt(current)) {
+            outputs[count++] = output.getInt(current);
+        }
+
+        boolean emitted = false;
+        while (count > 0) {
+            final int keywordId = outputs[--count];
+            final int length = keywordOffsets.getInt(keywordId + 1) - keywordOffsets.getInt(keywordId);
+            emitted = matchHandler.onMatch(position - length + 1, position, keywordId) || emitted;
+
+            if (emitted && stopOnHit) {
+                break;
+            }
+        }
+
+        return emitted;
+    }
+
+    /**
+     * Estimates the heap memory of the alphabet and the payloads. The mapped
+     * arrays and search strings are in the page cache, not on the heap.
+     *
+     * @return The estimated size in bytes.
+     */
+    @Override
+    public long estimateHeapSize() {
+        return this.alphabet.estimateHeapSize() + HeapSize.of(this.payloads);
+    }
+
+    @Override
+    protected int getMaxSearchStringLength() {
+        return this.maxLength;
+    }
+
+    @Override
+    public String getSearchString(final int keywordId) {
+        final int start = keywordOffsets.getInt(keywordId);
+        final char[] characters = new char[keywordOffsets.getInt(keywordId + 1) - start];
+        for (int i = 0; i < characters.length; i++) {
+            characters[i] = keywordChars.getChar(start + i);
+        }
+        return new String(characters);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T getPayload(final int keywordId) {
+        return this.payloads == null ? null : (T) this.payloads[keywordId];
+    }
+}
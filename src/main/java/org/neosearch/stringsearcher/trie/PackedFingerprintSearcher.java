@@ -0,0 +1,414 @@
+package org.neosearch.stringsearcher.trie;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.neosearch.stringsearcher.AbstractStringSearcher;
+import org.neosearch.stringsearcher.MatchHandler;
+import org.neosearch.stringsearcher.StreamMatchHandler;
+import org.neosearch.stringsearcher.StringSearcherConfig;
+import org.neosearch.stringsearcher.StringSearcherPrepare;
+import org.neosearch.stringsearcher.trie.util.CaseFolding;
+
+/**
+ * A searcher for small sets of search strings, which finds candidates with a
+ * packed fingerprint search and verifies them against the search strings.
+ * <p>
+ * The search strings are grouped into up to 64 buckets, lexicographically
+ * neighbouring search strings into the same bucket. The fingerprint of a
+ * bucket are the characters its search strings start with, up to five
+ * positions. The fingerprints of all buckets are packed into one
+ * <code>long</code> and searched with the Shift-And algorithm: every character
+ * costs one lookup in a table indexed by its low byte, a shift and two bitwise
+ * operations, with no dependency on the previous lookup. A bucket whose
+ * fingerprint matched is a candidate, its search strings are compared with the
+ * text at that position.
+ * <p>
+ * Candidates become frequent if there are many search strings, so sets of more
+ * than {@link #MAX_SEARCH_STRINGS} search strings fall back to a {@link Trie}.
+ * <code>isPacked()</code> reports the outcome.
+ * <p>
+ * The state returned by a scan is the number of characters before its end at
+ * which a match may still start, so a scan can only be resumed with the same
+ * text. Streams are scanned with a buffer which keeps these characters.
+ *
+ * @author Daniel Beck
+ * @param <T> The type of the supplied of the payload
+ */
+public class PackedFingerprintSearcher<T> extends AbstractStringSearcher<T> implements StringSearcherPrepare<T> {
+
+    /**
+     * The maximal number of search strings searched with fingerprints.
+     */
+    public static final int MAX_SEARCH_STRINGS = 128;
+
+    private static final int MAX_FINGERPRINT_LENGTH = 5;
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private KeywordTable.Builder<T> keywordTableBuilder = new KeywordTable.Builder<>();
+
+    private KeywordTable<T> keywordTable;
+
+    /**
+     * The bits of the fingerprint positions each character may occur at,
+     * indexed by the low byte of the character.
+     */
+    private final long[] masks = new long[256];
+
+    /**
+     * The bits of the first position of each fingerprint.
+     */
+    private long firstBits;
+
+    /**
+     * The bits of the last position of each fingerprint.
+     */
+    private long lastBits;
+
+    private int fingerprintLength;
+
+    private int minLength;
+
+    /**
+     * The keyword ids of the bucket <code>b</code> are
+     * <code>bucketKeywords[bucketStarts[b] ... bucketStarts[b + 1] - 1]</code>.
+     */
+    private int[] bucketStarts;
+
+    private int[] bucketKeywords;
+
+    private Trie<T> fallback;
+
+    public PackedFingerprintSearcher(final StringSearcherConfig config) {
+        super(config);
+    }
+
+    /**
+     * Used by the builder to add a text search keyword with a emit payload.
+     *
+     * @param keyword The search term to add to the list of search terms.
+     * @param emit    the payload to emit for this search term.
+     * @throws NullPointerException  if the keyword is null.
+     * @throws IllegalStateException if the searcher has already been built.
+     */
+    @Override
+    public void addSearchString(String keyword, final T emit) {
+        if (this.keywordTableBuilder == null) {
+            throw new IllegalStateException("Search strings cannot be added after build()");
+        }
+
+        if (isCaseInsensitive()) {
+            keyword = CaseFolding.fold(keyword);
+        }
+
+        this.keywordTableBuilder.add(keyword, emit);
+    }
+
+    /**
+     * Used by the builder to add a text search keyword.
+     *
+     * @param keyword The search term to add to the list of search terms.
+     * @throws NullPointerException  if the keyword is null.
+     * @throws IllegalStateException if the searcher has already been built.
+     */
+    @Override
+    public void addSearchString(final String keyword) {
+        addSearchString(keyword, null);
+    }
+
+    @Override
+    public void addSearchStrings(final String... keywords) {
+        for (String keyword : keywords)
+            addSearchString(keyword);
+    }
+
+    @Override
+    public void addSearchStrings(final Collection<String> keywords) {
+        for (String keyword : keywords)
+            addSearchString(keyword);
+    }
+
+    /**
+     * Packs the fingerprints of the search strings, or builds the fallback trie
+     * if there are too many search strings.
+     *
+     * @return This searcher.
+     */
+    @Override
+    public PackedFingerprintSearcher<T> build() {
+        if (this.keywordTableBuilder == null) {
+            return this;
+        }
+
+        this.keywordTable = this.keywordTableBuilder.build();
+        final int[] sortedIds = this.keywordTableBuilder.getSortedIds();
+        this.keywordTableBuilder = null;
+
+        if (this.keywordTable.size() > MAX_SEARCH_STRINGS) {
+            this.fallback = new Trie<>(getConfig());
+            for (int keywordId = 0; keywordId < this.keywordTable.size(); keywordId++) {
+                this.fallback.addSearchString(this.keywordTable.getKeyword(keywordId),
+                        this.keywordTable.getPayload(keywordId));
+            }
+            this.fallback.build();
+        } else {
+            pack(sortedIds);
+        }
+        freeze();
+        return this;
+    }
+
+    /**
+     * Distributes the sorted search strings evenly over the buckets and sets
+     * the bits of their fingerprints.
+     */
+    private void pack(final int[] sortedIds) {
+        int minLength = Integer.MAX_VALUE;
+        for (int keywordId = 0; keywordId < this.keywordTable.size(); keywordId++) {
+            minLength = Math.min(minLength, this.keywordTable.getLength(keywordId));
+        }
+        this.minLength = minLength == Integer.MAX_VALUE ? 0 : minLength;
+        this.fingerprintLength = Math.max(1, Math.min(MAX_FINGERPRINT_LENGTH, this.minLength));
+
+        final int buckets = Math.min(Long.SIZE / this.fingerprintLength, sortedIds.length);
+        this.bucketStarts = new int[buckets + 1];
+        this.bucketKeywords = sortedIds;
+        for (int bucket = 1; bucket <= buckets; bucket++) {
+            this.bucketStarts[bucket] = (int) ((long) bucket * sortedIds.length / buckets);
+        }
+
+        final char[][] variants = isCaseInsensitive() ? caseVariants() : null;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            final int firstBit = bucket * this.fingerprintLength;
+            this.firstBits |= 1L << firstBit;
+            this.lastBits |= 1L << (firstBit + this.fingerprintLength - 1);
+
+            for (int i = this.bucketStarts[bucket]; i < this.bucketStarts[bucket + 1]; i++) {
+                final String keyword = this.keywordTable.getKeyword(sortedIds[i]);
+                for (int position = 0; position < this.fingerprintLength; position++) {
+                    final char character = keyword.charAt(position);
+                    final long bit = 1L << (firstBit + position);
+                    this.masks[character & 0xFF] |= bit;
+                    if (variants != null && variants[character] != null) {
+                        for (final char variant : variants[character]) {
+                            this.masks[variant & 0xFF] |= bit;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the characters which fold to each character, null for characters
+     * which no other character folds to.
+     */
+    private static char[][] caseVariants() {
+        final char[][] variants = new char[Character.MAX_VALUE + 1][];
+        for (int character = 0; character <= Character.MAX_VALUE; character++) {
+            final char folded = CaseFolding.fold((char) character);
+            if (folded != character) {
+                final char[] current = variants[folded];
+                final char[] extended = current == null ? new char[1] : Arrays.copyOf(current, current.length + 1);
+                extended[extended.length - 1] = (char) character;
+                variants[folded] = extended;
+            }
+        }
+        return variants;
+    }
+
+    /**
+     * Searches the fingerprints in the text and verifies the candidates.
+     * Matches which end before <code>from</code> were reported by the previous
+     * scan, matches which end at or after <code>to</code> are left to the next
+     * one.
+     *
+     * @param text         The character sequence to scan.
+     * @param from         The index of the first character to scan.
+     * @param to           The index after the last character to scan.
+     * @param state        The number of characters before <code>from</code> at
+     *                     which a match may start, as returned by the previous
+     *                     scan of the same text.
+     * @param matchHandler The match handler that will be used to parse the text.
+     * @param stopOnHit    If true, stops after the first accepted match.
+     * @return The number of characters before <code>to</code> at which a match
+     *         may start.
+     */
+    @Override
+    protected int scan(final CharSequence text, final int from, final int to, final int state,
+            final MatchHandler matchHandler, final boolean stopOnHit) {
+        if (this.fallback != null) {
+            return this.fallback.scan(text, from, to, state, matchHandler, stopOnHit);
+        }
+
+        final long[] masks = this.masks;
+        final long firstBits = this.firstBits;
+        final long lastBits = this.lastBits;
+        final int start = from - state;
+        PendingMatches pending = null;
+        long positions = 0;
+
+        for (int position = start; position < to; position++) {
+            positions = ((positions << 1) | firstBits) & masks[text.charAt(position) & 0xFF];
+            if ((positions & lastBits) != 0) {
+                final int matchStart = position - this.fingerprintLength + 1;
+                // Later matches cannot end before this.
+                if (pending != null && pending.release(matchStart + this.minLength - 1, matchHandler, stopOnHit)) {
+                    return nextState(start, to);
+                }
+                pending = verify(text, matchStart, positions & lastBits, from, to, pending);
+            }
+        }
+
+        if (pending != null) {
+            pending.release(Integer.MAX_VALUE, matchHandler, stopOnHit);
+        }
+        return nextState(start, to);
+    }
+
+    private int nextState(final int start, final int to) {
+        return Math.min(Math.max(0, this.keywordTable.getMaxLength() - 1), to - start);
+    }
+
+    /**
+     * Compares the search strings of the candidate buckets with the text and
+     * adds the matches within the scanned range to the pending matches, which
+     * are created with the first match.
+     *
+     * @return The pending matches, null if there are none yet.
+     */
+    private PendingMatches verify(final CharSequence text, final int matchStart, long candidates, final int from,
+            final int to, final PendingMatches pending) {
+        final boolean caseInsensitive = isCaseInsensitive();
+        PendingMatches matches = pending;
+        while (candidates != 0) {
+            final int bucket = Long.numberOfTrailingZeros(candidates) / this.fingerprintLength;
+            candidates &= candidates - 1;
+
+            for (int i = this.bucketStarts[bucket]; i < this.bucketStarts[bucket + 1]; i++) {
+                final int keywordId = this.bucketKeywords[i];
+                final String keyword = this.keywordTable.getKeyword(keywordId);
+                final int end = matchStart + keyword.length() - 1;
+                if (end < from || end >= to) {
+                    continue;
+                }
+
+                int position = 0;
+                while (position < keyword.length() && keyword.charAt(position) == (caseInsensitive
+                        ? CaseFolding.fold(text.charAt(matchStart + position))
+                        : text.charAt(matchStart + position))) {
+                    position++;
+                }
+                if (position == keyword.length()) {
+                    if (matches == null) {
+                        matches = new PendingMatches();
+                    }
+                    matches.add(matchStart, end, keywordId);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Parses the characters of a reader and reports every match to the stream
+     * match handler. The characters at which a match may still start are kept
+     * at the front of the buffer, so the scan can be resumed after the next read.
+     *
+     * @param reader       The reader to read the text from.
+     * @param matchHandler The match handler to call for each match.
+     * @return The number of characters read.
+     * @throws IOException if reading fails.
+     */
+    @Override
+    public long parseStream(final Reader reader, final StreamMatchHandler matchHandler) throws IOException {
+        if (this.fallback != null) {
+            return super.parseStream(reader, matchHandler);
+        }
+
+        checkFrozen();
+        final char[] buffer = new char[this.keywordTable.getMaxLength() + STREAM_BUFFER_SIZE];
+        final CharBuffer text = CharBuffer.wrap(buffer);
+        final boolean stopOnHit = getConfig().isStopOnHit();
+        final boolean[] accepted = new boolean[1];
+        final long[] offset = new long[1];
+        final MatchHandler streamMatchHandler = new MatchHandler() {
+
+            @Override
+            public boolean onMatch(final int start, final int end, final int keywordId) {
+                final boolean acceptedMatch = matchHandler.onMatch(offset[0] + start, offset[0] + end, keywordId);
+                accepted[0] |= acceptedMatch;
+                return acceptedMatch;
+            }
+        };
+        int kept = 0;
+        int read;
+
+        while ((read = reader.read(buffer, kept, STREAM_BUFFER_SIZE)) != -1) {
+            final int end = kept + read;
+            kept = scan(text, kept, end, kept, streamMatchHandler, stopOnHit);
+
+            if (stopOnHit && accepted[0]) {
+                return offset[0] + end;
+            }
+
+            System.arraycopy(buffer, end - kept, buffer, 0, kept);
+            offset[0] += end - kept;
+        }
+
+        return offset[0] + kept;
+    }
+
+    /**
+     * Returns true, if the search strings are searched with fingerprints. Returns
+     * false, if there are more than {@link #MAX_SEARCH_STRINGS} and the searcher
+     * falls back to a trie.
+     *
+     * @return true if the fingerprints are packed.
+     */
+    public boolean isPacked() {
+        return this.fallback == null;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[searchStrings=" + this.keywordTable.size()
+                + (isPacked() ? ", buckets=" + (this.bucketStarts.length - 1) + ", fingerprintLength="
+                        + this.fingerprintLength : ", fallback")
+                + "]";
+    }
+
+    /**
+     * Estimates the heap memory of the arrays of the automaton and the search
+     * strings.
+     *
+     * @return The estimated size in bytes, -1 if the searcher is not built.
+     */
+    @Override
+    public long estimateHeapSize() {
+        if (this.keywordTable == null) {
+            return -1;
+        }
+        return this.keywordTable.estimateHeapSize() + HeapSize.of(this.masks) + HeapSize.of(this.bucketStarts)
+                + HeapSize.of(this.bucketKeywords) + (this.fallback != null ? this.fallback.estimateHeapSize() : 0);
+    }
+
+    @Override
+    protected int getMaxSearchStringLength() {
+        return this.keywordTable.getMaxLength();
+    }
+
+    @Override
+    public String getSearchString(final int keywordId) {
+        return this.keywordTable.getKeyword(keywordId);
+    }
+
+    @Override
+    public T getPayload(final int keywordId) {
+        return this.keywordTable.getPayload(keywordId);
+    }
+}
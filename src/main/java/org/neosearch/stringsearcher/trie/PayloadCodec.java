@@ -0,0 +1,34 @@
+package org.neosearch.stringsearcher.trie;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes the payloads of a searcher to an automaton image and reads them back.
+ * The payloads are written in the order of their keyword ids, a codec has to
+ * read exactly the bytes it has written.
+ *
+ * @author Daniel Beck
+ * @param <T> The type of the payload.
+ */
+public interface PayloadCodec<T> {
+
+    /**
+     * Writes a payload.
+     *
+     * @param out     The output to write to.
+     * @param payload The payload, may be null.
+     * @throws IOException if writing fails.
+     */
+    void write(DataOutput out, T payload) throws IOException;
+
+    /**
+     * Reads a payload.
+     *
+     * @param in The input to read from.
+     * @return The payload.
+     * @throws IOException if reading fails.
+     */
+    T read(DataInput in) throws IOException;
+}
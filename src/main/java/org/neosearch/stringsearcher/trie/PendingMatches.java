@@ -0,0 +1,61 @@
+package org.neosearch.stringsearcher.trie;
+
+import java.util.Arrays;
+
+import org.neosearch.stringsearcher.MatchHandler;
+
+/**
+ * Buffers the verified matches of a scan which finds them in the order of
+ * their start, until they can be reported in the order of their end, the
+ * shorter match first, as the automata report them.
+ *
+ * @author Daniel Beck
+ */
+final class PendingMatches {
+
+    /**
+     * The start, end and keyword id of every pending match, sorted.
+     */
+    private int[] matches = new int[3 * 8];
+
+    private int size;
+
+    void add(final int start, final int end, final int keywordId) {
+        if (this.size == this.matches.length) {
+            this.matches = Arrays.copyOf(this.matches, 2 * this.matches.length);
+        }
+
+        int i = this.size;
+        while (i > 0 && (this.matches[i - 2] > end || this.matches[i - 2] == end && this.matches[i - 3] < start)) {
+            this.matches[i] = this.matches[i - 3];
+            this.matches[i + 1] = this.matches[i - 2];
+            this.matches[i + 2] = this.matches[i - 1];
+            i -= 3;
+        }
+        this.matches[i] = start;
+        this.matches[i + 1] = end;
+        this.matches[i + 2] = keywordId;
+        this.size += 3;
+    }
+
+    /**
+     * Reports the pending matches which end before a position.
+     *
+     * @return true if the scan has to stop.
+     */
+    boolean release(final int position, final MatchHandler matchHandler, final boolean stopOnHit) {
+        int released = 0;
+        boolean stop = false;
+        while (released < this.size && this.matches[released + 1] < position && !stop) {
+            stop = matchHandler.onMatch(this.matches[released], this.matches[released + 1],
+                    this.matches[released + 2]) && stopOnHit;
+            released += 3;
+        }
+
+        if (released > 0) {
+            System.arraycopy(this.matches, released, this.matches, 0, this.size - released);
+            this.size -= released;
+        }
+        return stop;
+    }
+}
@@ -1,6 +1,9 @@
 package org.neosearch.stringsearcher.trie;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * <p>
@@ -13,7 +16,8 @@ import java.util.*;
  * able to fall back on a state with less depth</li>
  * <li>emits; when this state is passed and keywords have been matched, the
  * matches and their payloads must be 'emitted' so that they can be used later
- * on.</li>
+ * on. A state only holds the keyword ending in itself, the keywords which are
+ * suffixes of it are found by following the output links.</li>
  * </ul>
  * <p>
  * The root state is special in the sense that it has no failure state; it
@@ -25,6 +29,13 @@ import java.util.*;
  */
 public class State<T> {
 
+    private static final char[] NO_CHARACTERS = new char[0];
+
+    /**
+     * Up to this many transitions are searched linearly, more by binary search.
+     */
+    private static final int LINEAR_SEARCH_TRANSITIONS = 8;
+
     /**
      * effective the size of the keyword
      */
@@ -38,9 +49,20 @@ public class State<T> {
 
     /**
      * referred to in the white paper as the 'goto' structure. From a state it is
-     * possible to go to other states, depending on the character passed.
+     * possible to go to other states, depending on the character passed. The
+     * characters are sorted, the states are at the same indexes, so a transition
+     * is looked up without boxing the character.
      */
-    private final Map<Character, State<T>> success = new HashMap<>();
+    private char[] transitionCharacters = NO_CHARACTERS;
+
+    private State<T>[] transitionStates = emptyStates();
+
+    private int transitionCount;
+
+    /**
+     * Identifies the state while scanning a text in several parts
+     */
+    private int id;
 
     /**
      * If no matching states are found, the failure state will be returned
@@ -48,10 +70,26 @@ public class State<T> {
     private State<T> failure;
 
     /**
-     * Whenever this state is reached, it will emit the matches keywords for future
-     * reference
+     * Whenever this state is reached, it will emit the matched keyword for future
+     * reference. The keyword is referenced by its id in the {@link KeywordTable},
+     * -1 if no keyword ends in this state.
+     */
+    private int output = -1;
+
+    /**
+     * The dictionary-suffix link; the nearest state in the chain of failure states
+     * which has an output, null if there is none.
+     */
+    private State<T> outputLink;
+
+    /**
+     * @return The estimated heap size of this state and its transition arrays in
+     *         bytes, without the states they lead to.
      */
-    private Set<Payload<T>> emits;
+    long estimateHeapSize() {
+        return HeapSize.align(HeapSize.OBJECT_HEADER + 5 * HeapSize.REFERENCE + 4 * 4)
+                + HeapSize.of(this.transitionCharacters) + HeapSize.of(this.transitionStates);
+    }
 
     /**
      * Constructs a root state with depth equals to 0.
@@ -77,8 +115,9 @@ public class State<T> {
      * @param ignoreRootState if true, the root state is set as a side effect to
      *                        this method.
      */
-    private State<T> nextState(final Character character, final boolean ignoreRootState) {
-        State<T> nextState = this.success.get(character);
+    private State<T> nextState(final char character, final boolean ignoreRootState) {
+        final int index = indexOf(character);
+        State<T> nextState = index >= 0 ? this.transitionStates[index] : null;
 
         if (!ignoreRootState && nextState == null && this.rootState != null) {
             nextState = this.rootState;
@@ -87,30 +126,77 @@ public class State<T> {
         return nextState;
     }
 
-    public State<T> nextState(final Character character) {
+    public State<T> nextState(final char character) {
         return nextState(character, false);
     }
 
-    public State<T> nextStateIgnoreRootState(Character character) {
+    public State<T> nextStateIgnoreRootState(final char character) {
         return nextState(character, true);
     }
 
-    public State<T> addState(String keyword) {
+    /**
+     * Returns the index of the transition for a character.
+     *
+     * @return The index, or <code>-(insertion point) - 1</code> if there is no
+     *         transition for the character.
+     */
+    private int indexOf(final char character) {
+        final char[] characters = this.transitionCharacters;
+        final int count = this.transitionCount;
+        if (count <= LINEAR_SEARCH_TRANSITIONS) {
+            for (int i = 0; i < count; i++) {
+                if (characters[i] >= character) {
+                    return characters[i] == character ? i : -i - 1;
+                }
+            }
+            return -count - 1;
+        }
+        return Arrays.binarySearch(characters, 0, count, character);
+    }
+
+    /**
+     * Adds the states of a keyword below this state, while the trie is built.
+     *
+     * @param keyword The keyword.
+     * @return The state the keyword ends in.
+     */
+    State<T> addState(final String keyword) {
         State<T> state = this;
 
-        for (final Character character : keyword.toCharArray()) {
-            state = state.addState(character);
+        for (int i = 0; i < keyword.length(); i++) {
+            state = state.addState(keyword.charAt(i));
         }
 
         return state;
     }
 
-    public State<T> addState(Character character) {
-        State<T> nextState = nextStateIgnoreRootState(character);
-        if (nextState == null) {
-            nextState = new State<T>(this.depth + 1);
-            this.success.put(character, nextState);
+    /**
+     * Adds a goto transition for a character, while the trie is built.
+     *
+     * @param character The character.
+     * @return The existing or new state the transition leads to.
+     */
+    State<T> addState(final char character) {
+        final int index = indexOf(character);
+        if (index >= 0) {
+            return this.transitionStates[index];
         }
+
+        final int insertion = -index - 1;
+        if (this.transitionCount == this.transitionCharacters.length) {
+            final int capacity = Math.max(2, 2 * this.transitionCount);
+            this.transitionCharacters = Arrays.copyOf(this.transitionCharacters, capacity);
+            this.transitionStates = Arrays.copyOf(this.transitionStates, capacity);
+        }
+        System.arraycopy(this.transitionCharacters, insertion, this.transitionCharacters, insertion + 1,
+                this.transitionCount - insertion);
+        System.arraycopy(this.transitionStates, insertion, this.transitionStates, insertion + 1,
+                this.transitionCount - insertion);
+
+        final State<T> nextState = new State<T>(this.depth + 1);
+        this.transitionCharacters[insertion] = character;
+        this.transitionStates[insertion] = nextState;
+        this.transitionCount++;
         return nextState;
     }
 
@@ -118,51 +204,90 @@ public class State<T> {
         return this.depth;
     }
 
+    public int getId() {
+        return this.id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
     /**
-     * Adds a payload to be emitted for this state.
+     * Sets the keyword to be emitted for this state.
      * 
-     * @param payload Payload to be emitted.
+     * @param keywordId Id of the keyword to be emitted.
      */
-    public void addEmit(Payload<T> payload) {
-        if (this.emits == null) {
-            this.emits = new TreeSet<>();
-        }
-        this.emits.add(payload);
+    void setOutput(final int keywordId) {
+        this.output = keywordId;
     }
 
     /**
-     * Adds a collection of payloads to be emitted for this state.
+     * Returns the id of the keyword ending in this state.
      * 
-     * @param emits Collection of payloads to be emitted.
+     * @return Id of the emitted keyword, -1 if there is none.
      */
-    public void addEmit(Collection<Payload<T>> emits) {
-        for (Payload<T> emit : emits) {
-            addEmit(emit);
-        }
+    public int getOutput() {
+        return this.output;
     }
 
     /**
-     * Returns a collection of emitted payloads for this state.
+     * Returns the nearest failure state which emits a keyword.
      * 
-     * @return Collection of emitted payloads.
+     * @return The next state of the output chain, null if there is none.
      */
-    public Collection<Payload<T>> emit() {
-        return this.emits == null ? Collections.<Payload<T>>emptyList() : this.emits;
+    public State<T> outputLink() {
+        return this.outputLink;
+    }
+
+    void setOutputLink(State<T> outputLink) {
+        this.outputLink = outputLink;
     }
 
     public State<T> failure() {
         return this.failure;
     }
 
-    public void setFailure(State<T> failState) {
+    void setFailure(State<T> failState) {
         this.failure = failState;
     }
 
     public Collection<State<T>> getStates() {
-        return this.success.values();
+        return Arrays.asList(Arrays.copyOf(this.transitionStates, this.transitionCount));
     }
 
     public Collection<Character> getTransitions() {
-        return this.success.keySet();
+        final List<Character> transitions = new ArrayList<>(this.transitionCount);
+        for (int i = 0; i < this.transitionCount; i++) {
+            transitions.add(this.transitionCharacters[i]);
+        }
+        return transitions;
+    }
+
+    /**
+     * @return The number of goto transitions.
+     */
+    int getTransitionCount() {
+        return this.transitionCount;
+    }
+
+    /**
+     * @param index The index of the transition, in the order of the characters.
+     * @return The character of the transition.
+     */
+    char getTransitionCharacter(final int index) {
+        return this.transitionCharacters[index];
+    }
+
+    /**
+     * @param index The index of the transition, in the order of the characters.
+     * @return The state the transition leads to.
+     */
+    State<T> getTransitionState(final int index) {
+        return this.transitionStates[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> State<T>[] emptyStates() {
+        return (State<T>[]) new State<?>[0];
     }
 }
\ No newline at end of file
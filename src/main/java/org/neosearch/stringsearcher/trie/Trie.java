@@ -1,27 +1,16 @@
 package org.neosearch.stringsearcher.trie;
 
-import static java.lang.Character.isWhitespace;
-
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Queue;
 
-import org.neosearch.stringsearcher.Emit;
-import org.neosearch.stringsearcher.EmitHandler;
-import org.neosearch.stringsearcher.FragmentToken;
-import org.neosearch.stringsearcher.MatchToken;
-import org.neosearch.stringsearcher.StringSearcher;
+import org.neosearch.stringsearcher.AbstractStringSearcher;
+import org.neosearch.stringsearcher.MatchHandler;
 import org.neosearch.stringsearcher.StringSearcherConfig;
 import org.neosearch.stringsearcher.StringSearcherPrepare;
-import org.neosearch.stringsearcher.Token;
-import org.neosearch.stringsearcher.trie.handler.DefaultEmitHandler;
-import org.neosearch.stringsearcher.trie.handler.StatefulEmitHandler;
-import org.neosearch.stringsearcher.trie.interval.IntervalTree;
-import org.neosearch.stringsearcher.trie.interval.Intervalable;
-import org.neosearch.stringsearcher.trie.util.ListElementRemoval;
-import org.neosearch.stringsearcher.trie.util.ListElementRemoval.RemoveElementPredicate;
+import org.neosearch.stringsearcher.trie.util.CaseFolding;
 
 /**
  * A trie implementation, based on the Aho-Corasick white paper, Bell
@@ -29,19 +18,30 @@ import org.neosearch.stringsearcher.trie.util.ListElementRemoval.RemoveElementPr
  * <p>
  *
  * The payload trie adds the possibility to specify emitted payloads for each
- * added keyword.
+ * added keyword. Keywords and payloads are stored once in a
+ * {@link KeywordTable}, the states only refer to their keyword ids. The
+ * keywords which are suffixes of a state are reached through its output link
+ * instead of being copied into the state, so building the trie takes time
+ * linear in the total length of the keywords.
  * 
  * @author Daniel Beck
  * @param <T> The type of the supplied of the payload
  */
-public class Trie<T> implements StringSearcher<T>, StringSearcherPrepare<T> {
-
-    private final StringSearcherConfig trieConfig;
+public class Trie<T> extends AbstractStringSearcher<T> implements StringSearcherPrepare<T> {
 
     private final State<T> rootState;
 
+    private KeywordTable.Builder<T> keywordTableBuilder = new KeywordTable.Builder<>();
+
+    private KeywordTable<T> keywordTable;
+
+    /**
+     * All states, indexed by their ids. The root state has the id 0.
+     */
+    private final List<State<T>> states = new ArrayList<>();
+
     public Trie(final StringSearcherConfig trieConfig) {
-        this.trieConfig = trieConfig;
+        super(trieConfig);
         this.rootState = new State<>();
     }
 
@@ -50,36 +50,30 @@ public class Trie<T> implements StringSearcher<T>, StringSearcherPrepare<T> {
      *
      * @param keyword The search term to add to the list of search terms.
      * @param emit    the payload to emit for this search term.
-     * @throws NullPointerException if the keyword is null.
+     * @throws NullPointerException  if the keyword is null.
+     * @throws IllegalStateException if the trie has already been built.
      */
     public void addSearchString(String keyword, T emit) {
-        if (keyword.isEmpty()) {
-            return;
+        if (this.keywordTableBuilder == null) {
+            throw new IllegalStateException("Search strings cannot be added after build()");
         }
 
         if (isCaseInsensitive()) {
-            keyword = keyword.toLowerCase();
+            keyword = CaseFolding.fold(keyword);
         }
 
-        addState(keyword).addEmit(new Payload<T>(keyword, emit));
+        this.keywordTableBuilder.add(keyword, emit);
     }
 
     /**
      * Used by the builder to add a text search keyword.
      *
      * @param keyword The search term to add to the list of search terms.
-     * @throws NullPointerException if the keyword is null.
+     * @throws NullPointerException  if the keyword is null.
+     * @throws IllegalStateException if the trie has already been built.
      */
     public void addSearchString(String keyword) {
-        if (keyword.isEmpty()) {
-            return;
-        }
-
-        if (isCaseInsensitive()) {
-            keyword = keyword.toLowerCase();
-        }
-
-        addState(keyword).addEmit(new Payload<T>(keyword, null));
+        addSearchString(keyword, null);
     }
 
     public void addSearchStrings(String... keywords) {
@@ -93,207 +87,45 @@ public class Trie<T> implements StringSearcher<T>, StringSearcherPrepare<T> {
             addSearchString(keyword);
     }
 
-    private State<T> addState(final String keyword) {
-        return getRootState().addState(keyword);
-    }
-
-    /**
-     * Tokenizes the specified text and returns the emitted outputs.
-     * 
-     * @param text The text to tokenize.
-     */
-    public Collection<Token<T>> tokenize(final String text) {
-        final Collection<Token<T>> tokens = new ArrayList<>();
-        final Collection<Emit<T>> collectedEmits = parseText(text);
-        int lastCollectedPosition = -1;
-
-        for (final Emit<T> emit : collectedEmits) {
-            if (emit.getStart() - lastCollectedPosition > 1) {
-                tokens.add(createFragment(emit, text, lastCollectedPosition));
-            }
-
-            tokens.add(createMatch(emit, text));
-            lastCollectedPosition = emit.getEnd();
-        }
-
-        if (text.length() - lastCollectedPosition > 1) {
-            tokens.add(createFragment(null, text, lastCollectedPosition));
-        }
-
-        return tokens;
-    }
-
-    private Token<T> createFragment(final Emit<T> emit, final String text, final int lastCollectedPosition) {
-        return new FragmentToken<T>(text.substring(lastCollectedPosition + 1, emit == null ? text.length() : emit.getStart()));
-    }
-
-    private Token<T> createMatch(Emit<T> emit, String text) {
-        return new MatchToken<T>(text.substring(emit.getStart(), emit.getEnd() + 1), emit);
-    }
-
-    /**
-     * Tokenizes a specified text and returns the emitted outputs.
-     * 
-     * @param text The character sequence to tokenize.
-     * @return A collection of emits.
-     */
-    public Collection<Emit<T>> parseText(final CharSequence text) {
-        return parseText(text, new DefaultEmitHandler<T>());
-    }
-
-    /**
-     * Tokenizes the specified text by using a custom EmitHandler and returns the
-     * emitted outputs.
-     * 
-     * @param text        The character sequence to tokenize.
-     * @param emitHandler The emit handler that will be used to parse the text.
-     * @return A collection of emits.
-     */
-    @SuppressWarnings("unchecked")
-    public Collection<Emit<T>> parseText(final CharSequence text, final StatefulEmitHandler<T> emitHandler) {
-        parseText(text, (EmitHandler<T>) emitHandler);
-
-        final List<Emit<T>> collectedEmits = emitHandler.getEmits();
-
-        if (trieConfig.isOnlyWholeWords()) {
-            removePartialMatches(text, collectedEmits);
-        }
-
-        if (trieConfig.isOnlyWholeWordsWhiteSpaceSeparated()) {
-            removePartialMatchesWhiteSpaceSeparated(text, collectedEmits);
-        }
-
-        if (!trieConfig.isAllowOverlaps()) {
-            IntervalTree intervalTree = new IntervalTree((List<Intervalable>) (List<?>) collectedEmits);
-            intervalTree.removeOverlaps((List<Intervalable>) (List<?>) collectedEmits);
-        }
-
-        return collectedEmits;
-    }
-
-    /**
-     * Returns true if the text contains contains one of the search terms. Else,
-     * returns false.
-     * 
-     * @param text Specified text.
-     * @return true if the text contains one of the search terms. Else, returns
-     *         false.
-     */
-    public boolean containsMatch(final CharSequence text) {
-        return firstMatch(text) != null;
-    }
-
-    /**
-     * Tokenizes the specified text by using a custom EmitHandler and returns the
-     * emitted outputs.
-     * 
-     * @param text        The character sequence to tokenize.
-     * @param emitHandler The emit handler that will be used to parse the text.
-     */
-
-    public void parseText(final CharSequence text, final EmitHandler<T> emitHandler) {
-        State<T> currentState = getRootState();
-
-        for (int position = 0; position < text.length(); position++) {
-            Character character = text.charAt(position);
-
-            // TODO: Maybe lowercase the entire string at once?
-            if (trieConfig.isCaseInsensitive()) {
-                character = Character.toLowerCase(character);
-            }
-
-            currentState = getState(currentState, character);
-            if (storeEmits(position, currentState, emitHandler) && trieConfig.isStopOnHit()) {
-                return;
-            }
-        }
-    }
-
     /**
-     * The first matching text sequence.
+     * Scans the text by following the goto and failure transitions of the trie.
      *
-     * @param text The text to search for keywords.
-     * @return null if no matches found.
+     * @param text         The character sequence to scan.
+     * @param from         The index of the first character to scan.
+     * @param to           The index after the last character to scan.
+     * @param state        The id of the state to start from.
+     * @param matchHandler The match handler that will be used to parse the text.
+     * @param stopOnHit    If true, stops after the first accepted match.
+     * @return The id of the state after the last scanned character.
      */
-    public Emit<T> firstMatch(final CharSequence text) {
-        if (!trieConfig.isAllowOverlaps()) {
-            // Slow path. Needs to find all the matches to detect overlaps.
-            final Collection<Emit<T>> parseText = parseText(text);
-
-            if (parseText != null && !parseText.isEmpty()) {
-                return parseText.iterator().next();
+    @Override
+    protected int scan(final CharSequence text, final int from, final int to, final int state,
+            final MatchHandler matchHandler, final boolean stopOnHit) {
+        final boolean caseInsensitive = isCaseInsensitive();
+        State<T> currentState = this.states.get(state);
+        int[] outputs = null;
+
+        for (int position = from; position < to; position++) {
+            char character = text.charAt(position);
+
+            if (caseInsensitive) {
+                character = CaseFolding.fold(character);
             }
-        } else {
-            // Fast path. Returns first match found.
-            State<T> currentState = getRootState();
-
-            for (int position = 0; position < text.length(); position++) {
-                Character character = text.charAt(position);
 
-                // TODO: Lowercase the entire string at once?
-                if (trieConfig.isCaseInsensitive()) {
-                    character = Character.toLowerCase(character);
+            currentState = getState(currentState, character);
+            if (currentState.getOutput() != -1 || currentState.outputLink() != null) {
+                if (outputs == null) {
+                    outputs = new int[this.keywordTable.getMaxLength()];
                 }
-
-                currentState = getState(currentState, character);
-                Collection<Payload<T>> payloads = currentState.emit();
-
-                if (payloads != null && !payloads.isEmpty()) {
-                    for (final Payload<T> payload : payloads) {
-                        final Emit<T> emit = new Emit<>(position - payload.getKeyword().length() + 1, position,
-                                payload.getKeyword(), payload.getData());
-                        if (trieConfig.isOnlyWholeWords()) {
-                            if (!isPartialMatch(text, emit)) {
-                                return emit;
-                            }
-                        } else {
-                            return emit;
-                        }
-                    }
+                if (storeEmits(position, currentState, outputs, matchHandler, stopOnHit) && stopOnHit) {
+                    return currentState.getId();
                 }
             }
         }
-
-        return null;
-    }
-
-    private boolean isPartialMatch(final CharSequence searchText, final Emit<T> emit) {
-        return (emit.getStart() != 0 && Character.isAlphabetic(searchText.charAt(emit.getStart() - 1)))
-                || (emit.getEnd() + 1 != searchText.length() && Character.isAlphabetic(searchText.charAt(emit.getEnd() + 1)));
-    }
-
-    private void removePartialMatches(final CharSequence searchText, final List<Emit<T>> collectedEmits) {
-
-        final RemoveElementPredicate<Emit<T>> predicate = new RemoveElementPredicate<Emit<T>>() {
-
-            @Override
-            public boolean remove(Emit<T> emit) {
-                return isPartialMatch(searchText, emit);
-            }
-
-        };
-
-        ListElementRemoval.removeIf(collectedEmits, predicate);
-    }
-
-    private void removePartialMatchesWhiteSpaceSeparated(final CharSequence searchText, final List<Emit<T>> collectedEmits) {
-        final long size = searchText.length();
-        final List<Emit<T>> removeEmits = new ArrayList<>();
-
-        for (final Emit<T> emit : collectedEmits) {
-            if ((emit.getStart() == 0 || isWhitespace(searchText.charAt(emit.getStart() - 1)))
-                    && (emit.getEnd() + 1 == size || isWhitespace(searchText.charAt(emit.getEnd() + 1)))) {
-                continue;
-            }
-            removeEmits.add(emit);
-        }
-
-        for (final Emit<T> removeEmit : removeEmits) {
-            collectedEmits.remove(removeEmit);
-        }
+        return currentState.getId();
     }
 
-    private State<T> getState(State<T> currentState, final Character character) {
+    private State<T> getState(State<T> currentState, final char character) {
         State<T> newCurrentState = currentState.nextState(character);
 
         while (newCurrentState == null) {
@@ -304,13 +136,32 @@ public class Trie<T> implements StringSearcher<T>, StringSearcherPrepare<T> {
         return newCurrentState;
     }
 
+    /**
+     * Creates the states of all search strings and computes their failure states.
+     *
+     * @return This trie.
+     */
     public Trie<T> build() {
-        final Queue<State<T>> queue = new ArrayDeque<>();
+        if (this.keywordTableBuilder == null) {
+            return this;
+        }
+
+        this.keywordTable = this.keywordTableBuilder.build();
+        this.keywordTableBuilder = null;
+
         final State<T> startState = getRootState();
+        for (int keywordId = 0; keywordId < this.keywordTable.size(); keywordId++) {
+            startState.addState(this.keywordTable.getKeyword(keywordId)).setOutput(keywordId);
+        }
+
+        final Queue<State<T>> queue = new ArrayDeque<>();
+        this.states.add(startState);
 
         // First, set the fail state of all depth 1 states to the root state
-        for (State<T> depthOneState : startState.getStates()) {
+        for (int i = 0; i < startState.getTransitionCount(); i++) {
+            final State<T> depthOneState = startState.getTransitionState(i);
             depthOneState.setFailure(startState);
+            addState(depthOneState);
             queue.add(depthOneState);
         }
 
@@ -318,8 +169,10 @@ public class Trie<T> implements StringSearcher<T>, StringSearcherPrepare<T> {
         while (!queue.isEmpty()) {
             final State<T> currentState = queue.remove();
 
-            for (final Character transition : currentState.getTransitions()) {
-                State<T> targetState = currentState.nextState(transition);
+            for (int i = 0; i < currentState.getTransitionCount(); i++) {
+                final char transition = currentState.getTransitionCharacter(i);
+                final State<T> targetState = currentState.getTransitionState(i);
+                addState(targetState);
                 queue.add(targetState);
 
                 State<T> traceFailureState = currentState.failure();
@@ -329,33 +182,84 @@ public class Trie<T> implements StringSearcher<T>, StringSearcherPrepare<T> {
 
                 final State<T> newFailureState = traceFailureState.nextState(transition);
                 targetState.setFailure(newFailureState);
-                targetState.addEmit(newFailureState.emit());
+                targetState.setOutputLink(
+                        newFailureState.getOutput() != -1 ? newFailureState : newFailureState.outputLink());
             }
         }
+        freeze(this.keywordTable.size());
         return this;
     }
 
-    private boolean storeEmits(final int position, final State<T> currentState, final EmitHandler<T> emitHandler) {
-        boolean emitted = false;
-        final Collection<Payload<T>> payloads = currentState.emit();
+    /**
+     * Numbers the state, so it can be referenced by its id.
+     */
+    private void addState(final State<T> state) {
+        state.setId(this.states.size());
+        this.states.add(state);
+    }
 
-        // TODO: The check for empty might be superfluous.
-        if (payloads != null && !payloads.isEmpty()) {
-            for (final Payload<T> payload : payloads) {
-                emitted = emitHandler.emit(new Emit<T>(position - payload.getKeyword().length() + 1, position,
-                        payload.getKeyword(), payload.getData())) || emitted;
+    private boolean storeEmits(final int position, final State<T> currentState, final int[] outputs,
+            final MatchHandler matchHandler, final boolean stopOnHit) {
+        // The output links lead from the longest to the shortest keyword. Every
+        // keyword of the chain has a different length, so the outputs fit.
+        int count = 0;
+        for (State<T> state = currentState.getOutput() != -1 ? currentState : currentState.outputLink(); state != null;
+                state = state.outputLink()) {
+            outputs[count++] = state.getOutput();
+        }
 
-                if (emitted && trieConfig.isStopOnHit()) {
-                    break;
-                }
+        boolean emitted = false;
+        while (count > 0) {
+            final int keywordId = outputs[--count];
+            emitted = matchHandler.onMatch(position - this.keywordTable.getLength(keywordId) + 1, position, keywordId)
+                    || emitted;
+
+            if (emitted && stopOnHit) {
+                break;
             }
         }
 
         return emitted;
     }
 
-    private boolean isCaseInsensitive() {
-        return trieConfig.isCaseInsensitive();
+    /**
+     * Estimates the heap memory of the states and the search strings by visiting
+     * every state.
+     *
+     * @return The estimated size in bytes, -1 if the trie is not built.
+     */
+    @Override
+    public long estimateHeapSize() {
+        if (this.keywordTable == null) {
+            return -1;
+        }
+
+        long size = this.keywordTable.estimateHeapSize();
+        final Queue<State<T>> states = new ArrayDeque<>();
+        states.add(this.rootState);
+        while (!states.isEmpty()) {
+            final State<T> state = states.poll();
+            size += state.estimateHeapSize();
+            for (int i = 0; i < state.getTransitionCount(); i++) {
+                states.add(state.getTransitionState(i));
+            }
+        }
+        return size;
+    }
+
+    @Override
+    protected int getMaxSearchStringLength() {
+        return this.keywordTable.getMaxLength();
+    }
+
+    @Override
+    public String getSearchString(final int keywordId) {
+        return this.keywordTable.getKeyword(keywordId);
+    }
+
+    @Override
+    public T getPayload(final int keywordId) {
+        return this.keywordTable.getPayload(keywordId);
     }
 
     private State<T> getRootState() {
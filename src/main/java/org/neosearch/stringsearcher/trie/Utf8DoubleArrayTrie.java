@@ -0,0 +1,647 @@
+package org.neosearch.stringsearcher.trie;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.neosearch.stringsearcher.AbstractStringSearcher;
+import org.neosearch.stringsearcher.Emit;
+import org.neosearch.stringsearcher.MatchHandler;
+import org.neosearch.stringsearcher.StreamMatchHandler;
+import org.neosearch.stringsearcher.StringSearcherConfig;
+import org.neosearch.stringsearcher.StringSearcherPrepare;
+import org.neosearch.stringsearcher.trie.util.CaseFolding;
+
+/**
+ * A double-array Aho-Corasick automaton whose transitions are built over the
+ * UTF-8 encoding of the search strings.
+ * <p>
+ * UTF-8 encoded input, like <code>byte[]</code> or a heap or direct
+ * <code>ByteBuffer</code>, can be searched without decoding it to a String
+ * first. The matches are reported with byte offsets, which can be converted to
+ * character offsets with {@link #toCharOffset(byte[], int, int)}. Matches of
+ * byte input are neither filtered for whole words nor for overlaps.
+ * <p>
+ * Character sequences are encoded on the fly while they are scanned, so the
+ * searcher can be used like every other StringSearcher. Search strings cannot
+ * contain unpaired surrogates, so an unpaired surrogate in the text resets the
+ * automaton to its root. A streamed text keeps a high surrogate at the end of
+ * its buffer for the next read, so surrogate pairs are never split.
+ * <p>
+ * If case is ignored, ASCII bytes are folded by a table lookup. Other
+ * characters are decoded and folded only if their lower case has an encoding
+ * of the same length, so byte offsets always refer to the input.
+ *
+ * @author Daniel Beck
+ * @param <T> The type of the supplied of the payload
+ */
+public class Utf8DoubleArrayTrie<T> extends AbstractStringSearcher<T> implements StringSearcherPrepare<T> {
+
+    private static final int ROOT = DoubleArrayBuilder.ROOT;
+
+    private static final int NONE = DoubleArrayBuilder.NONE;
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private KeywordTable.Builder<T> keywordTableBuilder = new KeywordTable.Builder<>();
+
+    private KeywordTable<T> keywordTable;
+
+    private int[] byteLengths;
+
+    private int[] charLengths;
+
+    /**
+     * The codes of all byte values, 0 for bytes which do not occur in any search
+     * string.
+     */
+    private final int[] codes = new int[256];
+
+    /**
+     * The ASCII lower case of all byte values.
+     */
+    private final int[] lowerCase = new int[256];
+
+    private int[] base;
+
+    private int[] check;
+
+    private int[] fail;
+
+    private int[] output;
+
+    private int[] outputLink;
+
+    private int maxOutputs;
+
+    public Utf8DoubleArrayTrie(final StringSearcherConfig config) {
+        super(config);
+        for (int b = 0; b < 256; b++) {
+            this.lowerCase[b] = b < 0x80 ? CaseFolding.fold((char) b) : b;
+        }
+    }
+
+    /**
+     * Used by the builder to add a text search keyword with a emit payload.
+     *
+     * @param keyword The search term to add to the list of search terms.
+     * @param emit    the payload to emit for this search term.
+     * @throws NullPointerException     if the keyword is null.
+     * @throws IllegalArgumentException if the keyword contains a surrogate
+     *                                  which is not part of a pair, since it
+     *                                  cannot be encoded in UTF-8.
+     * @throws IllegalStateException    if the automaton has already been built.
+     */
+    @Override
+    public void addSearchString(String keyword, final T emit) {
+        if (this.keywordTableBuilder == null) {
+            throw new IllegalStateException("Search strings cannot be added after build()");
+        }
+        checkSurrogatePairs(keyword);
+
+        if (isCaseInsensitive()) {
+            keyword = CaseFolding.fold(keyword);
+        }
+
+        this.keywordTableBuilder.add(keyword, emit);
+    }
+
+    private static void checkSurrogatePairs(final String keyword) {
+        for (int i = 0; i < keyword.length(); i++) {
+            final char character = keyword.charAt(i);
+            if (Character.isHighSurrogate(character) && i + 1 < keyword.length()
+                    && Character.isLowSurrogate(keyword.charAt(i + 1))) {
+                i++;
+            } else if (Character.isSurrogate(character)) {
+                throw new IllegalArgumentException(
+                        "The search string contains an unpaired surrogate at index " + i + ": " + keyword);
+            }
+        }
+    }
+
+    /**
+     * Used by the builder to add a text search keyword.
+     *
+     * @param keyword The search term to add to the list of search terms.
+     * @throws NullPointerException  if the keyword is null.
+     * @throws IllegalStateException if the automaton has already been built.
+     */
+    @Override
+    public void addSearchString(final String keyword) {
+        addSearchString(keyword, null);
+    }
+
+    @Override
+    public void addSearchStrings(final String... keywords) {
+        for (String keyword : keywords)
+            addSearchString(keyword);
+    }
+
+    @Override
+    public void addSearchStrings(final Collection<String> keywords) {
+        for (String keyword : keywords)
+            addSearchString(keyword);
+    }
+
+    /**
+     * Encodes the added search strings and compiles them into the double array.
+     *
+     * @return This automaton.
+     */
+    @Override
+    public Utf8DoubleArrayTrie<T> build() {
+        if (this.keywordTableBuilder == null) {
+            return this;
+        }
+
+        this.keywordTable = this.keywordTableBuilder.build();
+        this.keywordTableBuilder = null;
+
+        final byte[][] encoded = new byte[this.keywordTable.size()][];
+        this.byteLengths = new int[encoded.length];
+        this.charLengths = new int[encoded.length];
+        final int[] frequencies = new int[256];
+        for (int keywordId = 0; keywordId < encoded.length; keywordId++) {
+            encoded[keywordId] = this.keywordTable.getKeyword(keywordId).getBytes(StandardCharsets.UTF_8);
+            this.byteLengths[keywordId] = encoded[keywordId].length;
+            this.charLengths[keywordId] = this.keywordTable.getLength(keywordId);
+            for (final byte b : encoded[keywordId]) {
+                frequencies[b & 0xFF]++;
+            }
+        }
+
+        // Frequent bytes get small codes.
+        final long[] bytes = new long[256];
+        for (int b = 0; b < 256; b++) {
+            bytes[b] = ((long) (Integer.MAX_VALUE - frequencies[b]) << 8) | b;
+        }
+        Arrays.sort(bytes);
+        int alphabetSize = 0;
+        for (final long b : bytes) {
+            if (frequencies[(int) (b & 0xFF)] > 0) {
+                this.codes[(int) (b & 0xFF)] = ++alphabetSize;
+            }
+        }
+
+        final int[] sortedIds = new int[encoded.length];
+        for (int i = 0; i < sortedIds.length; i++) {
+            sortedIds[i] = i;
+        }
+        sort(sortedIds, new int[sortedIds.length], 0, sortedIds.length, encoded);
+
+        final DoubleArrayBuilder builder = new DoubleArrayBuilder(new DoubleArrayBuilder.Keys() {
+
+            @Override
+            public int length(final int keywordId) {
+                return encoded[keywordId].length;
+            }
+
+            @Override
+            public int code(final int keywordId, final int depth) {
+                return codes[encoded[keywordId][depth] & 0xFF];
+            }
+        }, alphabetSize);
+        builder.build(sortedIds);
+
+        this.base = builder.getBase();
+        this.check = builder.getCheck();
+        this.fail = builder.getFail();
+        this.output = builder.getOutput();
+        this.outputLink = builder.getOutputLink();
+        this.maxOutputs = builder.getMaxOutputs();
+        freeze(this.keywordTable.size());
+        return this;
+    }
+
+    /**
+     * Parses UTF-8 encoded bytes and returns the matches with byte offsets.
+     *
+     * @param bytes The UTF-8 encoded text.
+     * @return The emits, their start and end are byte offsets.
+     */
+    public List<Emit<T>> parseBytes(final byte[] bytes) {
+        final List<Emit<T>> emits = new ArrayList<>();
+        parseBytes(bytes, 0, bytes.length, new MatchHandler() {
+
+            @Override
+            public boolean onMatch(final int start, final int end, final int keywordId) {
+                emits.add(createEmit(start, end, keywordId));
+                return true;
+            }
+        });
+        return emits;
+    }
+
+    /**
+     * Parses a range of UTF-8 encoded bytes and reports every match to the match
+     * handler. The start and end of a match are indexes into the array.
+     *
+     * @param bytes        The UTF-8 encoded text.
+     * @param offset       The index of the first byte to parse.
+     * @param length       The number of bytes to parse.
+     * @param matchHandler The match handler to call for each match.
+     */
+    public void parseBytes(final byte[] bytes, final int offset, final int length, final MatchHandler matchHandler) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length);
+        }
+        checkFrozen();
+
+        final boolean caseInsensitive = isCaseInsensitive();
+        final boolean stopOnHit = getConfig().isStopOnHit();
+        final int[] outputs = new int[this.maxOutputs];
+        final int to = offset + length;
+        int state = ROOT;
+
+        for (int position = offset; position < to; position++) {
+            int b = bytes[position] & 0xFF;
+
+            if (caseInsensitive) {
+                if (b >= 0xC0 && b < 0xF0) {
+                    final int sequenceLength = b < 0xE0 ? 2 : 3;
+                    if (position + sequenceLength <= to) {
+                        final int folded = foldedSequence(bytes[position], bytes[position + 1],
+                                sequenceLength == 3 ? bytes[position + 2] : 0, sequenceLength);
+                        if (folded != NONE) {
+                            state = feedSequence(state, folded, sequenceLength, position, outputs, matchHandler,
+                                    stopOnHit);
+                            if (state < 0) {
+                                return;
+                            }
+                            position += sequenceLength - 1;
+                            continue;
+                        }
+                    }
+                }
+                b = this.lowerCase[b];
+            }
+
+            state = nextState(state, this.codes[b]);
+            if ((output[state] != NONE || outputLink[state] != NONE)
+                    && storeEmits(position, state, outputs, this.byteLengths, matchHandler, stopOnHit) && stopOnHit) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Parses the remaining bytes of a UTF-8 encoded buffer and reports every
+     * match to the match handler. The start and end of a match are absolute
+     * indexes into the buffer. The position of the buffer is not changed.
+     *
+     * @param buffer       The UTF-8 encoded text, a heap or a direct buffer.
+     * @param matchHandler The match handler to call for each match.
+     */
+    public void parseBytes(final ByteBuffer buffer, final MatchHandler matchHandler) {
+        if (buffer.hasArray()) {
+            final int arrayOffset = buffer.arrayOffset();
+            parseBytes(buffer.array(), arrayOffset + buffer.position(), buffer.remaining(), new MatchHandler() {
+
+                @Override
+                public boolean onMatch(final int start, final int end, final int keywordId) {
+                    return matchHandler.onMatch(start - arrayOffset, end - arrayOffset, keywordId);
+                }
+            });
+            return;
+        }
+
+        checkFrozen();
+        final boolean caseInsensitive = isCaseInsensitive();
+        final boolean stopOnHit = getConfig().isStopOnHit();
+        final int[] outputs = new int[this.maxOutputs];
+        final int to = buffer.limit();
+        int state = ROOT;
+
+        for (int position = buffer.position(); position < to; position++) {
+            int b = buffer.get(position) & 0xFF;
+
+            if (caseInsensitive) {
+                if (b >= 0xC0 && b < 0xF0) {
+                    final int sequenceLength = b < 0xE0 ? 2 : 3;
+                    if (position + sequenceLength <= to) {
+                        final int folded = foldedSequence(buffer.get(position), buffer.get(position + 1),
+                                sequenceLength == 3 ? buffer.get(position + 2) : 0, sequenceLength);
+                        if (folded != NONE) {
+                            state = feedSequence(state, folded, sequenceLength, position, outputs, matchHandler,
+                                    stopOnHit);
+                            if (state < 0) {
+                                return;
+                            }
+                            position += sequenceLength - 1;
+                            continue;
+                        }
+                    }
+                }
+                b = this.lowerCase[b];
+            }
+
+            state = nextState(state, this.codes[b]);
+            if ((output[state] != NONE || outputLink[state] != NONE)
+                    && storeEmits(position, state, outputs, this.byteLengths, matchHandler, stopOnHit) && stopOnHit) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Decodes a two or three byte sequence and returns the bytes of its lower
+     * case, packed into an int. Returns NONE if the sequence is malformed, is
+     * already in lower case or its lower case has an encoding of a different
+     * length.
+     */
+    private static int foldedSequence(final byte b0, final byte b1, final byte b2, final int sequenceLength) {
+        final char character;
+        if (sequenceLength == 2) {
+            if ((b1 & 0xC0) != 0x80) {
+                return NONE;
+            }
+            character = (char) ((b0 & 0x1F) << 6 | (b1 & 0x3F));
+        } else {
+            if ((b1 & 0xC0) != 0x80 || (b2 & 0xC0) != 0x80) {
+                return NONE;
+            }
+            character = (char) ((b0 & 0x0F) << 12 | (b1 & 0x3F) << 6 | (b2 & 0x3F));
+        }
+
+        final char folded = CaseFolding.fold(character);
+        if (folded == character || Character.isSurrogate(folded)) {
+            return NONE;
+        }
+        if (sequenceLength == 2 && folded >= 0x80 && folded < 0x800) {
+            return (0xC0 | folded >>> 6) << 8 | (0x80 | folded & 0x3F);
+        }
+        if (sequenceLength == 3 && folded >= 0x800) {
+            return (0xE0 | folded >>> 12) << 16 | (0x80 | folded >>> 6 & 0x3F) << 8 | (0x80 | folded & 0x3F);
+        }
+        return NONE;
+    }
+
+    /**
+     * Feeds the packed bytes of a sequence starting at the position into the
+     * automaton. Returns the new state, or a negative value if the scan has to
+     * stop.
+     */
+    private int feedSequence(int state, final int sequence, final int sequenceLength, final int position,
+            final int[] outputs, final MatchHandler matchHandler, final boolean stopOnHit) {
+        for (int i = 0; i < sequenceLength; i++) {
+            final int b = sequence >>> (8 * (sequenceLength - 1 - i)) & 0xFF;
+            state = nextState(state, this.codes[b]);
+            if ((output[state] != NONE || outputLink[state] != NONE)
+                    && storeEmits(position + i, state, outputs, this.byteLengths, matchHandler, stopOnHit)
+                    && stopOnHit) {
+                return -1;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Scans the text by encoding it to UTF-8 and following the transitions of the
+     * double array. The matches are reported with character offsets.
+     *
+     * @param text         The character sequence to scan.
+     * @param from         The index of the first character to scan.
+     * @param to           The index after the last character to scan.
+     * @param state        The state to start from.
+     * @param matchHandler The match handler that will be used to parse the text.
+     * @param stopOnHit    If true, stops after the first accepted match.
+     * @return The state after the last scanned character.
+     */
+    @Override
+    protected int scan(final CharSequence text, final int from, final int to, final int state,
+            final MatchHandler matchHandler, final boolean stopOnHit) {
+        final boolean caseInsensitive = isCaseInsensitive();
+        int[] outputs = null;
+        final int[] charLengths = this.charLengths;
+        int current = state;
+
+        for (int position = from; position < to; position++) {
+            char character = text.charAt(position);
+
+            if (caseInsensitive) {
+                character = CaseFolding.fold(character);
+            }
+
+            if (character < 0x80) {
+                current = nextState(current, this.codes[character]);
+            } else if (character < 0x800) {
+                current = nextState(current, this.codes[0xC0 | character >>> 6]);
+                current = nextState(current, this.codes[0x80 | character & 0x3F]);
+            } else if (!Character.isSurrogate(character)) {
+                current = nextState(current, this.codes[0xE0 | character >>> 12]);
+                current = nextState(current, this.codes[0x80 | character >>> 6 & 0x3F]);
+                current = nextState(current, this.codes[0x80 | character & 0x3F]);
+            } else if (Character.isHighSurrogate(character) && position + 1 < to
+                    && Character.isLowSurrogate(text.charAt(position + 1))) {
+                final int codePoint = Character.toCodePoint(character, text.charAt(++position));
+                current = nextState(current, this.codes[0xF0 | codePoint >>> 18]);
+                current = nextState(current, this.codes[0x80 | codePoint >>> 12 & 0x3F]);
+                current = nextState(current, this.codes[0x80 | codePoint >>> 6 & 0x3F]);
+                current = nextState(current, this.codes[0x80 | codePoint & 0x3F]);
+            } else {
+                current = ROOT;
+            }
+
+            // Search strings are complete characters, so only the last byte of a
+            // character can complete a match.
+            if (output[current] != NONE || outputLink[current] != NONE) {
+                if (outputs == null) {
+                    outputs = new int[this.maxOutputs];
+                }
+                if (storeEmits(position, current, outputs, charLengths, matchHandler, stopOnHit) && stopOnHit) {
+                    return current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Parses the characters of a reader and reports every match to the stream
+     * match handler, like every other StringSearcher. A high surrogate at the
+     * end of the buffer is kept at its front for the next read, so it is
+     * encoded together with its low surrogate.
+     *
+     * @param reader       The reader to read the text from.
+     * @param matchHandler The match handler to call for each match.
+     * @return The number of characters read.
+     * @throws IOException if reading fails.
+     */
+    @Override
+    public long parseStream(final Reader reader, final StreamMatchHandler matchHandler) throws IOException {
+        checkFrozen();
+        final char[] buffer = new char[1 + STREAM_BUFFER_SIZE];
+        final CharBuffer text = CharBuffer.wrap(buffer);
+        final boolean stopOnHit = getConfig().isStopOnHit();
+        final boolean[] accepted = new boolean[1];
+        final long[] offset = new long[1];
+        final MatchHandler streamMatchHandler = new MatchHandler() {
+
+            @Override
+            public boolean onMatch(final int start, final int end, final int keywordId) {
+                final boolean acceptedMatch = matchHandler.onMatch(offset[0] + start, offset[0] + end, keywordId);
+                accepted[0] |= acceptedMatch;
+                return acceptedMatch;
+            }
+        };
+        int state = ROOT;
+        int kept = 0;
+        int read;
+
+        while ((read = reader.read(buffer, kept, STREAM_BUFFER_SIZE)) != -1) {
+            final int end = kept + read;
+            final int scanned = end > 0 && Character.isHighSurrogate(buffer[end - 1]) ? end - 1 : end;
+            state = prefilteredScan(text, 0, scanned, state, streamMatchHandler, stopOnHit);
+
+            if (stopOnHit && accepted[0]) {
+                return offset[0] + end;
+            }
+
+            kept = end - scanned;
+            System.arraycopy(buffer, scanned, buffer, 0, kept);
+            offset[0] += scanned;
+        }
+
+        // A trailing high surrogate is unpaired and cannot be part of a match.
+        return offset[0] + kept;
+    }
+
+    private int nextState(int state, final int code) {
+        if (code == 0) {
+            return ROOT;
+        }
+
+        while (true) {
+            final int next = this.base[state] + code;
+            if (this.check[next] == state) {
+                return next;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = this.fail[state];
+        }
+    }
+
+    private boolean storeEmits(final int position, final int state, final int[] outputs, final int[] lengths,
+            final MatchHandler matchHandler, final boolean stopOnHit) {
+        // The dictionary-suffix links lead from the longest to the shortest keyword.
+        int count = 0;
+        for (int current = output[state] != NONE ? state : outputLink[state]; current != NONE; current = outputLink[current]) {
+            outputs[count++] = output[current];
+        }
+
+        boolean emitted = false;
+        while (count > 0) {
+            final int keywordId = outputs[--count];
+            emitted = matchHandler.onMatch(position - lengths[keywordId] + 1, position, keywordId) || emitted;
+
+            if (emitted && stopOnHit) {
+                break;
+            }
+        }
+
+        return emitted;
+    }
+
+    /**
+     * Converts a byte offset into UTF-8 encoded bytes into a character offset.
+     * The start of a match is converted with
+     * <code>toCharOffset(bytes, 0, start)</code>, its end with
+     * <code>toCharOffset(bytes, 0, end + 1) - 1</code>.
+     *
+     * @param bytes      The UTF-8 encoded text.
+     * @param offset     The index of the first byte of the text.
+     * @param byteOffset The byte offset to convert, an index into the array.
+     * @return The number of UTF-16 characters encoded by the bytes from
+     *         <code>offset</code> to <code>byteOffset</code>, exclusive.
+     */
+    public static int toCharOffset(final byte[] bytes, final int offset, final int byteOffset) {
+        int chars = 0;
+        for (int i = offset; i < byteOffset; i++) {
+            final int b = bytes[i] & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                // Four byte sequences are encoded as surrogate pairs.
+                chars += b >= 0xF0 ? 2 : 1;
+            }
+        }
+        return chars;
+    }
+
+    /**
+     * Estimates the heap memory of the arrays of the automaton and the search
+     * strings.
+     *
+     * @return The estimated size in bytes, -1 if the searcher is not built.
+     */
+    @Override
+    public long estimateHeapSize() {
+        if (this.keywordTable == null) {
+            return -1;
+        }
+        return this.keywordTable.estimateHeapSize() + HeapSize.of(this.byteLengths) + HeapSize.of(this.charLengths)
+                + HeapSize.of(this.codes) + HeapSize.of(this.lowerCase) + HeapSize.of(this.base)
+                + HeapSize.of(this.check) + HeapSize.of(this.fail) + HeapSize.of(this.output)
+                + HeapSize.of(this.outputLink);
+    }
+
+    @Override
+    protected int getMaxSearchStringLength() {
+        return this.keywordTable.getMaxLength();
+    }
+
+    @Override
+    public String getSearchString(final int keywordId) {
+        return this.keywordTable.getKeyword(keywordId);
+    }
+
+    @Override
+    public T getPayload(final int keywordId) {
+        return this.keywordTable.getPayload(keywordId);
+    }
+
+    /**
+     * Sorts the keyword ids by the unsigned bytes of the encoded search strings.
+     */
+    private static void sort(final int[] ids, final int[] buffer, final int from, final int to, final byte[][] keys) {
+        if (to - from < 2) {
+            return;
+        }
+
+        final int middle = (from + to) >>> 1;
+        sort(ids, buffer, from, middle, keys);
+        sort(ids, buffer, middle, to, keys);
+
+        if (compare(keys[ids[middle - 1]], keys[ids[middle]]) <= 0) {
+            return;
+        }
+
+        System.arraycopy(ids, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compare(keys[buffer[left]], keys[buffer[right]]) <= 0)) {
+                ids[i] = buffer[left++];
+            } else {
+                ids[i] = buffer[right++];
+            }
+        }
+    }
+
+    private static int compare(final byte[] key, final byte[] other) {
+        final int length = Math.min(key.length, other.length);
+        for (int i = 0; i < length; i++) {
+            final int comparison = (key[i] & 0xFF) - (other[i] & 0xFF);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return key.length - other.length;
+    }
+}
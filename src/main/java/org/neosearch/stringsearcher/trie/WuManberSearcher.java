@@ -0,0 +1,435 @@
+package org.neosearch.stringsearcher.trie;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.BitSet;
+import java.util.Collection;
+
+import org.neosearch.stringsearcher.AbstractStringSearcher;
+import org.neosearch.stringsearcher.MatchHandler;
+import org.neosearch.stringsearcher.StreamMatchHandler;
+import org.neosearch.stringsearcher.StringSearcherConfig;
+import org.neosearch.stringsearcher.StringSearcherPrepare;
+import org.neosearch.stringsearcher.trie.util.CaseFolding;
+
+/**
+ * A searcher based on the Wu-Manber algorithm, which skips parts of the text
+ * when all search strings are long.
+ * <p>
+ * A window of the length <code>m</code> of the shortest search string is moved
+ * over the text. The last block of two to four characters of the window is
+ * hashed into a shift table, which holds how far the window can be moved
+ * without passing an occurrence of the block in the first <code>m</code>
+ * characters of a search string. Only if the shift is 0, the search strings
+ * whose first <code>m</code> characters end with the block are compared with
+ * the text. Blocks which do not occur in the search strings move the window
+ * by <code>m - block + 1</code> characters, so the longer the shortest search
+ * string, the less of the text is read. For short search strings the
+ * Aho-Corasick automata are faster.
+ * <p>
+ * The state returned by a scan is the number of characters before its end at
+ * which a match may still start, so a scan can only be resumed with the same
+ * text. Streams are scanned with a buffer which keeps these characters.
+ *
+ * @author Daniel Beck
+ * @param <T> The type of the supplied of the payload
+ */
+public class WuManberSearcher<T> extends AbstractStringSearcher<T> implements StringSearcherPrepare<T> {
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private static final int MIN_BLOCK_LENGTH = 2;
+
+    private static final int MAX_BLOCK_LENGTH = 4;
+
+    private static final int MIN_TABLE_BITS = 8;
+
+    private static final int MAX_TABLE_BITS = 16;
+
+    private KeywordTable.Builder<T> keywordTableBuilder = new KeywordTable.Builder<>();
+
+    private KeywordTable<T> keywordTable;
+
+    /**
+     * The length of the window, the length of the shortest search string.
+     */
+    private int windowLength;
+
+    private int blockLength;
+
+    private int tableBits;
+
+    /**
+     * The shift of the window for each hash of a block.
+     */
+    private int[] shifts;
+
+    /**
+     * The ids of the search strings whose window ends with a block of the hash
+     * <code>h</code> are
+     * <code>candidates[candidateStarts[h] ... candidateStarts[h + 1] - 1]</code>.
+     */
+    private int[] candidateStarts;
+
+    private int[] candidates;
+
+    public WuManberSearcher(final StringSearcherConfig config) {
+        super(config);
+    }
+
+    /**
+     * Used by the builder to add a text search keyword with a emit payload.
+     *
+     * @param keyword The search term to add to the list of search terms.
+     * @param emit    the payload to emit for this search term.
+     * @throws NullPointerException  if the keyword is null.
+     * @throws IllegalStateException if the searcher has already been built.
+     */
+    @Override
+    public void addSearchString(String keyword, final T emit) {
+        if (this.keywordTableBuilder == null) {
+            throw new IllegalStateException("Search strings cannot be added after build()");
+        }
+
+        if (isCaseInsensitive()) {
+            keyword = CaseFolding.fold(keyword);
+        }
+
+        this.keywordTableBuilder.add(keyword, emit);
+    }
+
+    /**
+     * Used by the builder to add a text search keyword.
+     *
+     * @param keyword The search term to add to the list of search terms.
+     * @throws NullPointerException  if the keyword is null.
+     * @throws IllegalStateException if the searcher has already been built.
+     */
+    @Override
+    public void addSearchString(final String keyword) {
+        addSearchString(keyword, null);
+    }
+
+    @Override
+    public void addSearchStrings(final String... keywords) {
+        for (String keyword : keywords)
+            addSearchString(keyword);
+    }
+
+    @Override
+    public void addSearchStrings(final Collection<String> keywords) {
+        for (String keyword : keywords)
+            addSearchString(keyword);
+    }
+
+    /**
+     * Computes the shift table and the candidates of each block hash.
+     *
+     * @return This searcher.
+     */
+    @Override
+    public WuManberSearcher<T> build() {
+        if (this.keywordTableBuilder == null) {
+            return this;
+        }
+
+        this.keywordTable = this.keywordTableBuilder.build();
+        this.keywordTableBuilder = null;
+
+        final int count = this.keywordTable.size();
+        int windowLength = Integer.MAX_VALUE;
+        for (int keywordId = 0; keywordId < count; keywordId++) {
+            windowLength = Math.min(windowLength, this.keywordTable.getLength(keywordId));
+        }
+        this.windowLength = count == 0 ? 1 : windowLength;
+        this.blockLength = blockLength(count, this.windowLength, windowAlphabetSize(count));
+        this.tableBits = tableBits(count, this.windowLength, this.blockLength);
+        final int tableSize = 1 << this.tableBits;
+
+        this.shifts = new int[tableSize];
+        final int defaultShift = this.windowLength - this.blockLength + 1;
+        for (int hash = 0; hash < tableSize; hash++) {
+            this.shifts[hash] = defaultShift;
+        }
+
+        final int[] windowHashes = new int[count];
+        this.candidateStarts = new int[tableSize + 1];
+        for (int keywordId = 0; keywordId < count; keywordId++) {
+            final String keyword = this.keywordTable.getKeyword(keywordId);
+            for (int end = this.blockLength - 1; end < this.windowLength; end++) {
+                final int hash = hash(keyword, end, false);
+                this.shifts[hash] = Math.min(this.shifts[hash], this.windowLength - 1 - end);
+            }
+            windowHashes[keywordId] = hash(keyword, this.windowLength - 1, false);
+            this.candidateStarts[windowHashes[keywordId] + 1]++;
+        }
+
+        for (int hash = 0; hash < tableSize; hash++) {
+            this.candidateStarts[hash + 1] += this.candidateStarts[hash];
+        }
+        this.candidates = new int[count];
+        final int[] next = this.candidateStarts.clone();
+        for (int keywordId = 0; keywordId < count; keywordId++) {
+            this.candidates[next[windowHashes[keywordId]]++] = keywordId;
+        }
+
+        freeze();
+        return this;
+    }
+
+    /**
+     * @return The number of distinct characters in the windows of the search
+     *         strings.
+     */
+    private int windowAlphabetSize(final int count) {
+        final BitSet characters = new BitSet();
+        for (int keywordId = 0; keywordId < count; keywordId++) {
+            final String keyword = this.keywordTable.getKeyword(keywordId);
+            for (int position = 0; position < this.windowLength; position++) {
+                characters.set(keyword.charAt(position));
+            }
+        }
+        return characters.cardinality();
+    }
+
+    /**
+     * Chooses the block length as suggested by Wu and Manber, the logarithm of
+     * twice the number of blocks in the windows of the search strings, to the
+     * base of the number of distinct characters. Blocks of that length rarely
+     * occur in the search strings by chance, so the shifts stay long.
+     */
+    private static int blockLength(final int count, final int windowLength, final int alphabetSize) {
+        final double blocks = 2.0 * count * windowLength;
+        final int blockLength = (int) Math.ceil(Math.log(blocks) / Math.log(Math.max(2, alphabetSize)));
+        return Math.min(windowLength, Math.max(MIN_BLOCK_LENGTH, Math.min(MAX_BLOCK_LENGTH, blockLength)));
+    }
+
+    /**
+     * Sizes the shift table to four entries per block of the windows, within
+     * {@value #MIN_TABLE_BITS} and {@value #MAX_TABLE_BITS} bits.
+     */
+    private static int tableBits(final int count, final int windowLength, final int blockLength) {
+        final long blocks = (long) count * (windowLength - blockLength + 1);
+        return Math.max(MIN_TABLE_BITS, Math.min(MAX_TABLE_BITS, Long.SIZE - Long.numberOfLeadingZeros(4 * blocks)));
+    }
+
+    /**
+     * Estimates the average shift of the window over random text. A block at
+     * distance <code>s</code> from the end of the window occurs once in each
+     * search string, so the shift of a hash exceeds <code>s</code> only if none
+     * of the <code>count * (s + 1)</code> blocks at a distance of at most
+     * <code>s</code> has that hash. The table is capped at
+     * {@value #MAX_TABLE_BITS} bits, so with many search strings almost every
+     * shift is 0 and each position compares a bucket of candidates.
+     *
+     * @param count        The number of search strings.
+     * @param windowLength The length of the shortest search string.
+     * @param alphabetSize The number of distinct characters of the search
+     *                     strings.
+     * @return The expected shift, 0 if there are no search strings.
+     */
+    public static double expectedShift(final int count, final int windowLength, final int alphabetSize) {
+        if (count == 0 || windowLength == 0) {
+            return 0;
+        }
+
+        final int blockLength = blockLength(count, windowLength, alphabetSize);
+        final double tableSize = 1 << tableBits(count, windowLength, blockLength);
+        double shift = 0;
+        for (int distance = 0; distance < windowLength - blockLength + 1; distance++) {
+            shift += Math.exp(-count * (distance + 1) / tableSize);
+        }
+        return shift;
+    }
+
+    /**
+     * Hashes the block which ends at a position.
+     */
+    private int hash(final CharSequence text, final int end, final boolean fold) {
+        int hash = 0;
+        for (int position = end - this.blockLength + 1; position <= end; position++) {
+            final char character = text.charAt(position);
+            hash = 31 * hash + (fold ? CaseFolding.fold(character) : character);
+        }
+        return (hash * 0x9E3779B9) >>> (Integer.SIZE - this.tableBits);
+    }
+
+    /**
+     * Moves the window over the text and verifies the candidates at the windows
+     * which end with a block of a search string. Matches which end before
+     * <code>from</code> were reported by the previous scan, matches which end at
+     * or after <code>to</code> are left to the next one.
+     *
+     * @param text         The character sequence to scan.
+     * @param from         The index of the first character to scan.
+     * @param to           The index after the last character to scan.
+     * @param state        The number of characters before <code>from</code> at
+     *                     which a match may start, as returned by the previous
+     *                     scan of the same text.
+     * @param matchHandler The match handler that will be used to parse the text.
+     * @param stopOnHit    If true, stops after the first accepted match.
+     * @return The number of characters before <code>to</code> at which a match
+     *         may start.
+     */
+    @Override
+    protected int scan(final CharSequence text, final int from, final int to, final int state,
+            final MatchHandler matchHandler, final boolean stopOnHit) {
+        final boolean caseInsensitive = isCaseInsensitive();
+        final int[] shifts = this.shifts;
+        final int start = from - state;
+        PendingMatches pending = null;
+        int windowEnd = start + this.windowLength - 1;
+
+        while (windowEnd < to) {
+            final int hash = hash(text, windowEnd, caseInsensitive);
+            final int shift = shifts[hash];
+            if (shift > 0) {
+                windowEnd += shift;
+                continue;
+            }
+
+            final int matchStart = windowEnd - this.windowLength + 1;
+            // Later matches cannot end before this window.
+            if (pending != null && pending.release(windowEnd, matchHandler, stopOnHit)) {
+                return nextState(start, to);
+            }
+            pending = verify(text, matchStart, hash, from, to, pending, caseInsensitive);
+            windowEnd++;
+        }
+
+        if (pending != null) {
+            pending.release(Integer.MAX_VALUE, matchHandler, stopOnHit);
+        }
+        return nextState(start, to);
+    }
+
+    private int nextState(final int start, final int to) {
+        return Math.min(Math.max(0, this.keywordTable.getMaxLength() - 1), to - start);
+    }
+
+    /**
+     * Compares the candidates of a block hash with the text and adds the matches
+     * within the scanned range to the pending matches, which are created with
+     * the first match.
+     *
+     * @return The pending matches, null if there are none yet.
+     */
+    private PendingMatches verify(final CharSequence text, final int matchStart, final int hash, final int from,
+            final int to, final PendingMatches pending, final boolean caseInsensitive) {
+        PendingMatches matches = pending;
+        for (int i = this.candidateStarts[hash]; i < this.candidateStarts[hash + 1]; i++) {
+            final int keywordId = this.candidates[i];
+            final String keyword = this.keywordTable.getKeyword(keywordId);
+            final int end = matchStart + keyword.length() - 1;
+            if (end < from || end >= to) {
+                continue;
+            }
+
+            int position = 0;
+            while (position < keyword.length() && keyword.charAt(position) == (caseInsensitive
+                    ? CaseFolding.fold(text.charAt(matchStart + position))
+                    : text.charAt(matchStart + position))) {
+                position++;
+            }
+            if (position == keyword.length()) {
+                if (matches == null) {
+                    matches = new PendingMatches();
+                }
+                matches.add(matchStart, end, keywordId);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Parses the characters of a reader and reports every match to the stream
+     * match handler. The characters at which a match may still start are kept
+     * at the front of the buffer, so the scan can be resumed after the next read.
+     *
+     * @param reader       The reader to read the text from.
+     * @param matchHandler The match handler to call for each match.
+     * @return The number of characters read.
+     * @throws IOException if reading fails.
+     */
+    @Override
+    public long parseStream(final Reader reader, final StreamMatchHandler matchHandler) throws IOException {
+        checkFrozen();
+        final char[] buffer = new char[this.keywordTable.getMaxLength() + STREAM_BUFFER_SIZE];
+        final CharBuffer text = CharBuffer.wrap(buffer);
+        final boolean stopOnHit = getConfig().isStopOnHit();
+        final boolean[] accepted = new boolean[1];
+        final long[] offset = new long[1];
+        final MatchHandler streamMatchHandler = new MatchHandler() {
+
+            @Override
+            public boolean onMatch(final int start, final int end, final int keywordId) {
+                final boolean acceptedMatch = matchHandler.onMatch(offset[0] + start, offset[0] + end, keywordId);
+                accepted[0] |= acceptedMatch;
+                return acceptedMatch;
+            }
+        };
+        int kept = 0;
+        int read;
+
+        while ((read = reader.read(buffer, kept, STREAM_BUFFER_SIZE)) != -1) {
+            final int end = kept + read;
+            kept = scan(text, kept, end, kept, streamMatchHandler, stopOnHit);
+
+            if (stopOnHit && accepted[0]) {
+                return offset[0] + end;
+            }
+
+            System.arraycopy(buffer, end - kept, buffer, 0, kept);
+            offset[0] += end - kept;
+        }
+
+        return offset[0] + kept;
+    }
+
+    /**
+     * Returns the length of the window, which is the length of the shortest
+     * search string and bounds the shifts.
+     *
+     * @return The window length.
+     */
+    public int getWindowLength() {
+        return this.windowLength;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[searchStrings=" + this.keywordTable.size() + ", window="
+                + this.windowLength + ", block=" + this.blockLength + ", tableSize=" + this.shifts.length + "]";
+    }
+
+    /**
+     * Estimates the heap memory of the arrays of the automaton and the search
+     * strings.
+     *
+     * @return The estimated size in bytes, -1 if the searcher is not built.
+     */
+    @Override
+    public long estimateHeapSize() {
+        if (this.keywordTable == null) {
+            return -1;
+        }
+        return this.keywordTable.estimateHeapSize() + HeapSize.of(this.shifts) + HeapSize.of(this.candidateStarts)
+                + HeapSize.of(this.candidates);
+    }
+
+    @Override
+    protected int getMaxSearchStringLength() {
+        return this.keywordTable.getMaxLength();
+    }
+
+    @Override
+    public String getSearchString(final int keywordId) {
+        return this.keywordTable.getKeyword(keywordId);
+    }
+
+    @Override
+    public T getPayload(final int keywordId) {
+        return this.keywordTable.getPayload(keywordId);
+    }
+}
@@ -0,0 +1,120 @@
+package org.neosearch.stringsearcher.trie.interval;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Removes overlapping intervals with the same rule as
+ * {@link IntervalTree#removeOverlaps(List)}: the intervals are taken longest
+ * first, and of equally long intervals the leftmost first. An interval is kept
+ * if it does not overlap an interval kept before.
+ * <p>
+ * Instead of querying a tree for every interval, the kept intervals are marked
+ * on the sorted distinct start and end positions. As kept intervals are taken
+ * longest first, an interval overlaps a kept one exactly if its start or its end
+ * is marked, so every interval is checked in constant time. The work is done on
+ * a few primitive arrays in O(n log n) for n intervals.
+ *
+ * @author Daniel Beck
+ */
+public final class OverlapRemoval {
+
+    private OverlapRemoval() {
+    }
+
+    /**
+     * Removes the overlapping intervals from the list and sorts the remaining
+     * ones by their position. The list is sorted already if it was ordered by
+     * the end of the intervals, as the emits of a scan are.
+     *
+     * @param intervals The intervals, which are modified.
+     * @param <T>       The type of the intervals.
+     * @return The list of intervals.
+     */
+    public static <T extends Intervalable> List<T> removeOverlaps(final List<T> intervals) {
+        final int size = intervals.size();
+        if (size < 2) {
+            return intervals;
+        }
+
+        // Every interval is identified by its length and start, which sort
+        // longest and then leftmost first.
+        final long[] keys = new long[size];
+        final int[] positions = new int[2 * size];
+        int index = 0;
+        for (final Intervalable interval : intervals) {
+            keys[index] = key(interval);
+            positions[2 * index] = interval.getStart();
+            positions[2 * index + 1] = interval.getEnd();
+            index++;
+        }
+        Arrays.sort(keys);
+        Arrays.sort(positions);
+        final int distinctPositions = unique(positions);
+
+        final boolean[] covered = new boolean[distinctPositions];
+        final long[] keptKeys = new long[size];
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (i > 0 && keys[i] == keys[i - 1]) {
+                continue;
+            }
+
+            final int start = (int) keys[i];
+            final int end = start + Integer.MAX_VALUE - (int) (keys[i] >>> 32) - 1;
+            final int startRank = Arrays.binarySearch(positions, 0, distinctPositions, start);
+            final int endRank = Arrays.binarySearch(positions, 0, distinctPositions, end);
+            if (covered[startRank] || covered[endRank]) {
+                continue;
+            }
+
+            Arrays.fill(covered, startRank, endRank + 1, true);
+            keptKeys[kept++] = keys[i];
+        }
+
+        // The kept keys are still sorted. Only the first of equal intervals is
+        // kept, as the others overlap it.
+        final boolean[] found = new boolean[kept];
+        boolean sorted = true;
+        int last = Integer.MIN_VALUE;
+        int write = 0;
+        for (int read = 0; read < size; read++) {
+            final T interval = intervals.get(read);
+            final int keptIndex = Arrays.binarySearch(keptKeys, 0, kept, key(interval));
+            if (keptIndex < 0 || found[keptIndex]) {
+                continue;
+            }
+            found[keptIndex] = true;
+
+            sorted &= interval.getStart() >= last;
+            last = interval.getStart();
+            intervals.set(write++, interval);
+        }
+        intervals.subList(write, size).clear();
+
+        if (!sorted) {
+            Collections.sort(intervals, new IntervalableComparatorByPosition());
+        }
+        return intervals;
+    }
+
+    private static long key(final Intervalable interval) {
+        return ((long) (Integer.MAX_VALUE - interval.size()) << 32) | interval.getStart();
+    }
+
+    /**
+     * Removes duplicates from a sorted array.
+     *
+     * @return The number of distinct values at the beginning of the array.
+     */
+    private static int unique(final int[] values) {
+        int distinct = 1;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] != values[distinct - 1]) {
+                values[distinct++] = values[i];
+            }
+        }
+        return distinct;
+    }
+}
@@ -0,0 +1,69 @@
+package org.neosearch.stringsearcher.trie.util;
+
+/**
+ * Locale independent simple case folding, which maps every character to a
+ * single character, so a folded text keeps the positions of the original one.
+ * ASCII characters are folded with a table. Other characters are folded to
+ * <code>Character.toLowerCase(Character.toUpperCase(c))</code>, which maps all
+ * case variants of a character, including title case letters and variants
+ * like the final sigma, to the same character. The Turkic dotted capital I and
+ * dotless small i are kept, as Unicode folds them only with the Turkic
+ * mappings. Surrogates are not folded.
+ *
+ * @author Daniel Beck
+ */
+public final class CaseFolding {
+
+    private static final char[] ASCII = new char[128];
+
+    static {
+        for (char character = 0; character < ASCII.length; character++) {
+            ASCII[character] = character >= 'A' && character <= 'Z' ? (char) (character + ('a' - 'A')) : character;
+        }
+    }
+
+    private CaseFolding() {
+    }
+
+    /**
+     * Folds the case of a character.
+     *
+     * @param character The character.
+     * @return The folded character.
+     */
+    public static char fold(final char character) {
+        if (character < ASCII.length) {
+            return ASCII[character];
+        }
+        return foldNonAscii(character);
+    }
+
+    private static char foldNonAscii(final char character) {
+        if (character == 'İ' || character == 'ı' || Character.isSurrogate(character)) {
+            return character;
+        }
+        return Character.toLowerCase(Character.toUpperCase(character));
+    }
+
+    /**
+     * Folds the case of every character of a string.
+     *
+     * @param text The string.
+     * @return The folded string of the same length, the string itself if no
+     *         character changed.
+     */
+    public static String fold(final String text) {
+        char[] folded = null;
+        for (int i = 0; i < text.length(); i++) {
+            final char character = text.charAt(i);
+            final char foldedCharacter = fold(character);
+            if (foldedCharacter != character) {
+                if (folded == null) {
+                    folded = text.toCharArray();
+                }
+                folded[i] = foldedCharacter;
+            }
+        }
+        return folded == null ? text : new String(folded);
+    }
+}
@@ -0,0 +1,153 @@
+package org.neosearch.stringsearcher;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.neosearch.stringsearcher.trie.WuManberSearcher;
+
+public class AlgorithmSelectionTest {
+
+    private static List<String> numbered(final String prefix, final int count) {
+        final List<String> searchStrings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            searchStrings.add(prefix + i);
+        }
+        return searchStrings;
+    }
+
+    private static StringSearcherConfig config() {
+        return new StringSearcherConfig();
+    }
+
+    @Test
+    public void noSearchStrings() {
+        final AlgorithmSelection selection = AlgorithmSelection.select(Collections.<String>emptyList(), config());
+        assertEquals(Algorithm.AHO_COHARICK_DFA, selection.getAlgorithm());
+        assertEquals(0, selection.getSearchStrings());
+        assertEquals(0, selection.getMinLength());
+    }
+
+    @Test
+    public void longSearchStringsAreSkipped() {
+        final AlgorithmSelection selection = AlgorithmSelection
+                .select(Arrays.asList("terms and conditions", "conditions apply"), config());
+        assertEquals(Algorithm.WU_MANBER, selection.getAlgorithm());
+        assertEquals(16, selection.getMinLength());
+        assertEquals(20, selection.getMaxLength());
+    }
+
+    @Test
+    public void largeDictionariesOfLongSearchStringsAreNotSkipped() {
+        final Random random = new Random(23);
+        final List<String> searchStrings = new ArrayList<>();
+        for (int i = 0; i < 200000; i++) {
+            final StringBuilder searchString = new StringBuilder();
+            for (int length = 12 + random.nextInt(20); searchString.length() < length;) {
+                searchString.append((char) ('a' + random.nextInt(26)));
+            }
+            searchStrings.add(searchString.toString());
+        }
+
+        assertEquals(Algorithm.WU_MANBER,
+                AlgorithmSelection.select(searchStrings.subList(0, 1000), config()).getAlgorithm());
+        final AlgorithmSelection selection = AlgorithmSelection.select(searchStrings, config());
+        assertEquals(12, selection.getMinLength());
+        assertEquals(Algorithm.AHO_COHARICK_IMPROVED, selection.getAlgorithm());
+        assertTrue(WuManberSearcher.expectedShift(200000, 12, 26) < AlgorithmSelection.MIN_EXPECTED_SHIFT);
+    }
+
+    @Test
+    public void fewSearchStringsArePacked() {
+        assertEquals(Algorithm.PACKED_FINGERPRINT,
+                AlgorithmSelection.select(numbered("key", 100), config()).getAlgorithm());
+        assertEquals(Algorithm.AHO_COHARICK_DFA,
+                AlgorithmSelection.select(numbered("key", 200), config()).getAlgorithm());
+        assertEquals(Algorithm.AHO_COHARICK_DFA,
+                AlgorithmSelection.select(Arrays.asList("he", "she", "his", "hers"), config()).getAlgorithm());
+    }
+
+    @Test
+    public void largeTablesAreNotDeterminized() {
+        final StringSearcherConfig config = config();
+        config.setMaxTableSize(1024);
+        final AlgorithmSelection selection = AlgorithmSelection.select(numbered("k", 1000), config);
+        assertEquals(Algorithm.AHO_COHARICK_IMPROVED, selection.getAlgorithm());
+        assertTrue(selection.getTableSize() > 1024);
+        assertTrue(selection.getSharedPrefixes() > 0.5);
+
+        final List<String> sentences = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            sentences.add(i + " a long sentence which shares almost no prefix");
+        }
+        sentences.add("x");
+        assertEquals(Algorithm.COMPRESSED_TRIE, AlgorithmSelection.select(sentences, config).getAlgorithm());
+    }
+
+    @Test
+    public void resumableScansExcludeLookbackAlgorithms() {
+        assertEquals(Algorithm.AHO_COHARICK_DFA,
+                AlgorithmSelection.select(numbered("key", 100), config(), true).getAlgorithm());
+        assertEquals(Algorithm.AHO_COHARICK_DFA, AlgorithmSelection
+                .select(Arrays.asList("terms and conditions", "conditions apply"), config(), true).getAlgorithm());
+    }
+
+    @Test
+    public void matchOptionsDoNotAffectSelection() {
+        final List<String> searchStrings = Arrays.asList("terms and conditions", "conditions apply");
+        final AlgorithmSelection standard = AlgorithmSelection.select(searchStrings, config());
+        assertFalse(standard.getReason().contains("ignored"));
+
+        final StringSearcherConfig config = config();
+        config.setOnlyWholeWords(true);
+        AlgorithmSelection selection = AlgorithmSelection.select(searchStrings, config);
+        assertEquals(standard.getAlgorithm(), selection.getAlgorithm());
+        assertEquals(
+                standard.getReason() + "; only whole words is applied to the matches of any algorithm and ignored",
+                selection.getReason());
+
+        config.setMatchKind(MatchKind.LEFTMOST_LONGEST);
+        config.setStopOnHit(true);
+        selection = AlgorithmSelection.select(searchStrings, config);
+        assertEquals(standard.getAlgorithm(), selection.getAlgorithm());
+        assertTrue(selection.getReason().endsWith("; only whole words, the match kind LEFTMOST_LONGEST and "
+                + "stopping on hit are applied to the matches of any algorithm and ignored"));
+    }
+
+    @Test
+    public void statisticsOfDistinctFoldedSearchStrings() {
+        final StringSearcherConfig config = config();
+        config.setCaseInsensitive(true);
+        final AlgorithmSelection selection = AlgorithmSelection.select(Arrays.asList("Sugar", "sugar", "sun"),
+                config);
+        assertEquals(2, selection.getSearchStrings());
+        assertEquals(4.0, selection.getAverageLength());
+        assertEquals(6, selection.getAlphabetSize());
+        // The root, s, u, g, a, r and n.
+        assertEquals(7, selection.getStates());
+        assertEquals(0.25, selection.getSharedPrefixes());
+        assertEquals(7L * 7 * 4, selection.getTableSize());
+    }
+
+    @Test
+    public void builderExposesSelection() {
+        final StringSearcherBuilder<String> builder = StringSearcher.<String>builderWithPayload()
+                .algorithm(Algorithm.AUTO).addSearchString("terms and conditions", "terms")
+                .addSearchString("conditions apply", "apply");
+        assertNull(builder.getAlgorithmSelection());
+
+        final StringSearcher<String> searcher = builder.build();
+        assertEquals(Algorithm.WU_MANBER, builder.getAlgorithmSelection().getAlgorithm());
+        assertTrue(builder.getAlgorithmSelection().toString().startsWith("WU_MANBER: the shortest search string"));
+        assertEquals("[9:28=terms and conditions->terms, 19:34=conditions apply->apply]",
+                searcher.parseText("read the terms and conditions apply").toString());
+    }
+}
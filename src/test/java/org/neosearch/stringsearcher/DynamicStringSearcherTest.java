@@ -0,0 +1,271 @@
+package org.neosearch.stringsearcher;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+@RunWith(Parameterized.class)
+public class DynamicStringSearcherTest {
+
+    private final Algorithm algorithm;
+
+    public DynamicStringSearcherTest(final Algorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    @Parameters
+    public static Collection<Object[]> algorithms() {
+        return Arrays.asList(new Object[][] { { Algorithm.AHO_COHARICK }, { Algorithm.AHO_COHARICK_IMPROVED },
+                { Algorithm.AHO_COHARICK_DFA }, { Algorithm.AHO_COHARICK_UTF8 }, { Algorithm.COMPRESSED_TRIE },
+                { Algorithm.AUTO } });
+    }
+
+    @Test
+    public void sameEmitsAsRebuiltSearcher() {
+        final Random random = new Random(17);
+        final DynamicStringSearcher<String> dynamicSearcher = new DynamicStringSearcher<>(new StringSearcherConfig(),
+                this.algorithm, null, 8);
+        final Map<String, String> keywords = new LinkedHashMap<>();
+        final String text = randomString(random, 2000, "abcd ");
+
+        for (int round = 0; round < 300; round++) {
+            final String keyword = randomString(random, 1 + random.nextInt(4), "abcd");
+            if (random.nextInt(3) == 0) {
+                assertEquals(keywords.remove(keyword) != null, dynamicSearcher.removeSearchString(keyword));
+            } else {
+                final String payload = "p" + random.nextInt(3);
+                assertEquals(!payload.equals(keywords.get(keyword)),
+                        dynamicSearcher.addSearchString(keyword, payload));
+                keywords.put(keyword, payload);
+            }
+
+            assertEquals(keywords.size(), dynamicSearcher.size());
+            assertEquals(rebuild(keywords).parseText(text).toString(), dynamicSearcher.parseText(text).toString());
+        }
+    }
+
+    @Test
+    public void filtersLikeRebuiltSearcher() {
+        final Map<String, String> keywords = new LinkedHashMap<>();
+        keywords.put("he", "pronoun");
+        keywords.put("hers", "pronoun");
+        keywords.put("Sugar", "sweet");
+        final DynamicStringSearcher<String> dynamicSearcher = StringSearcher.<String>builderWithPayload()
+                .algorithm(this.algorithm).ignoreCase().onlyWholeWords().ignoreOverlaps().buildDynamic();
+        dynamicSearcher.addSearchStrings(keywords);
+        dynamicSearcher.addSearchString("she", "pronoun");
+
+        assertEquals("[0:2=she->pronoun, 4:7=hers->pronoun, 15:19=sugar->sweet]",
+                dynamicSearcher.parseText("SHE hers sheer SUGAR").toString());
+        assertTrue(dynamicSearcher.removeSearchString("SHE"));
+        assertFalse(dynamicSearcher.removeSearchString("she"));
+        assertEquals("[4:7=hers->pronoun, 15:19=sugar->sweet]",
+                dynamicSearcher.parseText("SHE hers sheer SUGAR").toString());
+    }
+
+    @Test
+    public void caseFoldedDuplicatesLikeBuiltSearcher() {
+        final String text = "foo FOO Foo";
+        final StringSearcher<String> searcher = caseInsensitiveDuplicates().build();
+        final DynamicStringSearcher<String> dynamicSearcher = caseInsensitiveDuplicates().buildDynamic();
+
+        assertEquals(1, dynamicSearcher.size());
+        assertEquals(searcher.parseText(text).toString(), dynamicSearcher.parseText(text).toString());
+        for (final Emit<String> emit : dynamicSearcher.parseText(text)) {
+            assertEquals("first", emit.getPayload());
+        }
+    }
+
+    private StringSearcherBuilder<String> caseInsensitiveDuplicates() {
+        return StringSearcher.<String>builderWithPayload().algorithm(this.algorithm).ignoreCase()
+                .addSearchString("Foo", "first").addSearchString("foo", "second").addSearchString("FOO", "third");
+    }
+
+    @Test
+    public void leftmostAcrossBaseAndDelta() {
+        final DynamicStringSearcher<String> dynamicSearcher = StringSearcher.<String>builderWithPayload()
+                .algorithm(this.algorithm).matchKind(MatchKind.LEFTMOST_LONGEST).addSearchString("ab")
+                .addSearchString("cba").buildDynamic();
+        dynamicSearcher.addSearchString("ababc");
+
+        assertEquals("[0:4=ababc, 6:7=ab]", dynamicSearcher.parseText("ababcbab").toString());
+        assertTrue(dynamicSearcher.removeSearchString("ababc"));
+        assertEquals("[0:1=ab, 2:3=ab, 4:6=cba]", dynamicSearcher.parseText("ababcbab").toString());
+    }
+
+    @Test
+    public void leftmostFirstMatchAcrossChunks() {
+        final DynamicStringSearcher<String> dynamicSearcher = StringSearcher.<String>builderWithPayload()
+                .algorithm(this.algorithm).matchKind(MatchKind.LEFTMOST_LONGEST).addSearchString("abcdef")
+                .buildDynamic();
+        dynamicSearcher.addSearchString("xyz");
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1022; i++) {
+            text.append('x');
+        }
+        text.append("abcdef");
+
+        assertEquals("[1022:1027=abcdef]", dynamicSearcher.parseText(text).toString());
+        assertEquals("1022:1027=abcdef", String.valueOf(dynamicSearcher.firstMatch(text)));
+        assertTrue(dynamicSearcher.containsMatch(text));
+    }
+
+    @Test
+    public void parseStreamAcrossBuffers() throws IOException {
+        final Random random = new Random(19);
+        final DynamicStringSearcher<String> dynamicSearcher = StringSearcher.<String>builderWithPayload()
+                .algorithm(this.algorithm).addSearchString("abcab").addSearchString("cc").buildDynamic();
+        dynamicSearcher.addSearchString("bca");
+        dynamicSearcher.removeSearchString("cc");
+        dynamicSearcher.addSearchString("ccc");
+        final String text = randomString(random, 200000, "abc");
+
+        final List<String> streamed = new ArrayList<>();
+        dynamicSearcher.parseStream(new StringReader(text), new StreamMatchHandler() {
+
+            @Override
+            public boolean onMatch(final long start, final long end, final int keywordId) {
+                streamed.add(start + ":" + end + "=" + dynamicSearcher.getSearchString(keywordId));
+                return true;
+            }
+        });
+        assertEquals(dynamicSearcher.parseText(text).toString(), streamed.toString());
+    }
+
+    @Test
+    public void buildDynamicBuildsBaseOnce() {
+        final DynamicStringSearcher<String> dynamicSearcher = StringSearcher.<String>builderWithPayload()
+                .algorithm(this.algorithm).addSearchStrings("he", "she", "hers").buildDynamic();
+        final StringSearcher<String> snapshot = dynamicSearcher.snapshot();
+
+        dynamicSearcher.compact();
+        assertSame(snapshot, dynamicSearcher.snapshot());
+        assertEquals("[2:3=he, 1:3=she, 2:5=hers]", dynamicSearcher.parseText("ushers").toString());
+    }
+
+    @Test
+    public void compactionReleasesKeywordIds() {
+        final DynamicStringSearcher<String> dynamicSearcher = new DynamicStringSearcher<>(new StringSearcherConfig(),
+                this.algorithm, null, 4);
+        for (int version = 0; version < 100; version++) {
+            dynamicSearcher.addSearchString("he", "v" + version);
+            dynamicSearcher.addSearchString("she", "v" + version);
+            dynamicSearcher.removeSearchString("removed" + (version - 1));
+            dynamicSearcher.addSearchString("removed" + version);
+        }
+
+        final StringSearcher<String> snapshot = dynamicSearcher.snapshot();
+        final List<Integer> keywordIds = new ArrayList<>();
+        snapshot.parseText("ushers", new MatchHandler() {
+
+            @Override
+            public boolean onMatch(final int start, final int end, final int keywordId) {
+                keywordIds.add(keywordId);
+                return true;
+            }
+        });
+
+        dynamicSearcher.compact();
+        assertEquals(3, dynamicSearcher.size());
+        dynamicSearcher.parseText("ushers removed99", new MatchHandler() {
+
+            @Override
+            public boolean onMatch(final int start, final int end, final int keywordId) {
+                assertTrue(keywordId < dynamicSearcher.size());
+                return true;
+            }
+        });
+        // The snapshot still resolves the ids it reported.
+        assertEquals("he", snapshot.getSearchString(keywordIds.get(0)));
+        assertEquals("v99", snapshot.getPayload(keywordIds.get(0)));
+        assertEquals("she", snapshot.getSearchString(keywordIds.get(1)));
+    }
+
+    @Test
+    public void readersSeeCompleteVersions() throws Exception {
+        final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor();
+        final DynamicStringSearcher<String> dynamicSearcher = new DynamicStringSearcher<>(new StringSearcherConfig(),
+                this.algorithm, compactionExecutor, 4);
+        dynamicSearcher.addSearchString("he", "v0");
+        dynamicSearcher.addSearchString("she", "v0");
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final Thread reader = new Thread() {
+
+                @Override
+                public void run() {
+                    while (running.get()) {
+                        final String emits = dynamicSearcher.parseText("ushers").toString();
+                        // Both search strings are always changed together.
+                        if (!emits.matches("\\[2:3=he->(v\\d+), 1:3=she->\\1\\]")) {
+                            failure.compareAndSet(null, emits);
+                        }
+                    }
+                }
+            };
+            readers.add(reader);
+            reader.start();
+        }
+
+        for (int version = 1; version <= 200; version++) {
+            final Map<String, String> keywords = new LinkedHashMap<>();
+            keywords.put("he", "v" + version);
+            keywords.put("she", "v" + version);
+            dynamicSearcher.addSearchStrings(keywords);
+            dynamicSearcher.addSearchString("filler" + version);
+        }
+
+        running.set(false);
+        for (final Thread reader : readers) {
+            reader.join();
+        }
+        compactionExecutor.shutdown();
+        compactionExecutor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertEquals(null, failure.get());
+        assertEquals(202, dynamicSearcher.size());
+        assertEquals("[2:3=he->v200, 1:3=she->v200]", dynamicSearcher.parseText("ushers").toString());
+    }
+
+    private StringSearcher<String> rebuild(final Map<String, String> keywords) {
+        final StringSearcherBuilder<String> builder = StringSearcher.<String>builderWithPayload()
+                .algorithm(this.algorithm);
+        for (final Entry<String, String> keyword : keywords.entrySet()) {
+            builder.addSearchString(keyword.getKey(), keyword.getValue());
+        }
+        return builder.build();
+    }
+
+    private static String randomString(final Random random, final int length, final String alphabet) {
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
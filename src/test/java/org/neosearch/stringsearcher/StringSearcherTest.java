@@ -3,16 +3,41 @@ package org.neosearch.stringsearcher;
 import static junit.framework.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.neosearch.stringsearcher.corpus.CorpusGenerator;
+import org.neosearch.stringsearcher.corpus.CorpusGenerator.Dictionary;
+import org.neosearch.stringsearcher.trie.PackedFingerprintSearcher;
+import org.neosearch.stringsearcher.trie.WuManberSearcher;
 import org.neosearch.stringsearcher.trie.handler.AbstractStatefulEmitHandler;
 import org.neosearch.stringsearcher.trie.handler.StatefulEmitHandler;
 
+@RunWith(Parameterized.class)
 public class StringSearcherTest {
 
     private final static String[] ALPHABET = new String[] { "abc", "bcd", "cde" };
@@ -62,8 +87,25 @@ public class StringSearcherTest {
         }
     }
 
+    private final Algorithm algorithm;
+
+    public StringSearcherTest(final Algorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    @Parameters
+    public static Collection<Object[]> algorithms() {
+        return Arrays.asList(new Object[][] { { Algorithm.AHO_COHARICK }, { Algorithm.AHO_COHARICK_IMPROVED },
+                { Algorithm.AHO_COHARICK_DFA }, { Algorithm.AHO_COHARICK_UTF8 }, { Algorithm.COMPRESSED_TRIE },
+                { Algorithm.PACKED_FINGERPRINT }, { Algorithm.WU_MANBER }, { Algorithm.AUTO } });
+    }
+
+    private <T> StringSearcherBuilder<T> builder() {
+        return StringSearcher.<T>builderWithPayload().algorithm(algorithm);
+    }
+
     private StringSearcherBuilder<Integer> pronounsStringSearchBuilder() {
-        return StringSearcher.<Integer>builderWithPayload()//
+        return this.<Integer>builder()//
                 .addSearchString(PRONOUNS[0], PRONOUNS_PAYLOAD_ID[0])//
                 .addSearchString(PRONOUNS[1], PRONOUNS_PAYLOAD_ID[1])//
                 .addSearchString(PRONOUNS[2], PRONOUNS_PAYLOAD_ID[2])//
@@ -71,7 +113,7 @@ public class StringSearcherTest {
     }
 
     private StringSearcherBuilder<Food> foodStringSearchBuilder() {
-        return StringSearcher.<Food>builderWithPayload()//
+        return this.<Food>builder()//
                 .addSearchString(FOOD[0], FOOD_PAYLOAD[0])//
                 .addSearchString(FOOD[1], FOOD_PAYLOAD[1])//
                 .addSearchString(FOOD[2], FOOD_PAYLOAD[2])//
@@ -79,7 +121,7 @@ public class StringSearcherTest {
     }
 
     private StringSearcherBuilder<String> unicodeStringSearcherBuilder() {
-        return StringSearcher.<String>builderWithPayload().ignoreCase().onlyWholeWords()
+        return this.<String>builder().ignoreCase().onlyWholeWords()
                 .addSearchString(UNICODE[0], UNICODE_PAYLOAD[0])//
                 .addSearchString(UNICODE[1], UNICODE_PAYLOAD[1])//
                 .addSearchString(UNICODE[2], UNICODE_PAYLOAD[2])//
@@ -87,14 +129,14 @@ public class StringSearcherTest {
     }
 
     private StringSearcherBuilder<String> greekLettersStringSearcherBuilder() {
-        return StringSearcher.<String>builderWithPayload()//
+        return this.<String>builder()//
                 .addSearchString(GREEK_LETTERS[0], GREEK_LETTERS_PAYLOAD[0])//
                 .addSearchString(GREEK_LETTERS[1], GREEK_LETTERS_PAYLOAD[1])//
                 .addSearchString(GREEK_LETTERS[2], GREEK_LETTERS_PAYLOAD[2]);
     }
 
     private StringSearcherBuilder<String> alphabetStringSearcherBuilder() {
-        return StringSearcher.<String>builderWithPayload()//
+        return this.<String>builder()//
                 .addSearchString(ALPHABET[0], ALPHABET_PAYLOAD[0])//
                 .addSearchString(ALPHABET[1], ALPHABET_PAYLOAD[1])//
                 .addSearchString(ALPHABET[2], ALPHABET_PAYLOAD[2]);
@@ -102,7 +144,7 @@ public class StringSearcherTest {
 
     @Test
     public void keywordAndTextAreTheSame() {
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload()
+        StringSearcher<String> trie = this.<String>builder()
                 .addSearchString(ALPHABET[0], ALPHABET_PAYLOAD[0]).build();
         Collection<Emit<String>> emits = trie.parseText(ALPHABET[0]);
         Iterator<Emit<String>> iterator = emits.iterator();
@@ -111,7 +153,7 @@ public class StringSearcherTest {
 
     @Test
     public void keywordAndTextAreTheSameFirstMatch() {
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload()
+        StringSearcher<String> trie = this.<String>builder()
                 .addSearchString(ALPHABET[0], ALPHABET_PAYLOAD[0]).build();
         Emit<String> firstMatch = trie.firstMatch(ALPHABET[0]);
         checkEmit(firstMatch, 0, 2, ALPHABET[0], ALPHABET_PAYLOAD[0]);
@@ -119,7 +161,7 @@ public class StringSearcherTest {
 
     @Test
     public void textIsLongerThanKeyword() {
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload()
+        StringSearcher<String> trie = this.<String>builder()
                 .addSearchString(ALPHABET[0], ALPHABET_PAYLOAD[0]).build();
         Collection<Emit<String>> emits = trie.parseText(" " + ALPHABET[0]);
         Iterator<Emit<String>> iterator = emits.iterator();
@@ -129,7 +171,7 @@ public class StringSearcherTest {
     @Test
     public void textIsLongerThanKeywordFirstMatch() {
 
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload()
+        StringSearcher<String> trie = this.<String>builder()
                 .addSearchString(ALPHABET[0], ALPHABET_PAYLOAD[0]).build();
         Emit<String> firstMatch = trie.firstMatch(" " + ALPHABET[0]);
         checkEmit(firstMatch, 1, 3, ALPHABET[0], ALPHABET_PAYLOAD[0]);
@@ -200,7 +242,7 @@ public class StringSearcherTest {
 
     @Test
     public void ushersTestWithCapitalKeywords() {
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload().ignoreCase()//
+        StringSearcher<String> trie = this.<String>builder().ignoreCase()//
                 .addSearchString("HERS", "hers")//
                 .addSearchString("HIS", "his")//
                 .addSearchString("SHE", "she")//
@@ -242,9 +284,86 @@ public class StringSearcherTest {
         checkEmit(iterator.next(), 2, 5, "hers", 9);
     }
 
+    @Test
+    public void ushersTestByMatchHandler() {
+        final StringSearcher<Integer> stringSearcher = pronounsStringSearchBuilder().build();
+        final List<Emit<Integer>> emits = new ArrayList<>();
+        stringSearcher.parseText("ushers", new MatchHandler() {
+
+            @Override
+            public boolean onMatch(int start, int end, int keywordId) {
+                emits.add(new Emit<Integer>(start, end, stringSearcher.getSearchString(keywordId),
+                        stringSearcher.getPayload(keywordId)));
+                return true;
+            }
+        });
+        assertEquals(3, emits.size());
+        Iterator<Emit<Integer>> iterator = emits.iterator();
+
+        checkEmit(iterator.next(), 2, 3, "he", 20);
+        checkEmit(iterator.next(), 1, 3, "she", 4);
+        checkEmit(iterator.next(), 2, 5, "hers", 9);
+    }
+
+    @Test
+    public void parseStreamAcrossBufferBoundaries() throws IOException {
+        final StringSearcher<Integer> stringSearcher = pronounsStringSearchBuilder().build();
+        final String text = "ushers his hershey, she said, his hers";
+
+        final StringBuilder expected = new StringBuilder();
+        stringSearcher.parseText(text, new MatchHandler() {
+
+            @Override
+            public boolean onMatch(int start, int end, int keywordId) {
+                expected.append(start).append(':').append(end).append('=').append(keywordId).append(' ');
+                return true;
+            }
+        });
+
+        final StringBuilder actual = new StringBuilder();
+        // Returns at most three characters per read.
+        final Reader reader = new StringReader(text) {
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 3));
+            }
+        };
+        final long read = stringSearcher.parseStream(reader, new StreamMatchHandler() {
+
+            @Override
+            public boolean onMatch(long start, long end, int keywordId) {
+                actual.append(start).append(':').append(end).append('=').append(keywordId).append(' ');
+                return true;
+            }
+        });
+
+        assertEquals(text.length(), read);
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void nestedSuffixes() {
+        final StringSearcherBuilder<Integer> builder = this.<Integer>builder();
+        final StringBuilder keyword = new StringBuilder();
+        for (int i = 1; i <= 200; i++) {
+            builder.addSearchString(keyword.append('a').toString(), i);
+        }
+        final StringSearcher<Integer> stringSearcher = builder.build();
+
+        final List<Emit<Integer>> emits = (List<Emit<Integer>>) stringSearcher.parseText(keyword + "b" + keyword);
+        assertEquals(2 * 200 * 201 / 2, emits.size());
+
+        // Emits ending at the same position are reported shortest first.
+        checkEmit(emits.get(0), 0, 0, "a", 1);
+        checkEmit(emits.get(1), 1, 1, "a", 1);
+        checkEmit(emits.get(2), 0, 1, "aa", 2);
+        checkEmit(emits.get(emits.size() - 1), 201, 400, keyword.toString(), 200);
+    }
+
     @Test
     public void misleadingTest() {
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload().addSearchString("hers", "pronon:hers").build();
+        StringSearcher<String> trie = this.<String>builder().addSearchString("hers", "pronon:hers").build();
         Collection<Emit<String>> emits = trie.parseText("h he her hers");
         Iterator<Emit<String>> iterator = emits.iterator();
         checkEmit(iterator.next(), 9, 12, "hers", "pronon:hers");
@@ -252,7 +371,7 @@ public class StringSearcherTest {
 
     @Test
     public void misleadingTestFirstMatch() {
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload().addSearchString("hers", "pronon:hers").build();
+        StringSearcher<String> trie = this.<String>builder().addSearchString("hers", "pronon:hers").build();
         Emit<String> firstMatch = trie.firstMatch("h he her hers");
         checkEmit(firstMatch, 9, 12, "hers", "pronon:hers");
     }
@@ -277,7 +396,7 @@ public class StringSearcherTest {
 
     @Test
     public void longAndShortOverlappingMatch() {
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload().addSearchString("he", "pronon:he")
+        StringSearcher<String> trie = this.<String>builder().addSearchString("he", "pronon:he")
                 .addSearchString("hehehehe", "garbage").build();
         Collection<Emit<String>> emits = trie.parseText("hehehehehe");
         Iterator<Emit<String>> iterator = emits.iterator();
@@ -292,7 +411,7 @@ public class StringSearcherTest {
 
     @Test
     public void nonOverlapping() {
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload().ignoreOverlaps()
+        StringSearcher<String> trie = this.<String>builder().ignoreOverlaps()
                 .addSearchString("ab", "alpha:ab").addSearchString("cba", "alpha:cba").addSearchString("ababc", "alpha:ababc")
                 .build();
         Collection<Emit<String>> emits = trie.parseText("ababcbab");
@@ -305,7 +424,7 @@ public class StringSearcherTest {
 
     @Test
     public void nonOverlappingFirstMatch() {
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload().ignoreOverlaps()
+        StringSearcher<String> trie = this.<String>builder().ignoreOverlaps()
                 .addSearchString("ab", "alpha:ab").addSearchString("cba", "alpha:cba").addSearchString("ababc", "alpha:ababc")
                 .build();
         Emit<String> firstMatch = trie.firstMatch("ababcbab");
@@ -315,15 +434,196 @@ public class StringSearcherTest {
 
     @Test
     public void containsMatch() {
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload().ignoreOverlaps()
+        StringSearcher<String> trie = this.<String>builder().ignoreOverlaps()
                 .addSearchString("ab", "alpha:ab").addSearchString("cba", "alpha:cba").addSearchString("ababc", "alpha:ababc")
                 .build();
         assertTrue(trie.containsMatch("ababcbab"));
     }
 
+    @Test
+    public void leftmostLongest() {
+        StringSearcher<String> trie = this.<String>builder().matchKind(MatchKind.LEFTMOST_LONGEST)
+                .addSearchString("ab").addSearchString("cba").addSearchString("ababc").build();
+        assertEquals("[0:4=ababc, 6:7=ab]", trie.parseText("ababcbab").toString());
+        assertEquals("0:4=ababc", trie.firstMatch("ababcbab").toString());
+    }
+
+    @Test
+    public void leftmostFirst() {
+        StringSearcher<String> trie = this.<String>builder().matchKind(MatchKind.LEFTMOST_FIRST)
+                .addSearchString("ab").addSearchString("cba").addSearchString("ababc").build();
+        assertEquals("[0:1=ab, 2:3=ab, 4:6=cba]", trie.parseText("ababcbab").toString());
+        assertEquals("0:1=ab", trie.firstMatch("ababcbab").toString());
+    }
+
+    @Test
+    public void leftmostMatchEndingLater() {
+        for (final MatchKind matchKind : new MatchKind[] { MatchKind.LEFTMOST_LONGEST, MatchKind.LEFTMOST_FIRST }) {
+            StringSearcher<String> trie = this.<String>builder().matchKind(matchKind).addSearchString("bcd")
+                    .addSearchString("abcdef").build();
+            assertEquals("[0:5=abcdef, 6:8=bcd]", trie.parseText("abcdefbcd").toString());
+            assertEquals("0:5=abcdef", trie.firstMatch("abcdefbcd").toString());
+        }
+    }
+
+    @Test
+    public void leftmostStopOnHit() {
+        StringSearcher<String> trie = this.<String>builder().matchKind(MatchKind.LEFTMOST_LONGEST).stopOnHit()
+                .addSearchString("he").addSearchString("hers").addSearchString("she").build();
+        assertEquals("[1:3=she]", trie.parseText("ushers hers").toString());
+    }
+
+    @Test
+    public void leftmostSameAsReference() {
+        final Random random = new Random(29);
+        for (int round = 0; round < 40; round++) {
+            final MatchKind matchKind = round % 2 == 0 ? MatchKind.LEFTMOST_LONGEST : MatchKind.LEFTMOST_FIRST;
+            final boolean onlyWholeWords = round % 4 >= 2;
+            final Set<String> keywords = new LinkedHashSet<>();
+            for (int i = 0; i < 1 + random.nextInt(12); i++) {
+                keywords.add(randomString(random, 1 + random.nextInt(6), "abc"));
+            }
+
+            final StringSearcherBuilder<String> builder = this.<String>builder().matchKind(matchKind)
+                    .addSearchStrings(keywords);
+            if (onlyWholeWords) {
+                builder.onlyWholeWords();
+            }
+            final StringSearcher<String> trie = builder.build();
+
+            for (int i = 0; i < 10; i++) {
+                final String text = randomString(random, random.nextInt(3000), "abc ");
+                final List<String> expected = leftmostMatches(text, new ArrayList<>(keywords),
+                        matchKind == MatchKind.LEFTMOST_LONGEST, onlyWholeWords);
+                final Collection<Emit<String>> emits = trie.parseText(text);
+                assertEquals(expected.toString(), emits.toString());
+                assertEquals(expected.isEmpty() ? "null" : expected.get(0), String.valueOf(trie.firstMatch(text)));
+            }
+        }
+    }
+
+    @Test
+    public void prefilterSkipsText() {
+        StringSearcher<String> trie = this.<String>builder().addSearchStrings("needle", "nest").build();
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("hay stack ");
+        }
+        text.append("needle nest");
+
+        assertEquals("[1000:1005=needle, 1007:1010=nest]", trie.parseText(text).toString());
+        assertEquals("1000:1005=needle", trie.firstMatch(text).toString());
+        // The packed fingerprint and Wu-Manber searches skip on their own.
+        if (!(trie instanceof PackedFingerprintSearcher) && !(trie instanceof WuManberSearcher)) {
+            final PrefilterStatistics statistics = ((AbstractStringSearcher<String>) trie).getPrefilterStatistics();
+            assertEquals(2L * text.length(), statistics.getCharacters());
+            assertTrue(statistics.getSkippedCharacters() >= 2000);
+        }
+    }
+
+    @Test
+    public void prefilterSameAsReference() {
+        final Random random = new Random(31);
+        for (int round = 0; round < 40; round++) {
+            final boolean ignoreCase = round % 2 == 1;
+            final Set<String> keywords = new LinkedHashSet<>();
+            for (int i = 0; i < 1 + random.nextInt(8); i++) {
+                keywords.add(randomString(random, 1, "ab") + randomString(random, random.nextInt(6), "abxy"));
+            }
+
+            final StringSearcherBuilder<String> builder = this.<String>builder().addSearchStrings(keywords);
+            if (ignoreCase) {
+                builder.ignoreCase();
+            }
+            final StringSearcher<String> trie = builder.build();
+
+            for (int i = 0; i < 10; i++) {
+                final String text = randomString(random, random.nextInt(3000),
+                        ignoreCase ? "aAbBxXyYzZzzzzzzzz" : "abxyzzzzzzzz");
+                final List<String> expected = allMatches(ignoreCase ? text.toLowerCase(Locale.ROOT) : text,
+                        keywords);
+                assertEquals(expected.toString(), trie.parseText(text).toString());
+                assertEquals(expected.isEmpty() ? "null" : expected.get(0), String.valueOf(trie.firstMatch(text)));
+            }
+        }
+    }
+
+    @Test
+    public void generatedCorporaSameAsReference() {
+        final CorpusGenerator generator = new CorpusGenerator(17);
+        for (final Dictionary kind : Dictionary.values()) {
+            final List<String> keywords = generator.dictionary(kind, 40, 6);
+            final StringSearcher<String> trie = this.<String>builder().addSearchStrings(keywords).build();
+            final String text = generator.text(keywords, 5000, 0.3);
+            final List<String> expected = allMatches(text, keywords);
+            assertEquals(kind.name(), expected.toString(), trie.parseText(text).toString());
+            assertEquals(expected.get(0), String.valueOf(trie.firstMatch(text)));
+        }
+    }
+
+    /**
+     * Finds all matches by comparing every search string at every position, in
+     * the order of their end, the shorter match first.
+     */
+    private static List<String> allMatches(final String text, final Collection<String> keywords) {
+        final List<String> sorted = new ArrayList<>(keywords);
+        Collections.sort(sorted, new Comparator<String>() {
+
+            @Override
+            public int compare(final String first, final String second) {
+                return first.length() - second.length();
+            }
+        });
+
+        final List<String> matches = new ArrayList<>();
+        for (int end = 0; end < text.length(); end++) {
+            for (final String keyword : sorted) {
+                final int start = end - keyword.length() + 1;
+                if (start >= 0 && text.startsWith(keyword, start)) {
+                    matches.add(start + ":" + end + "=" + keyword);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the leftmost matches by comparing every search string at every
+     * position.
+     */
+    private static List<String> leftmostMatches(final String text, final List<String> keywords, final boolean longest,
+            final boolean onlyWholeWords) {
+        final List<String> matches = new ArrayList<>();
+        int position = 0;
+        while (position < text.length()) {
+            String best = null;
+            int start = position;
+            for (; start < text.length() && best == null; start++) {
+                for (final String keyword : keywords) {
+                    final int end = start + keyword.length();
+                    if (!text.startsWith(keyword, start) || (onlyWholeWords && ((start > 0
+                            && Character.isAlphabetic(text.charAt(start - 1)))
+                            || (end < text.length() && Character.isAlphabetic(text.charAt(end)))))) {
+                        continue;
+                    }
+                    if (best == null || (longest && keyword.length() > best.length())) {
+                        best = keyword;
+                    }
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            start--;
+            matches.add(start + ":" + (start + best.length() - 1) + "=" + best);
+            position = start + best.length();
+        }
+        return matches;
+    }
+
     @Test
     public void startOfChurchillSpeech() {
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload().ignoreOverlaps().addSearchString("T")
+        StringSearcher<String> trie = this.<String>builder().ignoreOverlaps().addSearchString("T")
                 .addSearchString("u").addSearchString("ur").addSearchString("r").addSearchString("urn").addSearchString("ni")
                 .addSearchString("i").addSearchString("in").addSearchString("n").addSearchString("urning").build();
         Collection<Emit<String>> emits = trie.parseText("Turning");
@@ -332,7 +632,7 @@ public class StringSearcherTest {
 
     @Test
     public void partialMatch() {
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload().onlyWholeWords()
+        StringSearcher<String> trie = this.<String>builder().onlyWholeWords()
                 .addSearchString("sugar", "food:sugar").build();
         Collection<Emit<String>> emits = trie.parseText("sugarcane sugarcane sugar canesugar"); // left, middle, right test
         assertEquals(1, emits.size()); // Match must not be made
@@ -341,13 +641,44 @@ public class StringSearcherTest {
 
     @Test
     public void partialMatchFirstMatch() {
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload().onlyWholeWords()
+        StringSearcher<String> trie = this.<String>builder().onlyWholeWords()
                 .addSearchString("sugar", "food:sugar").build();
         Emit<String> firstMatch = trie.firstMatch("sugarcane sugarcane sugar canesugar"); // left, middle, right test
 
         checkEmit(firstMatch, 20, 24, "sugar", "food:sugar");
     }
 
+    @Test
+    public void partialMatchAlphanumeric() {
+        StringSearcher<String> trie = this.<String>builder().onlyWholeWords(WordBoundary.ALPHANUMERIC)
+                .addSearchString("sugar").build();
+        assertEquals("[7:11=sugar]", trie.parseText("sugar2 sugar 2sugar").toString());
+        assertEquals("7:11=sugar", trie.firstMatch("sugar2 sugar 2sugar").toString());
+    }
+
+    @Test
+    public void partialMatchWhiteSpacesFirstMatch() {
+        StringSearcher<String> trie = this.<String>builder().onlyWholeWordsWhiteSpaceSeparated()
+                .addSearchString("sugar").build();
+        assertEquals("10:14=sugar", trie.firstMatch("sugarcane sugar canesugar").toString());
+    }
+
+    @Test
+    public void partialMatchesAreNotPassedToHandlers() {
+        StringSearcher<String> trie = this.<String>builder().onlyWholeWords(WordBoundary.separatedBy(","))
+                .addSearchString("sugar").build();
+        final List<String> matches = new ArrayList<>();
+        trie.parseText("sugar,cane sugar,sugar", new MatchHandler() {
+
+            @Override
+            public boolean onMatch(final int start, final int end, final int keywordId) {
+                matches.add(start + ":" + end);
+                return true;
+            }
+        });
+        assertEquals("[0:4, 17:21]", matches.toString());
+    }
+
     @Test
     public void tokenizeFullSentence() {
         StringSearcher<String> trie = greekLettersStringSearcherBuilder().build();
@@ -390,6 +721,21 @@ public class StringSearcherTest {
         checkEmit(it.next(), 19, 23, "börkü", "uni:börkü");
     }
 
+    @Test
+    public void ignoreCaseFoldsUnicodeVariants() {
+        final Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            StringSearcher<String> trie = this.<String>builder().ignoreCase().addSearchString("ΣΟΦΟΣ")
+                    .addSearchString("Straße").addSearchString("TITLE").build();
+            assertEquals("[0:4=σοφοσ, 6:11=straße, 13:17=title]",
+                    trie.parseText("σοφος STRAẞE Title").toString());
+            assertEquals("0:4=σοφοσ", trie.firstMatch("σοφος").toString());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
     @Test
     public void testIgnoreCaseFirstMatch() {
         StringSearcher<String> trie = unicodeStringSearcherBuilder().ignoreCase().build();
@@ -408,7 +754,7 @@ public class StringSearcherTest {
     // @see https://github.com/robert-bor/aho-corasick/issues/7
     @Test
     public void testZeroLength() {
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload().ignoreOverlaps().onlyWholeWords().ignoreCase()
+        StringSearcher<String> trie = this.<String>builder().ignoreOverlaps().onlyWholeWords().ignoreCase()
                 .addSearchString("").build();
         trie.tokenize(
                 "Try a natural lip and subtle bronzer to keep all the focus on those big bright eyes with NARS Eyeshadow Duo in Rated R And the winner is... Boots No7 Advanced Renewal Anti-ageing Glycolic Peel Kit ($25 amazon.com) won most-appealing peel.");
@@ -419,7 +765,7 @@ public class StringSearcherTest {
     public void testUnicode1() {
         String target = "LİKE THIS"; // The second character ('İ') is Unicode, which was read by AC as a 2-byte char
         assertEquals("THIS", target.substring(5, 9)); // Java does it the right way
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload().ignoreCase().onlyWholeWords()
+        StringSearcher<String> trie = this.<String>builder().ignoreCase().onlyWholeWords()
                 .addSearchString("this", "pronon:this").build();
         Collection<Emit<String>> emits = trie.parseText(target);
         assertEquals(1, emits.size());
@@ -431,7 +777,7 @@ public class StringSearcherTest {
     @Test
     public void testUnicode2() {
         String target = "LİKE THIS"; // The second character ('İ') is Unicode, which was read by AC as a 2-byte char
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload().ignoreCase().onlyWholeWords()
+        StringSearcher<String> trie = this.<String>builder().ignoreCase().onlyWholeWords()
                 .addSearchString("this", "pronon:this").build();
         assertEquals("THIS", target.substring(5, 9)); // Java does it the right way
         Emit<String> firstMatch = trie.firstMatch(target);
@@ -440,7 +786,7 @@ public class StringSearcherTest {
 
     @Test
     public void testPartialMatchWhiteSpaces() {
-        StringSearcher<String> trie = StringSearcher.<String>builderWithPayload().onlyWholeWordsWhiteSpaceSeparated()
+        StringSearcher<String> trie = this.<String>builder().onlyWholeWordsWhiteSpaceSeparated()
                 .addSearchString("#sugar-123", "sugar").build();
         Collection<Emit<String>> emits = trie.parseText("#sugar-123 #sugar-1234"); // left, middle, right test
         assertEquals(1, emits.size()); // Match must not be made
@@ -457,7 +803,7 @@ public class StringSearcherTest {
 
         injectKeyword(text, keyword, interval);
 
-        StringSearcher<Food> trie = StringSearcher.<Food>builderWithPayload().onlyWholeWords().addSearchString(keyword, payload)
+        StringSearcher<Food> trie = this.<Food>builder().onlyWholeWords().addSearchString(keyword, payload)
                 .build();
 
         final Collection<Emit<Food>> emits = trie.parseText(text);
@@ -465,6 +811,162 @@ public class StringSearcherTest {
         assertEquals(textSize / interval, emits.size());
     }
 
+    @Test
+    public void parallelSameAsSequential() {
+        final Random random = new Random(3);
+        final String text = randomString(random, 600000, "abcdefgh ");
+        final ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            for (int round = 0; round < 3; round++) {
+                final StringSearcherBuilder<String> builder = this.<String>builder();
+                if (round == 1) {
+                    builder.ignoreOverlaps();
+                } else if (round == 2) {
+                    builder.onlyWholeWords().ignoreOverlaps();
+                }
+                for (int i = 0; i < 50; i++) {
+                    builder.addSearchString(randomString(random, 4 + random.nextInt(5), "abcdefgh "));
+                }
+                final StringSearcher<String> trie = builder.build();
+
+                assertEquals(trie.parseText(text).toString(), trie.parseText(text, pool).toString());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void parseTextsSameAsParseText() throws InterruptedException {
+        final Random random = new Random(7);
+        final List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            texts.add(randomString(random, random.nextInt(100), "abcd "));
+        }
+        final StringSearcher<String> trie = this.<String>builder().onlyWholeWords().ignoreOverlaps()
+                .addSearchStrings("ab", "abc", "bcd", "d", "cab").build();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            final List<List<Emit<String>>> emits = trie.parseTexts(texts, executor);
+            assertEquals(texts.size(), emits.size());
+            for (int i = 0; i < texts.size(); i++) {
+                assertEquals(trie.parseText(texts.get(i)).toString(), emits.get(i).toString());
+            }
+
+            final AtomicInteger emitCount = new AtomicInteger();
+            final BatchStatistics statistics = trie.parseTexts(texts, executor, new DocumentHandler<String>() {
+
+                @Override
+                public void onDocument(final int index, final CharSequence text, final List<Emit<String>> emits) {
+                    emitCount.addAndGet(emits.size());
+                }
+            });
+            assertEquals(texts.size(), statistics.getDocuments());
+            assertEquals(emitCount.get(), statistics.getEmits());
+            long characters = 0;
+            for (final String text : texts) {
+                characters += text.length();
+            }
+            assertEquals(characters, statistics.getCharacters());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void parseTextsRethrowsFailure() throws InterruptedException {
+        final StringSearcher<String> trie = this.<String>builder().addSearchString("he").build();
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            trie.parseTexts(Arrays.asList("she", "he", "hers"), executor, new DocumentHandler<String>() {
+
+                @Override
+                public void onDocument(final int index, final CharSequence text, final List<Emit<String>> emits) {
+                    if (index == 1) {
+                        throw new IllegalStateException();
+                    }
+                }
+            });
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void sharedByConcurrentThreads() throws Exception {
+        final Random random = new Random(13);
+        final StringSearcherBuilder<String> builder = this.<String>builder();
+        for (int i = 0; i < 200; i++) {
+            final String keyword = randomString(random, 1 + random.nextInt(6), "abcdé");
+            builder.addSearchString(keyword, "payload:" + keyword);
+        }
+        final StringSearcher<String> trie = builder.build();
+        // Changing the builder must not affect the built searcher.
+        builder.ignoreCase().onlyWholeWords();
+
+        final List<String> texts = new ArrayList<>();
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            final String text = randomString(random, random.nextInt(500), "abcdéABC ");
+            texts.add(text);
+            expected.add(trie.parseText(text).toString());
+        }
+
+        final int threads = 16;
+        final CyclicBarrier barrier = new CyclicBarrier(threads);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                final int seed = thread;
+                futures.add(executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+                        final Random random = new Random(seed);
+                        barrier.await();
+                        for (int i = 0; i < 500; i++) {
+                            final int index = random.nextInt(texts.size());
+                            final String text = texts.get(index);
+                            final Collection<Emit<String>> emits = trie.parseText(text);
+                            assertEquals(expected.get(index), emits.toString());
+                            assertEquals(!emits.isEmpty(), trie.containsMatch(text));
+
+                            final List<String> streamed = new ArrayList<>();
+                            trie.parseStream(new StringReader(text), new StreamMatchHandler() {
+
+                                @Override
+                                public boolean onMatch(final long start, final long end, final int keywordId) {
+                                    streamed.add(start + ":" + end + "=" + trie.getSearchString(keywordId) + "->"
+                                            + trie.getPayload(keywordId));
+                                    return true;
+                                }
+                            });
+                            assertEquals(expected.get(index), streamed.toString());
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String randomString(final Random random, final int length, final String alphabet) {
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+
     /**
      * Generates a random sequence of ASCII numbers.
      *
@@ -0,0 +1,192 @@
+package org.neosearch.stringsearcher;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.neosearch.stringsearcher.SwappableStringSearcher.BuildState;
+import org.neosearch.stringsearcher.SwappableStringSearcher.BuildStatus;
+
+public class SwappableStringSearcherTest {
+
+    @Test
+    public void swapsInReplacement() throws InterruptedException {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final SwappableStringSearcher<String> searcher = new SwappableStringSearcher<>(
+                    StringSearcher.<String>builderWithPayload().addSearchString("he", "old").build(), executor);
+            assertEquals("[2:3=he->old]", searcher.parseText("ushers").toString());
+
+            final BuildStatus status = searcher.rebuild(StringSearcher.<String>builderWithPayload().ignoreOverlaps(),
+                    entries("she", "new", "hers", "new"));
+            assertSame(status, searcher.getLastBuild());
+            assertEquals(BuildState.SUCCEEDED, status.await());
+            assertEquals(2, status.getSearchStrings());
+            assertEquals(7, status.getCharacters());
+            assertNull(status.getFailure());
+            assertTrue(status.getHeapSize() > 0);
+            assertEquals("[2:5=hers->new]", searcher.parseText("ushers").toString());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void heapSizeGrowsWithSearchStrings() {
+        for (final Algorithm algorithm : Algorithm.values()) {
+            final List<String> searchStrings = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                searchStrings.add("search string " + i);
+            }
+            final long small = ((AbstractStringSearcher<String>) StringSearcher.<String>builderWithPayload()
+                    .algorithm(algorithm).addSearchStrings(searchStrings.subList(0, 10)).build()).estimateHeapSize();
+            final long large = ((AbstractStringSearcher<String>) StringSearcher.<String>builderWithPayload()
+                    .algorithm(algorithm).addSearchStrings(searchStrings).build()).estimateHeapSize();
+            assertTrue(algorithm + ": " + small, small > 0);
+            assertTrue(algorithm + ": " + large, large > small);
+        }
+    }
+
+    @Test
+    public void keepsServingAfterFailedBuild() throws InterruptedException {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final StringSearcher<String> initial = StringSearcher.<String>builderWithPayload()
+                    .addSearchString("he", "old").build();
+            final SwappableStringSearcher<String> searcher = new SwappableStringSearcher<>(initial, executor);
+
+            final BuildStatus status = searcher.rebuild(StringSearcher.<String>builderWithPayload(),
+                    new Iterable<Entry<String, String>>() {
+
+                        @Override
+                        public Iterator<Entry<String, String>> iterator() {
+                            final Iterator<Entry<String, String>> entries = entries("she", "new").iterator();
+                            return new Iterator<Entry<String, String>>() {
+
+                                private boolean first = true;
+
+                                @Override
+                                public boolean hasNext() {
+                                    return true;
+                                }
+
+                                @Override
+                                public Entry<String, String> next() {
+                                    if (!first) {
+                                        throw new IllegalStateException("source failed");
+                                    }
+                                    first = false;
+                                    return entries.next();
+                                }
+
+                                @Override
+                                public void remove() {
+                                    throw new UnsupportedOperationException();
+                                }
+                            };
+                        }
+                    });
+
+            assertEquals(BuildState.FAILED, status.await());
+            assertEquals(-1, status.getHeapSize());
+            assertEquals(1, status.getSearchStrings());
+            assertEquals("source failed", status.getFailure().getMessage());
+            assertSame(initial, searcher.current());
+            assertEquals("[2:3=he->old]", searcher.parseText("ushers").toString());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void laterBuildSupersedesEarlierOne() throws InterruptedException {
+        final List<Runnable> tasks = new ArrayList<>();
+        final SwappableStringSearcher<String> searcher = new SwappableStringSearcher<>(
+                StringSearcher.<String>builderWithPayload().addSearchString("he", "v0").build(),
+                new Executor() {
+
+                    @Override
+                    public void execute(final Runnable task) {
+                        tasks.add(task);
+                    }
+                });
+
+        final BuildStatus first = searcher.rebuild(StringSearcher.<String>builderWithPayload(), entries("he", "v1"));
+        final BuildStatus second = searcher.rebuild(StringSearcher.<String>builderWithPayload(), entries("he", "v2"));
+        assertEquals(BuildState.ADDING, first.getState());
+
+        tasks.get(1).run();
+        tasks.get(0).run();
+
+        assertEquals(BuildState.SUCCEEDED, second.await());
+        assertEquals(BuildState.SUPERSEDED, first.await());
+        assertEquals("[2:3=he->v2]", searcher.parseText("ushers").toString());
+    }
+
+    @Test
+    public void readersSeeOldOrNewSearcher() throws InterruptedException {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final SwappableStringSearcher<String> searcher = new SwappableStringSearcher<>(
+                StringSearcher.<String>builderWithPayload().addSearchString("he", "v0").addSearchString("she", "v0")
+                        .build(),
+                executor);
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final Thread reader = new Thread() {
+
+                @Override
+                public void run() {
+                    while (running.get()) {
+                        final String emits = searcher.parseText("ushers").toString();
+                        if (!emits.matches("\\[2:3=he->(v\\d+), 1:3=she->\\1\\]")) {
+                            failure.compareAndSet(null, emits);
+                        }
+                    }
+                }
+            };
+            readers.add(reader);
+            reader.start();
+        }
+
+        try {
+            for (int version = 1; version <= 50; version++) {
+                final BuildStatus status = searcher.rebuild(StringSearcher.<String>builderWithPayload(),
+                        entries("he", "v" + version, "she", "v" + version));
+                assertEquals(BuildState.SUCCEEDED, status.await());
+            }
+        } finally {
+            running.set(false);
+            for (final Thread reader : readers) {
+                reader.join();
+            }
+            executor.shutdown();
+        }
+
+        assertNull(failure.get());
+        assertTrue(searcher.parseText("ushers").toString().contains("v50"));
+    }
+
+    private static List<Entry<String, String>> entries(final String... keywordsAndPayloads) {
+        final List<Entry<String, String>> entries = new ArrayList<>();
+        for (int i = 0; i < keywordsAndPayloads.length; i += 2) {
+            entries.add(new SimpleEntry<>(keywordsAndPayloads[i], keywordsAndPayloads[i + 1]));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,62 @@
+package org.neosearch.stringsearcher;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.function.IntPredicate;
+
+import org.junit.Test;
+
+public class WordBoundaryTest {
+
+    @Test
+    public void alphabetic() {
+        assertTrue(WordBoundary.ALPHABETIC.isWordCharacter('a'));
+        assertTrue(WordBoundary.ALPHABETIC.isWordCharacter('ü'));
+        assertFalse(WordBoundary.ALPHABETIC.isWordCharacter('2'));
+        assertFalse(WordBoundary.ALPHABETIC.isWordCharacter(' '));
+    }
+
+    @Test
+    public void alphanumeric() {
+        assertTrue(WordBoundary.ALPHANUMERIC.isWordCharacter('2'));
+        assertFalse(WordBoundary.ALPHANUMERIC.isWholeWord("2sugar", 1, 5));
+        assertTrue(WordBoundary.ALPHANUMERIC.isWholeWord("-sugar-", 1, 5));
+    }
+
+    @Test
+    public void whitespace() {
+        assertTrue(WordBoundary.WHITESPACE.isWordCharacter('-'));
+        assertFalse(WordBoundary.WHITESPACE.isWordCharacter('\t'));
+        assertTrue(WordBoundary.WHITESPACE.isWholeWord("sugar\tcane", 0, 4));
+        assertFalse(WordBoundary.WHITESPACE.isWholeWord("sugar-cane", 0, 4));
+    }
+
+    @Test
+    public void separatedBy() {
+        final WordBoundary boundary = WordBoundary.separatedBy(",;");
+        assertTrue(boundary.isWholeWord("a,sugar;b", 2, 6));
+        assertFalse(boundary.isWholeWord("a sugar b", 2, 6));
+    }
+
+    @Test
+    public void customPredicate() {
+        final WordBoundary boundary = WordBoundary.of(new IntPredicate() {
+
+            @Override
+            public boolean test(final int character) {
+                return Character.isLetterOrDigit(character) || character == '_';
+            }
+        });
+        assertFalse(boundary.isWholeWord("my_sugar", 3, 7));
+        assertTrue(boundary.isWholeWord("my.sugar", 3, 7));
+    }
+
+    @Test
+    public void combined() {
+        final WordBoundary boundary = WordBoundary.ALPHABETIC.and(WordBoundary.separatedBy(","));
+        assertFalse(boundary.isWholeWord("a sugar", 2, 6));
+        assertFalse(boundary.isWholeWord("asugar", 1, 5));
+        assertTrue(boundary.isWholeWord(",sugar", 1, 5));
+    }
+}
@@ -0,0 +1,262 @@
+package org.neosearch.stringsearcher.corpus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates dictionaries and texts for benchmarks and stress tests. The data
+ * depends on the seed only, so the same seed generates the same data on every
+ * machine and release, without downloaded corpora.
+ * <p>
+ * Dictionaries are returned in the order of their rank: texts contain the
+ * i-th search string with a probability proportional to <code>1 / i</code>,
+ * like words of natural language (Zipf's law).
+ *
+ * @author Daniel Beck
+ */
+public final class CorpusGenerator {
+
+    /**
+     * The kinds of dictionaries.
+     */
+    public enum Dictionary {
+        /**
+         * Distinct words of lowercase letters around the given length.
+         */
+        WORDS,
+        /**
+         * URLs of a few popular domains, which share long prefixes.
+         */
+        URLS,
+        /**
+         * Domain names with top level domains.
+         */
+        DOMAINS,
+        /**
+         * Distinct strings of the given length over the letters
+         * <code>acgt</code>.
+         */
+        DNA,
+        /**
+         * <code>a, aa, aaa, ...</code>, where every search string is a suffix of
+         * all longer ones. The length is ignored.
+         */
+        SUFFIX_CHAIN
+    }
+
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+    private static final String NUCLEOTIDES = "acgt";
+
+    private static final String[] TOP_LEVEL_DOMAINS = { "com", "org", "net", "de", "io", "co.uk" };
+
+    private static final int FILLER_WORDS = 10000;
+
+    private final Random random;
+
+    private List<String> fillerWords;
+
+    private ZipfDistribution fillerDistribution;
+
+    public CorpusGenerator(final long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Generates a dictionary.
+     *
+     * @param kind   The kind of the dictionary.
+     * @param count  The number of search strings.
+     * @param length The typical length of the search strings.
+     * @return The distinct search strings, in the order of their rank.
+     */
+    public List<String> dictionary(final Dictionary kind, final int count, final int length) {
+        switch (kind) {
+        case WORDS:
+            return words(count, length);
+        case URLS:
+            return urls(count);
+        case DOMAINS:
+            return domains(count);
+        case DNA:
+            return distinct(count, length, length, NUCLEOTIDES);
+        case SUFFIX_CHAIN:
+            return suffixChain(count);
+        default:
+            throw new IllegalArgumentException("Unknown dictionary " + kind);
+        }
+    }
+
+    /**
+     * Generates distinct words of lowercase letters, whose lengths are
+     * distributed evenly between half and one and a half of the given length.
+     *
+     * @param count  The number of words.
+     * @param length The average length of the words.
+     * @return The words.
+     */
+    public List<String> words(final int count, final int length) {
+        return distinct(count, Math.max(1, length - length / 2), length + length / 2, LETTERS);
+    }
+
+    /**
+     * Generates URLs like <code>https://www.word.com/word/word</code>. The
+     * domains are drawn from a tenth as many domains by their rank, so popular
+     * domains have many URLs.
+     *
+     * @param count The number of URLs.
+     * @return The URLs.
+     */
+    public List<String> urls(final int count) {
+        final List<String> domains = domains(Math.max(1, count / 10));
+        final ZipfDistribution domainDistribution = new ZipfDistribution(domains.size());
+        final Set<String> urls = new LinkedHashSet<>(count * 2);
+        while (urls.size() < count) {
+            final StringBuilder url = new StringBuilder("https://");
+            if (this.random.nextBoolean()) {
+                url.append("www.");
+            }
+            url.append(domains.get(domainDistribution.next(this.random)));
+            final int segments = 1 + this.random.nextInt(3);
+            for (int i = 0; i < segments; i++) {
+                url.append('/').append(word(3, 10, LETTERS));
+            }
+            urls.add(url.toString());
+        }
+        return new ArrayList<>(urls);
+    }
+
+    /**
+     * Generates domain names like <code>word-word.org</code>.
+     *
+     * @param count The number of domain names.
+     * @return The domain names.
+     */
+    public List<String> domains(final int count) {
+        final Set<String> domains = new LinkedHashSet<>(count * 2);
+        int maxLength = 8;
+        int duplicates = 0;
+        while (domains.size() < count) {
+            final StringBuilder domain = new StringBuilder(word(3, maxLength, LETTERS));
+            if (this.random.nextInt(4) == 0) {
+                domain.append('-').append(word(3, maxLength, LETTERS));
+            }
+            domain.append('.').append(TOP_LEVEL_DOMAINS[this.random.nextInt(TOP_LEVEL_DOMAINS.length)]);
+            if (!domains.add(domain.toString()) && ++duplicates > count / 10) {
+                maxLength++;
+                duplicates = 0;
+            }
+        }
+        return new ArrayList<>(domains);
+    }
+
+    /**
+     * Generates the search strings <code>a, aa, aaa, ...</code>, the worst
+     * case for the output links of Aho-Corasick.
+     *
+     * @param count The number of search strings.
+     * @return The search strings.
+     */
+    public static List<String> suffixChain(final int count) {
+        final List<String> searchStrings = new ArrayList<>(count);
+        final char[] characters = new char[count];
+        Arrays.fill(characters, 'a');
+        for (int length = 1; length <= count; length++) {
+            searchStrings.add(new String(characters, 0, length));
+        }
+        return searchStrings;
+    }
+
+    /**
+     * Generates a text in which the given fraction of the characters belongs to
+     * search strings. The search strings are drawn by their rank, and separated
+     * by filler words, which are drawn by their rank from a vocabulary of
+     * uppercase words. The filler words never match search strings without
+     * uppercase letters, unless the case is ignored.
+     *
+     * @param searchStrings The search strings, in the order of their rank.
+     * @param size          The length of the text.
+     * @param matchDensity  The fraction of the text covered by search strings.
+     * @return The text.
+     */
+    public String text(final List<String> searchStrings, final int size, final double matchDensity) {
+        if (this.fillerWords == null) {
+            this.fillerWords = new ArrayList<>();
+            for (final String word : words(FILLER_WORDS, 6)) {
+                this.fillerWords.add(word.toUpperCase());
+            }
+            this.fillerDistribution = new ZipfDistribution(FILLER_WORDS);
+        }
+
+        final ZipfDistribution distribution = new ZipfDistribution(searchStrings.size());
+        final StringBuilder text = new StringBuilder(size + 64);
+        long matchCharacters = 0;
+        while (text.length() < size) {
+            if (!searchStrings.isEmpty() && matchCharacters < matchDensity * text.length()) {
+                final String searchString = searchStrings.get(distribution.next(this.random));
+                text.append(searchString);
+                matchCharacters += searchString.length();
+            } else {
+                text.append(this.fillerWords.get(this.fillerDistribution.next(this.random)));
+            }
+            text.append(' ');
+        }
+        text.setLength(size);
+        return text.toString();
+    }
+
+    /**
+     * Generates distinct words. If there are fewer words of the lengths than
+     * requested, longer words are generated.
+     */
+    private List<String> distinct(final int count, final int minLength, final int maxLength,
+            final String alphabet) {
+        final Set<String> words = new LinkedHashSet<>(count * 2);
+        int currentMinLength = minLength;
+        int currentMaxLength = maxLength;
+        int duplicates = 0;
+        while (words.size() < count) {
+            if (!words.add(word(currentMinLength, currentMaxLength, alphabet)) && ++duplicates > count / 10) {
+                currentMinLength++;
+                currentMaxLength++;
+                duplicates = 0;
+            }
+        }
+        return new ArrayList<>(words);
+    }
+
+    private String word(final int minLength, final int maxLength, final String alphabet) {
+        final char[] word = new char[minLength + this.random.nextInt(maxLength - minLength + 1)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = alphabet.charAt(this.random.nextInt(alphabet.length()));
+        }
+        return new String(word);
+    }
+
+    /**
+     * Draws ranks with a probability proportional to <code>1 / rank</code>.
+     */
+    private static final class ZipfDistribution {
+
+        private final double[] cumulative;
+
+        ZipfDistribution(final int ranks) {
+            this.cumulative = new double[ranks];
+            double sum = 0;
+            for (int rank = 0; rank < ranks; rank++) {
+                sum += 1.0 / (rank + 1);
+                this.cumulative[rank] = sum;
+            }
+        }
+
+        int next(final Random random) {
+            final double value = random.nextDouble() * this.cumulative[this.cumulative.length - 1];
+            final int index = Arrays.binarySearch(this.cumulative, value);
+            return index >= 0 ? index : Math.min(-index - 1, this.cumulative.length - 1);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.neosearch.stringsearcher.corpus;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.neosearch.stringsearcher.corpus.CorpusGenerator.Dictionary;
+
+public class CorpusGeneratorTest {
+
+    @Test
+    public void sameSeedSameData() {
+        for (final Dictionary kind : Dictionary.values()) {
+            final CorpusGenerator first = new CorpusGenerator(7);
+            final CorpusGenerator second = new CorpusGenerator(7);
+            final List<String> dictionary = first.dictionary(kind, 100, 8);
+            assertEquals(dictionary, second.dictionary(kind, 100, 8));
+            assertEquals(first.text(dictionary, 1000, 0.1), second.text(dictionary, 1000, 0.1));
+        }
+    }
+
+    @Test
+    public void dictionariesAreDistinct() {
+        final CorpusGenerator generator = new CorpusGenerator(7);
+        for (final Dictionary kind : Dictionary.values()) {
+            final List<String> dictionary = generator.dictionary(kind, 1000, 4);
+            assertEquals(1000, dictionary.size());
+            assertEquals(1000, new HashSet<>(dictionary).size());
+        }
+    }
+
+    @Test
+    public void shapesOfDictionaries() {
+        final CorpusGenerator generator = new CorpusGenerator(7);
+        for (final String url : generator.urls(100)) {
+            assertTrue(url, url.matches("https://(www\\.)?[a-z-]+\\.[a-z.]+(/[a-z]+)+"));
+        }
+        for (final String domain : generator.domains(100)) {
+            assertTrue(domain, domain.matches("[a-z]+(-[a-z]+)?\\.[a-z.]+"));
+        }
+        for (final String word : generator.words(100, 8)) {
+            assertTrue(word, word.matches("[a-z]{4,12}"));
+        }
+        for (final String dna : generator.dictionary(Dictionary.DNA, 100, 6)) {
+            assertTrue(dna, dna.matches("[acgt]{6}"));
+        }
+        assertEquals("[a, aa, aaa]", CorpusGenerator.suffixChain(3).toString());
+    }
+
+    @Test
+    public void textHasMatchDensity() {
+        final CorpusGenerator generator = new CorpusGenerator(7);
+        final List<String> dictionary = generator.words(1000, 8);
+        final String text = generator.text(dictionary, 100000, 0.2);
+        assertEquals(100000, text.length());
+
+        int lowercase = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isLowerCase(text.charAt(i))) {
+                lowercase++;
+            }
+        }
+        assertTrue(String.valueOf(lowercase), Math.abs(lowercase - 20000) < 100);
+        assertTrue(generator.text(dictionary, 1000, 0).matches("[A-Z ]+"));
+    }
+}
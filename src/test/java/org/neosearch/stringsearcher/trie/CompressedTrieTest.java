@@ -0,0 +1,76 @@
+package org.neosearch.stringsearcher.trie;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.neosearch.stringsearcher.Emit;
+import org.neosearch.stringsearcher.StringSearcherConfig;
+
+public class CompressedTrieTest {
+
+    @Test
+    public void sameEmitsAsTrieOnRandomDictionaries() {
+        final Random random = new Random(42);
+
+        for (int round = 0; round < 200; round++) {
+            final Trie<Integer> trie = new Trie<>(new StringSearcherConfig());
+            final CompressedTrie<Integer> compressedTrie = new CompressedTrie<>(new StringSearcherConfig());
+
+            final int keywords = 1 + random.nextInt(30);
+            for (int i = 0; i < keywords; i++) {
+                final String keyword = randomString(random, 1 + random.nextInt(8), "abcd");
+                trie.addSearchString(keyword, i);
+                compressedTrie.addSearchString(keyword, i);
+            }
+            trie.build();
+            compressedTrie.build();
+
+            final String text = randomString(random, 200, "abcde");
+            assertEquals(sorted(trie.parseText(text)), sorted(compressedTrie.parseText(text)));
+        }
+    }
+
+    @Test
+    public void longSearchStringsShareNodes() {
+        final CompressedTrie<String> compressedTrie = new CompressedTrie<>(new StringSearcherConfig());
+        compressedTrie.addSearchString("https://example.com/products/shoes");
+        compressedTrie.addSearchString("https://example.com/products/shirts");
+        compressedTrie.addSearchString("https://example.com/about");
+        compressedTrie.build();
+
+        // root, "https://example.com/", "https://example.com/products/sh" and three leaves
+        assertEquals(6, compressedTrie.getNodeCount());
+        assertEquals("[5:38=https://example.com/products/shoes]",
+                compressedTrie.parseText("see: https://example.com/products/shoes").toString());
+    }
+
+    private static String randomString(final Random random, final int length, final String alphabet) {
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+
+    private static String sorted(final Iterable<Emit<Integer>> emits) {
+        final List<Emit<Integer>> list = new ArrayList<>();
+        for (final Emit<Integer> emit : emits) {
+            list.add(emit);
+        }
+        Collections.sort(list, new Comparator<Emit<Integer>>() {
+
+            @Override
+            public int compare(final Emit<Integer> emit, final Emit<Integer> other) {
+                final int comparison = emit.getEnd() - other.getEnd();
+                return comparison != 0 ? comparison : other.getStart() - emit.getStart();
+            }
+        });
+        return list.toString();
+    }
+}
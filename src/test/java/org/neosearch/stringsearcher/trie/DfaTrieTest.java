@@ -0,0 +1,68 @@
+package org.neosearch.stringsearcher.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.neosearch.stringsearcher.StringSearcherConfig;
+
+public class DfaTrieTest {
+
+    @Test
+    public void sameEmitsAsDoubleArrayTrieOnRandomDictionaries() {
+        final Random random = new Random(42);
+
+        for (int round = 0; round < 200; round++) {
+            final DoubleArrayTrie<Integer> doubleArrayTrie = new DoubleArrayTrie<>(new StringSearcherConfig());
+            final DfaTrie<Integer> dfaTrie = new DfaTrie<>(new StringSearcherConfig());
+
+            final int keywords = 1 + random.nextInt(30);
+            for (int i = 0; i < keywords; i++) {
+                final String keyword = randomString(random, 1 + random.nextInt(6), "abcd");
+                doubleArrayTrie.addSearchString(keyword, i);
+                dfaTrie.addSearchString(keyword, i);
+            }
+            doubleArrayTrie.build();
+            dfaTrie.build();
+
+            final String text = randomString(random, 200, "abcde");
+            assertEquals(doubleArrayTrie.parseText(text).toString(), dfaTrie.parseText(text).toString());
+        }
+    }
+
+    @Test
+    public void reportsTableSize() {
+        final DfaTrie<String> dfaTrie = new DfaTrie<>(new StringSearcherConfig());
+        dfaTrie.addSearchStrings("he", "she", "his", "hers");
+        dfaTrie.build();
+
+        // states: root, h, he, her, hers, hi, his, s, sh, she; alphabet: h, e, s, r, i and unknown
+        assertTrue(dfaTrie.isDeterminized());
+        assertEquals(6, dfaTrie.getAlphabetSize());
+        assertEquals(10 * 6 * 4, dfaTrie.getTableSize());
+    }
+
+    @Test
+    public void fallsBackIfTableIsTooLarge() {
+        final StringSearcherConfig config = new StringSearcherConfig();
+        config.setMaxTableSize(100);
+        final DfaTrie<String> dfaTrie = new DfaTrie<>(config);
+        dfaTrie.addSearchStrings("he", "she", "his", "hers");
+        dfaTrie.build();
+
+        assertFalse(dfaTrie.isDeterminized());
+        assertEquals(240, dfaTrie.getTableSize());
+        assertEquals("[2:3=he, 1:3=she, 2:5=hers]", dfaTrie.parseText("ushers").toString());
+    }
+
+    private static String randomString(final Random random, final int length, final String alphabet) {
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
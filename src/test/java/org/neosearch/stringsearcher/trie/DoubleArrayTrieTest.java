@@ -0,0 +1,208 @@
+package org.neosearch.stringsearcher.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neosearch.stringsearcher.Emit;
+import org.neosearch.stringsearcher.StringSearcherConfig;
+
+public class DoubleArrayTrieTest {
+
+    private static final PayloadCodec<Integer> INTEGER_CODEC = new PayloadCodec<Integer>() {
+
+        @Override
+        public void write(final DataOutput out, final Integer payload) throws IOException {
+            out.writeInt(payload);
+        }
+
+        @Override
+        public Integer read(final DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameEmitsAsTrieOnRandomDictionaries() {
+        final Random random = new Random(42);
+
+        for (int round = 0; round < 200; round++) {
+            final Trie<Integer> trie = new Trie<>(new StringSearcherConfig());
+            final DoubleArrayTrie<Integer> doubleArrayTrie = new DoubleArrayTrie<>(new StringSearcherConfig());
+
+            final int keywords = 1 + random.nextInt(30);
+            for (int i = 0; i < keywords; i++) {
+                final String keyword = randomString(random, 1 + random.nextInt(6), "abcd");
+                trie.addSearchString(keyword, i);
+                doubleArrayTrie.addSearchString(keyword, i);
+            }
+            trie.build();
+            doubleArrayTrie.build();
+
+            final String text = randomString(random, 200, "abcde");
+            assertEquals(sorted(trie.parseText(text)), sorted(doubleArrayTrie.parseText(text)));
+        }
+    }
+
+    @Test
+    public void largeAlphabet() {
+        final DoubleArrayTrie<String> doubleArrayTrie = new DoubleArrayTrie<>(new StringSearcherConfig());
+        doubleArrayTrie.addSearchString("中文", "chinese");
+        doubleArrayTrie.addSearchString("￿", "max");
+        doubleArrayTrie.addSearchString("\u0000a", "min");
+        doubleArrayTrie.build();
+
+        assertEquals("[0:1=\u0000a->min, 3:4=中文->chinese, 5:5=￿->max]",
+                doubleArrayTrie.parseText("\u0000a 中文￿").toString());
+    }
+
+    @Test
+    public void readsWrittenImage() throws IOException {
+        final Random random = new Random(7);
+        final StringSearcherConfig config = new StringSearcherConfig();
+        config.setCaseInsensitive(true);
+        final DoubleArrayTrie<Integer> doubleArrayTrie = new DoubleArrayTrie<>(config);
+        for (int i = 0; i < 5000; i++) {
+            doubleArrayTrie.addSearchString(randomString(random, 1 + random.nextInt(8), "abcdeÄ中"), i);
+        }
+        doubleArrayTrie.build();
+
+        final Path file = folder.newFile("automaton.bin").toPath();
+        doubleArrayTrie.writeTo(file, INTEGER_CODEC);
+        final DoubleArrayTrie<Integer> read = DoubleArrayTrie.readFrom(file, INTEGER_CODEC);
+
+        final String text = randomString(random, 20000, "ABCDEabcdeÄä中 ");
+        assertEquals(doubleArrayTrie.parseText(text).toString(), read.parseText(text).toString());
+    }
+
+    @Test
+    public void readsImageWithoutPayloads() throws IOException {
+        final DoubleArrayTrie<Integer> doubleArrayTrie = new DoubleArrayTrie<>(new StringSearcherConfig());
+        doubleArrayTrie.addSearchStrings("he", "she", "hers");
+        doubleArrayTrie.build();
+
+        final Path file = folder.newFile("automaton.bin").toPath();
+        doubleArrayTrie.writeTo(file);
+
+        assertEquals("[2:3=he, 1:3=she, 2:5=hers]", DoubleArrayTrie.readFrom(file).parseText("ushers").toString());
+        assertEquals("[2:3=he, 1:3=she, 2:5=hers]",
+                DoubleArrayTrie.readFrom(file, INTEGER_CODEC).parseText("ushers").toString());
+    }
+
+    @Test
+    public void rejectsInvalidImage() throws IOException {
+        final Path file = folder.newFile("automaton.bin").toPath();
+        Files.write(file, "not an automaton image, but long enough to hold a header...........".getBytes("UTF-8"));
+
+        try {
+            DoubleArrayTrie.readFrom(file);
+            fail();
+        } catch (final IOException e) {
+            assertTrue(e.getMessage().contains("Not an automaton image"));
+        }
+    }
+
+    @Test
+    public void rejectsCorruptImage() throws IOException {
+        final DoubleArrayTrie<Integer> doubleArrayTrie = new DoubleArrayTrie<>(new StringSearcherConfig());
+        doubleArrayTrie.addSearchStrings("he", "she", "hers");
+        doubleArrayTrie.build();
+        final Path file = folder.newFile("automaton.bin").toPath();
+        doubleArrayTrie.writeTo(file);
+        final byte[] image = Files.readAllBytes(file);
+        final ByteBuffer header = ByteBuffer.wrap(image);
+        final int keywordOffsets = 64 + 4 * header.getInt(16);
+        final int arrays = keywordOffsets + 4 * (header.getInt(12) + 1);
+        final int arrayLength = header.getInt(20);
+
+        // Truncated.
+        assertCorrupt(file, Arrays.copyOf(image, image.length / 2), -1, 0);
+        // A search string beyond the characters.
+        assertCorrupt(file, image, keywordOffsets + 4, 1000);
+        // A base whose transitions leave the arrays.
+        assertCorrupt(file, image, arrays, arrayLength);
+        // A check beyond the arrays.
+        assertCorrupt(file, image, arrays + 4 * arrayLength + 4, arrayLength);
+        // A state which fails to itself.
+        assertCorrupt(file, image, arrays + 8 * arrayLength + 4, 1);
+        // An output beyond the search strings.
+        assertCorrupt(file, image, arrays + 12 * arrayLength + 4, 3);
+    }
+
+    private static void assertCorrupt(final Path file, final byte[] image, final int position, final int value)
+            throws IOException {
+        final byte[] corrupt = image.clone();
+        if (position >= 0) {
+            ByteBuffer.wrap(corrupt).putInt(position, value);
+        }
+        Files.write(file, corrupt);
+
+        try {
+            DoubleArrayTrie.readFrom(file);
+            fail("Read a corrupt image");
+        } catch (final IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("automaton image"));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsParsingBeforeBuild() {
+        final DoubleArrayTrie<String> doubleArrayTrie = new DoubleArrayTrie<>(new StringSearcherConfig());
+        doubleArrayTrie.addSearchString("he");
+        doubleArrayTrie.parseText("ushers");
+    }
+
+    @Test
+    public void ignoresLaterChangesOfConfig() {
+        final StringSearcherConfig config = new StringSearcherConfig();
+        final DoubleArrayTrie<String> doubleArrayTrie = new DoubleArrayTrie<>(config);
+        doubleArrayTrie.addSearchString("he");
+        doubleArrayTrie.build();
+        config.setCaseInsensitive(true);
+
+        assertEquals("[3:4=he]", doubleArrayTrie.parseText("HE he").toString());
+    }
+
+    private static String randomString(final Random random, final int length, final String alphabet) {
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+
+    private static String sorted(final Iterable<Emit<Integer>> emits) {
+        final List<Emit<Integer>> list = new ArrayList<>();
+        for (final Emit<Integer> emit : emits) {
+            list.add(emit);
+        }
+        Collections.sort(list, new Comparator<Emit<Integer>>() {
+
+            @Override
+            public int compare(final Emit<Integer> emit, final Emit<Integer> other) {
+                final int comparison = emit.getEnd() - other.getEnd();
+                return comparison != 0 ? comparison : other.getStart() - emit.getStart();
+            }
+        });
+        return list.toString();
+    }
+}
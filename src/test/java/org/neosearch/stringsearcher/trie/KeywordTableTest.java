@@ -0,0 +1,43 @@
+package org.neosearch.stringsearcher.trie;
+
+import static junit.framework.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class KeywordTableTest {
+
+    @Test
+    public void assignsDenseIdsInInsertionOrder() {
+        final KeywordTable.Builder<Integer> builder = new KeywordTable.Builder<>();
+        builder.add("she", 1);
+        builder.add("he", 2);
+        builder.add("", 3);
+        builder.add("she", 4);
+        builder.add("hers", 5);
+        final KeywordTable<Integer> table = builder.build();
+
+        assertEquals(3, table.size());
+        assertEquals("she", table.getKeyword(0));
+        assertEquals(Integer.valueOf(1), table.getPayload(0));
+        assertEquals("he", table.getKeyword(1));
+        assertEquals(Integer.valueOf(2), table.getPayload(1));
+        assertEquals("hers", table.getKeyword(2));
+        assertEquals(Integer.valueOf(5), table.getPayload(2));
+        assertEquals(4, table.getMaxLength());
+    }
+
+    @Test
+    public void sortsIdsBySearchString() {
+        final KeywordTable.Builder<Void> builder = new KeywordTable.Builder<>();
+        for (final String keyword : new String[] { "she", "he", "his", "hers", "h" }) {
+            builder.add(keyword, null);
+        }
+        final KeywordTable<Void> table = builder.build();
+
+        final StringBuilder sorted = new StringBuilder();
+        for (final int keywordId : builder.getSortedIds()) {
+            sorted.append(table.getKeyword(keywordId)).append(' ');
+        }
+        assertEquals("h he hers his she ", sorted.toString());
+    }
+}
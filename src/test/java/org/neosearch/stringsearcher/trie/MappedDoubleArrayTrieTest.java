@@ -0,0 +1,219 @@
+package org.neosearch.stringsearcher.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neosearch.stringsearcher.MatchKind;
+import org.neosearch.stringsearcher.StringSearcherConfig;
+import org.neosearch.stringsearcher.WordBoundary;
+
+public class MappedDoubleArrayTrieTest {
+
+    private static final PayloadCodec<String> STRING_CODEC = new PayloadCodec<String>() {
+
+        @Override
+        public void write(final DataOutput out, final String payload) throws IOException {
+            out.writeUTF(payload);
+        }
+
+        @Override
+        public String read(final DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameEmitsAsDoubleArrayTrie() throws IOException {
+        final Random random = new Random(11);
+        final DoubleArrayTrie<String> doubleArrayTrie = new DoubleArrayTrie<>(new StringSearcherConfig());
+        for (int i = 0; i < 3000; i++) {
+            doubleArrayTrie.addSearchString(randomString(random, 1 + random.nextInt(7), "abcdé中"), "payload" + i);
+        }
+        doubleArrayTrie.build();
+
+        final Path file = folder.newFile("automaton.bin").toPath();
+        doubleArrayTrie.writeTo(file, STRING_CODEC);
+        final MappedDoubleArrayTrie<String> mapped = MappedDoubleArrayTrie.open(file, STRING_CODEC);
+
+        final String text = randomString(random, 20000, "abcdeé中 ");
+        assertEquals(doubleArrayTrie.parseText(text).toString(), mapped.parseText(text).toString());
+    }
+
+    @Test
+    public void usesConfigurationOfImage() throws IOException {
+        final StringSearcherConfig config = new StringSearcherConfig();
+        config.setCaseInsensitive(true);
+        config.setOnlyWholeWords(true);
+        final DoubleArrayTrie<String> doubleArrayTrie = new DoubleArrayTrie<>(config);
+        doubleArrayTrie.addSearchString("Sugar", "sweet");
+        doubleArrayTrie.build();
+
+        final Path file = folder.newFile("automaton.bin").toPath();
+        doubleArrayTrie.writeTo(file, STRING_CODEC);
+
+        assertEquals("[10:14=sugar->sweet]",
+                MappedDoubleArrayTrie.open(file, STRING_CODEC).parseText("sugarcane SUGAR canesugar").toString());
+        assertEquals("[10:14=sugar]", MappedDoubleArrayTrie.open(file).parseText("sugarcane SUGAR").toString());
+    }
+
+    @Test
+    public void keepsMatchKindOfImage() throws IOException {
+        final StringSearcherConfig config = new StringSearcherConfig();
+        config.setMatchKind(MatchKind.LEFTMOST_FIRST);
+        final DoubleArrayTrie<String> doubleArrayTrie = new DoubleArrayTrie<>(config);
+        doubleArrayTrie.addSearchStrings("ab", "cba", "ababc");
+        doubleArrayTrie.build();
+
+        final Path file = folder.newFile("automaton.bin").toPath();
+        doubleArrayTrie.writeTo(file);
+
+        assertEquals("[0:1=ab, 2:3=ab, 4:6=cba]", MappedDoubleArrayTrie.open(file).parseText("ababcbab").toString());
+    }
+
+    @Test
+    public void keepsWordBoundaryOfImage() throws IOException {
+        final StringSearcherConfig config = new StringSearcherConfig();
+        config.setOnlyWholeWords(true);
+        config.setWordBoundary(WordBoundary.ALPHANUMERIC);
+        final DoubleArrayTrie<String> doubleArrayTrie = new DoubleArrayTrie<>(config);
+        doubleArrayTrie.addSearchStrings("sugar");
+        doubleArrayTrie.build();
+
+        final Path file = folder.newFile("automaton.bin").toPath();
+        doubleArrayTrie.writeTo(file);
+
+        assertEquals("[7:11=sugar]", MappedDoubleArrayTrie.open(file).parseText("sugar2 sugar").toString());
+    }
+
+    @Test
+    public void skipsToStartCharactersOfRoot() throws IOException {
+        final StringSearcherConfig config = new StringSearcherConfig();
+        config.setCaseInsensitive(true);
+        final DoubleArrayTrie<String> doubleArrayTrie = new DoubleArrayTrie<>(config);
+        doubleArrayTrie.addSearchStrings("needle", "nest");
+        doubleArrayTrie.build();
+
+        final Path file = folder.newFile("automaton.bin").toPath();
+        doubleArrayTrie.writeTo(file);
+        final MappedDoubleArrayTrie<String> mapped = MappedDoubleArrayTrie.open(file);
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("hay stack ");
+        }
+        text.append("NEEDLE Nest");
+
+        assertEquals("[1000:1005=needle, 1007:1010=nest]", mapped.parseText(text).toString());
+        assertTrue(mapped.getPrefilterStatistics().getSkippedCharacters() >= 900);
+    }
+
+    @Test
+    public void readsVersion2ImageWithoutMaxLength() throws IOException {
+        final StringSearcherConfig config = new StringSearcherConfig();
+        config.setMatchKind(MatchKind.LEFTMOST_LONGEST);
+        final DoubleArrayTrie<String> doubleArrayTrie = new DoubleArrayTrie<>(config);
+        doubleArrayTrie.addSearchStrings("ab", "abcdef");
+        doubleArrayTrie.build();
+
+        final Path file = folder.newFile("automaton.bin").toPath();
+        doubleArrayTrie.writeTo(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, 2), 4);
+            channel.write(ByteBuffer.allocate(4), 32);
+        }
+
+        assertEquals("[1:6=abcdef, 8:9=ab]", MappedDoubleArrayTrie.open(file).parseText("xabcdefxab").toString());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsCustomWordBoundary() throws IOException {
+        final StringSearcherConfig config = new StringSearcherConfig();
+        config.setOnlyWholeWords(true);
+        config.setWordBoundary(WordBoundary.separatedBy(","));
+        final DoubleArrayTrie<String> doubleArrayTrie = new DoubleArrayTrie<>(config);
+        doubleArrayTrie.addSearchStrings("sugar");
+        doubleArrayTrie.build();
+
+        doubleArrayTrie.writeTo(folder.newFile("automaton.bin").toPath());
+    }
+
+    @Test(expected = EOFException.class)
+    public void rejectsTruncatedImage() throws IOException {
+        final DoubleArrayTrie<String> doubleArrayTrie = new DoubleArrayTrie<>(new StringSearcherConfig());
+        doubleArrayTrie.addSearchStrings("he", "she", "hers");
+        doubleArrayTrie.build();
+
+        final Path file = folder.newFile("automaton.bin").toPath();
+        doubleArrayTrie.writeTo(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() / 2);
+        }
+
+        MappedDoubleArrayTrie.open(file);
+    }
+
+    @Test
+    public void rejectsCorruptSectionsAndRoot() throws IOException {
+        final DoubleArrayTrie<String> doubleArrayTrie = new DoubleArrayTrie<>(new StringSearcherConfig());
+        doubleArrayTrie.addSearchStrings("he", "she", "hers");
+        doubleArrayTrie.build();
+        final Path file = folder.newFile("automaton.bin").toPath();
+        doubleArrayTrie.writeTo(file);
+        final byte[] image = Files.readAllBytes(file);
+        final ByteBuffer header = ByteBuffer.wrap(image);
+        final int keywordCount = header.getInt(12);
+        final int keywordOffsets = 64 + 4 * header.getInt(16);
+        final int arrays = keywordOffsets + 4 * (keywordCount + 1);
+        final int arrayLength = header.getInt(20);
+
+        // A character beyond the char range.
+        assertCorrupt(image, 64, 0x10000);
+        // Search strings which end beyond their characters.
+        assertCorrupt(image, keywordOffsets + 4 * keywordCount, 1000);
+        // A root whose transitions leave the arrays.
+        assertCorrupt(image, arrays, arrayLength);
+        // A root which is not its own parent.
+        assertCorrupt(image, arrays + 4 * arrayLength, 1);
+        // A root which fails to another state.
+        assertCorrupt(image, arrays + 8 * arrayLength, 1);
+    }
+
+    private void assertCorrupt(final byte[] image, final int position, final int value) throws IOException {
+        final byte[] corrupt = image.clone();
+        ByteBuffer.wrap(corrupt).putInt(position, value);
+        final Path file = folder.newFile().toPath();
+        Files.write(file, corrupt);
+
+        try {
+            MappedDoubleArrayTrie.open(file);
+            fail("Opened a corrupt image");
+        } catch (final IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Corrupt automaton image"));
+        }
+    }
+
+    private static String randomString(final Random random, final int length, final String alphabet) {
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,74 @@
+package org.neosearch.stringsearcher.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.neosearch.stringsearcher.StreamMatchHandler;
+import org.neosearch.stringsearcher.StringSearcherConfig;
+
+public class PackedFingerprintSearcherTest {
+
+    @Test
+    public void fallsBackToTrieForManySearchStrings() {
+        final PackedFingerprintSearcher<String> small = new PackedFingerprintSearcher<>(new StringSearcherConfig());
+        final PackedFingerprintSearcher<String> large = new PackedFingerprintSearcher<>(new StringSearcherConfig());
+        for (int i = 0; i <= PackedFingerprintSearcher.MAX_SEARCH_STRINGS; i++) {
+            if (i < PackedFingerprintSearcher.MAX_SEARCH_STRINGS) {
+                small.addSearchString("token" + i);
+            }
+            large.addSearchString("token" + i);
+        }
+        small.build();
+        large.build();
+
+        assertTrue(small.isPacked());
+        assertFalse(large.isPacked());
+        assertEquals("[4:9=token1, 4:10=token12, 4:11=token127]", small.parseText("xyz token127").toString());
+        assertEquals("[4:9=token1, 4:10=token12, 4:11=token128]", large.parseText("xyz token128").toString());
+    }
+
+    @Test
+    public void sharesBucketsOfSimilarSearchStrings() {
+        final PackedFingerprintSearcher<String> searcher = new PackedFingerprintSearcher<>(new StringSearcherConfig());
+        for (int i = 0; i < 100; i++) {
+            searcher.addSearchString("key-" + i);
+        }
+        searcher.build();
+
+        assertEquals("PackedFingerprintSearcher[searchStrings=100, buckets=12, fingerprintLength=5]",
+                searcher.toString());
+        assertEquals("[0:4=key-7, 0:5=key-72, 7:11=key-0]", searcher.parseText("key-72 key-0").toString());
+    }
+
+    @Test
+    public void resumesStreamsAcrossBuffers() throws IOException {
+        final PackedFingerprintSearcher<String> searcher = new PackedFingerprintSearcher<>(new StringSearcherConfig());
+        searcher.addSearchStrings("needle", "le");
+        searcher.build();
+
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 64 * 1024 - 3; i++) {
+            text.append('x');
+        }
+        text.append("needle");
+
+        final List<String> matches = new ArrayList<>();
+        final long read = searcher.parseStream(new StringReader(text.toString()), new StreamMatchHandler() {
+
+            @Override
+            public boolean onMatch(final long start, final long end, final int keywordId) {
+                matches.add(start + ":" + end);
+                return true;
+            }
+        });
+        assertEquals(text.length(), read);
+        assertEquals("[65537:65538, 65533:65538]", matches.toString());
+    }
+}
@@ -0,0 +1,40 @@
+package org.neosearch.stringsearcher.trie;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+
+public class StateTest {
+
+    @Test
+    public void constructSequenceOfCharacters() {
+        State<String> rootState = new State<String>();
+        rootState.addState('a').addState('b').addState('c');
+        State<String> currentState = rootState.nextState('a');
+        assertEquals(1, currentState.getDepth());
+        currentState = currentState.nextState('b');
+        assertEquals(2, currentState.getDepth());
+        currentState = currentState.nextState('c');
+        assertEquals(3, currentState.getDepth());
+    }
+
+    @Test
+    public void transitionsBeyondCharacterCache() {
+        State<String> rootState = new State<String>();
+        final String characters = "zyx\u4e2d\u00e9abcdefg\uffff";
+        for (int i = 0; i < characters.length(); i++) {
+            rootState.addState(characters.charAt(i));
+        }
+        for (int i = 0; i < characters.length(); i++) {
+            final State<String> state = rootState.nextStateIgnoreRootState(characters.charAt(i));
+            assertEquals(1, state.getDepth());
+            assertSame(state, rootState.addState(characters.charAt(i)));
+        }
+        assertNull(rootState.nextStateIgnoreRootState('h'));
+        assertSame(rootState, rootState.nextState('h'));
+        assertEquals("[a, b, c, d, e, f, g, x, y, z, \u00e9, \u4e2d, \uffff]", rootState.getTransitions().toString());
+    }
+
+}
@@ -0,0 +1,178 @@
+package org.neosearch.stringsearcher.trie;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.neosearch.stringsearcher.Emit;
+import org.neosearch.stringsearcher.MatchHandler;
+import org.neosearch.stringsearcher.StreamMatchHandler;
+import org.neosearch.stringsearcher.StringSearcherConfig;
+
+public class Utf8DoubleArrayTrieTest {
+
+    @Test
+    public void byteOffsetsMatchCharOffsets() {
+        final Random random = new Random(5);
+
+        for (int round = 0; round < 100; round++) {
+            final Utf8DoubleArrayTrie<Integer> utf8Trie = new Utf8DoubleArrayTrie<>(new StringSearcherConfig());
+            final int keywords = 1 + random.nextInt(20);
+            for (int i = 0; i < keywords; i++) {
+                utf8Trie.addSearchString(randomString(random, 1 + random.nextInt(4), "aé中😀"), i);
+            }
+            utf8Trie.build();
+
+            final String text = randomString(random, 200, "aé中😀b");
+            final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+            final List<String> converted = new ArrayList<>();
+            for (final Emit<Integer> emit : utf8Trie.parseBytes(bytes)) {
+                converted.add(Utf8DoubleArrayTrie.toCharOffset(bytes, 0, emit.getStart()) + ":"
+                        + (Utf8DoubleArrayTrie.toCharOffset(bytes, 0, emit.getEnd() + 1) - 1) + "="
+                        + emit.getSearchString());
+            }
+
+            final List<String> expected = new ArrayList<>();
+            for (final Emit<Integer> emit : utf8Trie.parseText(text)) {
+                expected.add(emit.getStart() + ":" + emit.getEnd() + "=" + emit.getSearchString());
+            }
+            assertEquals(expected, converted);
+        }
+    }
+
+    @Test
+    public void rejectsUnpairedSurrogates() {
+        final Utf8DoubleArrayTrie<String> utf8Trie = new Utf8DoubleArrayTrie<>(new StringSearcherConfig());
+        utf8Trie.addSearchString("a\uD83D\uDE00b");
+        for (final String keyword : new String[] { "a\uD83D", "\uDE00b", "\uDE00\uD83D" }) {
+            try {
+                utf8Trie.addSearchString(keyword);
+                fail(keyword);
+            } catch (final IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        utf8Trie.build();
+        assertEquals("[1:4=a\uD83D\uDE00b]", utf8Trie.parseText("?a\uD83D\uDE00b?").toString());
+    }
+
+    @Test
+    public void unpairedSurrogatesInTextLikeTrie() {
+        final Trie<String> trie = new Trie<>(new StringSearcherConfig());
+        final Utf8DoubleArrayTrie<String> utf8Trie = new Utf8DoubleArrayTrie<>(new StringSearcherConfig());
+        for (final String keyword : new String[] { "a?b", "x\uD83D\uDE00y" }) {
+            trie.addSearchString(keyword);
+            utf8Trie.addSearchString(keyword);
+        }
+        trie.build();
+        utf8Trie.build();
+
+        for (final String text : new String[] { "a\uD800b", "a\uDC00b", "x\uD83Dy", "a?b\uDE00x\uD83D\uDE00y" }) {
+            assertEquals(text, trie.parseText(text).toString(), utf8Trie.parseText(text).toString());
+        }
+    }
+
+    @Test
+    public void streamKeepsSurrogatePairsAcrossBuffers() throws IOException {
+        final Utf8DoubleArrayTrie<String> utf8Trie = new Utf8DoubleArrayTrie<>(new StringSearcherConfig());
+        utf8Trie.addSearchString("x\uD83D\uDE00y");
+        utf8Trie.build();
+
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 65534; i++) {
+            text.append(' ');
+        }
+        text.append("x\uD83D\uDE00y \uD83D");
+        assertEquals("[65534:65537=x\uD83D\uDE00y]", utf8Trie.parseText(text).toString());
+
+        final List<String> matches = new ArrayList<>();
+        final long read = utf8Trie.parseStream(new StringReader(text.toString()), new StreamMatchHandler() {
+
+            @Override
+            public boolean onMatch(final long start, final long end, final int keywordId) {
+                matches.add(start + ":" + end + "=" + utf8Trie.getSearchString(keywordId));
+                return true;
+            }
+        });
+        assertEquals(text.length(), read);
+        assertEquals("[65534:65537=x\uD83D\uDE00y]", matches.toString());
+    }
+
+    @Test
+    public void parsesRangesAndBuffers() {
+        final Utf8DoubleArrayTrie<String> utf8Trie = new Utf8DoubleArrayTrie<>(new StringSearcherConfig());
+        utf8Trie.addSearchString("größe", "size");
+        utf8Trie.addSearchString("öß", "umlauts");
+        utf8Trie.build();
+
+        final byte[] bytes = "xx größe xx".getBytes(StandardCharsets.UTF_8);
+        assertEquals("[5:8=öß->umlauts, 3:9=größe->size]", utf8Trie.parseBytes(bytes).toString());
+
+        assertEquals("5:8 ", collect(utf8Trie, bytes, 4, 6));
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 2);
+        direct.put((byte) 'y').put(bytes).flip().position(1);
+        assertEquals("6:9 4:10 ", collect(utf8Trie, direct));
+        assertEquals(1, direct.position());
+
+        final ByteBuffer slice = ByteBuffer.wrap(bytes, 1, bytes.length - 1).slice();
+        assertEquals("4:7 2:8 ", collect(utf8Trie, slice));
+    }
+
+    @Test
+    public void foldsCaseOfBytes() {
+        final StringSearcherConfig config = new StringSearcherConfig();
+        config.setCaseInsensitive(true);
+        final Utf8DoubleArrayTrie<String> utf8Trie = new Utf8DoubleArrayTrie<>(config);
+        utf8Trie.addSearchString("Ärger", "anger");
+        utf8Trie.addSearchString("ΣΟΦΙΑ", "wisdom");
+        utf8Trie.build();
+
+        final byte[] bytes = "ÄRGER, ärger, σοφια".getBytes(StandardCharsets.UTF_8);
+        assertEquals("[0:5=ärger->anger, 8:13=ärger->anger, 16:25=σοφια->wisdom]",
+                utf8Trie.parseBytes(bytes).toString());
+    }
+
+    private static String collect(final Utf8DoubleArrayTrie<String> utf8Trie, final byte[] bytes, final int offset,
+            final int length) {
+        final StringBuilder matches = new StringBuilder();
+        utf8Trie.parseBytes(bytes, offset, length, collector(matches));
+        return matches.toString();
+    }
+
+    private static String collect(final Utf8DoubleArrayTrie<String> utf8Trie, final ByteBuffer buffer) {
+        final StringBuilder matches = new StringBuilder();
+        utf8Trie.parseBytes(buffer, collector(matches));
+        return matches.toString();
+    }
+
+    private static MatchHandler collector(final StringBuilder matches) {
+        return new MatchHandler() {
+
+            @Override
+            public boolean onMatch(final int start, final int end, final int keywordId) {
+                matches.append(start).append(':').append(end).append(' ');
+                return true;
+            }
+        };
+    }
+
+    private static String randomString(final Random random, final int length, final String alphabet) {
+        final StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            final int index = random.nextInt(alphabet.codePointCount(0, alphabet.length()));
+            builder.appendCodePoint(alphabet.codePointAt(alphabet.offsetByCodePoints(0, index)));
+        }
+        return builder.toString();
+    }
+}
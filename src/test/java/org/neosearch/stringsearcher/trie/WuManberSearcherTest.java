@@ -0,0 +1,84 @@
+package org.neosearch.stringsearcher.trie;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.neosearch.stringsearcher.StreamMatchHandler;
+import org.neosearch.stringsearcher.StringSearcherConfig;
+
+public class WuManberSearcherTest {
+
+    @Test
+    public void windowOfShortestSearchString() {
+        final WuManberSearcher<String> searcher = new WuManberSearcher<>(new StringSearcherConfig());
+        searcher.addSearchStrings("terms and conditions", "conditions apply", "privacy policy");
+        searcher.build();
+
+        assertEquals(14, searcher.getWindowLength());
+        assertEquals("[9:28=terms and conditions, 19:34=conditions apply]",
+                searcher.parseText("read the terms and conditions apply").toString());
+    }
+
+    @Test
+    public void sameAsTrieForLongSearchStrings() {
+        final Random random = new Random(37);
+        for (int round = 0; round < 20; round++) {
+            final StringSearcherConfig config = new StringSearcherConfig();
+            config.setCaseInsensitive(round % 2 == 1);
+            final WuManberSearcher<String> searcher = new WuManberSearcher<>(config);
+            final Trie<String> trie = new Trie<>(config);
+
+            final StringBuilder text = new StringBuilder(randomString(random, 5000, "abcd "));
+            for (int i = 0; i < 1 + random.nextInt(30); i++) {
+                final int start = random.nextInt(text.length() - 200);
+                final String keyword = text.substring(start, start + 20 + random.nextInt(100));
+                searcher.addSearchString(keyword);
+                trie.addSearchString(keyword);
+            }
+            searcher.build();
+            trie.build();
+
+            final String searchText = config.isCaseInsensitive() ? text.toString().toUpperCase() : text.toString();
+            assertEquals(trie.parseText(searchText).toString(), searcher.parseText(searchText).toString());
+        }
+    }
+
+    @Test
+    public void resumesStreamsAcrossBuffers() throws IOException {
+        final WuManberSearcher<String> searcher = new WuManberSearcher<>(new StringSearcherConfig());
+        searcher.addSearchStrings("boilerplate clause", "plate clause");
+        searcher.build();
+
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 64 * 1024 - 5; i++) {
+            text.append('x');
+        }
+        text.append("boilerplate clause");
+
+        final List<String> matches = new ArrayList<>();
+        final long read = searcher.parseStream(new StringReader(text.toString()), new StreamMatchHandler() {
+
+            @Override
+            public boolean onMatch(final long start, final long end, final int keywordId) {
+                matches.add(start + ":" + end);
+                return true;
+            }
+        });
+        assertEquals(text.length(), read);
+        assertEquals("[65537:65548, 65531:65548]", matches.toString());
+    }
+
+    private static String randomString(final Random random, final int length, final String alphabet) {
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,77 @@
+package org.neosearch.stringsearcher.trie.interval;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class OverlapRemovalTest {
+
+    @Test
+    public void removeOverlaps() {
+        List<Intervalable> intervals = new ArrayList<>();
+        intervals.add(new Interval(0, 2));
+        intervals.add(new Interval(4, 5));
+        intervals.add(new Interval(2, 10));
+        intervals.add(new Interval(6, 13));
+        intervals.add(new Interval(9, 15));
+        intervals.add(new Interval(12, 16));
+        intervals = OverlapRemoval.removeOverlaps(intervals);
+        assertEquals("[2:10, 12:16]", intervals.toString());
+    }
+
+    @Test
+    public void longestThenLeftmostWins() {
+        final List<Intervalable> intervals = new ArrayList<>();
+        intervals.add(new Interval(2, 3));
+        intervals.add(new Interval(1, 3));
+        intervals.add(new Interval(3, 4));
+        intervals.add(new Interval(2, 5));
+        assertEquals("[2:5]", OverlapRemoval.removeOverlaps(intervals).toString());
+    }
+
+    @Test
+    public void sameAsIntervalTree() {
+        final Random random = new Random(23);
+        for (int round = 0; round < 500; round++) {
+            final List<Intervalable> intervals = randomIntervals(random, random.nextInt(200), 300, 12);
+            if (random.nextBoolean()) {
+                Collections.shuffle(intervals, random);
+            }
+
+            final List<Intervalable> expected = new ArrayList<>(intervals);
+            new IntervalTree(expected).removeOverlaps(expected);
+            assertEquals(expected.toString(), OverlapRemoval.removeOverlaps(intervals).toString());
+        }
+    }
+
+    /**
+     * Creates distinct intervals ordered by their end, like the emits of a scan.
+     */
+    private static List<Intervalable> randomIntervals(final Random random, final int count, final int range,
+            final int maxLength) {
+        final Set<Intervalable> unique = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            final int start = random.nextInt(range);
+            unique.add(new Interval(start, start + random.nextInt(maxLength)));
+        }
+
+        final List<Intervalable> intervals = new ArrayList<>(unique);
+        Collections.sort(intervals, new Comparator<Intervalable>() {
+
+            @Override
+            public int compare(final Intervalable first, final Intervalable second) {
+                return first.getEnd() != second.getEnd() ? first.getEnd() - second.getEnd()
+                        : first.getStart() - second.getStart();
+            }
+        });
+        return intervals;
+    }
+}
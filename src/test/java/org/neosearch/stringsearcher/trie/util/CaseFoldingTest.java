@@ -0,0 +1,39 @@
+package org.neosearch.stringsearcher.trie.util;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+
+import org.junit.Test;
+
+public class CaseFoldingTest {
+
+    @Test
+    public void foldsAscii() {
+        for (char character = 0; character < 128; character++) {
+            assertEquals(Character.toLowerCase(character), CaseFolding.fold(character));
+        }
+    }
+
+    @Test
+    public void foldsCaseVariantsToOneCharacter() {
+        // Final sigma, long s, Kelvin sign, capital sharp s and a title case digraph
+        assertEquals("σσ", CaseFolding.fold("Σς"));
+        assertEquals("ss", CaseFolding.fold("Sſ"));
+        assertEquals("kk", CaseFolding.fold("KK"));
+        assertEquals("ßß", CaseFolding.fold("ẞß"));
+        assertEquals("ǆǆǆ", CaseFolding.fold("Ǆǅǆ"));
+    }
+
+    @Test
+    public void keepsTurkicIAndSurrogates() {
+        assertEquals("İı", CaseFolding.fold("İı"));
+        final String deseret = new String(Character.toChars(0x10400));
+        assertSame(deseret, CaseFolding.fold(deseret));
+    }
+
+    @Test
+    public void returnsUnchangedString() {
+        final String text = "already folded";
+        assertSame(text, CaseFolding.fold(text));
+    }
+}